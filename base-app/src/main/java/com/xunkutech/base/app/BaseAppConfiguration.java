@@ -1,9 +1,16 @@
 package com.xunkutech.base.app;
 
 import com.google.gson.Gson;
+import com.xunkutech.base.app.context.AppContextInterceptor;
+import com.xunkutech.base.app.context.CtxTokenCodec;
 import com.xunkutech.base.app.context.executor.ContextAwarePoolExecutor;
+import com.xunkutech.base.app.context.uaparser.Parser;
 import com.xunkutech.base.app.filter.ContextAwareFilter;
 import com.xunkutech.base.model.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
@@ -18,12 +25,15 @@ import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 
 import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Locale;
 import java.util.StringJoiner;
 import java.util.concurrent.Executor;
 
 @Configuration
 public class BaseAppConfiguration implements WebMvcConfigurerDefault {
+    private static final Logger logger = LoggerFactory.getLogger(BaseAppConfiguration.class);
 
     public static String HOSTNAME;
     public static String PID;
@@ -40,6 +50,17 @@ public class BaseAppConfiguration implements WebMvcConfigurerDefault {
         }
     }
 
+    private final ObjectProvider<Parser> uaParser;
+    private final ObjectProvider<CtxTokenCodec> tokenCodec;
+
+    /**
+     * @param uaParser see {@link UaParserAutoConfiguration}
+     */
+    public BaseAppConfiguration(ObjectProvider<Parser> uaParser, ObjectProvider<CtxTokenCodec> tokenCodec) {
+        this.uaParser = uaParser;
+        this.tokenCodec = tokenCodec;
+    }
+
     @Bean
     public Gson gson() {
         return JsonUtils.GSON;
@@ -55,6 +76,37 @@ public class BaseAppConfiguration implements WebMvcConfigurerDefault {
         return executor;
     }
 
+    /**
+     * Signs the <code>ctx-token</code> cookie with <code>ctx-token.secret</code> under
+     * <code>ctx-token.key-id</code>; <code>ctx-token.previous-key-id</code> and
+     * <code>ctx-token.previous-secret</code> keep the key before a rotation valid. Tokens of the old AES
+     * format are read with <code>ctx-token.legacy-secret</code>, the former built-in seed unless set;
+     * set it empty once they have expired. The secret is required: a random key, which neither survives
+     * a restart nor is shared between nodes, is only used with <code>ctx-token.random-secret=true</code>,
+     * meant for development.
+     */
+    @Bean
+    public CtxTokenCodec ctxTokenCodec(@Value("${ctx-token.key-id:1}") int keyId,
+                                       @Value("${ctx-token.secret:}") String secret,
+                                       @Value("${ctx-token.random-secret:false}") boolean randomSecret,
+                                       @Value("${ctx-token.previous-key-id:-1}") int previousKeyId,
+                                       @Value("${ctx-token.previous-secret:}") String previousSecret,
+                                       @Value("${ctx-token.legacy-secret:" + CtxTokenCodec.LEGACY_SECRET + "}") String legacySecret) {
+        byte[] key;
+        if (!secret.isEmpty()) {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        } else if (randomSecret) {
+            logger.warn("No ctx-token.secret configured, signing ctx-token cookies with a random key");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            throw new IllegalStateException("No ctx-token.secret configured; "
+                    + "set ctx-token.random-secret=true to sign with a random key in development");
+        }
+        return new CtxTokenCodec(keyId, key, previousKeyId, previousSecret.getBytes(StandardCharsets.UTF_8),
+                legacySecret.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Bean
     public LocaleContextResolver localeResolver() {
         CookieLocaleResolver resolver = new CookieLocaleResolver();
@@ -84,6 +136,7 @@ public class BaseAppConfiguration implements WebMvcConfigurerDefault {
         LocaleChangeInterceptor interceptor = new LocaleChangeInterceptor();
         interceptor.setParamName("locale");
         registry.addInterceptor(interceptor);
+        registry.addInterceptor(new AppContextInterceptor(uaParser.getObject(), tokenCodec.getObject()));
     }
 
     @Bean
@@ -0,0 +1,27 @@
+package com.xunkutech.base.app;
+
+import com.xunkutech.base.app.context.uaparser.CachingParser;
+import com.xunkutech.base.app.context.uaparser.Parser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The shared user-agent parser. An auto-configuration, listed in <code>META-INF/spring.factories</code>,
+ * so the condition is evaluated after the application's own configurations and a {@link Parser} bean
+ * defined there wins.
+ */
+@Configuration
+public class UaParserAutoConfiguration {
+
+    /**
+     * Compiling the ua-parser regex set is expensive, so it is done once and shared by every request.
+     * Parsed agents are cached, <code>ua-parser.cache-size</code> bounds the number of entries.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public Parser uaParser(@Value("${ua-parser.cache-size:" + CachingParser.DEFAULT_CACHE_SIZE + "}") int cacheSize) {
+        return CachingParser.fromClasspath(cacheSize);
+    }
+}
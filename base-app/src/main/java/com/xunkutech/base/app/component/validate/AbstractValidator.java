@@ -4,6 +4,7 @@ package com.xunkutech.base.app.component.validate;
 import com.xunkutech.base.app.util.AesUtils;
 import com.xunkutech.base.app.util.InvalidException;
 import com.xunkutech.base.model.JsonSerializable;
+import com.xunkutech.base.model.annotation.GsonAdapter;
 import com.xunkutech.base.model.util.CodecException;
 import com.xunkutech.base.model.util.CodecUtils;
 import com.xunkutech.base.model.util.JsonUtils;
@@ -55,6 +56,7 @@ public abstract class AbstractValidator {
 
     @Getter
     @Setter
+    @GsonAdapter
     public static class SimplePayload implements JsonSerializable {
         private Instant timestamp = Instant.now();
     }
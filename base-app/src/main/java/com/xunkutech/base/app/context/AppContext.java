@@ -2,13 +2,14 @@ package com.xunkutech.base.app.context;
 
 import com.xunkutech.base.app.context.uaparser.Client;
 import com.xunkutech.base.app.context.uaparser.Parser;
-import com.xunkutech.base.app.util.AesUtils;
-import com.xunkutech.base.app.util.InvalidException;
 import com.xunkutech.base.model.JsonSerializable;
-import com.xunkutech.base.model.util.CodecException;
-import com.xunkutech.base.model.util.CodecUtils;
+import com.xunkutech.base.model.annotation.GsonAdapter;
 import com.xunkutech.base.model.util.JsonUtils;
-import lombok.AllArgsConstructor;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.annotations.JsonAdapter;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -18,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Type;
 import java.time.Instant;
 import java.util.*;
 
@@ -35,8 +37,8 @@ public class AppContext {
     private static final String HEADER_API_VERSION = "X-Api-Version";
 
     private static final String TOKEN_NAME = "ctx-token";
-    private static final byte[] TOKEN_SEED = "i7aFm1".getBytes();
-    private static final int TOKEN_MAX_AGE = 60 * 60 * 4;//4 hours
+    static final int TOKEN_MAX_AGE = 60 * 60 * 4;//4 hours
+    private static final int TOKEN_REISSUE_AGE = 60 * 60 * 3;//reissue once older than 3 hours
 
     @Getter
     private transient HttpServletRequest request;
@@ -50,32 +52,113 @@ public class AppContext {
     @Getter
     private transient ClientInfo clientInfo;
 
+    private transient Parser uaParser;
+
+    private transient CtxTokenCodec tokenCodec;
+
+    private transient Client client;
+
     private transient Map<Object, Object> attributes = new HashMap<>();
 
+    /**
+     * Raw request values of a {@link #detach() detached} copy, null while attached to the request.
+     */
+    private transient RequestValues captured;
+
     public AppContext(HttpServletRequest request, HttpServletResponse response, Locale locale) {
+        this(request, response, locale, AppContextHolder.findBean(request, Parser.class),
+                AppContextHolder.findBean(request, CtxTokenCodec.class));
+    }
+
+    public AppContext(HttpServletRequest request, HttpServletResponse response, Locale locale, Parser uaParser,
+                      CtxTokenCodec tokenCodec) {
         this.request = request;
         this.response = response;
         this.locale = locale;
-        resolveClientInfo();
+        this.uaParser = uaParser;
+        this.tokenCodec = tokenCodec;
+        if (null != request) {
+            this.clientInfo = new ClientInfo(this);
+        }
+    }
+
+    /**
+     * A copy for work handed to another thread, which may run after the request has been recycled. The
+     * raw header and cookie values the client details are resolved from are captured, parts resolved so
+     * far are carried over and the rest stays lazy. A copy never writes to the response.
+     *
+     * @return the copy, or this if there is no request or it is detached already
+     */
+    public AppContext detach() {
+        if (null == request || null != captured) {
+            return this;
+        }
+        AppContext copy = new AppContext(null, null, locale, uaParser, tokenCodec);
+        copy.request = request;
+        copy.response = response;
+        copy.attributes = attributes;
+        copy.captured = new RequestValues(request);
+        copy.clientInfo = clientInfo.copyTo(copy);
+        return copy;
+    }
+
+    private String header(String name) {
+        return null == captured ? request.getHeader(name) : captured.headers.get(name);
+    }
+
+    private String remoteAddr() {
+        return null == captured ? request.getRemoteAddr() : captured.remoteAddr;
     }
 
-    private void resolveClientInfo() {
-        if (null == request) return;
+    private String scheme() {
+        return null == captured ? request.getScheme() : captured.scheme;
+    }
+
+    private String tokenCookie() {
+        return null == captured ? RequestValues.tokenCookie(request) : captured.tokenCookie;
+    }
 
-        String apiVersion = request.getHeader(HEADER_API_VERSION);
-        String uuid = null;
+    /**
+     * The parsed User-Agent header, shared by agent, os and device; null without the header or a parser.
+     */
+    private Client resolveClient() {
+        if (null == client && null != uaParser) {
+            String uaString = header(HEADER_USER_AGENT);
+            if (null != uaString) {
+                client = uaParser.parse(uaString);
+            }
+        }
+        return client;
+    }
+
+    private Agent resolveAgent() {
         Agent.AgentBuilder agent = Agent.builder().family("unknown");
+        Client c = resolveClient();
+        if (null != c) {
+            agent.family(c.userAgent.family).major(c.userAgent.major).minor(c.userAgent.minor).patch(c.userAgent.patch);
+        }
+        return agent.build();
+    }
+
+    private Os resolveOs() {
         Os.OsBuilder os = Os.builder().family("unknown");
-        Gis.GisBuilder gis = Gis.builder();
+        Client c = resolveClient();
+        if (null != c) {
+            os.family(c.os.family).major(c.os.major).minor(c.os.minor).patch(c.os.patch);
+        }
+        return os.build();
+    }
+
+    private Device resolveDevice() {
         Device.DeviceBuilder device = Device.builder()
-                .family(request.getHeader(HEADER_DEVICE_MANUFACTURE))
-                .manufacture(request.getHeader(HEADER_DEVICE_MANUFACTURE))
-                .model(request.getHeader(HEADER_DEVICE_MODEL))
-                .networkType(request.getHeader(HEADER_NETWORK_INFORMATION))
-                .remoteAddr(request.getRemoteAddr())
-                .schema(request.getScheme());
+                .family(header(HEADER_DEVICE_MANUFACTURE))
+                .manufacture(header(HEADER_DEVICE_MANUFACTURE))
+                .model(header(HEADER_DEVICE_MODEL))
+                .networkType(header(HEADER_NETWORK_INFORMATION))
+                .remoteAddr(remoteAddr())
+                .schema(scheme());
 
-        String pixel = request.getHeader(HEADER_DEVICE_PIXEL);
+        String pixel = header(HEADER_DEVICE_PIXEL);
 
         if (null != pixel) {
             String[] p = pixel.split("x");
@@ -85,16 +168,17 @@ public class AppContext {
             }
         }
 
-        String uaString = request.getHeader(HEADER_USER_AGENT);
-
-        if (null != uaString) {
-            Client c = new Parser().parse(uaString);
-            os.family(c.os.family).major(c.os.major).minor(c.os.minor).patch(c.os.patch);
-            agent.family(c.userAgent.family).major(c.userAgent.major).minor(c.userAgent.minor).patch(c.userAgent.patch);
+        Client c = resolveClient();
+        if (null != c) {
             device.family(c.device.family);
         }
+        return device.build();
+    }
+
+    private Gis resolveGis() {
+        Gis.GisBuilder gis = Gis.builder();
 
-        String geoString = request.getHeader(HEADER_GEO_POSITION);
+        String geoString = header(HEADER_GEO_POSITION);
         if (null != geoString) {
             //Geo-Position: -10.28;60.84;120 epu=50 hdn=45 spd=15
 
@@ -129,48 +213,60 @@ public class AppContext {
                 }
             }
         }
-
-        CtxToken token = refreshToken();
-        uuid = token.getUuid();
-
-        clientInfo = new ClientInfo(apiVersion, uuid, agent.build(), os.build(), device.build(), gis.build());
-        logger.debug("Resolved client info: \n{}", clientInfo.printJson());
+        return gis.build();
     }
 
+    /**
+     * Validates the <code>ctx-token</code> cookie and keeps its uuid. A fresh cookie is only sent when
+     * there is none, it is invalid, in the legacy JSON format, signed with the previous key, or close to
+     * <code>TOKEN_MAX_AGE</code>. Without a {@link CtxTokenCodec} every request gets a new uuid, and so
+     * does a detached copy that finds no valid cookie, as it cannot send one.
+     */
     private CtxToken refreshToken() {
-        CtxToken newToken = new CtxToken();
-        if (null != request && null != request.getCookies()) {
-            Arrays.stream(request.getCookies())
-                    .filter(c -> c.getName().equals(TOKEN_NAME))
-                    .findAny()
-                    .ifPresent(c -> {
-                        try {
-                            CtxToken oldToken = JsonUtils.fromBin(AesUtils.decrypt(CodecUtils.fromBase64(c.getValue()), TOKEN_SEED), CtxToken.class);
-                            if (null != oldToken
-                                    && null != oldToken.getTimestamp()
-                                    && null != oldToken.getUuid()
-                                    && oldToken.getTimestamp().plusSeconds(TOKEN_MAX_AGE).isAfter(Instant.now())) {
-                                newToken.setUuid(oldToken.getUuid());
-                            }
-                        } catch (InvalidException | CodecException e) {
-                            logger.debug("Bad token {}", e.getMessage());
-                        }
-                    });
+        CtxToken token = null;
+        boolean reissue = true;
+
+        if (null == tokenCodec) {
+            logger.debug("No ctx-token codec, not issuing a token");
+            token = new CtxToken();
+            token.setUuid(UUID.randomUUID().toString().replace("-", ""));
+            return token;
+        }
+
+        String value = null == request ? null : tokenCookie();
+        if (null != value) {
+            token = tokenCodec.decode(value);
+            if (null == token) {
+                token = tokenCodec.decodeLegacy(value);
+            } else {
+                reissue = !tokenCodec.isCurrentKey(value)
+                        || token.getTimestamp().plusSeconds(TOKEN_REISSUE_AGE).isBefore(Instant.now());
+            }
+            if (null != token && !token.getTimestamp().plusSeconds(TOKEN_MAX_AGE).isAfter(Instant.now())) {
+                token = null;
+                reissue = true;
+            }
         }
 
-        if (null == newToken.getUuid()) {
-            newToken.setUuid(UUID.randomUUID().toString().replace("-", ""));
+        if (null == token || !CtxTokenCodec.isEncodable(token.getUuid())) {
+            token = new CtxToken();
+            token.setUuid(UUID.randomUUID().toString().replace("-", ""));
+            reissue = true;
         }
 
-        if (null != response) {
-            String tokenValue = CodecUtils.toBase64(AesUtils.encrypt(newToken.toJsonBin(), TOKEN_SEED));
-            Cookie newCookie = new Cookie(TOKEN_NAME, tokenValue);
+        if (reissue && null != response && null == captured) {
+            if (response.isCommitted()) {
+                logger.debug("Response already committed, the ctx-token cookie is not reissued");
+                return token;
+            }
+            token.setTimestamp(Instant.now());
+            Cookie newCookie = new Cookie(TOKEN_NAME, tokenCodec.encode(token.getUuid(), token.getTimestamp()));
             newCookie.setMaxAge(TOKEN_MAX_AGE);
             newCookie.setPath("/");
             response.addCookie(newCookie);
         }
 
-        return newToken;
+        return token;
     }
 
     public void put(Object obj) {
@@ -198,14 +294,21 @@ public class AppContext {
 
     @Getter
     @Setter
+    @GsonAdapter
     public static class CtxToken implements JsonSerializable {
         String uuid;
         Instant timestamp = Instant.now();
     }
 
-    @Getter
+    /**
+     * Client details of the current request. Every part is resolved from the request on first access
+     * and then kept, so a handler that never looks at the client pays nothing. Reading the uuid validates
+     * the <code>ctx-token</code> cookie and reissues it if the response is not committed yet; work handed
+     * to another thread gets a {@link AppContext#detach() detached} copy, as the request may be recycled
+     * by then. Serialized resolved.
+     */
     @Setter
-    @AllArgsConstructor
+    @JsonAdapter(ClientInfo.Serializer.class)
     public static class ClientInfo implements JsonSerializable {
         String apiVersion;                  //x-api-version
         String uuid;
@@ -213,6 +316,147 @@ public class AppContext {
         Os os;
         Device device;
         Gis gis;
+
+        private final transient AppContext context;
+
+        public ClientInfo(String apiVersion, String uuid, Agent agent, Os os, Device device, Gis gis) {
+            this.apiVersion = apiVersion;
+            this.uuid = uuid;
+            this.agent = agent;
+            this.os = os;
+            this.device = device;
+            this.gis = gis;
+            this.context = null;
+        }
+
+        private ClientInfo(AppContext context) {
+            this.context = context;
+        }
+
+        public synchronized String getApiVersion() {
+            if (null == apiVersion && null != context) {
+                apiVersion = context.header(HEADER_API_VERSION);
+            }
+            return apiVersion;
+        }
+
+        public synchronized String getUuid() {
+            if (null == uuid && null != context) {
+                uuid = context.refreshToken().getUuid();
+            }
+            return uuid;
+        }
+
+        public synchronized Agent getAgent() {
+            if (null == agent && null != context) {
+                agent = context.resolveAgent();
+            }
+            return agent;
+        }
+
+        public synchronized Os getOs() {
+            if (null == os && null != context) {
+                os = context.resolveOs();
+            }
+            return os;
+        }
+
+        public synchronized Device getDevice() {
+            if (null == device && null != context) {
+                device = context.resolveDevice();
+            }
+            return device;
+        }
+
+        public synchronized Gis getGis() {
+            if (null == gis && null != context) {
+                gis = context.resolveGis();
+            }
+            return gis;
+        }
+
+        /**
+         * The parts resolved so far, and the parsed agent they share, for a detached <code>context</code>.
+         */
+        private synchronized ClientInfo copyTo(AppContext context) {
+            ClientInfo copy = new ClientInfo(context);
+            copy.apiVersion = apiVersion;
+            copy.uuid = uuid;
+            copy.agent = agent;
+            copy.os = os;
+            copy.device = device;
+            copy.gis = gis;
+            if (null != this.context) {
+                context.client = this.context.client;
+            }
+            return copy;
+        }
+
+        /**
+         * Resolves every part still pending, while the request is alive.
+         *
+         * @return this
+         */
+        public synchronized ClientInfo resolve() {
+            getApiVersion();
+            getUuid();
+            getAgent();
+            getOs();
+            getDevice();
+            getGis();
+            return this;
+        }
+
+        static class Serializer implements JsonSerializer<ClientInfo> {
+            @Override
+            public JsonElement serialize(ClientInfo src, Type typeOfSrc, JsonSerializationContext context) {
+                src.resolve();
+                JsonObject json = new JsonObject();
+                json.add("apiVersion", context.serialize(src.apiVersion));
+                json.add("uuid", context.serialize(src.uuid));
+                json.add("agent", context.serialize(src.agent));
+                json.add("os", context.serialize(src.os));
+                json.add("device", context.serialize(src.device));
+                json.add("gis", context.serialize(src.gis));
+                return json;
+            }
+        }
+    }
+
+    /**
+     * What a detached copy reads instead of the request.
+     */
+    private static final class RequestValues {
+        private static final String[] HEADERS = {HEADER_USER_AGENT, HEADER_DEVICE_PIXEL, HEADER_GEO_POSITION,
+                HEADER_DEVICE_MANUFACTURE, HEADER_DEVICE_MODEL, HEADER_NETWORK_INFORMATION, HEADER_API_VERSION};
+
+        final Map<String, String> headers = new HashMap<>();
+        final String remoteAddr;
+        final String scheme;
+        final String tokenCookie;
+
+        RequestValues(HttpServletRequest request) {
+            for (String name : HEADERS) {
+                String value = request.getHeader(name);
+                if (null != value) {
+                    headers.put(name, value);
+                }
+            }
+            remoteAddr = request.getRemoteAddr();
+            scheme = request.getScheme();
+            tokenCookie = tokenCookie(request);
+        }
+
+        static String tokenCookie(HttpServletRequest request) {
+            if (null != request.getCookies()) {
+                for (Cookie c : request.getCookies()) {
+                    if (TOKEN_NAME.equals(c.getName())) {
+                        return c.getValue();
+                    }
+                }
+            }
+            return null;
+        }
     }
 
     @Getter
@@ -271,7 +515,7 @@ public class AppContext {
 //        String uaString3 = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_12_6) AppleWebKit/603.3.8 (KHTML, like Gecko) Version/10.1.2 Safari/603.3.8";
         String uaString3 = "";
         Client c;
-        Parser uaParser = new Parser();
+        Parser uaParser = Parser.fromClasspath();
 
         c = uaParser.parse(uaString1);
         System.out.println(JsonUtils.printJson(c));
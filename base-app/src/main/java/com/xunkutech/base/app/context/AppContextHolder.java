@@ -1,12 +1,18 @@
 package com.xunkutech.base.app.context;
 
+import com.xunkutech.base.app.context.uaparser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.NamedThreadLocal;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import javax.servlet.http.HttpServletRequest;
 
 @Component
 public class AppContextHolder {
@@ -15,6 +21,28 @@ public class AppContextHolder {
     private static final ThreadLocal<AppContext> appContextHolder =
             new NamedThreadLocal<>("App context");
 
+    /**
+     * A bean of the web application context serving <code>request</code>, for contexts created outside
+     * of {@link AppContextInterceptor}; <code>null</code> if there is none.
+     */
+    static <T> T findBean(HttpServletRequest request, Class<T> type) {
+        WebApplicationContext context = null == request ? null : RequestContextUtils.findWebApplicationContext(request);
+        if (null == context) return null;
+        try {
+            return context.getBean(type);
+        } catch (BeansException e) {
+            logger.warn("No {}: {}", type.getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the context bound to the current thread, without creating one
+     */
+    public static AppContext peekAppContext() {
+        return appContextHolder.get();
+    }
+
     public static AppContext currentAppContext() {
         AppContext appContext = appContextHolder.get();
         if (null == appContext) {
@@ -34,7 +62,8 @@ public class AppContextHolder {
                         "In this case, use RequestContextListener or RequestContextFilter to expose the current request.");
             }
 
-            appContext = new AppContext(attributes.getRequest(), attributes.getResponse(), LocaleContextHolder.getLocale());
+            appContext = new AppContext(attributes.getRequest(), attributes.getResponse(), LocaleContextHolder.getLocale(),
+                    findBean(attributes.getRequest(), Parser.class), findBean(attributes.getRequest(), CtxTokenCodec.class));
             appContextHolder.set(appContext);
             logger.debug("Created AppContext with locale: {}", appContext.getLocale());
         }
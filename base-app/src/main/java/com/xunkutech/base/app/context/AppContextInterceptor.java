@@ -0,0 +1,36 @@
+package com.xunkutech.base.app.context;
+
+import com.xunkutech.base.app.context.uaparser.Parser;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Binds the {@link AppContext} of the request, after the locale has been resolved, with the shared
+ * user-agent parser and token codec. Nothing is resolved here: the <code>ctx-token</code> cookie is
+ * only validated, and reissued, when the uuid is first read, e.g. by {@link AppContext#RATELIMIT_KEY_SPEL}
+ * before the handler writes the response. {@link com.xunkutech.base.app.filter.ContextAwareFilter}
+ * unbinds it.
+ */
+public class AppContextInterceptor extends HandlerInterceptorAdapter {
+
+    private final Parser uaParser;
+    private final CtxTokenCodec tokenCodec;
+
+    public AppContextInterceptor(Parser uaParser, CtxTokenCodec tokenCodec) {
+        this.uaParser = uaParser;
+        this.tokenCodec = tokenCodec;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AppContext current = AppContextHolder.peekAppContext();
+        if (null == current || current.getRequest() != request) {
+            current = new AppContext(request, response, LocaleContextHolder.getLocale(), uaParser, tokenCodec);
+            AppContextHolder.setAppContext(current);
+        }
+        return true;
+    }
+}
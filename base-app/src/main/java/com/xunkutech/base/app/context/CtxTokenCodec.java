@@ -0,0 +1,255 @@
+package com.xunkutech.base.app.context;
+
+import com.xunkutech.base.app.util.AesUtils;
+import com.xunkutech.base.app.util.InvalidException;
+import com.xunkutech.base.model.util.CodecException;
+import com.xunkutech.base.model.util.CodecUtils;
+import com.xunkutech.base.model.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact binary form of the <code>ctx-token</code> cookie.
+ * <pre>
+ * version(1) keyId(1) uuid(16) issuedAt epoch seconds(8) HMAC-SHA256 tag truncated to 16 bytes
+ * </pre>
+ * 42 bytes, written as 56 characters of unpadded base64url. Tokens are signed with the current key
+ * and verified with the current or the previous one, named by the key id, so the secret can be
+ * rotated without logging every client out: configure the new secret under a new id and keep the old
+ * one as previous for {@link AppContext#TOKEN_MAX_AGE}. The HMAC keys are derived once from the
+ * secrets. Decoding and verifying work on per-thread buffers, so a rejected cookie costs no garbage;
+ * only an accepted token is materialized.
+ * <p>
+ * Tokens of the format before, AES encrypted JSON, are still read when the secret they were
+ * encrypted with is configured as the legacy secret, by default {@link #LEGACY_SECRET}.
+ */
+public final class CtxTokenCodec {
+    private static final Logger logger = LoggerFactory.getLogger(CtxTokenCodec.class);
+
+    /**
+     * The seed every token of the legacy format was encrypted with.
+     */
+    public static final String LEGACY_SECRET = "i7aFm1";
+
+    private static final byte VERSION = 1;
+
+    private static final int UUID_OFFSET = 2;
+    private static final int TIME_OFFSET = UUID_OFFSET + 16;
+    private static final int TAG_OFFSET = TIME_OFFSET + 8;
+    private static final int TAG_LENGTH = 16;
+    private static final int LENGTH = TAG_OFFSET + TAG_LENGTH;
+    private static final int ENCODED_LENGTH = LENGTH / 3 * 4;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] BASE64_URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final byte keyId;
+    /**
+     * Verification keys by key id.
+     */
+    private final SecretKeySpec[] keys = new SecretKeySpec[256];
+    private final byte[] legacySecret;
+    private final ThreadLocal<Mac[]> macs = ThreadLocal.withInitial(() -> new Mac[256]);
+    /**
+     * Decoded token followed by room for the full MAC.
+     */
+    private final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[LENGTH + MAC_LENGTH]);
+
+    public CtxTokenCodec(int keyId, byte[] secret) {
+        this(keyId, secret, -1, null, null);
+    }
+
+    /**
+     * @param keyId          id of the key new tokens are signed with, 0 to 255
+     * @param secret         secret of the current key
+     * @param previousKeyId  id of the key still accepted, -1 for none
+     * @param previousSecret secret of the previous key, null for none
+     * @param legacySecret   secret of the tokens in the legacy format, null to not read them
+     */
+    public CtxTokenCodec(int keyId, byte[] secret, int previousKeyId, byte[] previousSecret, byte[] legacySecret) {
+        if (keyId < 0 || keyId > 255) throw new IllegalArgumentException("Invalid key id: " + keyId);
+        if (null == secret || secret.length == 0) throw new IllegalArgumentException("No ctx-token secret");
+        this.keyId = (byte) keyId;
+        this.keys[keyId] = deriveKey(secret);
+        if (null != previousSecret && previousSecret.length > 0) {
+            if (previousKeyId < 0 || previousKeyId > 255 || previousKeyId == keyId) {
+                throw new IllegalArgumentException("Invalid previous key id: " + previousKeyId);
+            }
+            this.keys[previousKeyId] = deriveKey(previousSecret);
+        }
+        this.legacySecret = null == legacySecret || legacySecret.length == 0 ? null : legacySecret.clone();
+    }
+
+    private static SecretKeySpec deriveKey(byte[] secret) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update("ctx-token".getBytes(StandardCharsets.US_ASCII));
+            return new SecretKeySpec(digest.digest(secret), MAC_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Whether a uuid can be carried by the binary format, i.e. is 32 hex digits.
+     */
+    static boolean isEncodable(String uuid) {
+        if (null == uuid || uuid.length() != 32) return false;
+        for (int i = 0; i < 32; i++) {
+            if (hexDigit(uuid.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The value of an ASCII hex digit, -1 for anything else. Unlike {@link Character#digit(char, int)}
+     * other Unicode digits are not accepted.
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    String encode(String uuid, Instant issuedAt) {
+        if (!isEncodable(uuid)) {
+            throw new IllegalArgumentException("Not a 32 digit hex uuid: " + uuid);
+        }
+        byte[] buf = buffer.get();
+        buf[0] = VERSION;
+        buf[1] = keyId;
+        for (int i = 0; i < 16; i++) {
+            buf[UUID_OFFSET + i] = (byte) (hexDigit(uuid.charAt(i * 2)) << 4 | hexDigit(uuid.charAt(i * 2 + 1)));
+        }
+        long seconds = issuedAt.getEpochSecond();
+        for (int i = 7; i >= 0; i--) {
+            buf[TIME_OFFSET + i] = (byte) seconds;
+            seconds >>>= 8;
+        }
+        sign(buf);
+        System.arraycopy(buf, LENGTH, buf, TAG_OFFSET, TAG_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(buf, LENGTH));
+    }
+
+    /**
+     * Returns the token carried by <code>value</code>, or null when it is not a binary token of this
+     * version and a configured key or its tag does not verify.
+     */
+    AppContext.CtxToken decode(String value) {
+        if (null == value || value.length() != ENCODED_LENGTH) return null;
+
+        byte[] buf = buffer.get();
+        for (int i = 0, o = 0; i < ENCODED_LENGTH; i += 4, o += 3) {
+            int bits = 0;
+            for (int j = 0; j < 4; j++) {
+                char c = value.charAt(i + j);
+                int v = c < 128 ? BASE64_URL[c] : -1;
+                if (v < 0) return null;
+                bits = bits << 6 | v;
+            }
+            buf[o] = (byte) (bits >> 16);
+            buf[o + 1] = (byte) (bits >> 8);
+            buf[o + 2] = (byte) bits;
+        }
+        if (buf[0] != VERSION || null == keys[buf[1] & 0xff]) return null;
+
+        sign(buf);
+        int diff = 0;
+        for (int i = 0; i < TAG_LENGTH; i++) {
+            diff |= buf[TAG_OFFSET + i] ^ buf[LENGTH + i];
+        }
+        if (diff != 0) return null;
+
+        char[] uuid = new char[32];
+        for (int i = 0; i < 16; i++) {
+            int b = buf[UUID_OFFSET + i] & 0xff;
+            uuid[i * 2] = HEX[b >>> 4];
+            uuid[i * 2 + 1] = HEX[b & 0x0f];
+        }
+        long seconds = 0;
+        for (int i = 0; i < 8; i++) {
+            seconds = seconds << 8 | (buf[TIME_OFFSET + i] & 0xff);
+        }
+
+        AppContext.CtxToken token = new AppContext.CtxToken();
+        token.setUuid(new String(uuid));
+        token.setTimestamp(Instant.ofEpochSecond(seconds));
+        return token;
+    }
+
+    /**
+     * Whether <code>value</code>, a token accepted by {@link #decode(String)}, is signed with the
+     * current key; tokens signed with the previous one are reissued.
+     */
+    boolean isCurrentKey(String value) {
+        int c1 = BASE64_URL[value.charAt(1)];
+        int c2 = BASE64_URL[value.charAt(2)];
+        return (byte) ((c1 & 0x0f) << 4 | c2 >> 2) == keyId;
+    }
+
+    /**
+     * Tokens issued before the binary format: AES encrypted JSON of {@link AppContext.CtxToken}.
+     */
+    AppContext.CtxToken decodeLegacy(String value) {
+        if (null == legacySecret) return null;
+        try {
+            AppContext.CtxToken token = JsonUtils.fromBin(AesUtils.decrypt(CodecUtils.fromBase64(value), legacySecret),
+                    AppContext.CtxToken.class);
+            if (null != token && null != token.getTimestamp() && null != token.getUuid()) {
+                return token;
+            }
+        } catch (InvalidException | CodecException e) {
+            logger.debug("Bad token {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * MACs the token header and payload of <code>buf</code> into <code>buf[LENGTH..]</code>, with the
+     * key named by its key id.
+     */
+    private void sign(byte[] buf) {
+        Mac m = mac(buf[1] & 0xff);
+        m.update(buf, 0, TAG_OFFSET);
+        try {
+            m.doFinal(buf, LENGTH);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Mac mac(int id) {
+        Mac[] m = macs.get();
+        if (null == m[id]) {
+            try {
+                m[id] = Mac.getInstance(MAC_ALGORITHM);
+                m[id].init(keys[id]);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return m[id];
+    }
+}
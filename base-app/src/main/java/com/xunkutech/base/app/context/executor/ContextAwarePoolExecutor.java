@@ -1,5 +1,6 @@
 package com.xunkutech.base.app.context.executor;
 
+import com.xunkutech.base.app.context.AppContext;
 import com.xunkutech.base.app.context.AppContextHolder;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -11,12 +12,19 @@ import java.util.concurrent.Future;
 
 public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
 
+    /**
+     * The task may run after the request is over, so it gets a copy that no longer reads the request.
+     */
+    private static AppContext detachedAppContext() {
+        return AppContextHolder.currentAppContext().detach();
+    }
+
     @Override
     public void execute(Runnable task) {
         super.execute(new ContextAwareRunnable(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()));
+                detachedAppContext()));
     }
 
 
@@ -25,7 +33,7 @@ public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
         super.execute(new ContextAwareRunnable(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()), startTimeout);
+                detachedAppContext()), startTimeout);
     }
 
     @Override
@@ -33,7 +41,7 @@ public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
         return super.submit(new ContextAwareRunnable(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()));
+                detachedAppContext()));
     }
 
     @Override
@@ -41,7 +49,7 @@ public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
         return super.submit(new ContextAwareCallable<>(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()));
+                detachedAppContext()));
     }
 
     @Override
@@ -49,7 +57,7 @@ public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
         return super.submitListenable(new ContextAwareRunnable(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()));
+                detachedAppContext()));
     }
 
     @Override
@@ -57,7 +65,7 @@ public class ContextAwarePoolExecutor extends ThreadPoolTaskExecutor {
         return super.submitListenable(new ContextAwareCallable<>(task,
                 RequestContextHolder.currentRequestAttributes(),
                 LocaleContextHolder.getLocaleContext(),
-                AppContextHolder.currentAppContext()));
+                detachedAppContext()));
     }
 
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package com.xunkutech.base.app.context.uaparser;
 
-import org.apache.commons.collections4.map.LRUMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,110 +16,107 @@ import java.util.Map;
  * effect that the same useragent will appear in the logfiles and we will see
  * the need to parse the same useragent over and over again.
  * <p>
- * This class introduces a very simple LRU cache to reduce the number of times
- * the parsing is actually done.
+ * This class keeps the parsed {@link Client} of recently seen agent strings in a
+ * concurrent, bounded cache, so one instance can be shared by all request threads.
+ * Admission is frequency based (W-TinyLFU), so a burst of one-off agents from
+ * scanners and bots does not evict the agents that make up most of the traffic.
  *
  * @author Niels Basjes
  */
 public class CachingParser extends Parser {
 
-    // TODO: Make configurable
-    private static final int CACHE_SIZE = 1000;
+    public static final int DEFAULT_CACHE_SIZE = 1000;
 
-    private Map<String, Client> cacheClient = null;
-    private Map<String, UserAgent> cacheUserAgent = null;
-    private Map<String, Device> cacheDevice = null;
-    private Map<String, OS> cacheOS = null;
+    private final Cache<String, Client> cacheClient;
 
     // ------------------------------------------
 
     public CachingParser() throws IOException {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public CachingParser(int cacheSize) throws IOException {
         super();
+        cacheClient = newCache(cacheSize);
     }
 
     public CachingParser(InputStream regexYaml) {
+        this(regexYaml, DEFAULT_CACHE_SIZE);
+    }
+
+    public CachingParser(InputStream regexYaml, int cacheSize) {
         super(regexYaml);
+        cacheClient = newCache(cacheSize);
+    }
+
+    public CachingParser(Map<String, List<Map<String, String>>> regexConfig) {
+        this(regexConfig, DEFAULT_CACHE_SIZE);
+    }
+
+    public CachingParser(Map<String, List<Map<String, String>>> regexConfig, int cacheSize) {
+        super(regexConfig);
+        cacheClient = newCache(cacheSize);
+    }
+
+    public static CachingParser fromClasspath(int cacheSize) {
+        return new CachingParser(RegexSnapshot.fromClasspath().getRegexConfig(), cacheSize);
+    }
+
+    private static Cache<String, Client> newCache(int cacheSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
     }
 
     // ------------------------------------------
 
-    @SuppressWarnings("unchecked")
     @Override
     public Client parse(String agentString) {
         if (agentString == null) {
             return null;
         }
-        if (cacheClient == null) {
-            cacheClient = new LRUMap(CACHE_SIZE);
-        }
-        Client client = cacheClient.get(agentString);
-        if (client != null) {
-            return client;
-        }
-        client = super.parse(agentString);
-        cacheClient.put(agentString, client);
-        return client;
+        return cacheClient.get(agentString, super::parse);
     }
 
     // ------------------------------------------
 
-    @SuppressWarnings("unchecked")
     @Override
     public UserAgent parseUserAgent(String agentString) {
-        if (agentString == null) {
-            return null;
-        }
-        if (cacheUserAgent == null) {
-            cacheUserAgent = new LRUMap(CACHE_SIZE);
-        }
-        UserAgent userAgent = cacheUserAgent.get(agentString);
-        if (userAgent != null) {
-            return userAgent;
-        }
-        userAgent = super.parseUserAgent(agentString);
-        cacheUserAgent.put(agentString, userAgent);
-        return userAgent;
+        Client client = parse(agentString);
+        return null == client ? null : client.userAgent;
     }
 
-    // ------------------------------------------
-
-    @SuppressWarnings("unchecked")
     @Override
     public Device parseDevice(String agentString) {
-        if (agentString == null) {
-            return null;
-        }
-        if (cacheDevice == null) {
-            cacheDevice = new LRUMap(CACHE_SIZE);
-        }
-        Device device = cacheDevice.get(agentString);
-        if (device != null) {
-            return device;
-        }
-        device = super.parseDevice(agentString);
-        cacheDevice.put(agentString, device);
-        return device;
+        Client client = parse(agentString);
+        return null == client ? null : client.device;
     }
 
-    // ------------------------------------------
-
-    @SuppressWarnings("unchecked")
     @Override
     public OS parseOS(String agentString) {
-        if (agentString == null) {
-            return null;
-        }
+        Client client = parse(agentString);
+        return null == client ? null : client.os;
+    }
 
-        if (cacheOS == null) {
-            cacheOS = new LRUMap(CACHE_SIZE);
-        }
-        OS os = cacheOS.get(agentString);
-        if (os != null) {
-            return os;
-        }
-        os = super.parseOS(agentString);
-        cacheOS.put(agentString, os);
-        return os;
+    // ------------------------------------------
+
+    /**
+     * Hit, miss and eviction counters since the parser was created.
+     */
+    public CacheStats getStats() {
+        return cacheClient.stats();
+    }
+
+    public long getEstimatedSize() {
+        return cacheClient.estimatedSize();
+    }
+
+    /**
+     * The bound the cache was built with, e.g. <code>ua-parser.cache-size</code>.
+     */
+    public long getMaximumSize() {
+        return cacheClient.policy().eviction().map(eviction -> eviction.getMaximum()).orElse(Long.MAX_VALUE);
     }
 
     // ------------------------------------------
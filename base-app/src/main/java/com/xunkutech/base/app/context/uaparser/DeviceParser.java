@@ -17,6 +17,7 @@
 package com.xunkutech.base.app.context.uaparser;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -29,9 +30,16 @@ import java.util.regex.Pattern;
  */
 public class DeviceParser {
   List<DevicePattern> patterns;
+  private final LiteralPrefilter prefilter;
 
   public DeviceParser(List<DevicePattern> patterns) {
     this.patterns = patterns;
+
+    List<Pattern> regexes = new ArrayList<Pattern>(patterns.size());
+    for (DevicePattern p : patterns) {
+      regexes.add(p.pattern);
+    }
+    this.prefilter = LiteralPrefilter.compile(regexes);
   }
 
   public Device parse(String agentString) {
@@ -40,8 +48,9 @@ public class DeviceParser {
     }
 
     String device = null;
-    for (DevicePattern p : patterns) {
-      if ((device = p.match(agentString)) != null) {
+    BitSet candidates = prefilter.candidates(agentString);
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if ((device = patterns.get(i).match(agentString)) != null) {
         break;
       }
     }
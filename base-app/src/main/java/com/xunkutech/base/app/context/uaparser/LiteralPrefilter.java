@@ -0,0 +1,404 @@
+package com.xunkutech.base.app.context.uaparser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Narrows an ordered list of ua-parser patterns down to the ones that can possibly match an agent
+ * string, so the parsers only run {@link java.util.regex.Matcher#find()} on those.
+ * <p>
+ * For every pattern the literal text that any match must contain is extracted when the regexes are
+ * loaded (e.g. <code>Opera Mini</code> for <code>(Opera Mini)(?:/att|)/?(\d+)</code>; one literal per
+ * branch for a top level alternation). All literals go into a single Aho-Corasick automaton, so one
+ * scan of the agent string yields every candidate. Patterns without a usable literal are always
+ * candidates. Literals and agents are compared with ASCII letters folded to lower case, which keeps
+ * the filter sound for <code>regex_flag: i</code> patterns as well.
+ * <p>
+ * The filter never drops a pattern that could match, and candidates are returned as indices into
+ * the original list, so walking them in order gives exactly the sequential result.
+ */
+final class LiteralPrefilter {
+
+  private final Node root;
+  private final BitSet unconditional;
+
+  private LiteralPrefilter(Node root, BitSet unconditional) {
+    this.root = root;
+    this.unconditional = unconditional;
+  }
+
+  static LiteralPrefilter compile(List<Pattern> patterns) {
+    Node root = new Node();
+    BitSet unconditional = new BitSet(patterns.size());
+
+    for (int i = 0; i < patterns.size(); i++) {
+      List<String> literals = requiredLiterals(patterns.get(i));
+      if (null == literals) {
+        unconditional.set(i);
+        continue;
+      }
+      for (String literal : literals) {
+        Node node = root;
+        for (int c = 0; c < literal.length(); c++) {
+          node = node.next.computeIfAbsent(literal.charAt(c), k -> new Node());
+        }
+        node.patterns.set(i);
+      }
+    }
+
+    // Breadth first, so a node's fail target is complete before the node itself is linked.
+    Queue<Node> queue = new ArrayDeque<>();
+    for (Node child : root.next.values()) {
+      child.fail = root;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      for (Map.Entry<Character, Node> edge : node.next.entrySet()) {
+        Node child = edge.getValue();
+        Node fail = node.fail;
+        while (fail != root && !fail.next.containsKey(edge.getKey())) {
+          fail = fail.fail;
+        }
+        Node target = fail.next.get(edge.getKey());
+        child.fail = null == target || target == child ? root : target;
+        child.patterns.or(child.fail.patterns);
+        queue.add(child);
+      }
+    }
+    return new LiteralPrefilter(root, unconditional);
+  }
+
+  /**
+   * Indices of the patterns that may match <code>agentString</code>, to be tried in ascending order.
+   */
+  BitSet candidates(String agentString) {
+    BitSet candidates = (BitSet) unconditional.clone();
+    Node node = root;
+    for (int i = 0; i < agentString.length(); i++) {
+      char c = fold(agentString.charAt(i));
+      Node next;
+      while (null == (next = node.next.get(c)) && node != root) {
+        node = node.fail;
+      }
+      node = null == next ? root : next;
+      if (!node.patterns.isEmpty()) {
+        candidates.or(node.patterns);
+      }
+    }
+    return candidates;
+  }
+
+  private static final class Node {
+    final Map<Character, Node> next = new HashMap<>(4);
+    final BitSet patterns = new BitSet();
+    Node fail;
+  }
+
+  // ------------------------------------------
+
+  /**
+   * Literals of which at least one occurs in every match of the pattern, or <code>null</code> when
+   * nothing useful can be proven and the pattern has to be tried unconditionally.
+   */
+  static List<String> requiredLiterals(Pattern pattern) {
+    if ((pattern.flags() & (Pattern.COMMENTS | Pattern.LITERAL)) != 0) {
+      return null;
+    }
+    try {
+      RegexScanner scanner = new RegexScanner(pattern.pattern());
+      List<String> literals = scanner.alternation();
+      return scanner.atEnd() ? literals : null;
+    } catch (Unsupported e) {
+      return null;
+    }
+  }
+
+  private static char fold(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /**
+   * Picks the requirement with the most selective shortest literal.
+   */
+  private static List<String> better(List<String> a, List<String> b) {
+    if (null == a) return b;
+    if (null == b) return a;
+    return shortest(b) > shortest(a) ? b : a;
+  }
+
+  private static int shortest(List<String> literals) {
+    int min = Integer.MAX_VALUE;
+    for (String literal : literals) {
+      min = Math.min(min, literal.length());
+    }
+    return min;
+  }
+
+  private static final class Unsupported extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * Minimal recursive descent over the java.util.regex syntax used by regexes.yaml. Anything it does
+   * not fully understand makes the whole pattern unconditional rather than risk a wrong literal.
+   */
+  private static final class RegexScanner {
+    private final String regex;
+    private int pos;
+
+    RegexScanner(String regex) {
+      this.regex = regex;
+    }
+
+    boolean atEnd() {
+      return pos == regex.length();
+    }
+
+    private boolean more() {
+      return pos < regex.length();
+    }
+
+    private char peek() {
+      return regex.charAt(pos);
+    }
+
+    /**
+     * <code>branch ('|' branch)*</code>: every branch must contribute a literal, the union of them
+     * is required.
+     */
+    List<String> alternation() {
+      List<String> literals = new ArrayList<>();
+      boolean complete = true;
+      while (true) {
+        List<String> branch = branch();
+        if (null == branch) {
+          complete = false;
+        } else {
+          literals.addAll(branch);
+        }
+        if (more() && peek() == '|') {
+          pos++;
+          continue;
+        }
+        return complete ? literals : null;
+      }
+    }
+
+    /**
+     * A sequence of atoms; returns the most selective requirement among its mandatory parts.
+     */
+    private List<String> branch() {
+      List<String> best = null;
+      StringBuilder run = new StringBuilder();
+
+      while (more() && peek() != '|' && peek() != ')') {
+        char c = peek();
+        if (c == '(') {
+          best = better(best, flush(run));
+          pos++;
+          List<String> inner = group();
+          if (!optionalQuantifier()) {
+            best = better(best, inner);
+          }
+        } else if (c == '[') {
+          best = better(best, flush(run));
+          characterClass();
+          optionalQuantifier();
+        } else if (c == '.' || c == '^' || c == '$') {
+          best = better(best, flush(run));
+          pos++;
+          optionalQuantifier();
+        } else if (c == '\\') {
+          int literal = escape();
+          if (literal < 0) {
+            best = better(best, flush(run));
+            optionalQuantifier();
+          } else {
+            best = better(best, appendLiteral(run, (char) literal));
+          }
+        } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+          throw new Unsupported();
+        } else {
+          pos++;
+          best = better(best, appendLiteral(run, c));
+        }
+      }
+      return better(best, flush(run));
+    }
+
+    /**
+     * Adds a literal character to the current run, taking a following quantifier into account.
+     * Returns a requirement that had to be closed off, if any.
+     */
+    private List<String> appendLiteral(StringBuilder run, char c) {
+      if (!more() || !isQuantifier(peek())) {
+        run.append(fold(c));
+        return null;
+      }
+      if (optionalQuantifier()) {
+        // The character may be absent, so it splits the run instead of extending it.
+        return flush(run);
+      }
+      // Repeated at least once: mandatory, but whatever follows is no longer adjacent.
+      run.append(fold(c));
+      return flush(run);
+    }
+
+    private static boolean isQuantifier(char c) {
+      return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    private static List<String> flush(StringBuilder run) {
+      if (run.length() == 0) {
+        return null;
+      }
+      List<String> literal = new ArrayList<>(1);
+      literal.add(run.toString());
+      run.setLength(0);
+      return literal;
+    }
+
+    /**
+     * Consumes a quantifier if present; true when it allows zero repetitions.
+     */
+    private boolean optionalQuantifier() {
+      if (!more()) return false;
+      char c = peek();
+      boolean optional;
+      if (c == '?' || c == '*') {
+        pos++;
+        optional = true;
+      } else if (c == '+') {
+        pos++;
+        optional = false;
+      } else if (c == '{') {
+        int close = regex.indexOf('}', pos);
+        if (close < 0) throw new Unsupported();
+        String bounds = regex.substring(pos + 1, close);
+        if (!bounds.matches("\\d+(,\\d*)?")) throw new Unsupported();
+        optional = Integer.parseInt(bounds.split(",")[0]) == 0;
+        pos = close + 1;
+      } else {
+        return false;
+      }
+      if (more() && (peek() == '?' || peek() == '+')) {
+        pos++; // reluctant / possessive
+      }
+      return optional;
+    }
+
+    /**
+     * Called after '('. Returns the group's requirement, or null for lookarounds and inline flags.
+     */
+    private List<String> group() {
+      boolean consuming = true;
+      if (more() && peek() == '?') {
+        pos++;
+        if (!more()) throw new Unsupported();
+        char kind = peek();
+        if (kind == ':' || kind == '>') {
+          pos++;
+        } else if (kind == '=' || kind == '!') {
+          pos++;
+          consuming = false;
+        } else if (kind == '<') {
+          pos++;
+          if (more() && (peek() == '=' || peek() == '!')) {
+            pos++;
+            consuming = false;
+          } else {
+            int close = regex.indexOf('>', pos);
+            if (close < 0) throw new Unsupported();
+            pos = close + 1;
+          }
+        } else {
+          // Inline flags, (?i) or (?i:...). Only case folding is understood.
+          int start = pos;
+          while (more() && Character.isLetter(peek()) || more() && peek() == '-') pos++;
+          String flags = regex.substring(start, pos);
+          if (!flags.matches("-?i|i-?")) throw new Unsupported();
+          if (!more()) throw new Unsupported();
+          if (peek() == ')') {
+            pos++;
+            return null;
+          }
+          if (peek() != ':') throw new Unsupported();
+          pos++;
+        }
+      }
+      List<String> inner = alternation();
+      if (!more() || peek() != ')') throw new Unsupported();
+      pos++;
+      return consuming ? inner : null;
+    }
+
+    private void characterClass() {
+      pos++; // '['
+      if (more() && peek() == '^') pos++;
+      if (more() && peek() == ']') pos++;
+      int depth = 1;
+      while (more()) {
+        char c = regex.charAt(pos++);
+        if (c == '\\') {
+          pos++;
+        } else if (c == '[') {
+          depth++;
+        } else if (c == ']' && --depth == 0) {
+          return;
+        }
+      }
+      throw new Unsupported();
+    }
+
+    /**
+     * Consumes an escape. Returns the literal character it stands for, or -1 for a non-literal
+     * construct such as <code>\d</code> or a back reference.
+     */
+    private int escape() {
+      pos++; // '\\'
+      if (!more()) throw new Unsupported();
+      char c = regex.charAt(pos++);
+      if (!Character.isLetterOrDigit(c)) {
+        return c;
+      }
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+        case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+        case 'h': case 'H': case 'v': case 'V':
+          return -1;
+        case 'p': case 'P':
+          if (more() && peek() == '{') {
+            int close = regex.indexOf('}', pos);
+            if (close < 0) throw new Unsupported();
+            pos = close + 1;
+          } else {
+            pos++;
+          }
+          return -1;
+        default:
+          if (c >= '1' && c <= '9') {
+            while (more() && Character.isDigit(peek())) pos++;
+            return -1;
+          }
+          throw new Unsupported();
+      }
+    }
+  }
+}
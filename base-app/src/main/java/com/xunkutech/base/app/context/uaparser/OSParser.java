@@ -19,6 +19,7 @@ package com.xunkutech.base.app.context.uaparser;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -29,9 +30,16 @@ import java.util.Map;
  */
 public class OSParser {
   private final List<OSPattern> patterns;
+  private final LiteralPrefilter prefilter;
 
   public OSParser(List<OSPattern> patterns) {
     this.patterns = patterns;
+
+    List<Pattern> regexes = new ArrayList<Pattern>(patterns.size());
+    for (OSPattern p : patterns) {
+      regexes.add(p.pattern);
+    }
+    this.prefilter = LiteralPrefilter.compile(regexes);
   }
 
   public static OSParser fromList(List<Map<String,String>> configList) {
@@ -49,8 +57,9 @@ public class OSParser {
     }
 
     OS os;
-    for (OSPattern p : patterns) {
-      if ((os = p.match(agentString)) != null) {
+    BitSet candidates = prefilter.candidates(agentString);
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if ((os = patterns.get(i).match(agentString)) != null) {
         return os;
       }
     }
@@ -26,27 +26,47 @@ import org.yaml.snakeyaml.constructor.SafeConstructor;
 
 /**
  * Java implementation of <a href="https://github.com/tobie/ua-parser">UA Parser</a>
+ * <p>
+ * A parser holds nothing but compiled patterns once constructed, so one instance can be shared by
+ * all request threads. Build it once, preferably through {@link #fromClasspath()}.
  *
  * @author Steve Jiang (@sjiang) <gh at iamsteve com>
  */
 public class Parser {
 
-  private static final String REGEX_YAML_PATH = "ua_parser/regexes.yaml";
   private UserAgentParser uaParser;
   private OSParser osParser;
   private DeviceParser deviceParser;
 
   public Parser() {
-    this(Thread.currentThread().getContextClassLoader().getResourceAsStream(REGEX_YAML_PATH));
+    this(Thread.currentThread().getContextClassLoader().getResourceAsStream(RegexSnapshot.REGEX_YAML_PATH));
   }
 
+  @SuppressWarnings("unchecked")
   public Parser(InputStream regexYaml) {
-    initialize(regexYaml);
+    this((Map<String,List<Map<String,String>>>) new Yaml(new SafeConstructor()).load(regexYaml));
+  }
+
+  public Parser(Map<String,List<Map<String,String>>> regexConfig) {
+    initialize(regexConfig);
+  }
+
+  /**
+   * Builds a parser from the bundled regex set, using the binary snapshot when it is up to date.
+   *
+   * @see RegexSnapshot#fromClasspath()
+   */
+  public static Parser fromClasspath() {
+    return new Parser(RegexSnapshot.fromClasspath().getRegexConfig());
+  }
+
+  public static Parser fromSnapshot(InputStream snapshot) throws IOException {
+    return new Parser(RegexSnapshot.read(snapshot).getRegexConfig());
   }
 
   public Client parse(String agentString) {
-    UserAgent ua = parseUserAgent(agentString);
-    OS os = parseOS(agentString);
+    UserAgent ua = uaParser.parse(agentString);
+    OS os = osParser.parse(agentString);
     Device device = deviceParser.parse(agentString);
     return new Client(ua, os, device);
   }
@@ -63,11 +83,7 @@ public class Parser {
     return osParser.parse(agentString);
   }
 
-  private void initialize(InputStream regexYaml) {
-    Yaml yaml = new Yaml(new SafeConstructor());
-    @SuppressWarnings("unchecked")
-    Map<String,List<Map<String,String>>> regexConfig = (Map<String,List<Map<String,String>>>) yaml.load(regexYaml);
-
+  private void initialize(Map<String,List<Map<String,String>>> regexConfig) {
     List<Map<String,String>> uaParserConfigs = regexConfig.get("user_agent_parsers");
     if (uaParserConfigs == null) {
       throw new IllegalArgumentException("user_agent_parsers is missing from yaml");
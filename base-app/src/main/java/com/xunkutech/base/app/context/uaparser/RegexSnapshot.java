@@ -0,0 +1,183 @@
+package com.xunkutech.base.app.context.uaparser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of the ua-parser regex set, so the parser can be built at startup without
+ * running the whole <code>regexes.yaml</code> through SnakeYAML.
+ * <p>
+ * The snapshot records the CRC32 of the yaml it was generated from. {@link #fromClasspath()} only
+ * trusts a snapshot whose checksum matches the bundled yaml, so a stale snapshot degrades to a
+ * plain yaml load instead of serving outdated patterns.
+ * <p>
+ * Regenerate it whenever <code>regexes.yaml</code> changes:
+ * <pre>
+ * java com.xunkutech.base.app.context.uaparser.RegexSnapshot src/main/resources/ua_parser/regexes.bin
+ * </pre>
+ */
+public class RegexSnapshot {
+  private static final Logger logger = LoggerFactory.getLogger(RegexSnapshot.class);
+
+  static final String REGEX_YAML_PATH = "ua_parser/regexes.yaml";
+  static final String REGEX_SNAPSHOT_PATH = "ua_parser/regexes.bin";
+
+  private static final int MAGIC = 0x55415053; // "UAPS"
+  private static final short VERSION = 1;
+
+  private final long sourceChecksum;
+  private final Map<String, List<Map<String, String>>> regexConfig;
+
+  public RegexSnapshot(long sourceChecksum, Map<String, List<Map<String, String>>> regexConfig) {
+    this.sourceChecksum = sourceChecksum;
+    this.regexConfig = regexConfig;
+  }
+
+  public long getSourceChecksum() {
+    return sourceChecksum;
+  }
+
+  public Map<String, List<Map<String, String>>> getRegexConfig() {
+    return regexConfig;
+  }
+
+  public static long checksum(byte[] source) {
+    CRC32 crc = new CRC32();
+    crc.update(source, 0, source.length);
+    return crc.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  public static RegexSnapshot fromYaml(byte[] regexYaml) {
+    Yaml yaml = new Yaml(new SafeConstructor());
+    Map<String, List<Map<String, Object>>> raw =
+        (Map<String, List<Map<String, Object>>>) yaml.load(new ByteArrayInputStream(regexYaml));
+
+    Map<String, List<Map<String, String>>> config = new LinkedHashMap<>();
+    for (Map.Entry<String, List<Map<String, Object>>> section : raw.entrySet()) {
+      List<Map<String, String>> entries = new ArrayList<>(section.getValue().size());
+      for (Map<String, Object> entry : section.getValue()) {
+        Map<String, String> values = new HashMap<>();
+        entry.forEach((k, v) -> {
+          if (null != v) values.put(k, String.valueOf(v));
+        });
+        entries.add(values);
+      }
+      config.put(section.getKey(), entries);
+    }
+    return new RegexSnapshot(checksum(regexYaml), config);
+  }
+
+  /**
+   * Loads the bundled regex set, preferring <code>regexes.bin</code> when it was generated from the
+   * bundled <code>regexes.yaml</code>.
+   */
+  public static RegexSnapshot fromClasspath() {
+    byte[] yaml = readResource(REGEX_YAML_PATH);
+    byte[] bin = readResource(REGEX_SNAPSHOT_PATH);
+
+    if (null != bin) {
+      try {
+        RegexSnapshot snapshot = read(new ByteArrayInputStream(bin));
+        if (null == yaml || snapshot.getSourceChecksum() == checksum(yaml)) {
+          return snapshot;
+        }
+        logger.warn("{} is stale, falling back to {}", REGEX_SNAPSHOT_PATH, REGEX_YAML_PATH);
+      } catch (IOException e) {
+        logger.warn("Bad {}: {}", REGEX_SNAPSHOT_PATH, e.getMessage());
+      }
+    }
+
+    if (null == yaml) {
+      throw new IllegalStateException(REGEX_YAML_PATH + " is missing from classpath");
+    }
+    return fromYaml(yaml);
+  }
+
+  static byte[] readResource(String path) {
+    try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+      if (null == in) return null;
+      ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static RegexSnapshot read(InputStream in) throws IOException {
+    DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+    if (dis.readInt() != MAGIC) {
+      throw new IOException("Not a ua-parser regex snapshot");
+    }
+    short version = dis.readShort();
+    if (version != VERSION) {
+      throw new IOException("Unsupported ua-parser regex snapshot version " + version);
+    }
+
+    long checksum = dis.readLong();
+    int sections = dis.readInt();
+    Map<String, List<Map<String, String>>> config = new LinkedHashMap<>();
+    for (int s = 0; s < sections; s++) {
+      String name = dis.readUTF();
+      int count = dis.readInt();
+      List<Map<String, String>> entries = new ArrayList<>(count);
+      for (int e = 0; e < count; e++) {
+        int pairs = dis.readUnsignedShort();
+        Map<String, String> values = new HashMap<>(pairs * 2);
+        for (int p = 0; p < pairs; p++) {
+          values.put(dis.readUTF(), dis.readUTF());
+        }
+        entries.add(values);
+      }
+      config.put(name, entries);
+    }
+    return new RegexSnapshot(checksum, config);
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+    dos.writeInt(MAGIC);
+    dos.writeShort(VERSION);
+    dos.writeLong(sourceChecksum);
+    dos.writeInt(regexConfig.size());
+    for (Map.Entry<String, List<Map<String, String>>> section : regexConfig.entrySet()) {
+      dos.writeUTF(section.getKey());
+      dos.writeInt(section.getValue().size());
+      for (Map<String, String> entry : section.getValue()) {
+        dos.writeShort(entry.size());
+        for (Map.Entry<String, String> value : entry.entrySet()) {
+          dos.writeUTF(value.getKey());
+          dos.writeUTF(value.getValue());
+        }
+      }
+    }
+    dos.flush();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: RegexSnapshot <output file>");
+      System.exit(1);
+    }
+    byte[] yaml = readResource(REGEX_YAML_PATH);
+    if (null == yaml) {
+      throw new IllegalStateException(REGEX_YAML_PATH + " is missing from classpath");
+    }
+    try (OutputStream out = Files.newOutputStream(Paths.get(args[0]))) {
+      fromYaml(yaml).write(out);
+    }
+  }
+}
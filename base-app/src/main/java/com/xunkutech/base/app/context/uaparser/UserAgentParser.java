@@ -17,6 +17,7 @@
 package com.xunkutech.base.app.context.uaparser;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -29,9 +30,16 @@ import java.util.regex.Pattern;
  */
 public class UserAgentParser {
   private final List<UAPattern> patterns;
+  private final LiteralPrefilter prefilter;
 
   public UserAgentParser(List<UAPattern> patterns) {
     this.patterns = patterns;
+
+    List<Pattern> regexes = new ArrayList<Pattern>(patterns.size());
+    for (UAPattern p : patterns) {
+      regexes.add(p.pattern);
+    }
+    this.prefilter = LiteralPrefilter.compile(regexes);
   }
 
   public static UserAgentParser fromList(List<Map<String,String>> configList) {
@@ -49,8 +57,9 @@ public class UserAgentParser {
     }
 
     UserAgent agent;
-    for (UAPattern p : patterns) {
-      if ((agent = p.match(agentString)) != null) {
+    BitSet candidates = prefilter.candidates(agentString);
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if ((agent = patterns.get(i).match(agentString)) != null) {
         return agent;
       }
     }
@@ -1,11 +1,15 @@
 package com.xunkutech.base.app.util;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.xunkutech.base.model.util.CodecUtils;
 
 import javax.crypto.*;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Random;
@@ -20,6 +24,34 @@ public class AesUtils {
     private static final String KEY_ALGORITHM = "AES";
     private static final String CIPHER_ALGORITHM = "AES/ECB/PKCS5Padding";
     private static final String RNG_ALGORITHM = "SHA1PRNG";
+    private static final String SEED_DIGEST_ALGORITHM = "SHA-256";
+    private static final int KEY_CACHE_SIZE = 1024;
+
+    /**
+     * 派生密钥缓存, 以种子摘要为键, 不保留原始种子
+     */
+    private static final Cache<ByteBuffer, SecretKeySpec> KEY_CACHE = Caffeine.newBuilder()
+            .maximumSize(KEY_CACHE_SIZE)
+            .build();
+
+    private static final ThreadLocal<MessageDigest> SEED_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(SEED_DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * 每线程复用 Cipher; 以相同密钥重新 init 时不再重复扩展密钥
+     */
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(CIPHER_ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     public static byte[] randomSeed() {
         byte[] seed = new byte[6];
@@ -80,6 +112,37 @@ public class AesUtils {
         return secretKey.getEncoded();
     }
 
+    /**
+     * 取得种子对应的密钥, 首次使用时派生并缓存
+     *
+     * @param seed
+     * @return SecretKeySpec 密钥
+     */
+    private static SecretKeySpec secretKey(byte[] seed) {
+        return KEY_CACHE.get(ByteBuffer.wrap(SEED_DIGEST.get().digest(seed)),
+                k -> new SecretKeySpec(initSecretKey(seed), KEY_ALGORITHM));
+    }
+
+    private static Cipher cipher(int mode, byte[] seed) {
+        Cipher cipher = CIPHER.get();
+        try {
+            cipher.init(mode, secretKey(seed));
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+        return cipher;
+    }
+
+    /**
+     * 加密后的长度 (PKCS5 填充)
+     *
+     * @param length 待加密数据长度
+     * @return int 加密数据长度
+     */
+    public static int encryptedLength(int length) {
+        return (length / 16 + 1) * 16;
+    }
+
     /**
      * 加密
      *
@@ -89,12 +152,26 @@ public class AesUtils {
      * @throws Exception
      */
     public static byte[] encrypt(byte[] data, byte[] seed) {
-        SecretKeySpec key = new SecretKeySpec(initSecretKey(seed), KEY_ALGORITHM);
         try {
-            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            byte[] result = cipher.doFinal(data);// 加密
-            return result;
+            return cipher(Cipher.ENCRYPT_MODE, seed).doFinal(data);// 加密
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 加密, 从 input 的 position 读到 limit, 写入 output
+     *
+     * @param input  待加密数据
+     * @param output 加密数据, 剩余空间至少 {@link #encryptedLength(int)}
+     * @param seed   密钥
+     * @return int   写入的字节数
+     */
+    public static int encrypt(ByteBuffer input, ByteBuffer output, byte[] seed) {
+        try {
+            return cipher(Cipher.ENCRYPT_MODE, seed).doFinal(input, output);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException(e);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -111,21 +188,35 @@ public class AesUtils {
         if (null == data || null == seed)
             throw new InvalidException();
 
-        SecretKeySpec key = new SecretKeySpec(initSecretKey(seed), KEY_ALGORITHM);
-
-        Cipher cipher;
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, seed);
 
         try {
-            cipher = Cipher.getInstance(CIPHER_ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
-            throw new IllegalStateException(e);
+            return cipher.doFinal(data);
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            throw new InvalidException(e);
         }
+    }
+
+    /**
+     * 解密, 从 input 的 position 读到 limit, 写入 output
+     *
+     * @param input  待解密数据
+     * @param output 解密数据, 剩余空间至少为 input 的剩余长度
+     * @param seed   二进制密钥
+     * @return int   写入的字节数
+     */
+    public static int decrypt(ByteBuffer input, ByteBuffer output, byte[] seed) throws InvalidException {
+        if (null == input || null == output || null == seed)
+            throw new InvalidException();
+
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, seed);
 
         try {
-            return cipher.doFinal(data);
+            return cipher.doFinal(input, output);
         } catch (IllegalBlockSizeException | BadPaddingException e) {
             throw new InvalidException(e);
+        } catch (ShortBufferException e) {
+            throw new IllegalArgumentException(e);
         }
     }
 
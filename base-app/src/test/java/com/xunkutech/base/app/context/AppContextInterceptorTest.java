@@ -0,0 +1,43 @@
+package com.xunkutech.base.app.context;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class AppContextInterceptorTest {
+
+    private final CtxTokenCodec codec = new CtxTokenCodec(1, "secret".getBytes(StandardCharsets.UTF_8));
+    private final AppContextInterceptor interceptor = new AppContextInterceptor(null, codec);
+
+    @After
+    public void tearDown() {
+        AppContextHolder.resetAppContext();
+    }
+
+    @Test
+    public void tokenIsOnlyIssuedWhenTheUuidIsRead() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNull(response.getCookie("ctx-token"));
+
+        String uuid = AppContextHolder.currentAppContext().getClientInfo().getUuid();
+        assertEquals(uuid, codec.decode(response.getCookie("ctx-token").getValue()).getUuid());
+    }
+
+    @Test
+    public void notReissuedOnceCommitted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        response.flushBuffer();
+
+        assertNotNull(AppContextHolder.currentAppContext().getClientInfo().getUuid());
+        assertNull(response.getCookie("ctx-token"));
+    }
+}
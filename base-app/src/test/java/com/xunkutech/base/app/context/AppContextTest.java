@@ -0,0 +1,224 @@
+package com.xunkutech.base.app.context;
+
+import com.xunkutech.base.app.context.executor.ContextAwarePoolExecutor;
+import com.xunkutech.base.app.context.uaparser.Client;
+import com.xunkutech.base.app.context.uaparser.Parser;
+import com.xunkutech.base.app.context.uaparser.RegexSnapshot;
+import com.xunkutech.base.model.util.JsonUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AppContextTest {
+
+    private static final String CHROME = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/69.0.3497.100 Safari/537.36";
+    private static final String UUID = "0123456789abcdef0123456789abcdef";
+
+    private static Map<String, List<Map<String, String>>> config;
+
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final CtxTokenCodec codec = new CtxTokenCodec(1, "secret".getBytes(StandardCharsets.UTF_8));
+    private Parser parser;
+    private RecyclableRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeClass
+    public static void setUpClass() {
+        config = RegexSnapshot.fromClasspath().getRegexConfig();
+    }
+
+    @Before
+    public void setUp() {
+        parser = new Parser(config) {
+            @Override
+            public Client parse(String agentString) {
+                parsed.incrementAndGet();
+                return super.parse(agentString);
+            }
+        };
+        request = new RecyclableRequest();
+        request.addHeader("User-Agent", CHROME);
+        request.addHeader("X-Api-Version", "2");
+        request.addHeader("UA-Pixels", "1080x1920");
+        request.addHeader("Geo-Position", "-10.28;60.84;120 epu=50");
+        request.setRemoteAddr("10.0.0.1");
+        request.setCookies(new Cookie("ctx-token", codec.encode(UUID, Instant.now())));
+        response = new MockHttpServletResponse();
+    }
+
+    @After
+    public void tearDown() {
+        AppContextHolder.resetAppContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private AppContext context() {
+        return new AppContext(request, response, Locale.CHINA, parser, codec);
+    }
+
+    private void recycle() {
+        request.recycled = true;
+    }
+
+    /**
+     * Fails every read once recycled, as a task running late must not look at it.
+     */
+    private static class RecyclableRequest extends MockHttpServletRequest {
+        boolean recycled;
+
+        private void check() {
+            if (recycled) throw new IllegalStateException("Recycled");
+        }
+
+        @Override
+        public String getHeader(String name) {
+            check();
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Cookie[] getCookies() {
+            check();
+            return super.getCookies();
+        }
+
+        @Override
+        public String getRemoteAddr() {
+            check();
+            return super.getRemoteAddr();
+        }
+
+        @Override
+        public String getScheme() {
+            check();
+            return super.getScheme();
+        }
+    }
+
+    @Test
+    public void detachingResolvesNothing() {
+        AppContext detached = context().detach();
+        assertEquals(0, parsed.get());
+        assertNull(response.getCookie("ctx-token"));
+
+        recycle();
+        AppContext.ClientInfo info = detached.getClientInfo();
+        assertEquals("Chrome", info.getAgent().getFamily());
+        assertEquals("Windows", info.getOs().getFamily());
+        assertEquals(Integer.valueOf(1080), info.getDevice().getScreenWidth());
+        assertEquals("10.0.0.1", info.getDevice().getRemoteAddr());
+        assertEquals(Double.valueOf(-10.28), info.getGis().getLat());
+        assertEquals("2", info.getApiVersion());
+        assertEquals(UUID, info.getUuid());
+        // a copy never writes to the response
+        assertNull(response.getCookie("ctx-token"));
+        assertEquals(1, parsed.get());
+    }
+
+    @Test
+    public void partsAreMemoized() {
+        AppContext detached = context().detach();
+        AppContext.ClientInfo info = detached.getClientInfo();
+        AppContext.Agent agent = info.getAgent();
+        assertSame(agent, info.getAgent());
+        assertSame(info.getOs(), info.getOs());
+        assertSame(info.getDevice(), info.getDevice());
+        assertSame(info.getGis(), info.getGis());
+        assertSame(info.getUuid(), info.getUuid());
+        // agent, os and device share one parse
+        assertEquals(1, parsed.get());
+        assertSame(detached, detached.detach());
+    }
+
+    @Test
+    public void resolvedPartsAreCarriedOver() {
+        AppContext context = context();
+        AppContext.Agent agent = context.getClientInfo().getAgent();
+        AppContext detached = context.detach();
+        assertNotSame(context.getClientInfo(), detached.getClientInfo());
+        assertSame(agent, detached.getClientInfo().getAgent());
+        // the parsed agent is shared with the parts still pending
+        recycle();
+        assertEquals("Windows", detached.getClientInfo().getOs().getFamily());
+        assertEquals(1, parsed.get());
+    }
+
+    @Test
+    public void detachedCopyWithoutTokenGetsAUuidOfItsOwn() {
+        request.setCookies();
+        AppContext.ClientInfo info = context().detach().getClientInfo();
+        assertTrue(CtxTokenCodec.isEncodable(info.getUuid()));
+        assertNotEquals(UUID, info.getUuid());
+        assertNull(response.getCookie("ctx-token"));
+    }
+
+    @Test
+    public void eagerClientInfo() {
+        AppContext.Agent agent = AppContext.Agent.builder().family("Chrome").build();
+        AppContext.Os os = AppContext.Os.builder().family("Windows").build();
+        AppContext.Device device = AppContext.Device.builder().family("Other").build();
+        AppContext.Gis gis = AppContext.Gis.builder().lat(1.0).build();
+        AppContext.ClientInfo info = new AppContext.ClientInfo("2", UUID, agent, os, device, gis);
+
+        assertSame(info, info.resolve());
+        assertEquals("2", info.getApiVersion());
+        assertEquals(UUID, info.getUuid());
+        assertSame(agent, info.getAgent());
+        assertSame(os, info.getOs());
+        assertSame(device, info.getDevice());
+        assertSame(gis, info.getGis());
+
+        AppContext.ClientInfo empty = new AppContext.ClientInfo(null, null, null, null, null, null);
+        assertNull(empty.resolve().getUuid());
+        assertNull(empty.getAgent());
+        assertTrue(JsonUtils.toJson(info).startsWith("{\"apiVersion\":\"2\",\"uuid\":\"" + UUID
+                + "\",\"agent\":{\"family\":\"Chrome\"},\"os\":{\"family\":\"Windows\"}"));
+    }
+
+    @Test
+    public void executorHandsOutDetachedCopies() throws Exception {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        AppContext context = context();
+        AppContextHolder.setAppContext(context);
+
+        ContextAwarePoolExecutor executor = new ContextAwarePoolExecutor();
+        executor.initialize();
+        try {
+            AppContext detached = executor.submit(AppContextHolder::currentAppContext).get();
+            assertNotSame(context, detached);
+            assertSame(request, detached.getRequest());
+            assertEquals(0, parsed.get());
+
+            // the task only runs once the request is over
+            CountDownLatch over = new CountDownLatch(1);
+            Future<String> family = executor.submit(() -> {
+                over.await();
+                return AppContextHolder.currentAppContext().getClientInfo().getAgent().getFamily();
+            });
+            recycle();
+            over.countDown();
+            assertEquals("Chrome", family.get());
+            assertEquals(1, parsed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
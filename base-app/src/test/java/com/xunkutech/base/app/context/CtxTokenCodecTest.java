@@ -0,0 +1,155 @@
+package com.xunkutech.base.app.context;
+
+import com.xunkutech.base.app.BaseAppConfiguration;
+import com.xunkutech.base.app.util.AesUtils;
+import com.xunkutech.base.model.util.CodecUtils;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class CtxTokenCodecTest {
+
+    private static final String UUID = "0123456789abcdef0123456789abcdef";
+    private static final byte[] SECRET = "secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OLD_SECRET = "old secret".getBytes(StandardCharsets.UTF_8);
+
+    private final CtxTokenCodec codec = new BaseAppConfiguration(null, null)
+            .ctxTokenCodec(2, "secret", false, 1, "old secret", CtxTokenCodec.LEGACY_SECRET);
+
+    private static String legacy(String uuid, Instant timestamp) {
+        AppContext.CtxToken token = new AppContext.CtxToken();
+        token.setUuid(uuid);
+        token.setTimestamp(timestamp);
+        // as the former AppContext wrote it
+        return CodecUtils.toBase64(AesUtils.encrypt(token.toJsonBin(), CtxTokenCodec.LEGACY_SECRET.getBytes()));
+    }
+
+    /**
+     * The cookie sent in reply to a request carrying <code>value</code>, and the uuid of the request.
+     */
+    private String[] exchange(String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (null != value) request.setCookies(new Cookie("ctx-token", value));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String uuid = new AppContext(request, response, Locale.CHINA, null, codec).getClientInfo().getUuid();
+        Cookie cookie = response.getCookie("ctx-token");
+        return new String[]{uuid, null == cookie ? null : cookie.getValue()};
+    }
+
+    @Test
+    public void roundTrip() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        String value = codec.encode(UUID, now);
+        assertEquals(56, value.length());
+        AppContext.CtxToken token = codec.decode(value);
+        assertEquals(UUID, token.getUuid());
+        assertEquals(now, token.getTimestamp());
+        assertTrue(codec.isCurrentKey(value));
+        // upper case digits are accepted and normalized
+        assertEquals(UUID, codec.decode(codec.encode(UUID.toUpperCase(), now)).getUuid());
+    }
+
+    @Test
+    public void tamperedTokensAreRejected() {
+        String value = codec.encode(UUID, Instant.now());
+        for (int i = 0; i < value.length(); i++) {
+            char[] chars = value.toCharArray();
+            chars[i] = chars[i] == 'A' ? 'B' : 'A';
+            assertNull(String.valueOf(i), codec.decode(new String(chars)));
+        }
+        assertNull(codec.decode(value.substring(1)));
+        assertNull(codec.decode(value + "A"));
+        assertNull(codec.decode(value.replace(value.charAt(10), '+')));
+        assertNull(codec.decode(null));
+        // signed with another secret
+        assertNull(new CtxTokenCodec(2, OLD_SECRET).decode(value));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notAHexUuid() {
+        codec.encode("not a uuid", Instant.now());
+    }
+
+    @Test
+    public void previousKeyIsAcceptedAndReissued() {
+        CtxTokenCodec before = new CtxTokenCodec(1, OLD_SECRET);
+        String value = before.encode(UUID, Instant.now());
+        assertEquals(UUID, codec.decode(value).getUuid());
+        assertFalse(codec.isCurrentKey(value));
+
+        String[] reply = exchange(value);
+        assertEquals(UUID, reply[0]);
+        assertTrue(codec.isCurrentKey(reply[1]));
+        assertEquals(UUID, codec.decode(reply[1]).getUuid());
+
+        // keys no longer configured are not
+        assertNull(new CtxTokenCodec(3, SECRET).decode(value));
+    }
+
+    @Test
+    public void legacyTokensAreReadByDefault() {
+        Instant issued = Instant.now().minus(1, ChronoUnit.HOURS);
+        AppContext.CtxToken token = codec.decodeLegacy(legacy(UUID, issued));
+        assertEquals(UUID, token.getUuid());
+        assertEquals(issued, token.getTimestamp());
+
+        // and replaced by a binary token with the same uuid
+        String[] reply = exchange(legacy(UUID, issued));
+        assertEquals(UUID, reply[0]);
+        assertEquals(UUID, codec.decode(reply[1]).getUuid());
+
+        assertNull(codec.decodeLegacy("not a token"));
+        assertNull(new CtxTokenCodec(2, SECRET, -1, null, null).decodeLegacy(legacy(UUID, issued)));
+    }
+
+    @Test
+    public void expiredTokensGetANewUuid() {
+        Instant expired = Instant.now().minusSeconds(AppContext.TOKEN_MAX_AGE + 1);
+        for (String value : new String[]{codec.encode(UUID, expired), legacy(UUID, expired)}) {
+            String[] reply = exchange(value);
+            assertNotEquals(UUID, reply[0]);
+            assertEquals(reply[0], codec.decode(reply[1]).getUuid());
+        }
+    }
+
+    @Test
+    public void reissuedOnlyAfterThreeHours() {
+        Instant now = Instant.now();
+        String[] reply = exchange(codec.encode(UUID, now.minus(1, ChronoUnit.HOURS)));
+        assertEquals(UUID, reply[0]);
+        assertNull(reply[1]);
+
+        reply = exchange(codec.encode(UUID, now.minus(179, ChronoUnit.MINUTES)));
+        assertNull(reply[1]);
+
+        reply = exchange(codec.encode(UUID, now.minus(181, ChronoUnit.MINUTES)));
+        assertEquals(UUID, reply[0]);
+        assertTrue(codec.decode(reply[1]).getTimestamp().isAfter(now.minusSeconds(1)));
+
+        // a client without a token gets one right away
+        reply = exchange(null);
+        assertEquals(reply[0], codec.decode(reply[1]).getUuid());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void secretIsRequired() {
+        new BaseAppConfiguration(null, null).ctxTokenCodec(1, "", false, -1, "", CtxTokenCodec.LEGACY_SECRET);
+    }
+
+    @Test
+    public void randomSecretIsAnOptIn() {
+        CtxTokenCodec random = new BaseAppConfiguration(null, null).ctxTokenCodec(1, "", true, -1, "", "");
+        String value = random.encode(UUID, Instant.now());
+        assertEquals(UUID, random.decode(value).getUuid());
+        assertNull(codec.decode(value));
+        assertNull(random.decodeLegacy(legacy(UUID, Instant.now())));
+    }
+}
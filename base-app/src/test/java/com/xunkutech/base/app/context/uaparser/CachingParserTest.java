@@ -0,0 +1,72 @@
+package com.xunkutech.base.app.context.uaparser;
+
+import com.xunkutech.base.app.UaParserAutoConfiguration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CachingParserTest {
+
+  private static Map<String, List<Map<String, String>>> config;
+  private static Parser parser;
+
+  @BeforeClass
+  public static void setUpClass() {
+    config = RegexSnapshot.fromClasspath().getRegexConfig();
+    parser = new Parser(config);
+  }
+
+  @Test
+  public void cachedPartsEqualUncached() {
+    CachingParser caching = new CachingParser(config, 8);
+    for (int round = 0; round < 2; round++) {
+      for (String agent : UserAgents.CORPUS) {
+        Client expected = parser.parse(agent);
+        assertEquals(agent, expected, caching.parse(agent));
+        assertEquals(agent, expected.userAgent, caching.parseUserAgent(agent));
+        assertEquals(agent, expected.os, caching.parseOS(agent));
+        assertEquals(agent, expected.device, caching.parseDevice(agent));
+      }
+    }
+    assertTrue(caching.getStats().hitCount() > 0);
+  }
+
+  @Test
+  public void repeatedAgentsAreServedFromTheCache() {
+    CachingParser caching = new CachingParser(config, 8);
+    String agent = UserAgents.CORPUS.get(0);
+    Client client = caching.parse(agent);
+    assertSame(client, caching.parse(agent));
+    assertSame(client.os, caching.parseOS(agent));
+    assertEquals(1, caching.getStats().missCount());
+    assertEquals(2, caching.getStats().hitCount());
+  }
+
+  @Test
+  public void nullAgent() {
+    CachingParser caching = new CachingParser(config, 8);
+    assertNull(caching.parse(null));
+    assertNull(caching.parseUserAgent(null));
+    assertNull(caching.parseOS(null));
+    assertNull(caching.parseDevice(null));
+  }
+
+  @Test
+  public void cacheSizeIsHonoured() {
+    assertEquals(CachingParser.DEFAULT_CACHE_SIZE, new CachingParser(config).getMaximumSize());
+    assertEquals(3, new CachingParser(config, 3).getMaximumSize());
+
+    ApplicationContextRunner runner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(UaParserAutoConfiguration.class));
+    runner.run(context -> assertEquals(CachingParser.DEFAULT_CACHE_SIZE,
+        context.getBean(CachingParser.class).getMaximumSize()));
+    runner.withPropertyValues("ua-parser.cache-size=16")
+        .run(context -> assertEquals(16, context.getBean(CachingParser.class).getMaximumSize()));
+  }
+}
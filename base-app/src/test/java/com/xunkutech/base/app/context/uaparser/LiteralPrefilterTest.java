@@ -0,0 +1,192 @@
+package com.xunkutech.base.app.context.uaparser;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class LiteralPrefilterTest {
+
+  private static Map<String, List<Map<String, String>>> config;
+  private static Parser parser;
+  private static List<String> agents;
+
+  @BeforeClass
+  public static void setUpClass() {
+    config = RegexSnapshot.fromClasspath().getRegexConfig();
+    parser = new Parser(config);
+    agents = new ArrayList<>();
+    for (String agent : UserAgents.CORPUS) {
+      agents.add(agent);
+      agents.add(agent.toLowerCase(Locale.ROOT));
+      agents.add(agent.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private static List<String> literals(String regex) {
+    return LiteralPrefilter.requiredLiterals(Pattern.compile(regex));
+  }
+
+  private static BitSet bits(int... indices) {
+    BitSet bits = new BitSet();
+    for (int i : indices) bits.set(i);
+    return bits;
+  }
+
+  // ------------------------------------------
+
+  @Test
+  public void userAgentsMatchTheSequentialScan() {
+    List<UserAgentParser.UAPattern> patterns = new ArrayList<>();
+    for (Map<String, String> entry : config.get("user_agent_parsers")) {
+      patterns.add(UserAgentParser.patternFromMap(entry));
+    }
+    for (String agent : agents) {
+      UserAgent expected = null;
+      for (UserAgentParser.UAPattern pattern : patterns) {
+        if (null != (expected = pattern.match(agent))) break;
+      }
+      if (null == expected) expected = new UserAgent("Other", null, null, null);
+      assertEquals(agent, expected, parser.parseUserAgent(agent));
+    }
+  }
+
+  @Test
+  public void osMatchesTheSequentialScan() {
+    List<OSParser.OSPattern> patterns = new ArrayList<>();
+    for (Map<String, String> entry : config.get("os_parsers")) {
+      patterns.add(OSParser.patternFromMap(entry));
+    }
+    for (String agent : agents) {
+      OS expected = null;
+      for (OSParser.OSPattern pattern : patterns) {
+        if (null != (expected = pattern.match(agent))) break;
+      }
+      if (null == expected) expected = new OS("Other", null, null, null, null);
+      assertEquals(agent, expected, parser.parseOS(agent));
+    }
+  }
+
+  @Test
+  public void devicesMatchTheSequentialScan() {
+    List<DeviceParser.DevicePattern> patterns = new ArrayList<>();
+    for (Map<String, String> entry : config.get("device_parsers")) {
+      patterns.add(DeviceParser.patternFromMap(entry));
+    }
+    for (String agent : agents) {
+      String expected = null;
+      for (DeviceParser.DevicePattern pattern : patterns) {
+        if (null != (expected = pattern.match(agent))) break;
+      }
+      assertEquals(agent, new Device(null == expected ? "Other" : expected), parser.parseDevice(agent));
+    }
+  }
+
+  @Test
+  public void neverDropsAMatchingPattern() {
+    for (String section : Arrays.asList("user_agent_parsers", "os_parsers", "device_parsers")) {
+      List<Pattern> patterns = new ArrayList<>();
+      for (Map<String, String> entry : config.get(section)) {
+        patterns.add("i".equals(entry.get("regex_flag"))
+            ? Pattern.compile(entry.get("regex"), Pattern.CASE_INSENSITIVE) : Pattern.compile(entry.get("regex")));
+      }
+      LiteralPrefilter prefilter = LiteralPrefilter.compile(patterns);
+      for (String agent : agents) {
+        BitSet candidates = prefilter.candidates(agent);
+        for (int i = 0; i < patterns.size(); i++) {
+          if (patterns.get(i).matcher(agent).find()) {
+            assertTrue(section + " " + patterns.get(i) + " " + agent, candidates.get(i));
+          }
+        }
+      }
+    }
+  }
+
+  // ------------------------------------------
+
+  @Test
+  public void plainLiterals() {
+    assertEquals(Arrays.asList("opera mini"), literals("(Opera Mini)(?:/att|)/?(\\d+)"));
+    assertEquals(Arrays.asList("msie"), literals("\\bMSIE"));
+    // the longest mandatory run wins
+    assertEquals(Arrays.asList(" firefox"), literals("Mobile (\\d+) Firefox"));
+  }
+
+  @Test
+  public void alternations() {
+    assertEquals(Arrays.asList("firefox", "chrome"), literals("Firefox|Chrome"));
+    assertEquals(Arrays.asList("firefox", "chrome"), literals("(Firefox|Chrome)/(\\d+)"));
+    // one branch without a literal makes the alternation useless
+    assertNull(literals("Firefox|\\d+"));
+    assertEquals(Arrays.asList("/"), literals("(Firefox|\\d+)/"));
+  }
+
+  @Test
+  public void optionalParts() {
+    assertEquals(Arrays.asList("safari"), literals("(?:Mobile )?Safari"));
+    assertEquals(Arrays.asList("safari"), literals("(?:Mobile )*Safari"));
+    assertEquals(Arrays.asList("mobile "), literals("(?:Mobile )+Safar?"));
+    // an optional character splits the run
+    assertEquals(Arrays.asList("kindle"), literals("Kindle/?(\\d+)"));
+    assertEquals(Arrays.asList("iph"), literals("ipho?ne"));
+    assertEquals(Arrays.asList("a"), literals("ab{0,2}"));
+    assertEquals(Arrays.asList("ab"), literals("ab{2,}c"));
+    assertNull(literals("x*"));
+    assertNull(literals(".*"));
+  }
+
+  @Test
+  public void escapes() {
+    assertEquals(Arrays.asList("opera.mini"), literals("Opera\\.Mini"));
+    assertEquals(Arrays.asList(" mbps"), literals("\\d+ Mbps"));
+    assertEquals(Arrays.asList("a(b)"), literals("a\\(b\\)"));
+    assertEquals(Arrays.asList("tab\t"), literals("Tab\\t"));
+    assertEquals(Arrays.asList(" android"), literals("\\p{L}+ Android"));
+    assertEquals(Arrays.asList(" android "), literals("(\\w+) Android \\1"));
+    // not understood, so not trusted
+    assertNull(literals("\\QFirefox\\E"));
+  }
+
+  @Test
+  public void characterClasses() {
+    assertEquals(Arrays.asList("irefox"), literals("[Ff]irefox"));
+    assertEquals(Arrays.asList("ndroid"), literals("[^]a]ndroid"));
+    assertEquals(Arrays.asList("ios"), literals("[\\]\\[]+iOS"));
+    assertNull(literals("[a-z]+"));
+  }
+
+  @Test
+  public void groupsAndFlags() {
+    assertEquals(Arrays.asList("firefox"), literals("(?i)FireFox"));
+    assertEquals(Arrays.asList("mobi"), literals("(?i:Mobi)le"));
+    assertEquals(Arrays.asList("safari"), literals("(?=Chrome)Safari"));
+    assertEquals(Arrays.asList("safari"), literals("(?<!Chrome )Safari"));
+    assertEquals(Arrays.asList("safari"), literals("(?<name>Safari)"));
+    assertEquals(Arrays.asList("safari"), literals("(?>Safari)"));
+    assertNull(literals("(?x)Safari"));
+    assertNull(literals("(?s)Safari"));
+    assertNull(LiteralPrefilter.requiredLiterals(Pattern.compile("Safari", Pattern.COMMENTS)));
+    assertNull(LiteralPrefilter.requiredLiterals(Pattern.compile("Safari", Pattern.LITERAL)));
+  }
+
+  @Test
+  public void unconditionalPatternsAreAlwaysCandidates() {
+    LiteralPrefilter prefilter = LiteralPrefilter.compile(Arrays.asList(
+        Pattern.compile("Firefox"), Pattern.compile("\\d+"), Pattern.compile("(?i)opera|Chrome"),
+        Pattern.compile("\\QSafari\\E")));
+    assertEquals(bits(1, 3), prefilter.candidates("nothing"));
+    assertEquals(bits(1, 3), prefilter.candidates(""));
+    assertEquals(bits(0, 1, 3), prefilter.candidates("FIREFOX 1"));
+    assertEquals(bits(1, 2, 3), prefilter.candidates("OPERA chrome"));
+    // overlapping literals are all found in one pass
+    assertEquals(bits(0, 1, 2, 3), prefilter.candidates("xOperaFirefoxChrome"));
+  }
+}
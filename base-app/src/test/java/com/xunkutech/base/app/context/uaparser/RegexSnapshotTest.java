@@ -0,0 +1,112 @@
+package com.xunkutech.base.app.context.uaparser;
+
+import com.xunkutech.base.app.UaParserAutoConfiguration;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RegexSnapshotTest {
+
+  private static RegexSnapshot yaml() {
+    return RegexSnapshot.fromYaml(RegexSnapshot.readResource(RegexSnapshot.REGEX_YAML_PATH));
+  }
+
+  private static byte[] write(RegexSnapshot snapshot) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshot.write(out);
+    return out.toByteArray();
+  }
+
+  private static RegexSnapshot withSnapshot(byte[] bin) {
+    ClassLoader original = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(new ClassLoader(original) {
+      @Override
+      public InputStream getResourceAsStream(String name) {
+        if (RegexSnapshot.REGEX_SNAPSHOT_PATH.equals(name)) {
+          return new ByteArrayInputStream(bin);
+        }
+        return super.getResourceAsStream(name);
+      }
+    });
+    try {
+      return RegexSnapshot.fromClasspath();
+    } finally {
+      Thread.currentThread().setContextClassLoader(original);
+    }
+  }
+
+  @Test
+  public void roundTripsTheYamlPatterns() throws IOException {
+    RegexSnapshot yaml = yaml();
+    RegexSnapshot read = RegexSnapshot.read(new ByteArrayInputStream(write(yaml)));
+    assertEquals(yaml.getSourceChecksum(), read.getSourceChecksum());
+    assertEquals(yaml.getRegexConfig(), read.getRegexConfig());
+    assertFalse(read.getRegexConfig().get("user_agent_parsers").isEmpty());
+  }
+
+  @Test
+  public void bundledSnapshotIsUpToDate() {
+    RegexSnapshot yaml = yaml();
+    RegexSnapshot bundled = RegexSnapshot.fromClasspath();
+    assertEquals(yaml.getSourceChecksum(), bundled.getSourceChecksum());
+    assertEquals(yaml.getRegexConfig(), bundled.getRegexConfig());
+  }
+
+  @Test
+  public void staleSnapshotFallsBackToYaml() throws IOException {
+    RegexSnapshot yaml = yaml();
+    Map<String, List<Map<String, String>>> outdated = Collections.singletonMap("user_agent_parsers",
+        Collections.singletonList(Collections.singletonMap("regex", "Outdated")));
+
+    RegexSnapshot loaded = withSnapshot(write(new RegexSnapshot(yaml.getSourceChecksum() + 1, outdated)));
+    assertEquals(yaml.getSourceChecksum(), loaded.getSourceChecksum());
+    assertEquals(yaml.getRegexConfig(), loaded.getRegexConfig());
+
+    // an up to date snapshot is trusted as is
+    loaded = withSnapshot(write(new RegexSnapshot(yaml.getSourceChecksum(), outdated)));
+    assertEquals(outdated, loaded.getRegexConfig());
+  }
+
+  @Test
+  public void corruptSnapshotFallsBackToYaml() {
+    RegexSnapshot loaded = withSnapshot(new byte[]{1, 2, 3, 4, 5, 6});
+    assertEquals(yaml().getRegexConfig(), loaded.getRegexConfig());
+  }
+
+  @Test(expected = IOException.class)
+  public void notASnapshot() throws IOException {
+    RegexSnapshot.read(new ByteArrayInputStream(new byte[16]));
+  }
+
+  @Test
+  public void autoConfigurationBacksOffForUserParser() {
+    ApplicationContextRunner runner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(UaParserAutoConfiguration.class));
+
+    runner.run(context -> assertTrue(context.getBean(Parser.class) instanceof CachingParser));
+    runner.withUserConfiguration(UserParserConfiguration.class)
+        .run(context -> assertSame(UserParserConfiguration.PARSER, context.getBean(Parser.class)));
+  }
+
+  @Configuration
+  static class UserParserConfiguration {
+    static final Parser PARSER = Parser.fromClasspath();
+
+    @Bean
+    public Parser userParser() {
+      return PARSER;
+    }
+  }
+}
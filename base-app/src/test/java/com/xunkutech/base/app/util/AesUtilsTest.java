@@ -0,0 +1,102 @@
+package com.xunkutech.base.app.util;
+
+import com.xunkutech.base.model.util.CodecUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AesUtilsTest {
+
+    /**
+     * Seed, plain text and cipher text, as produced by the implementation before keys were cached.
+     */
+    private static final String[][] VECTORS = {
+            {"123", "", "ab1dbc3616a074359cf4e2589980e14a"},
+            {"i7aFm1", "{\"uuid\":\"0123456789abcdef0123456789abcdef\",\"timestamp\":1538000000}",
+                    "d08888c41125107a2699dd675b1c2f82d264ed9e2e93951bd4341e22b5e94de4"
+                            + "6f50ee63587f0437b0ea86dc01e68f68867b32487b761867fbf20f3c9a661a7a"
+                            + "aa5ae1e7b10c5261df30a4d392979614"},
+            {"", "hello", "4322a5239fba8018c32c2ec1b9e814aa"},
+            {"种子", "0123456789abcdef", "45ef3745020f0ba1fe0289552f65123de9f5b232fd7266e9bb90d6b775b2be97"},
+            {"123", "你好, world", "5a8d6d66f2c56f981deb0374ab8b82dd"},
+    };
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void matchesTheFormerImplementation() throws Exception {
+        // twice, the second time with the cached keys
+        for (int round = 0; round < 2; round++) {
+            for (String[] vector : VECTORS) {
+                byte[] seed = utf8(vector[0]);
+                byte[] encrypted = CodecUtils.fromHex(vector[2]);
+                assertEquals(vector[1], vector[2], CodecUtils.toHex(AesUtils.encrypt(utf8(vector[1]), seed)));
+                assertArrayEquals(vector[1], utf8(vector[1]), AesUtils.decrypt(encrypted, seed));
+            }
+        }
+    }
+
+    @Test
+    public void encryptedLength() {
+        assertEquals(16, AesUtils.encryptedLength(0));
+        assertEquals(16, AesUtils.encryptedLength(15));
+        assertEquals(32, AesUtils.encryptedLength(16));
+        assertEquals(32, AesUtils.encryptedLength(31));
+        assertEquals(48, AesUtils.encryptedLength(32));
+        for (int length = 0; length < 64; length++) {
+            assertEquals(AesUtils.encryptedLength(length), AesUtils.encrypt(new byte[length], utf8("123")).length);
+        }
+    }
+
+    @Test
+    public void byteBuffers() throws Exception {
+        byte[] seed = utf8("seed");
+        byte[] data = new byte[100];
+        new Random(1).nextBytes(data);
+        byte[] expected = AesUtils.encrypt(Arrays.copyOfRange(data, 10, 90), seed);
+
+        // only position to limit is read, and output is written from its position
+        ByteBuffer input = ByteBuffer.wrap(data);
+        input.position(10).limit(90);
+        ByteBuffer output = ByteBuffer.allocate(AesUtils.encryptedLength(80) + 8);
+        output.position(4);
+        assertEquals(expected.length, AesUtils.encrypt(input, output, seed));
+        assertEquals(90, input.position());
+        assertEquals(4 + expected.length, output.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(output.array(), 4, 4 + expected.length));
+
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(expected.length);
+        encrypted.put(expected).flip();
+        ByteBuffer decrypted = ByteBuffer.allocate(expected.length);
+        assertEquals(80, AesUtils.decrypt(encrypted, decrypted, seed));
+        assertFalse(encrypted.hasRemaining());
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 90), Arrays.copyOf(decrypted.array(), decrypted.position()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outputTooSmall() {
+        AesUtils.encrypt(ByteBuffer.wrap(new byte[16]), ByteBuffer.allocate(16), utf8("seed"));
+    }
+
+    @Test(expected = InvalidException.class)
+    public void wrongSeed() throws InvalidException {
+        AesUtils.decrypt(AesUtils.encrypt(utf8("hello"), utf8("seed")), utf8("other"));
+    }
+
+    @Test(expected = InvalidException.class)
+    public void notBlockAligned() throws InvalidException {
+        AesUtils.decrypt(ByteBuffer.allocate(15), ByteBuffer.allocate(16), utf8("seed"));
+    }
+
+    @Test(expected = InvalidException.class)
+    public void noSeed() throws InvalidException {
+        AesUtils.decrypt(new byte[16], null);
+    }
+}
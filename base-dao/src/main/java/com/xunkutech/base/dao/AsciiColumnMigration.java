@@ -0,0 +1,346 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.model.converter.CompactStringAsciiConverter;
+import com.xunkutech.base.model.util.CodecUtils;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.ComponentType;
+import org.hibernate.type.Type;
+import org.hibernate.type.descriptor.converter.AttributeConverterTypeAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.*;
+
+/**
+ * Rewrites the values of columns mapped with {@link CompactStringAsciiConverter} from the legacy
+ * {@link CodecUtils#toAscii(String)} form into the compact one, while the application keeps
+ * serving: rows are read in primary key order, a batch per transaction, and each value is only
+ * replaced if it still holds what was read, so concurrent writes win.
+ * <p>
+ * Run it from a task once <code>ascii.compact-write</code> is on everywhere, e.g.
+ * <pre>
+ *     long rewritten = asciiColumnMigration.migrate();
+ * </pre>
+ * It can be stopped and run again, already compact values are skipped. A row whose rewrite would
+ * duplicate a unique key, i.e. the same text was also saved in the compact form meanwhile, is left
+ * as it is and reported in {@link #getConflicts()} along with the rows holding the compact value,
+ * to be resolved by hand; finders prefer the compact row meanwhile. With
+ * <code>ascii.migration.remove-duplicates=true</code> the legacy row is removed instead, through
+ * the entity manager, cascades included. <code>ascii.migration.batch-size</code> and
+ * <code>ascii.migration.pause-millis</code> tune the pace.
+ */
+public class AsciiColumnMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsciiColumnMigration.class);
+
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    /**
+     * Pause between batches, to leave the database some air.
+     */
+    private final long pauseMillis;
+
+    /**
+     * Whether legacy rows conflicting with compact ones are removed rather than reported.
+     */
+    private final boolean removeDuplicates;
+
+    private volatile boolean finished;
+    private volatile List<Conflict> conflicts = Collections.emptyList();
+
+    public AsciiColumnMigration(EntityManagerFactory entityManagerFactory,
+                                PlatformTransactionManager transactionManager) {
+        this(entityManagerFactory, transactionManager, DEFAULT_BATCH_SIZE, 0L, false);
+    }
+
+    public AsciiColumnMigration(EntityManagerFactory entityManagerFactory,
+                                PlatformTransactionManager transactionManager,
+                                int batchSize,
+                                long pauseMillis,
+                                boolean removeDuplicates) {
+        if (batchSize < 1) throw new IllegalArgumentException("Invalid ascii.migration.batch-size: " + batchSize);
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.removeDuplicates = removeDuplicates;
+    }
+
+    /**
+     * @return whether a run has gone through every table without leaving a legacy value behind
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return the unique key conflicts met by the last run, removed rows included
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    public long migrate() {
+        return migrate(batchSize);
+    }
+
+    /**
+     * @return the number of values rewritten
+     */
+    public long migrate(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        Collection<Table> tables = tables();
+        if (tables.isEmpty()) {
+            logger.warn("ascii.compact-write is off, not migrating ascii columns");
+            return 0;
+        }
+        long rewritten = 0;
+        boolean complete = true;
+        List<Conflict> found = new ArrayList<>();
+        for (Table table : tables) {
+            Progress progress = new Progress();
+            do {
+                transactionTemplate.execute(status -> {
+                    migrateBatch(table, batchSize, progress);
+                    return null;
+                });
+                pause();
+            } while (progress.more);
+            logger.info("Migrated ascii columns {} of {}: {} values rewritten, {} conflicts, {} duplicates removed, {} left",
+                    table.columns, table.name, progress.rewritten, progress.conflicts.size(), progress.removed, progress.left);
+            rewritten += progress.rewritten;
+            complete &= progress.left == 0;
+            found.addAll(progress.conflicts);
+        }
+        conflicts = Collections.unmodifiableList(found);
+        finished = complete;
+        return rewritten;
+    }
+
+    // ------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private void migrateBatch(Table table, int batchSize, Progress progress) {
+        Session session = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                .unwrap(Session.class);
+        List<Object[]> rows = session.createNativeQuery("select " + table.id + ", " + String.join(", ", table.columns)
+                + " from " + table.name + " where " + table.id + " > ? order by " + table.id)
+                .setParameter(1, progress.lastId)
+                .setMaxResults(batchSize)
+                .getResultList();
+        progress.more = rows.size() == batchSize;
+        if (rows.isEmpty()) return;
+        progress.lastId = String.valueOf(rows.get(rows.size() - 1)[0]);
+
+        Set<Object> duplicates = new LinkedHashSet<>();
+        session.doWork(connection -> {
+            for (int c = 0; c < table.columns.size(); c++) {
+                String column = table.columns.get(c);
+                try (PreparedStatement update = connection.prepareStatement("update " + table.name
+                        + " set " + column + " = ? where " + table.id + " = ? and " + column + " = ?")) {
+                    for (Object[] row : rows) {
+                        if (duplicates.contains(row[0])) continue;
+                        String value = (String) row[c + 1];
+                        if (null == value || value.isEmpty() || CodecUtils.isCompactAscii(value)) continue;
+                        String text = CodecUtils.fromAscii(value);
+                        if (null == text) {
+                            logger.warn("Not an ascii value in {}.{} of {}: {}", table.name, column, row[0], value);
+                            progress.left++;
+                            continue;
+                        }
+                        update.setString(1, CodecUtils.toCompactAscii(text));
+                        update.setString(2, String.valueOf(row[0]));
+                        update.setString(3, value);
+                        try {
+                            progress.rewritten += update.executeUpdate();
+                        } catch (SQLIntegrityConstraintViolationException e) {
+                            Conflict conflict = new Conflict(table.name, column, String.valueOf(row[0]),
+                                    holders(connection, table, column, CodecUtils.toCompactAscii(text), row[0]), text);
+                            progress.conflicts.add(conflict);
+                            if (removeDuplicates) {
+                                logger.warn("{}, removing the legacy row", conflict);
+                                duplicates.add(row[0]);
+                            } else {
+                                logger.warn("{}, left as it is", conflict);
+                                progress.left++;
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        for (Object id : duplicates) {
+            Object entity = session.get(table.entityName, (Serializable) id);
+            if (null != entity) session.delete(entity);
+        }
+        session.flush();
+        progress.removed += duplicates.size();
+    }
+
+    /**
+     * @return the ids of the other rows holding <code>value</code> in <code>column</code>
+     */
+    private static List<String> holders(Connection connection, Table table, String column, String value, Object id)
+            throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement("select " + table.id + " from " + table.name
+                + " where " + column + " = ? and " + table.id + " <> ? order by " + table.id)) {
+            select.setString(1, value);
+            select.setString(2, String.valueOf(id));
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void pause() {
+        if (pauseMillis <= 0) return;
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ascii column migration interrupted", e);
+        }
+    }
+
+    /**
+     * The tables with columns to migrate, found in the mapping: those whose converter writes the
+     * compact form. Entities sharing a table are merged.
+     */
+    private Collection<Table> tables() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Map<String, Table> tables = new LinkedHashMap<>();
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            if (!(persister instanceof AbstractEntityPersister)) continue;
+            AbstractEntityPersister entity = (AbstractEntityPersister) persister;
+            if (entity.getIdentifierColumnNames().length != 1) continue;
+            Set<String> columns = new LinkedHashSet<>();
+            String[] names = entity.getPropertyNames();
+            Type[] types = entity.getPropertyTypes();
+            for (int i = 0; i < names.length; i++) {
+                collectColumns(entity, names[i], types[i], columns);
+            }
+            if (columns.isEmpty()) continue;
+            tables.computeIfAbsent(entity.getTableName(),
+                    name -> new Table(name, entity.getIdentifierColumnNames()[0], entity.getEntityName()))
+                    .addColumns(columns);
+        }
+        return tables.values();
+    }
+
+    private static void collectColumns(AbstractEntityPersister entity, String property, Type type, Set<String> columns) {
+        if (type instanceof ComponentType) {
+            ComponentType component = (ComponentType) type;
+            String[] names = component.getPropertyNames();
+            Type[] types = component.getSubtypes();
+            for (int i = 0; i < names.length; i++) {
+                collectColumns(entity, property + "." + names[i], types[i], columns);
+            }
+        } else if (type instanceof AttributeConverterTypeAdapter
+                && ((AttributeConverterTypeAdapter<?>) type).getAttributeConverter() instanceof CompactStringAsciiConverter
+                && ((CompactStringAsciiConverter) ((AttributeConverterTypeAdapter<?>) type).getAttributeConverter()).isCompactWrite()) {
+            columns.addAll(Arrays.asList(entity.getPropertyColumnNames(property)));
+        }
+    }
+
+    private static final class Table {
+        final String name;
+        final String id;
+        /**
+         * An entity mapped to the table, to remove duplicates with
+         */
+        final String entityName;
+        final List<String> columns = new ArrayList<>();
+
+        Table(String name, String id, String entityName) {
+            this.name = name;
+            this.id = id;
+            this.entityName = entityName;
+        }
+
+        void addColumns(Collection<String> more) {
+            for (String column : more) {
+                if (!columns.contains(column)) columns.add(column);
+            }
+        }
+    }
+
+    private static final class Progress {
+        String lastId = "";
+        boolean more;
+        long rewritten;
+        long removed;
+        long left;
+        final List<Conflict> conflicts = new ArrayList<>();
+    }
+
+    /**
+     * A legacy value whose compact form is already taken under a unique key.
+     */
+    public static final class Conflict {
+        private final String table;
+        private final String column;
+        private final String id;
+        private final List<String> conflictingIds;
+        private final String text;
+
+        Conflict(String table, String column, String id, List<String> conflictingIds, String text) {
+            this.table = table;
+            this.column = column;
+            this.id = id;
+            this.conflictingIds = Collections.unmodifiableList(conflictingIds);
+            this.text = text;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return the id of the row holding the legacy value
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the ids of the rows holding the compact value
+         */
+        public List<String> getConflictingIds() {
+            return conflictingIds;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "Duplicated " + table + "." + column + " of " + id + " in " + conflictingIds + ": " + text;
+        }
+    }
+}
@@ -1,9 +1,34 @@
 package com.xunkutech.base.dao;
 
+import com.xunkutech.base.dao.repo.BaseEntityRepository;
+import com.xunkutech.base.dao.repo.PayloadProperties;
 import com.xunkutech.base.model.IBaseEntity;
+import com.xunkutech.base.model.IJoinEntity;
+import com.xunkutech.base.model.IModelEntity;
+import com.xunkutech.base.model.util.ClassUtils;
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import java.sql.Clob;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by wtjs_fpf on 4/24/2017.
@@ -13,4 +38,134 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
         basePackageClasses = BaseDaoConfiguration.class)
 @EntityScan(basePackageClasses = IBaseEntity.class)
 public class BaseDaoConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(BaseDaoConfiguration.class);
+
+    private final int payloadBatchSize;
+    private final boolean nativeMergePatch;
+    private final boolean dynamicUpdate;
+    private final boolean compactWrite;
+
+    public BaseDaoConfiguration(@Value("${payload.batch-size:" + PayloadProperties.DEFAULT_BATCH_SIZE + "}") int payloadBatchSize,
+                                @Value("${payload.merge-patch.native:true}") boolean nativeMergePatch,
+                                @Value("${entity.dynamic-update:true}") boolean dynamicUpdate,
+                                @Value("${ascii.compact-write:false}") boolean compactWrite) {
+        if (payloadBatchSize < 1) throw new IllegalArgumentException("Invalid payload.batch-size: " + payloadBatchSize);
+        this.payloadBatchSize = payloadBatchSize;
+        this.nativeMergePatch = nativeMergePatch;
+        this.dynamicUpdate = dynamicUpdate;
+        this.compactWrite = compactWrite;
+    }
+
+    /**
+     * Resolves the generic type arguments of every scanned entity and repository once the context is
+     * up, so that loading entities and {@link BaseEntityRepository#newEntity} only hit the cache.
+     */
+    @Bean
+    public SmartInitializingSingleton genericTypeResolution(ListableBeanFactory beanFactory,
+                                                            EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            for (EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+                resolveEntityTypes(entityType.getJavaType());
+            }
+            for (BaseEntityRepository<?> repository : beanFactory.getBeansOfType(BaseEntityRepository.class).values()) {
+                try {
+                    repository.getEntityClass();
+                } catch (RuntimeException e) {
+                    logger.warn(e.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Registers {@link DynamicUpdateIntegrator}, keeping integrators provided by the application;
+     * <code>entity.dynamic-update=false</code> turns it off.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer dynamicUpdateCustomizer() {
+        return properties -> {
+            if (dynamicUpdate) addIntegrator(properties, new DynamicUpdateIntegrator());
+        };
+    }
+
+    /**
+     * Registers {@link CompactAsciiIntegrator} when <code>ascii.compact-write=true</code>; the
+     * converters write the legacy form by default.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer compactAsciiCustomizer() {
+        return properties -> {
+            if (compactWrite) addIntegrator(properties, new CompactAsciiIntegrator(true));
+        };
+    }
+
+    /**
+     * Passes the <code>payload.*</code> properties on to the persistence unit, where the repository
+     * default methods find them, see {@link PayloadProperties}.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer payloadPropertiesCustomizer() {
+        return properties -> {
+            properties.put(PayloadProperties.BATCH_SIZE, payloadBatchSize);
+            properties.put(PayloadProperties.NATIVE_MERGE_PATCH, nativeMergePatch);
+        };
+    }
+
+    /**
+     * Registers {@link JsonClobType} in place of the stock <code>clob</code> type, keeping type
+     * contributors provided by the application.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jsonClobTypeCustomizer() {
+        return properties -> {
+            Object provided = properties.get(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS);
+            properties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS, (TypeContributorList) () -> {
+                List<TypeContributor> contributors = new ArrayList<>();
+                if (provided instanceof TypeContributorList) {
+                    contributors.addAll(((TypeContributorList) provided).getTypeContributors());
+                }
+                contributors.add((typeContributions, serviceRegistry) -> typeContributions.contributeType(
+                        new JsonClobType(), "clob", Clob.class.getName()));
+                return contributors;
+            });
+        };
+    }
+
+    /**
+     * Moves <code>ascii_bin</code> columns to the compact form when the application runs it, see
+     * {@link AsciiColumnMigration}.
+     */
+    @Bean
+    public AsciiColumnMigration asciiColumnMigration(EntityManagerFactory entityManagerFactory,
+                                                     PlatformTransactionManager transactionManager,
+                                                     @Value("${ascii.migration.batch-size:" + AsciiColumnMigration.DEFAULT_BATCH_SIZE + "}") int batchSize,
+                                                     @Value("${ascii.migration.pause-millis:0}") long pauseMillis,
+                                                     @Value("${ascii.migration.remove-duplicates:false}") boolean removeDuplicates) {
+        return new AsciiColumnMigration(entityManagerFactory, transactionManager, batchSize, pauseMillis, removeDuplicates);
+    }
+
+    /**
+     * Keeps the integrators provided by the application or by other customizers.
+     */
+    private static void addIntegrator(Map<String, Object> properties, Integrator integrator) {
+        Object provided = properties.get(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER);
+        properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> {
+            List<Integrator> integrators = new ArrayList<>();
+            if (provided instanceof IntegratorProvider) {
+                integrators.addAll(((IntegratorProvider) provided).getIntegrators());
+            }
+            integrators.add(integrator);
+            return integrators;
+        });
+    }
+
+    private static void resolveEntityTypes(Class<?> entityClass) {
+        if (IJoinEntity.class.isAssignableFrom(entityClass)) {
+            ClassUtils.getActualTypeArguments(entityClass.asSubclass(IJoinEntity.class), IJoinEntity.class);
+        }
+        if (IModelEntity.class.isAssignableFrom(entityClass)) {
+            ClassUtils.getActualTypeArguments(entityClass.asSubclass(IModelEntity.class), IModelEntity.class);
+        }
+    }
 }
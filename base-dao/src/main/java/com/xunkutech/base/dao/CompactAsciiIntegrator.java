@@ -0,0 +1,68 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.model.converter.CompactStringAsciiConverter;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.Collection;
+import org.hibernate.mapping.Component;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Property;
+import org.hibernate.mapping.Value;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.type.Type;
+import org.hibernate.type.descriptor.converter.AttributeConverterTypeAdapter;
+
+import java.util.Iterator;
+
+/**
+ * Applies <code>ascii.compact-write</code> to the {@link CompactStringAsciiConverter}s of the
+ * persistence unit. Hibernate 5.2 instantiates converters itself, one per mapped attribute, so they
+ * are looked up on the mapping before the persisters are built.
+ */
+class CompactAsciiIntegrator implements Integrator {
+
+    private final boolean compactWrite;
+
+    CompactAsciiIntegrator(boolean compactWrite) {
+        this.compactWrite = compactWrite;
+    }
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        for (PersistentClass binding : metadata.getEntityBindings()) {
+            if (null != binding.getIdentifierProperty()) {
+                apply(binding.getIdentifierProperty().getValue());
+            }
+            apply(binding.getPropertyIterator());
+        }
+        for (Collection binding : metadata.getCollectionBindings()) {
+            apply(binding.getElement());
+        }
+    }
+
+    private void apply(Iterator<?> properties) {
+        while (properties.hasNext()) {
+            apply(((Property) properties.next()).getValue());
+        }
+    }
+
+    private void apply(Value value) {
+        if (value instanceof Component) {
+            apply(((Component) value).getPropertyIterator());
+        } else if (!(value instanceof Collection)) {
+            Type type = value.getType();
+            if (type instanceof AttributeConverterTypeAdapter
+                    && ((AttributeConverterTypeAdapter<?>) type).getAttributeConverter() instanceof CompactStringAsciiConverter) {
+                ((CompactStringAsciiConverter) ((AttributeConverterTypeAdapter<?>) type).getAttributeConverter())
+                        .setCompactWrite(compactWrite);
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.model.IJoinEntity;
+import com.xunkutech.base.model.IModelEntity;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Turns on dynamic update, i.e. <code>@DynamicUpdate</code>, for model and join entities: their
+ * embedded models are wide, and an update that only touches a few columns should only set those.
+ * The entity classes live in base-model, which does not depend on Hibernate, so this is done on the
+ * mapping before the persisters are built.
+ */
+class DynamicUpdateIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        for (PersistentClass binding : metadata.getEntityBindings()) {
+            Class<?> mappedClass = binding.getMappedClass();
+            if (null != mappedClass && (IModelEntity.class.isAssignableFrom(mappedClass)
+                    || IJoinEntity.class.isAssignableFrom(mappedClass))) {
+                binding.setDynamicUpdate(true);
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
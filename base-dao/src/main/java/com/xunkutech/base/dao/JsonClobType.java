@@ -0,0 +1,78 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.model.util.JsonClob;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.CharacterStream;
+import org.hibernate.type.ClobType;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.ClobTypeDescriptor;
+
+import java.io.Reader;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+/**
+ * The <code>clob</code> type, except that a {@link JsonClob} is bound as a character stream over its
+ * bytes. The stock type only streams Hibernate's own clobs and reads any other one into a
+ * {@link String} first, which is what {@link JsonClob} is there to avoid. Registered by
+ * {@link BaseDaoConfiguration} in place of the stock type, so every <code>@Lob Clob</code> gets it.
+ */
+class JsonClobType extends ClobType {
+
+    private static final long serialVersionUID = 1L;
+
+    JsonClobType() {
+        setJavaTypeDescriptor(Descriptor.INSTANCE);
+    }
+
+    static final class Descriptor extends ClobTypeDescriptor {
+
+        private static final long serialVersionUID = 1L;
+
+        static final Descriptor INSTANCE = new Descriptor();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <X> X unwrap(Clob value, Class<X> type, WrapperOptions options) {
+            if (value instanceof JsonClob && CharacterStream.class.isAssignableFrom(type)) {
+                return (X) new Stream((JsonClob) value);
+            }
+            return super.unwrap(value, type, options);
+        }
+    }
+
+    private static final class Stream implements CharacterStream {
+        private final JsonClob clob;
+
+        Stream(JsonClob clob) {
+            this.clob = clob;
+        }
+
+        @Override
+        public Reader asReader() {
+            try {
+                return clob.getCharacterStream();
+            } catch (SQLException e) {
+                throw new HibernateException("Unable to access clob stream", e);
+            }
+        }
+
+        @Override
+        public String asString() {
+            return JsonClob.toText(clob);
+        }
+
+        @Override
+        public long getLength() {
+            try {
+                return clob.length();
+            } catch (SQLException e) {
+                throw new HibernateException("Unable to access clob stream", e);
+            }
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -4,9 +4,45 @@ import com.xunkutech.base.dao.repo.ModelEntityRepository;
 import com.xunkutech.base.model.component.configure.Configure;
 import com.xunkutech.base.model.component.configure.ConfigureEntity;
 import com.xunkutech.base.model.enums.ConfigureType;
+import com.xunkutech.base.model.util.CodecUtils;
+import org.springframework.data.jpa.repository.Query;
 
 public interface ConfigureEntityRepository<P>
         extends ModelEntityRepository<ConfigureEntity<P>, Configure<P>, P> {
 
-    ConfigureEntity<P> findByModelConfigureTypeAndModelConfigureName(ConfigureType type, String name);
+    /**
+     * Only the name in the ascii form being written: the mapped converter encodes the parameter.
+     */
+    @Query("select e from ConfigureEntity e where e.model.configureType = ?1 and e.model.configureName = ?2")
+    ConfigureEntity<P> findByConfigureName(ConfigureType type, String name);
+
+    @Query(value = "select * from base_configure where configure_type = ?1 and configure_name = ?2", nativeQuery = true)
+    ConfigureEntity<P> findByEncodedConfigureName(Integer type, String encodedName);
+
+    /**
+     * @return the row with <code>encodedName</code>, else the one with <code>otherEncodedName</code>
+     */
+    @Query(value = "select * from base_configure where configure_type = ?1 and configure_name in (?2, ?3)"
+            + " order by case when configure_name = ?2 then 0 else 1 end limit 1", nativeQuery = true)
+    ConfigureEntity<P> findByEncodedConfigureNames(Integer type, String encodedName, String otherEncodedName);
+
+    /**
+     * Finds the name in the ascii form being written and then in either form, so names
+     * <code>AsciiColumnMigration</code> has not rewritten yet are found too. Should both forms be
+     * stored, the one being written wins.
+     */
+    default ConfigureEntity<P> findByModelConfigureTypeAndModelConfigureName(ConfigureType type, String name) {
+        return findByModelConfigureTypeAndModelConfigureName(type, name, true);
+    }
+
+    /**
+     * @param legacyLookup whether to look for the form that is not written on a miss; pass false
+     *                     once the migration has finished, to save the second query
+     */
+    default ConfigureEntity<P> findByModelConfigureTypeAndModelConfigureName(ConfigureType type, String name,
+                                                                            boolean legacyLookup) {
+        ConfigureEntity<P> entity = findByConfigureName(type, name);
+        if (null != entity || !legacyLookup || null == name) return entity;
+        return findByEncodedConfigureNames(type.getEnumKey(), CodecUtils.toAscii(name), CodecUtils.toCompactAscii(name));
+    }
 }
@@ -150,14 +150,16 @@ public interface BaseEntityRepository<E extends IBaseEntity>
     }
 
     default Class<E> getEntityClass() {
-        //TODO: refine it.
+        // resolved once per repository class, see ClassUtils.getActualTypeArguments
         Type type = ClassUtils
                 .getActualTypeArguments(this.getClass(), BaseEntityRepository.class)
                 .get(0);
 
-        Objects.requireNonNull(type, "Can not resolve entity class for " +
-                Arrays.stream(this.getClass().getInterfaces()).map(Class::getName).collect(Collectors.joining(", ", "{", "}")) +
-                ". Make sure you put the concrete entity class in the repository declaration");
+        if (null == type) {
+            throw new NullPointerException("Can not resolve entity class for " +
+                    Arrays.stream(this.getClass().getInterfaces()).map(Class::getName).collect(Collectors.joining(", ", "{", "}")) +
+                    ". Make sure you put the concrete entity class in the repository declaration");
+        }
         return (Class<E>) ClassUtils.getRawType(type);
     }
 
@@ -38,9 +38,8 @@ public interface JoinEntityExtRepository<
             P payload = entity.getPayload();
             if (null == payload) {
                 entity.setPayload((P) model);
-            } else {
-                BeanUtils.deepCopy(model, payload, entity.resolvePayloadType());
-                entity.setPayload(payload);
+            } else if (!BeanUtils.deepCopyChanges(model, payload, entity.resolvePayloadType()).isEmpty()) {
+                entity.markPayloadDirty();
             }
         }
         return entity;
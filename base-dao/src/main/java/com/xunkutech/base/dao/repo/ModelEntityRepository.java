@@ -1,15 +1,21 @@
 package com.xunkutech.base.dao.repo;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.xunkutech.base.dao.exception.DataNotExistException;
 import com.xunkutech.base.model.AbstractModelBean;
 import com.xunkutech.base.model.IModelEntity;
 import com.xunkutech.base.model.util.BeanUtils;
+import com.xunkutech.base.model.util.JsonPaths;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Created by jason on 16-2-13.
@@ -34,22 +40,73 @@ public interface ModelEntityRepository<
         return m -> {
             E entity = findById(Objects.requireNonNull(m).getEntityCode())
                     .orElseThrow(() -> new DataNotExistException(m.getEntityCode()));
-            // replica model properties
-            BeanUtils.deepCopy(m, entity.getModel(), entity.resolveModelType());
+            // replica model properties; only changed columns are set, and written by dynamic update
+            BeanUtils.deepCopyChanges(m, entity.getModel(), entity.resolveModelType());
 
             if (null != m.getPayload()) {
                 P payload = entity.getPayload();
                 if (null == payload) {
                     entity.setPayload(m.getPayload());
-                } else {
-                    BeanUtils.deepCopy(m.getPayload(), payload, entity.resolvePayloadType());
-                    entity.setPayload(payload);
+                } else if (!BeanUtils.deepCopyChanges(m.getPayload(), payload, entity.resolvePayloadType()).isEmpty()) {
+                    // serialized once at flush; an unchanged payload is neither serialized again nor written
+                    entity.markPayloadDirty();
                 }
             }
             return entity;
         };
     }
 
+    /**
+     * Payload entities are lazy, so a listing that reads payloads would otherwise select them one
+     * entity at a time. This loads them for each batch of streamed entities with one
+     * <code>IN (...)</code> query, e.g. <code>fetchPayloads(getAll(pageable)).map(IModelEntity::detach)</code>.
+     * Must run inside the transaction that loaded the entities. The batch size is the
+     * <code>payload.batch-size</code> property of their persistence unit, see {@link PayloadProperties}.
+     */
+    default Stream<E> fetchPayloads(Stream<E> entities) {
+        return PayloadBatches.fetch(Objects.requireNonNull(entities, "entities"));
+    }
+
+    default Stream<E> fetchPayloads(Stream<E> entities, int batchSize) {
+        return PayloadBatches.fetch(Objects.requireNonNull(entities, "entities"), batchSize);
+    }
+
+    /**
+     * The payload values at <code>paths</code> of each entity, keyed by primary code in stream order,
+     * without decoding any payload; payloads are fetched in batches as by {@link #fetchPayloads}.
+     * Must run inside the transaction that loaded the entities.
+     */
+    default Map<String, Map<String, JsonElement>> projectPayloads(Stream<E> entities, JsonPaths paths) {
+        Objects.requireNonNull(paths, "paths");
+        Map<String, Map<String, JsonElement>> projections = new LinkedHashMap<>();
+        try (Stream<E> fetched = fetchPayloads(entities)) {
+            fetched.forEach(e -> projections.put(e.getPrimaryCode(), e.projectPayload(paths)));
+        }
+        return projections;
+    }
+
+    /**
+     * Applies an RFC 7386 json merge patch to the payload of entity <code>id</code>, e.g.
+     * <code>{"status": "DONE", "error": null}</code>, without decoding the payload: on MySQL/MariaDB
+     * with <code>JSON_MERGE_PATCH</code> it is a single update of the payload row, elsewhere the stored
+     * json is streamed through the patch and written back in the same transaction.
+     *
+     * @return the entity, whose payload is read back from the database when next accessed
+     */
+    @Transactional
+    default E patchPayload(String id, JsonElement mergePatch) {
+        Objects.requireNonNull(mergePatch, "mergePatch");
+        E entity = findById(Objects.requireNonNull(id, "id"))
+                .orElseThrow(() -> new DataNotExistException(id));
+        PayloadPatches.apply(entity, mergePatch);
+        return entity;
+    }
+
+    @Transactional
+    default E patchPayload(String id, String mergePatch) {
+        return patchPayload(id, new JsonParser().parse(Objects.requireNonNull(mergePatch, "mergePatch")));
+    }
+
     /**
      * 创建实体类对象
      *
@@ -0,0 +1,104 @@
+package com.xunkutech.base.dao.repo;
+
+import com.xunkutech.base.model.IModelEntity;
+import com.xunkutech.base.model.IPayloadEntity;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Initializes the lazy payload entities of model entities a chunk at a time: the payload proxies of
+ * a chunk are loaded with one <code>IN (...)</code> query per payload class, instead of a select
+ * per entity when each payload is first touched.
+ */
+final class PayloadBatches {
+
+    private PayloadBatches() {
+    }
+
+    static <E extends IModelEntity<?, ?, ?>> Stream<E> fetch(Stream<E> entities, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        return fetch(entities, first -> batchSize);
+    }
+
+    /**
+     * In batches of the {@link PayloadProperties#BATCH_SIZE} of the session that loaded the first
+     * entity.
+     */
+    static <E extends IModelEntity<?, ?, ?>> Stream<E> fetch(Stream<E> entities) {
+        return fetch(entities, PayloadBatches::batchSize);
+    }
+
+    private static <E extends IModelEntity<?, ?, ?>> Stream<E> fetch(Stream<E> entities, ToIntFunction<E> batchSizeOf) {
+        Iterator<E> iterator = entities.iterator();
+        Spliterator<List<E>> chunks = new Spliterators.AbstractSpliterator<List<E>>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private int batchSize;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super List<E>> action) {
+                if (!iterator.hasNext()) return false;
+                E first = iterator.next();
+                if (batchSize == 0) batchSize = batchSizeOf.applyAsInt(first);
+                List<E> chunk = new ArrayList<>(batchSize);
+                chunk.add(first);
+                while (chunk.size() < batchSize && iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                }
+                load(chunk, batchSize);
+                action.accept(chunk);
+                return true;
+            }
+        };
+        return StreamSupport.stream(chunks, false)
+                .onClose(entities::close)
+                .flatMap(List::stream);
+    }
+
+    private static int batchSize(IModelEntity<?, ?, ?> entity) {
+        IPayloadEntity payloadEntity = entity.getPayloadEntity();
+        if (payloadEntity instanceof HibernateProxy) {
+            SharedSessionContractImplementor session = ((HibernateProxy) payloadEntity).getHibernateLazyInitializer().getSession();
+            if (null != session) return PayloadProperties.getBatchSize(session.getFactory());
+        }
+        return PayloadProperties.DEFAULT_BATCH_SIZE;
+    }
+
+    static void load(Collection<? extends IModelEntity<?, ?, ?>> entities, int batchSize) {
+        Map<Class<?>, List<HibernateProxy>> proxies = new HashMap<>();
+        for (IModelEntity<?, ?, ?> entity : entities) {
+            IPayloadEntity payloadEntity = entity.getPayloadEntity();
+            if (payloadEntity instanceof HibernateProxy && !Hibernate.isInitialized(payloadEntity)) {
+                HibernateProxy proxy = (HibernateProxy) payloadEntity;
+                proxies.computeIfAbsent(proxy.getHibernateLazyInitializer().getPersistentClass(),
+                        c -> new ArrayList<>()).add(proxy);
+            }
+        }
+
+        for (Map.Entry<Class<?>, List<HibernateProxy>> entry : proxies.entrySet()) {
+            List<HibernateProxy> group = entry.getValue();
+            LazyInitializer initializer = group.get(0).getHibernateLazyInitializer();
+            if (null == initializer.getSession()) continue;
+            List<Serializable> ids = new ArrayList<>(group.size());
+            for (HibernateProxy proxy : group) {
+                ids.add(proxy.getHibernateLazyInitializer().getIdentifier());
+            }
+            // the loaded rows land in the persistence context, where the proxies pick them up
+            ((Session) initializer.getSession())
+                    .byMultipleIds(entry.getKey())
+                    .withBatchSize(batchSize)
+                    .multiLoad(ids);
+            for (HibernateProxy proxy : group) {
+                Hibernate.initialize(proxy);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.xunkutech.base.dao.repo;
+
+import com.google.gson.JsonElement;
+import com.xunkutech.base.model.IModelEntity;
+import com.xunkutech.base.model.IPayloadEntity;
+import com.xunkutech.base.model.util.JsonUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Applies json merge patches to payloads. While the payload entity is still an uninitialized proxy
+ * and the database has <code>JSON_MERGE_PATCH</code> (MySQL 5.7.22+, MariaDB 10.2.25+), the patch is
+ * one <code>UPDATE</code> of the payload row, so its json is neither loaded nor written back.
+ * Otherwise, e.g. on HSQLDB, on an older server or when the payload has been loaded in this session,
+ * the stored json is streamed through the patch and written back with the entity.
+ */
+final class PayloadPatches {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadPatches.class);
+
+    /**
+     * The payload column of {@link com.xunkutech.base.model.AbstractPayloadEntity} and
+     * {@link com.xunkutech.base.model.AbstractLobPayloadEntity}.
+     */
+    static final String JSON_TEXT_COLUMN = "json_text";
+
+    /**
+     * The <code>last_modified_time</code> of {@link com.xunkutech.base.model.AbstractBaseEntity}; the
+     * column default updates it on MySQL, the native patch sets it anyway.
+     */
+    static final String LAST_MODIFIED_PROPERTY = "lastModifiedTime";
+
+    /**
+     * Session factories whose database turned out not to have <code>JSON_MERGE_PATCH</code>.
+     */
+    private static final Set<SessionFactoryImplementor> UNSUPPORTED =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private PayloadPatches() {
+    }
+
+    static void apply(IModelEntity<?, ?, ?> entity, JsonElement patch) {
+        IPayloadEntity payloadEntity = entity.getPayloadEntity();
+        if (payloadEntity instanceof HibernateProxy
+                && !Hibernate.isInitialized(payloadEntity)
+                && applyNative(((HibernateProxy) payloadEntity).getHibernateLazyInitializer(), patch)) {
+            return;
+        }
+        entity.mergePatchPayload(patch);
+    }
+
+    private static boolean applyNative(LazyInitializer initializer, JsonElement patch) {
+        SharedSessionContractImplementor session = initializer.getSession();
+        if (!(session instanceof Session)) return false;
+        SessionFactoryImplementor factory = session.getFactory();
+        if (!PayloadProperties.isNativeMergePatch(factory)) return false;
+        Dialect dialect = factory.getJdbcServices().getDialect();
+        if (!(dialect instanceof MySQLDialect) || UNSUPPORTED.contains(factory)) return false;
+        EntityPersister persister = factory.getMetamodel().entityPersister(initializer.getPersistentClass());
+        if (!(persister instanceof AbstractEntityPersister)) return false;
+
+        String sql = updateSql((AbstractEntityPersister) persister);
+        // through JDBC rather than a native query, so that a failure does not mark the transaction
+        // for rollback and the patch can still be applied in memory
+        boolean patched = ((Session) session).doReturningWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(sql)) {
+                update.setString(1, JsonUtils.toJson(patch));
+                update.setObject(2, initializer.getIdentifier());
+                update.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                if (!isUnknownFunction(e)) throw e;
+                UNSUPPORTED.add(factory);
+                logger.warn("JSON_MERGE_PATCH is not available, merge patches are applied in memory: {}",
+                        e.getMessage());
+                return false;
+            }
+        });
+        if (patched && null != factory.getCache()) {
+            factory.getCache().evictEntity(initializer.getPersistentClass(), initializer.getIdentifier());
+        }
+        return patched;
+    }
+
+    private static String updateSql(AbstractEntityPersister table) {
+        StringBuilder sql = new StringBuilder("update ").append(table.getTableName())
+                .append(" set ").append(JSON_TEXT_COLUMN).append(" = JSON_MERGE_PATCH(COALESCE(")
+                .append(JSON_TEXT_COLUMN).append(", '{}'), ?)");
+        if (Arrays.asList(table.getPropertyNames()).contains(LAST_MODIFIED_PROPERTY)) {
+            for (String column : table.getPropertyColumnNames(LAST_MODIFIED_PROPERTY)) {
+                sql.append(", ").append(column).append(" = CURRENT_TIMESTAMP");
+            }
+        }
+        if (table.isVersioned()) {
+            String column = table.getVersionColumnName();
+            sql.append(", ").append(column).append(" = ");
+            if (Number.class.isAssignableFrom(table.getVersionType().getReturnedClass())) {
+                sql.append(column).append(" + 1");
+            } else {
+                sql.append("CURRENT_TIMESTAMP");
+            }
+        }
+        return sql.append(" where ").append(table.getIdentifierColumnNames()[0]).append(" = ?").toString();
+    }
+
+    /**
+     * Syntax errors and unknown routines, e.g. MySQL 1305 <code>FUNCTION ... does not exist</code>,
+     * are SQLSTATE class 42.
+     */
+    private static boolean isUnknownFunction(SQLException e) {
+        return null != e.getSQLState() && e.getSQLState().startsWith("42");
+    }
+}
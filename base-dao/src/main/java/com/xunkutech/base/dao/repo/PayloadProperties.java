@@ -0,0 +1,38 @@
+package com.xunkutech.base.dao.repo;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+/**
+ * The <code>payload.*</code> settings of the repository default methods. Those are not beans, so
+ * {@link com.xunkutech.base.dao.BaseDaoConfiguration} passes the Spring properties on to the
+ * persistence unit, and they are read back from the session factory of the entities at hand;
+ * without them the defaults apply.
+ */
+public final class PayloadProperties {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * How many payloads {@link ModelEntityRepository#fetchPayloads(java.util.stream.Stream)} loads
+     * per query.
+     */
+    public static final String BATCH_SIZE = "payload.batch-size";
+
+    /**
+     * Whether {@link ModelEntityRepository#patchPayload(String, com.google.gson.JsonElement)} uses the
+     * <code>JSON_MERGE_PATCH</code> of MySQL/MariaDB where it can.
+     */
+    public static final String NATIVE_MERGE_PATCH = "payload.merge-patch.native";
+
+    private PayloadProperties() {
+    }
+
+    static int getBatchSize(SessionFactoryImplementor sessionFactory) {
+        return ConfigurationHelper.getInt(BATCH_SIZE, sessionFactory.getProperties(), DEFAULT_BATCH_SIZE);
+    }
+
+    static boolean isNativeMergePatch(SessionFactoryImplementor sessionFactory) {
+        return ConfigurationHelper.getBoolean(NATIVE_MERGE_PATCH, sessionFactory.getProperties(), true);
+    }
+}
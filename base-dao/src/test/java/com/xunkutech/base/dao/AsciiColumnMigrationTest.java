@@ -0,0 +1,154 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.dao.component.configure.ConfigureEntityRepository;
+import com.xunkutech.base.dao.repo.PayloadProperties;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import com.xunkutech.base.model.enums.ConfigureType;
+import com.xunkutech.base.model.util.CodecUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AsciiColumnMigrationTest {
+
+    /**
+     * Writes the legacy form.
+     */
+    private TestDatabase db;
+
+    /**
+     * A node on the same database writing the compact form, as during a rolling upgrade.
+     */
+    private TestDatabase compact;
+
+    @Before
+    public void setUp() {
+        db = new TestDatabase();
+        compact = db.node(new BaseDaoConfiguration(PayloadProperties.DEFAULT_BATCH_SIZE, true, true, true));
+        persist(db, "c0", "name0");
+        persist(db, "c1", "名字 1");
+        persist(db, "c2", "dup");
+        // saved again in the compact form before the finders looked up the legacy one
+        persist(compact, "c3", "dup");
+        persist(compact, "c4", "new");
+    }
+
+    @After
+    public void tearDown() {
+        compact.close();
+        db.close();
+    }
+
+    private static void persist(TestDatabase db, String id, String name) {
+        db.transactions.execute(status -> {
+            db.entityManager().persist(TestDatabase.configure(id, name, Collections.singletonMap("id", id)));
+            return null;
+        });
+    }
+
+    private List<String> names() {
+        return db.jdbc.queryForList("select configure_name from base_configure order by primary_code", String.class);
+    }
+
+    private static String find(TestDatabase db, String name) {
+        return find(db, name, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String find(TestDatabase db, String name, boolean legacyLookup) {
+        ConfigureEntityRepository<Map<String, String>> repository = db.repository(ConfigureEntityRepository.class);
+        return db.transactions.execute(status -> {
+            ConfigureEntity<Map<String, String>> entity =
+                    repository.findByModelConfigureTypeAndModelConfigureName(ConfigureType.TASK, name, legacyLookup);
+            return null == entity ? null : entity.getPrimaryCode();
+        });
+    }
+
+    @Test
+    public void rewritesLegacyValuesAndReportsConflicts() {
+        assertEquals(Arrays.asList(CodecUtils.toAscii("name0"), CodecUtils.toAscii("名字 1"), CodecUtils.toAscii("dup"),
+                CodecUtils.toCompactAscii("dup"), CodecUtils.toCompactAscii("new")), names());
+
+        AsciiColumnMigration migration = new AsciiColumnMigration(compact.entityManagerFactory, compact.transactionManager, 2, 0L, false);
+        assertEquals(2, migration.migrate());
+        // the conflicting row is left for someone to look at
+        assertFalse(migration.isFinished());
+        assertConflict(migration);
+
+        assertEquals(Arrays.asList(CodecUtils.toCompactAscii("name0"), CodecUtils.toCompactAscii("名字 1"),
+                CodecUtils.toAscii("dup"), CodecUtils.toCompactAscii("dup"), CodecUtils.toCompactAscii("new")), names());
+        assertEquals(Integer.valueOf(5), db.jdbc.queryForObject("select count(*) from base_configure_payload", Integer.class));
+        assertEquals("c3", find(compact, "dup"));
+
+        // reported again until resolved
+        assertEquals(0, migration.migrate());
+        assertConflict(migration);
+        db.jdbc.update("delete from base_configure_payload where primary_code = 'c2'");
+        db.jdbc.update("delete from base_configure where primary_code = 'c2'");
+        assertEquals(0, migration.migrate());
+        assertTrue(migration.isFinished());
+        assertTrue(migration.getConflicts().isEmpty());
+    }
+
+    @Test
+    public void removesDuplicatesWhenAskedTo() {
+        AsciiColumnMigration migration = new AsciiColumnMigration(compact.entityManagerFactory, compact.transactionManager, 2, 0L, true);
+        assertEquals(2, migration.migrate());
+        assertTrue(migration.isFinished());
+        assertConflict(migration);
+
+        assertEquals(Arrays.asList(CodecUtils.toCompactAscii("name0"), CodecUtils.toCompactAscii("名字 1"),
+                CodecUtils.toCompactAscii("dup"), CodecUtils.toCompactAscii("new")), names());
+        assertEquals(Arrays.asList("c0", "c1", "c3", "c4"),
+                db.jdbc.queryForList("select primary_code from base_configure order by primary_code", String.class));
+        // the payload of the removed duplicate went with it
+        assertEquals(Integer.valueOf(4), db.jdbc.queryForObject("select count(*) from base_configure_payload", Integer.class));
+        assertEquals("c3", find(compact, "dup"));
+
+        // nothing left to do
+        assertEquals(0, migration.migrate());
+        assertTrue(migration.getConflicts().isEmpty());
+    }
+
+    private static void assertConflict(AsciiColumnMigration migration) {
+        assertEquals(1, migration.getConflicts().size());
+        AsciiColumnMigration.Conflict conflict = migration.getConflicts().get(0);
+        assertEquals("base_configure", conflict.getTable().toLowerCase());
+        assertEquals("configure_name", conflict.getColumn().toLowerCase());
+        assertEquals("c2", conflict.getId());
+        assertEquals(Collections.singletonList("c3"), conflict.getConflictingIds());
+        assertEquals("dup", conflict.getText());
+    }
+
+    @Test
+    public void notRunWhileWritingTheLegacyForm() {
+        AsciiColumnMigration migration = new AsciiColumnMigration(db.entityManagerFactory, db.transactionManager);
+        assertEquals(0, migration.migrate());
+        assertFalse(migration.isFinished());
+        assertEquals(CodecUtils.toAscii("name0"), names().get(0));
+    }
+
+    @Test
+    public void findersLookUpBothForms() {
+        assertEquals("c0", find(compact, "name0"));
+        assertEquals("c1", find(compact, "名字 1"));
+        assertEquals("c4", find(compact, "new"));
+        // the form being written wins
+        assertEquals("c3", find(compact, "dup"));
+        assertNull(find(compact, "none"));
+
+        assertEquals("c4", find(db, "new"));
+        assertEquals("c2", find(db, "dup"));
+
+        assertNull(find(db, "new", false));
+        assertEquals("c0", find(db, "name0", false));
+        assertEquals("c3", find(compact, "dup", false));
+    }
+}
@@ -0,0 +1,35 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.dao.repo.PayloadProperties;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import com.xunkutech.base.model.component.configure.ConfigurePayloadEntity;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DynamicUpdateTest {
+
+    @Test
+    public void modelEntitiesUpdateChangedColumnsOnly() {
+        try (TestDatabase db = new TestDatabase()) {
+            SessionFactoryImplementor factory = db.entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            assertTrue(factory.getMetamodel().entityPersister(ConfigureEntity.class)
+                    .getEntityMetamodel().isDynamicUpdate());
+            assertFalse(factory.getMetamodel().entityPersister(ConfigurePayloadEntity.class)
+                    .getEntityMetamodel().isDynamicUpdate());
+        }
+    }
+
+    @Test
+    public void canBeTurnedOff() {
+        Map<String, Object> properties = new HashMap<>();
+        new BaseDaoConfiguration(PayloadProperties.DEFAULT_BATCH_SIZE, true, false, false)
+                .dynamicUpdateCustomizer().customize(properties);
+        assertFalse(properties.containsKey(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER));
+    }
+}
@@ -0,0 +1,47 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.model.util.JsonClob;
+import org.hibernate.engine.jdbc.CharacterStream;
+import org.hibernate.engine.jdbc.internal.CharacterStreamImpl;
+import org.junit.Test;
+
+import javax.sql.rowset.serial.SerialClob;
+import java.io.Reader;
+import java.sql.Clob;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JsonClobTypeTest {
+
+    @Test
+    public void streamsJsonClobs() throws Exception {
+        JsonClob clob = JsonClob.of(Collections.singletonMap("k", "值"));
+        CharacterStream stream = JsonClobType.Descriptor.INSTANCE.unwrap(clob, CharacterStream.class, null);
+        assertFalse(stream instanceof CharacterStreamImpl);
+        assertEquals(clob.length(), stream.getLength());
+        StringBuilder sb = new StringBuilder();
+        try (Reader reader = stream.asReader()) {
+            for (int c; (c = reader.read()) != -1; ) {
+                sb.append((char) c);
+            }
+        }
+        assertEquals("{\"k\":\"值\"}", sb.toString());
+        assertEquals("{\"k\":\"值\"}", stream.asString());
+    }
+
+    @Test
+    public void otherClobsAsBefore() throws Exception {
+        Clob clob = new SerialClob("{}".toCharArray());
+        CharacterStream stream = JsonClobType.Descriptor.INSTANCE.unwrap(clob, CharacterStream.class, null);
+        assertEquals("{}", stream.asString());
+        assertSame(clob, JsonClobType.Descriptor.INSTANCE.unwrap(clob, Clob.class, null));
+    }
+
+    @Test
+    public void replacesTheStockType() {
+        JsonClobType type = new JsonClobType();
+        assertEquals("clob", type.getName());
+        assertSame(JsonClobType.Descriptor.INSTANCE, type.getJavaTypeDescriptor());
+    }
+}
@@ -0,0 +1,128 @@
+package com.xunkutech.base.dao;
+
+import com.xunkutech.base.dao.repo.PayloadProperties;
+import com.xunkutech.base.model.IBaseEntity;
+import com.xunkutech.base.model.component.configure.Configure;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import com.xunkutech.base.model.enums.ConfigureType;
+import com.xunkutech.base.model.enums.EntityStatus;
+import org.hibernate.dialect.MySQL57Dialect;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory HSQLDB in MySQL mode with the configure tables of <code>schema.sql</code>, mapped
+ * with the MySQL dialect and the Hibernate properties of {@link BaseDaoConfiguration}.
+ */
+public final class TestDatabase implements AutoCloseable {
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    public final DriverManagerDataSource dataSource;
+    public final JdbcTemplate jdbc;
+    public final EntityManagerFactory entityManagerFactory;
+    public final JpaTransactionManager transactionManager;
+    public final TransactionTemplate transactions;
+
+    /**
+     * Whether {@link #close()} shuts the database down, i.e. this is not a {@link #node}.
+     */
+    private final boolean owner;
+
+    public TestDatabase() {
+        this(new BaseDaoConfiguration(PayloadProperties.DEFAULT_BATCH_SIZE, true, true, false));
+    }
+
+    public TestDatabase(BaseDaoConfiguration configuration) {
+        this(new DriverManagerDataSource("jdbc:hsqldb:mem:test" + COUNT.incrementAndGet()
+                + ";sql.syntax_mys=true", "SA", ""), configuration, true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    private TestDatabase(DriverManagerDataSource dataSource, BaseDaoConfiguration configuration, boolean owner) {
+        this.dataSource = dataSource;
+        this.owner = owner;
+        jdbc = new JdbcTemplate(dataSource);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.dialect", MySQL57Dialect.class.getName());
+        properties.put("hibernate.hbm2ddl.auto", "none");
+        for (HibernatePropertiesCustomizer customizer : new HibernatePropertiesCustomizer[]{
+                configuration.dynamicUpdateCustomizer(), configuration.compactAsciiCustomizer(),
+                configuration.payloadPropertiesCustomizer(), configuration.jsonClobTypeCustomizer()}) {
+            customizer.customize(properties);
+        }
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        // as BaseDaoConfiguration scans, for the converters
+        factory.setPackagesToScan(IBaseEntity.class.getPackage().getName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(properties);
+        factory.afterPropertiesSet();
+        entityManagerFactory = factory.getObject();
+        transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactions = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Another application node on this database, e.g. one with other settings during a rolling
+     * upgrade; closing it leaves the database up.
+     */
+    public TestDatabase node(BaseDaoConfiguration configuration) {
+        return new TestDatabase(dataSource, configuration, false);
+    }
+
+    /**
+     * A Spring Data repository over this database; its <code>@Transactional</code> defaults are
+     * not proxied, run them in {@link #transactions}.
+     */
+    public <R> R repository(Class<R> repositoryInterface) {
+        return new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(repositoryInterface);
+    }
+
+    /**
+     * The entity manager of the current transaction.
+     */
+    public EntityManager entityManager() {
+        return EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+    }
+
+    public static <P> ConfigureEntity<P> configure(String id, String name, P payload) {
+        Configure<P> model = new Configure<>();
+        model.setConfigureType(ConfigureType.TASK);
+        model.setConfigureName(name);
+        ConfigureEntity<P> entity = new ConfigureEntity<>();
+        entity.setPrimaryCode(id);
+        entity.setCreatedDate(Instant.now());
+        entity.setEntityStatus(EntityStatus.ACTIVE);
+        entity.setEnable(true);
+        entity.setModel(model);
+        entity.setPayload(payload);
+        return entity;
+    }
+
+    @Override
+    public void close() {
+        if (owner) jdbc.execute("SHUTDOWN");
+        entityManagerFactory.close();
+    }
+}
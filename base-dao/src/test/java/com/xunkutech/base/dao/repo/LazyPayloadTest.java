@@ -0,0 +1,73 @@
+package com.xunkutech.base.dao.repo;
+
+import com.xunkutech.base.dao.TestDatabase;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class LazyPayloadTest {
+
+    private TestDatabase db;
+
+    @Before
+    public void setUp() {
+        db = new TestDatabase();
+        db.transactions.execute(status -> {
+            for (int i = 0; i < 5; i++) {
+                db.entityManager().persist(TestDatabase.configure("c" + i, "name" + i, Collections.singletonMap("n", i)));
+            }
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void payloadsAreMappedAndLazy() {
+        assertEquals(Integer.valueOf(5), db.jdbc.queryForObject(
+                "select count(*) from base_configure c join base_configure_payload p on c.payloadcode = p.primary_code",
+                Integer.class));
+        db.transactions.execute(status -> {
+            ConfigureEntity<Map<String, Integer>> entity = db.entityManager().find(ConfigureEntity.class, "c1");
+            assertFalse(Hibernate.isInitialized(entity.getPayloadEntity()));
+            assertEquals("{\"n\":1}", entity.getPayloadEntity().getJsonText());
+            return null;
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void fetchesPayloadsInBatches() {
+        Statistics statistics = db.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        db.transactions.execute(status -> {
+            List<ConfigureEntity<Object>> entities = db.entityManager()
+                    .createQuery("select c from ConfigureEntity c order by c.primaryCode")
+                    .getResultList();
+            statistics.clear();
+            List<ConfigureEntity<Object>> fetched = PayloadBatches.fetch(entities.stream(), 2)
+                    .collect(Collectors.toList());
+            // 5 payloads in batches of 2
+            assertEquals(3, statistics.getPrepareStatementCount());
+            for (ConfigureEntity<Object> entity : fetched) {
+                assertTrue(Hibernate.isInitialized(entity.getPayloadEntity()));
+            }
+            assertEquals(3, statistics.getPrepareStatementCount());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.xunkutech.base.dao.repo;
+
+import com.xunkutech.base.dao.BaseDaoConfiguration;
+import com.xunkutech.base.dao.TestDatabase;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PayloadBatchesTest {
+
+    private static List<ConfigureEntity<Object>> entities(int count) {
+        List<ConfigureEntity<Object>> entities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entities.add(new ConfigureEntity<>());
+        }
+        return entities;
+    }
+
+    @Test
+    public void keepsEveryEntityInOrder() {
+        for (int count : new int[]{0, 1, 2, 3, 7}) {
+            List<ConfigureEntity<Object>> entities = entities(count);
+            List<ConfigureEntity<Object>> fetched = PayloadBatches.fetch(entities.stream(), 3)
+                    .collect(Collectors.toList());
+            assertEquals(entities.size(), fetched.size());
+            for (int i = 0; i < count; i++) {
+                assertSame(entities.get(i), fetched.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void isLazy() {
+        List<ConfigureEntity<Object>> entities = entities(10);
+        List<ConfigureEntity<Object>> pulled = new ArrayList<>();
+        List<ConfigureEntity<Object>> first = PayloadBatches.fetch(entities.stream().peek(pulled::add), 3)
+                .limit(1)
+                .collect(Collectors.toList());
+        assertEquals(1, first.size());
+        // only the first batch has been read from the source
+        assertEquals(3, pulled.size());
+    }
+
+    @Test
+    public void closesTheSource() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<ConfigureEntity<Object>> source = entities(2).stream().onClose(() -> closed.set(true));
+        try (Stream<ConfigureEntity<Object>> fetched = PayloadBatches.fetch(source, 1)) {
+            assertEquals(2, fetched.count());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBatches() {
+        PayloadBatches.fetch(entities(1).stream(), 0);
+    }
+
+    @Test
+    public void batchSizeIsConfigurable() {
+        try (TestDatabase db = new TestDatabase(new BaseDaoConfiguration(7, true, true, false))) {
+            assertEquals(7, PayloadProperties.getBatchSize(db.entityManagerFactory.unwrap(SessionFactoryImplementor.class)));
+        }
+        try (TestDatabase db = new TestDatabase()) {
+            assertEquals(PayloadProperties.DEFAULT_BATCH_SIZE,
+                    PayloadProperties.getBatchSize(db.entityManagerFactory.unwrap(SessionFactoryImplementor.class)));
+        }
+        try {
+            new BaseDaoConfiguration(0, true, true, false);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
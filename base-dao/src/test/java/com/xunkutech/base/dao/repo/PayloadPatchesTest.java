@@ -0,0 +1,96 @@
+package com.xunkutech.base.dao.repo;
+
+import com.google.gson.JsonParser;
+import com.xunkutech.base.dao.BaseDaoConfiguration;
+import com.xunkutech.base.dao.TestDatabase;
+import com.xunkutech.base.model.component.configure.ConfigureEntity;
+import com.xunkutech.base.model.util.JsonUtils;
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PayloadPatchesTest {
+
+    private static final String OLD = "2000-01-01 00:00:00";
+
+    private TestDatabase db;
+
+    /**
+     * <code>JSON_MERGE_PATCH</code> for HSQLDB.
+     */
+    public static String jsonMergePatch(String target, String patch) {
+        return JsonUtils.mergePatch(target, new JsonParser().parse(patch));
+    }
+
+    @Before
+    public void setUp() {
+        setUp(new TestDatabase());
+    }
+
+    private void setUp(TestDatabase db) {
+        this.db = db;
+        db.transactions.execute(status -> {
+            db.entityManager().persist(TestDatabase.configure("c1", "name1", Collections.singletonMap("a", 1)));
+            return null;
+        });
+        db.jdbc.update("update base_configure_payload set last_modified_time = '" + OLD + "'");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private boolean patch(String patch) {
+        return db.transactions.execute(status -> {
+            ConfigureEntity<?> entity = db.entityManager().find(ConfigureEntity.class, "c1");
+            PayloadPatches.apply(entity, new JsonParser().parse(patch));
+            return Hibernate.isInitialized(entity.getPayloadEntity());
+        });
+    }
+
+    private String jsonText() {
+        return db.jdbc.queryForObject("select json_text from base_configure_payload", String.class);
+    }
+
+    private boolean touched() {
+        return db.jdbc.queryForObject("select last_modified_time from base_configure_payload", Timestamp.class)
+                .after(Timestamp.valueOf(OLD));
+    }
+
+    @Test
+    public void fallsBackWithoutJsonMergePatch() {
+        // HSQLDB has no JSON_MERGE_PATCH: the failed update must not roll the transaction back
+        assertTrue(patch("{\"b\":2}"));
+        assertEquals("{\"a\":1,\"b\":2}", jsonText());
+        assertTrue(patch("{\"a\":null}"));
+        assertEquals("{\"b\":2}", jsonText());
+    }
+
+    @Test
+    public void patchesNatively() {
+        db.jdbc.execute("create function JSON_MERGE_PATCH(target LONGVARCHAR, patch LONGVARCHAR) returns LONGVARCHAR"
+                + " language java deterministic no sql external name 'CLASSPATH:"
+                + PayloadPatchesTest.class.getName() + ".jsonMergePatch'");
+        assertFalse(patch("{\"a\":{\"x\":1},\"b\":[2]}"));
+        assertEquals("{\"a\":{\"x\":1},\"b\":[2]}", jsonText());
+        assertTrue(touched());
+    }
+
+    @Test
+    public void nativeCanBeTurnedOff() {
+        db.close();
+        setUp(new TestDatabase(new BaseDaoConfiguration(PayloadProperties.DEFAULT_BATCH_SIZE, false, true, false)));
+        db.jdbc.execute("create function JSON_MERGE_PATCH(target LONGVARCHAR, patch LONGVARCHAR) returns LONGVARCHAR"
+                + " language java deterministic no sql external name 'CLASSPATH:"
+                + PayloadPatchesTest.class.getName() + ".jsonMergePatch'");
+        assertTrue(patch("{\"b\":2}"));
+        assertEquals("{\"a\":1,\"b\":2}", jsonText());
+    }
+}
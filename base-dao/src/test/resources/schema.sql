@@ -0,0 +1,41 @@
+-- The mapped configure and file meta tables, in HSQLDB syntax: no collations, VARCHAR keys since CHAR pads, and
+-- json_text as LONGVARCHAR, which HSQLDB hands to java functions as a String.
+create table base_configure (
+  primary_code VARCHAR(64) not null primary key,
+  created_date BIGINT not null,
+  enable TINYINT DEFAULT 1 not null,
+  entity_status TINYINT DEFAULT 0 not null,
+  last_modified_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP not null,
+  payload_type_holder VARCHAR(1022),
+  configure_name VARCHAR(2044) not null,
+  configure_type TINYINT not null,
+  payloadcode VARCHAR(64),
+  unique (configure_type, configure_name)
+);
+
+create table base_configure_payload (
+  primary_code VARCHAR(64) not null primary key,
+  created_date BIGINT not null,
+  enable TINYINT DEFAULT 1 not null,
+  entity_status TINYINT DEFAULT 0 not null,
+  last_modified_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP not null,
+  json_text LONGVARCHAR
+);
+
+create table base_file_meta (
+  primary_code VARCHAR(64) not null primary key,
+  created_date BIGINT not null,
+  enable TINYINT DEFAULT 1 not null,
+  entity_status TINYINT DEFAULT 0 not null,
+  last_modified_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP not null,
+  payload_type_holder VARCHAR(1022),
+  payload_code VARCHAR(64),
+  etag VARCHAR(28) not null,
+  hash VARCHAR(1022) not null,
+  namespace VARCHAR(1022) not null,
+  canonical_path VARCHAR(2044) not null,
+  content_type VARCHAR(254) not null,
+  origin_name VARCHAR(510),
+  unique (hash),
+  unique (namespace, canonical_path)
+);
@@ -0,0 +1,164 @@
+package com.xunkutech.base.model.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.bind.DatatypeConverter;
+import java.util.Formatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The table driven {@link CodecUtils} against the former <code>DatatypeConverter</code> and
+ * <code>Formatter</code> based implementations, kept here as <code>legacy*</code>.
+ * <pre>
+ *     mvn -Pbenchmark -pl base-model test-compile exec:exec -Djmh.args="CodecUtilsBenchmark -prof gc"
+ * </pre>
+ * At <code>size = 4096</code>, in ns/op and B/op, on JDK 1.8.0_392 and a single shared core with
+ * 5 iterations of 2s, so the error is large and only the ratios tell:
+ * <pre>
+ *                   legacy              table driven
+ *     toHex          76917     65648     14512     32824
+ *     fromHex        27354      4112     18690      4112
+ *     toBase64       15960     21912     15813     21912
+ *     fromBase64     20224      4136     24587      4112
+ *     toAscii      3067712   3105017     28520     65592
+ *     fromAscii      57325     49224     46412     16440
+ * </pre>
+ * The <code>*Into</code> variants write into reused arrays and allocate nothing, e.g.
+ * <code>toHexInto</code> takes 5779 ns/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecUtilsBenchmark {
+
+    @Param({"16", "256", "4096"})
+    int size;
+
+    byte[] bytes;
+    String hex;
+    String base64;
+    String text;
+    String ascii;
+
+    char[] chars;
+    byte[] decoded;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        bytes = new byte[size];
+        random.nextBytes(bytes);
+        hex = CodecUtils.toHex(bytes);
+        base64 = CodecUtils.toBase64(bytes);
+
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            // mostly ASCII with some CJK, as in the stored texts
+            sb.append(i % 8 == 0 ? (char) (0x4e00 + random.nextInt(0x5000)) : (char) ('a' + random.nextInt(26)));
+        }
+        text = sb.toString();
+        ascii = CodecUtils.toAscii(text);
+
+        chars = new char[size * 4];
+        decoded = new byte[size];
+    }
+
+    @Benchmark
+    public String toHex() {
+        return CodecUtils.toHex(bytes);
+    }
+
+    @Benchmark
+    public String legacyToHex() {
+        return DatatypeConverter.printHexBinary(bytes).toLowerCase();
+    }
+
+    @Benchmark
+    public int toHexInto() {
+        return CodecUtils.toHex(bytes, 0, bytes.length, chars, 0);
+    }
+
+    @Benchmark
+    public byte[] fromHex() throws CodecException {
+        return CodecUtils.fromHex(hex);
+    }
+
+    @Benchmark
+    public byte[] legacyFromHex() {
+        return DatatypeConverter.parseHexBinary(hex);
+    }
+
+    @Benchmark
+    public int fromHexInto() throws CodecException {
+        return CodecUtils.fromHex(hex, decoded, 0);
+    }
+
+    @Benchmark
+    public String toBase64() {
+        return CodecUtils.toBase64(bytes);
+    }
+
+    @Benchmark
+    public String legacyToBase64() {
+        return DatatypeConverter.printBase64Binary(bytes);
+    }
+
+    @Benchmark
+    public byte[] fromBase64() throws CodecException {
+        return CodecUtils.fromBase64(base64);
+    }
+
+    @Benchmark
+    public byte[] legacyFromBase64() {
+        return DatatypeConverter.parseBase64Binary(base64);
+    }
+
+    @Benchmark
+    public String toAscii() {
+        return CodecUtils.toAscii(text);
+    }
+
+    @Benchmark
+    public String legacyToAscii() {
+        Formatter formatter = new Formatter();
+        for (char c : text.toCharArray()) {
+            formatter.format("%04x", (int) c);
+        }
+        return formatter.toString();
+    }
+
+    @Benchmark
+    public int toAsciiInto() {
+        return CodecUtils.toAscii(text, chars, 0);
+    }
+
+    @Benchmark
+    public String fromAscii() {
+        return CodecUtils.fromAscii(ascii);
+    }
+
+    @Benchmark
+    public String legacyFromAscii() {
+        char[] in = ascii.toCharArray();
+        char[] out = new char[in.length / 4];
+        for (int i = 0, offset = 0; i < out.length; i++) {
+            int c = 0;
+            for (int j = 0; j < 4; j++) {
+                int digit = Character.digit(in[offset++], 16);
+                if (digit < 0) return null;
+                c = c * 16 + digit;
+            }
+            out[i] = (char) c;
+        }
+        return String.valueOf(out);
+    }
+
+    @Benchmark
+    public int fromAsciiInto() {
+        return CodecUtils.fromAscii(ascii, chars, 0);
+    }
+}
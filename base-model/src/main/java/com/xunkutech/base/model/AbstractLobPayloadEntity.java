@@ -0,0 +1,168 @@
+package com.xunkutech.base.model;
+
+import com.google.gson.JsonElement;
+import com.xunkutech.base.model.util.JsonClob;
+import com.xunkutech.base.model.util.JsonPaths;
+import com.xunkutech.base.model.util.JsonUtils;
+
+import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A payload entity for large payloads, mapping <code>json_text</code> as a character stream instead
+ * of a {@link String}: the payload is decoded by Gson straight from the {@link Reader} of the loaded
+ * {@link Clob}, and written back as a {@link JsonClob} encoded straight from the object graph.
+ * <p>
+ * Opt in by extending this class instead of {@link AbstractPayloadEntity}; the column is the same,
+ * and so is the handling of set and dirty payloads. {@link #getJsonText()} still works, but
+ * materializes the whole text.
+ */
+@MappedSuperclass
+public class AbstractLobPayloadEntity extends AbstractBaseEntity implements IPayloadEntity {
+
+    private static final long serialVersionUID = 3270154917395871466L;
+
+    @Transient
+    private transient Clob jsonClob;
+
+    /**
+     * Decoded from {@link #decodedClob} as {@link #decodedType}.
+     */
+    @Transient
+    private transient Object payload;
+
+    @Transient
+    private transient Clob decodedClob;
+
+    @Transient
+    private transient Type decodedType;
+
+    /**
+     * Whether {@link #payload} has been changed in place since it was decoded.
+     */
+    @Transient
+    private transient boolean payloadDirty;
+
+    @Access(AccessType.PROPERTY)
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "json_text",
+            nullable = true,
+            length = 4194303,
+            columnDefinition = "MEDIUMTEXT COLLATE 'utf8mb4_bin'")
+    public Clob getJsonClob() {
+        if (payloadDirty) {
+            jsonClob = JsonClob.of(payload);
+            decodedClob = jsonClob;
+            payloadDirty = false;
+        }
+        return jsonClob;
+    }
+
+    public void setJsonClob(Clob jsonClob) {
+        this.jsonClob = jsonClob;
+        this.payload = null;
+        this.decodedClob = null;
+        this.decodedType = null;
+        this.payloadDirty = false;
+    }
+
+    @Override
+    public String getJsonText() {
+        return JsonClob.toText(getJsonClob());
+    }
+
+    @Override
+    public void setJsonText(String jsonText) {
+        setJsonClob(null == jsonText ? null : JsonClob.ofText(jsonText));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <P> P getPayload(Type type) {
+        // identity check: any new clob, set or loaded, goes through setJsonClob
+        if (null != payload && decodedClob == jsonClob && type.equals(decodedType)) {
+            return (P) payload;
+        }
+        // a dirty payload decoded as another type is serialized first
+        Clob clob = getJsonClob();
+        P decoded = decode(clob, type);
+        this.payload = decoded;
+        this.decodedClob = clob;
+        this.decodedType = type;
+        return decoded;
+    }
+
+    @Override
+    public void setPayload(Object payload) {
+        setJsonClob(null == payload ? null : JsonClob.of(payload));
+    }
+
+    @Override
+    public void markDirty() {
+        if (null != payload) {
+            this.payloadDirty = true;
+        }
+    }
+
+    @Override
+    public <P> P detachPayload(Type type) {
+        // keeps changes already marked, the ones made from now on are the caller's
+        getJsonClob();
+        P detached = getPayload(type);
+        this.payload = null;
+        this.decodedClob = null;
+        this.decodedType = null;
+        this.payloadDirty = false;
+        return detached;
+    }
+
+    @Override
+    public Map<String, JsonElement> project(JsonPaths paths) {
+        Clob clob = getJsonClob();
+        if (null == clob) return new LinkedHashMap<>();
+        try (Reader reader = clob.getCharacterStream()) {
+            return paths.project(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void mergePatch(JsonElement patch) {
+        setJsonClob(JsonClob.mergePatch(getJsonClob(), patch));
+    }
+
+    private static <P> P decode(Clob clob, Type type) {
+        if (null == clob) return null;
+        try (Reader reader = clob.getCharacterStream()) {
+            return JsonUtils.fromJson(reader, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // a driver clob may not outlive its session, so the text goes instead
+        out.defaultWriteObject();
+        out.writeObject(getJsonText());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setJsonText((String) in.readObject());
+    }
+}
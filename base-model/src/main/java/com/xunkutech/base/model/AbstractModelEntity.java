@@ -47,11 +47,14 @@ public abstract class AbstractModelEntity<M extends AbstractModelBean<P>, P, EP
 
     /**
      * 非结构数据
+     * <p>
+     * Map it lazily, so that the json text is only loaded by {@link #getPayload()}: the join column
+     * lives on the model table, so Hibernate can hand out a proxy without touching the payload table.
      */
 /*
     //Sample
     @OneToOne(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             cascade = CascadeType.ALL
     )
     @JoinColumn(
@@ -1,28 +1,115 @@
 package com.xunkutech.base.model;
 
-import lombok.Getter;
-import lombok.Setter;
+import com.xunkutech.base.model.util.JsonUtils;
 
-import javax.persistence.Basic;
-import javax.persistence.Column;
-import javax.persistence.FetchType;
-import javax.persistence.MappedSuperclass;
+import javax.persistence.*;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
 
 /**
  * Created by jason on 7/9/17.
+ * <p>
+ * The decoded payload is memoized together with the text it was decoded from. A payload passed to
+ * {@link #setPayload(Object)} is serialized right away, so later changes the caller makes to it are
+ * not stored. Changes made in place to the memoized payload are stored after {@link #markDirty()}:
+ * it is serialized once, the next time the text is read, which JPA does at flush through the
+ * property accessor of <code>json_text</code>.
  */
 @MappedSuperclass
 public class AbstractPayloadEntity extends AbstractBaseEntity implements IPayloadEntity {
 
     private static final long serialVersionUID = -2012639139309337528L;
 
-    @Getter
-    @Setter
+    @Transient
+    private String jsonText;
+
+    /**
+     * Decoded from {@link #decodedText} as {@link #decodedType}.
+     */
+    @Transient
+    private transient Object payload;
+
+    @Transient
+    private transient String decodedText;
+
+    @Transient
+    private transient Type decodedType;
+
+    /**
+     * Whether {@link #payload} has been changed in place since it was decoded.
+     */
+    @Transient
+    private transient boolean payloadDirty;
+
+    @Access(AccessType.PROPERTY)
     @Basic(fetch = FetchType.LAZY)
     @Column(name = "json_text",
             nullable = true,
             length = 4194303,
             columnDefinition = "MEDIUMTEXT COLLATE 'utf8mb4_bin'")
-    private String jsonText;
+    @Override
+    public String getJsonText() {
+        if (payloadDirty) {
+            jsonText = JsonUtils.toJson(payload);
+            decodedText = jsonText;
+            payloadDirty = false;
+        }
+        return jsonText;
+    }
+
+    @Override
+    public void setJsonText(String jsonText) {
+        this.jsonText = jsonText;
+        this.payload = null;
+        this.decodedText = null;
+        this.decodedType = null;
+        this.payloadDirty = false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <P> P getPayload(Type type) {
+        // identity check: any new text, set or loaded, goes through setJsonText
+        if (null != payload && decodedText == jsonText && type.equals(decodedType)) {
+            return (P) payload;
+        }
+        // a dirty payload decoded as another type is serialized first
+        String text = getJsonText();
+        P decoded = JsonUtils.fromJson(text, type);
+        this.payload = decoded;
+        this.decodedText = text;
+        this.decodedType = type;
+        return decoded;
+    }
+
+    @Override
+    public void setPayload(Object payload) {
+        setJsonText(JsonUtils.toJson(payload));
+    }
+
+    @Override
+    public void markDirty() {
+        if (null != payload) {
+            this.payloadDirty = true;
+        }
+    }
+
+    @Override
+    public <P> P detachPayload(Type type) {
+        // keeps changes already marked, the ones made from now on are the caller's
+        getJsonText();
+        P detached = getPayload(type);
+        this.payload = null;
+        this.decodedText = null;
+        this.decodedType = null;
+        this.payloadDirty = false;
+        return detached;
+    }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the memoized payload is transient, its text is not
+        getJsonText();
+        out.defaultWriteObject();
+    }
 }
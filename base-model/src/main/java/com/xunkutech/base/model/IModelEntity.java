@@ -1,10 +1,13 @@
 package com.xunkutech.base.model;
 
+import com.google.gson.JsonElement;
 import com.xunkutech.base.model.util.ClassUtils;
-import com.xunkutech.base.model.util.JsonUtils;
+import com.xunkutech.base.model.util.JsonPaths;
 import com.xunkutech.base.model.util.TypeHolder;
 
 import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Created by jason on 7/16/17.
@@ -92,10 +95,9 @@ public interface IModelEntity<
             return payloadType;
         }
 
-        // Try TypeHolder
-        TypeHolder typeHolder = JsonUtils.fromJson(getPayloadTypeHolder(), TypeHolder.class);
-        if (null != typeHolder) {
-            payloadType = typeHolder.getType();
+        // Try TypeHolder, interned per distinct holder string
+        payloadType = TypeHolder.typeFromJson(getPayloadTypeHolder());
+        if (null != payloadType) {
             setPayloadType(payloadType);
             return payloadType;
         }
@@ -106,10 +108,15 @@ public interface IModelEntity<
     default M detach() {
         M model = getModel();
         model.setEntityCode(getPrimaryCode());
-        model.setPayload(getPayload());
+        model.setPayload(detachPayload());
         return model;
     }
 
+    /**
+     * The payload decoded from the payload entity, memoized until its json text changes. The result
+     * is shared with later calls; after changing it in place, call {@link #markPayloadDirty()} to
+     * have it written with the payload entity.
+     */
     default P getPayload() {
         Class<EP> payloadEntityClass = resolvePayloadEntityClass();
         if (NonPersistent.class.isAssignableFrom(payloadEntityClass)) return null;
@@ -117,9 +124,60 @@ public interface IModelEntity<
         if (null == getPayloadEntity()) return null;
         Type payloadType = resolvePayloadType();
         if (null == payloadType) return null;
-        return JsonUtils.fromJson(getPayloadEntity().getJsonText(), payloadType);
+        return getPayloadEntity().getPayload(payloadType);
+    }
+
+    /**
+     * Marks the payload returned by {@link #getPayload()} as changed in place, see
+     * {@link IPayloadEntity#markDirty()}.
+     */
+    default void markPayloadDirty() {
+        if (null != getPayloadEntity()) {
+            getPayloadEntity().markDirty();
+        }
+    }
+
+    /**
+     * Like {@link #getPayload()}, but the memoized payload is handed to the caller and no longer
+     * shared with this entity.
+     */
+    default P detachPayload() {
+        Class<EP> payloadEntityClass = resolvePayloadEntityClass();
+        if (NonPersistent.class.isAssignableFrom(payloadEntityClass)) return null;
+
+        if (null == getPayloadEntity()) return null;
+        Type payloadType = resolvePayloadType();
+        if (null == payloadType) return null;
+        return getPayloadEntity().detachPayload(payloadType);
     }
 
+    /**
+     * Only the payload values at <code>paths</code>, e.g. a status inside a large payload, read in
+     * one pass over the stored json without decoding the payload.
+     */
+    default Map<String, JsonElement> projectPayload(JsonPaths paths) {
+        Class<EP> payloadEntityClass = resolvePayloadEntityClass();
+        if (NonPersistent.class.isAssignableFrom(payloadEntityClass)) return new LinkedHashMap<>();
+
+        if (null == getPayloadEntity()) return new LinkedHashMap<>();
+        return getPayloadEntity().project(paths);
+    }
+
+    /**
+     * Applies an RFC 7386 json merge patch to the stored payload json instead of decoding, changing
+     * and re-encoding the payload; a missing payload entity is created.
+     */
+    default void mergePatchPayload(JsonElement patch) {
+        Class<EP> payloadEntityClass = resolvePayloadEntityClass();
+        if (NonPersistent.class.isAssignableFrom(payloadEntityClass)) return;
+
+        EP payloadEntity = getPayloadEntity();
+        if (null == payloadEntity) {
+            payloadEntity = IPayloadEntity.newEntity(payloadEntityClass, getPrimaryCode());
+            setPayloadEntity(payloadEntity);
+        }
+        payloadEntity.mergePatch(patch);
+    }
 
     default void setPayload(P payload) {
         Class<EP> payloadEntityClass = resolvePayloadEntityClass();
@@ -137,7 +195,7 @@ public interface IModelEntity<
             }
 
             setPayloadType(payloadType);
-            setPayloadTypeHolder(TypeHolder.fromType(payloadType).toJson());
+            setPayloadTypeHolder(TypeHolder.jsonFromType(payloadType));
         }
 
         if (null == payload) {
@@ -152,7 +210,8 @@ public interface IModelEntity<
             setPayloadEntity(payloadEntity);
         }
 
-        payloadEntity.setJsonText(JsonUtils.toJson(payload));
+        // serialized right away, later changes to payload are not stored
+        payloadEntity.setPayload(payload);
     }
 
 }
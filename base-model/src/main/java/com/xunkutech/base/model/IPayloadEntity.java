@@ -1,9 +1,14 @@
 package com.xunkutech.base.model;
 
+import com.google.gson.JsonElement;
 import com.xunkutech.base.model.enums.EntityStatus;
+import com.xunkutech.base.model.util.JsonPaths;
+import com.xunkutech.base.model.util.JsonUtils;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
 import java.time.Instant;
+import java.util.Map;
 
 public interface IPayloadEntity extends IBaseEntity {
 
@@ -11,6 +16,55 @@ public interface IPayloadEntity extends IBaseEntity {
 
     void setJsonText(String jsonText);
 
+    /**
+     * The payload decoded from {@link #getJsonText()}. Implementations may memoize it until the
+     * text changes, so the result is shared; changes made to it in place are only written back
+     * after {@link #markDirty()}.
+     */
+    default <P> P getPayload(Type type) {
+        return JsonUtils.fromJson(getJsonText(), type);
+    }
+
+    /**
+     * Replaces the payload with a snapshot of <code>payload</code>: later changes to it are not
+     * stored unless it is set again.
+     */
+    default void setPayload(Object payload) {
+        setJsonText(JsonUtils.toJson(payload));
+    }
+
+    /**
+     * Marks the memoized payload as changed in place: it is serialized once, the next time the text
+     * is read, at the latest when the entity is flushed. Implementations that do not memoize the
+     * payload ignore it; pass the changed payload to {@link #setPayload(Object)} instead.
+     */
+    default void markDirty() {
+    }
+
+    /**
+     * Like {@link #getPayload(Type)}, but the caller owns the result: a memoized payload is handed
+     * over and forgotten, so later changes to it do not leak back into this entity.
+     */
+    default <P> P detachPayload(Type type) {
+        return getPayload(type);
+    }
+
+    /**
+     * Only the values at <code>paths</code>, streamed from the stored json without decoding the
+     * payload, see {@link JsonPaths#project(String)}.
+     */
+    default Map<String, JsonElement> project(JsonPaths paths) {
+        return paths.project(getJsonText());
+    }
+
+    /**
+     * Applies an RFC 7386 json merge patch to the stored json, see
+     * {@link JsonUtils#mergePatch(String, JsonElement)}; a dirty payload is serialized first.
+     */
+    default void mergePatch(JsonElement patch) {
+        setJsonText(JsonUtils.mergePatch(getJsonText(), patch));
+    }
+
 
     @SuppressWarnings("unchecked")
     static <EP extends IPayloadEntity>
@@ -0,0 +1,20 @@
+package com.xunkutech.base.model.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Generate a streaming Gson TypeAdapter for this bean at compile time, so JsonUtils.GSON
+ * does not go through reflection for it.
+ * <p>
+ * The adapter is named <code>Outer_Bean_GsonAdapter</code> in the bean's package and follows the
+ * same field rules as JsonUtils: transient/static fields and fields with JPA @Transient or
+ * @OneToMany are skipped, @SerializedName and field level @JsonAdapter are honored.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface GsonAdapter {
+}
@@ -1,7 +1,7 @@
 package com.xunkutech.base.model.component.configure;
 
 import com.xunkutech.base.model.AbstractModelBean;
-import com.xunkutech.base.model.converter.NativeStringAsciiConverter;
+import com.xunkutech.base.model.converter.CompactStringAsciiConverter;
 import com.xunkutech.base.model.enums.ConfigureType;
 import lombok.Getter;
 import lombok.Setter;
@@ -29,7 +29,7 @@ public class Configure<P> extends AbstractModelBean<P> {
             updatable = false,
             length = 2044,
             columnDefinition = "VARCHAR(2044) COLLATE 'ascii_bin'")
-    @Convert(converter = NativeStringAsciiConverter.class)
+    @Convert(converter = CompactStringAsciiConverter.class)
     private String configureName;
 
 }
@@ -26,9 +26,13 @@ public class ConfigureEntity<P>
 
     /**
      * 元信息，保存到外部表
+     * <p>
+     * Lazy: listing queries do not load json text; see ModelEntityRepository#fetchPayloads for batches.
+     * Mapped on the getter, which the class level field access would otherwise ignore.
      */
+    @Access(AccessType.PROPERTY)
     @OneToOne(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             cascade = CascadeType.ALL,
             targetEntity = ConfigurePayloadEntity.class
     )
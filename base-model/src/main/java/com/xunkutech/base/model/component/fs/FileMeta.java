@@ -1,7 +1,8 @@
 package com.xunkutech.base.model.component.fs;
 
 import com.xunkutech.base.model.AbstractModelBean;
-import com.xunkutech.base.model.converter.NativeStringAsciiConverter;
+import com.xunkutech.base.model.annotation.GsonAdapter;
+import com.xunkutech.base.model.converter.CompactStringAsciiConverter;
 import com.xunkutech.base.model.util.CodecUtils;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,6 +16,7 @@ import java.security.NoSuchAlgorithmException;
 @Getter
 @Setter
 @Embeddable
+@GsonAdapter
 public class FileMeta extends AbstractModelBean<Void> {
 
     public static String calHash(String namespace, String canonicalPath) {
@@ -46,14 +48,14 @@ public class FileMeta extends AbstractModelBean<Void> {
             nullable = false,
             length = 1022,
             columnDefinition = "VARCHAR(1022) COLLATE 'ascii_bin'")
-    @Convert(converter = NativeStringAsciiConverter.class)
+    @Convert(converter = CompactStringAsciiConverter.class)
     private String namespace;
 
     @Column(name = "canonical_path",
             nullable = false,
             length = 2044,
             columnDefinition = "VARCHAR(2044) COLLATE 'ascii_bin'")
-    @Convert(converter = NativeStringAsciiConverter.class)
+    @Convert(converter = CompactStringAsciiConverter.class)
     private String canonicalPath;
 
     @Column(name = "content_type",
@@ -65,7 +67,7 @@ public class FileMeta extends AbstractModelBean<Void> {
     @Column(name = "origin_name",
             length = 510,
             columnDefinition = "VARCHAR(510) COLLATE 'ascii_bin'")
-    @Convert(converter = NativeStringAsciiConverter.class)
+    @Convert(converter = CompactStringAsciiConverter.class)
     private String originName;
 
 }
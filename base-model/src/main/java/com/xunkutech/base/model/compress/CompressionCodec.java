@@ -0,0 +1,35 @@
+package com.xunkutech.base.model.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression format for stored values.
+ * <p>
+ * Every value starts with the codec's {@link #id()} byte, so {@link CompressionCodecs#decompress(InputStream)}
+ * can read columns that mix codecs. Gzip uses its own magic byte <code>0x1f</code> as id, which keeps
+ * values written before the codec header existed readable.
+ * <p>
+ * Implementations are looked up by id in {@link CompressionCodecs}; additional codecs can be
+ * registered there or through <code>META-INF/services/com.xunkutech.base.model.compress.CompressionCodec</code>.
+ * Ids below <code>0x20</code> are reserved for the built-in codecs.
+ */
+public interface CompressionCodec {
+
+    byte id();
+
+    String name();
+
+    /**
+     * Returns a stream that writes the id byte followed by the compressed form of everything written
+     * to it. Closing it completes the value and closes <code>out</code>.
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Returns the decompressed view of <code>in</code>, which is positioned right after the id byte.
+     * Closing it closes <code>in</code>.
+     */
+    InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.xunkutech.base.model.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ServiceLoader;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Built-in codecs and the id registry used to decode stored values.
+ */
+public abstract class CompressionCodecs {
+
+    public static final CompressionCodec GZIP = new GzipCodec(Deflater.DEFAULT_COMPRESSION);
+
+    public static final CompressionCodec DEFLATE = new DeflateCodec(Deflater.DEFAULT_COMPRESSION);
+
+    public static final CompressionCodec DEFLATE_FAST = new DeflateCodec(Deflater.BEST_SPEED);
+
+    public static final CompressionCodec LZ = new LzCodec();
+
+    private static final CompressionCodec[] CODECS = new CompressionCodec[256];
+
+    static {
+        register(GZIP);
+        register(DEFLATE);
+        register(LZ);
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+            register(codec);
+        }
+    }
+
+    public static CompressionCodec gzip(int level) {
+        return new GzipCodec(level);
+    }
+
+    public static CompressionCodec deflate(int level) {
+        return new DeflateCodec(level);
+    }
+
+    /**
+     * Makes <code>codec</code> the decoder for values starting with its id. Codecs that only differ in
+     * parameters the decoder does not need, such as the deflate level, share one registration.
+     */
+    public static synchronized void register(CompressionCodec codec) {
+        int id = codec.id() & 0xff;
+        CompressionCodec existing = CODECS[id];
+        if (null != existing && existing.getClass() != codec.getClass()) {
+            throw new IllegalStateException("Codec id 0x" + Integer.toHexString(id) + " of " + codec.name()
+                    + " is already used by " + existing.name());
+        }
+        if (null == existing) {
+            CODECS[id] = codec;
+        }
+    }
+
+    public static CompressionCodec forId(byte id) {
+        return CODECS[id & 0xff];
+    }
+
+    /**
+     * Reads the id byte and returns the decompressed rest of <code>in</code>; closing the result
+     * closes <code>in</code>.
+     *
+     * @throws ZipException if the value is empty or written by an unknown codec
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        int id = in.read();
+        if (id < 0) throw new ZipException("Empty compressed value");
+        CompressionCodec codec = CODECS[id];
+        if (null == codec) throw new ZipException("Unknown compression codec 0x" + Integer.toHexString(id));
+        return codec.decompress(in);
+    }
+
+    public static byte[] compress(byte[] value, CompressionCodec codec) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(32, value.length / 2));
+        try (OutputStream out = codec.compress(baos)) {
+            out.write(value);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] value) throws ZipException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(value.length * 2);
+        try (InputStream in = decompress(new ByteArrayInputStream(value))) {
+            byte[] buf = new byte[DeflateCodec.BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buf)) != -1) {
+                baos.write(buf, 0, count);
+            }
+        } catch (ZipException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return baos.toByteArray();
+    }
+}
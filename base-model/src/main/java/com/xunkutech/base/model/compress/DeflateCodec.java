@@ -0,0 +1,131 @@
+package com.xunkutech.base.model.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Raw deflate (no zlib or gzip framing) behind the id byte, at a configurable level.
+ * <p>
+ * {@link Deflater}s and {@link Inflater}s hold native zlib state that is expensive to set up and is
+ * otherwise only freed by the finalizer, so they are pooled per level and reset between values.
+ * {@link GzipCodec} shares the pools.
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    public static final byte ID = 0x01;
+
+    static final int BUFFER_SIZE = 2048;
+
+    /**
+     * Indexed by level + 1, from {@link Deflater#DEFAULT_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    private static final List<Pool<Deflater>> DEFLATERS = new ArrayList<>(11);
+
+    static {
+        for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            int l = level;
+            DEFLATERS.add(new Pool<>(Pool.DEFAULT_CAPACITY, () -> new Deflater(l, true), Deflater::end));
+        }
+    }
+
+    static final Pool<Inflater> INFLATERS = new Pool<>(Pool.DEFAULT_CAPACITY, () -> new Inflater(true), Inflater::end);
+
+    private final int level;
+
+    /**
+     * @param level {@link Deflater#DEFAULT_COMPRESSION} or 0 (stored) to 9 (best)
+     */
+    public DeflateCodec(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid deflate level: " + level);
+        }
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        out.write(ID);
+        return new PooledDeflaterOutputStream(out, deflaters(level));
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new PooledInflaterInputStream(in);
+    }
+
+    static Pool<Deflater> deflaters(int level) {
+        return DEFLATERS.get(level + 1);
+    }
+
+    // ------------------------------------------
+
+    /**
+     * Returns its deflater to the pool once, on close.
+     */
+    static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+        private final Pool<Deflater> pool;
+        private boolean closed;
+
+        PooledDeflaterOutputStream(OutputStream out, Pool<Deflater> pool) {
+            super(out, pool.acquire(), BUFFER_SIZE);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                finish();
+                out.close();
+            } finally {
+                def.reset();
+                pool.release(def);
+            }
+        }
+    }
+
+    /**
+     * Returns its inflater to the pool once, on close.
+     */
+    static class PooledInflaterInputStream extends InflaterInputStream {
+        private boolean closed;
+
+        PooledInflaterInputStream(InputStream in) {
+            super(in, INFLATERS.acquire(), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                inf.reset();
+                INFLATERS.release(inf);
+            }
+        }
+    }
+}
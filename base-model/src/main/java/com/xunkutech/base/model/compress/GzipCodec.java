@@ -0,0 +1,164 @@
+package com.xunkutech.base.model.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Single member gzip (RFC 1952), the format {@link java.util.zip.GZIPOutputStream} writes, on pooled
+ * deflaters. The gzip magic doubles as the codec id, so values compressed before codecs existed
+ * decode unchanged, and at the default level the output is byte for byte what the JDK produces.
+ */
+public class GzipCodec implements CompressionCodec {
+
+    public static final byte ID = 0x1f;
+
+    private static final int MAGIC_2 = 0x8b;
+    private static final int CM_DEFLATE = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final byte[] HEADER = {ID, (byte) MAGIC_2, CM_DEFLATE, 0, 0, 0, 0, 0, 0, 0};
+
+    private final int level;
+
+    public GzipCodec(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid gzip level: " + level);
+        }
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "gzip";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        out.write(HEADER);
+        return new GzipOutputStream(out, DeflateCodec.deflaters(level));
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new GzipInputStream(in);
+    }
+
+    // ------------------------------------------
+
+    private static class GzipOutputStream extends DeflateCodec.PooledDeflaterOutputStream {
+        private final CRC32 crc = new CRC32();
+
+        GzipOutputStream(OutputStream out, Pool<Deflater> pool) {
+            super(out, pool);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (def.finished()) return;
+            super.finish();
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+
+        private void writeInt(int v) throws IOException {
+            out.write(v);
+            out.write(v >>> 8);
+            out.write(v >>> 16);
+            out.write(v >>> 24);
+        }
+    }
+
+    private static class GzipInputStream extends DeflateCodec.PooledInflaterInputStream {
+        private final CRC32 crc = new CRC32();
+        private boolean eos;
+
+        /**
+         * Reads the rest of the header; the first magic byte has been consumed as the codec id.
+         */
+        GzipInputStream(InputStream in) throws IOException {
+            super(in);
+            try {
+                if (readByte() != MAGIC_2) throw new ZipException("Not in GZIP format");
+                if (readByte() != CM_DEFLATE) throw new ZipException("Unsupported compression method");
+                int flags = readByte();
+                skip(in, 6);
+                if ((flags & FEXTRA) != 0) skip(in, readByte() | readByte() << 8);
+                if ((flags & FNAME) != 0) while (readByte() != 0) ;
+                if ((flags & FCOMMENT) != 0) while (readByte() != 0) ;
+                if ((flags & FHCRC) != 0) skip(in, 2);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (eos) return -1;
+            int n = super.read(buf, off, len);
+            if (n == -1) {
+                readTrailer();
+                eos = true;
+            } else {
+                crc.update(buf, off, n);
+            }
+            return n;
+        }
+
+        /**
+         * The inflater may already have pulled (part of) the trailer into the input buffer.
+         */
+        private void readTrailer() throws IOException {
+            int remaining = inf.getRemaining();
+            long expectedCrc = 0;
+            long expectedSize = 0;
+            for (int i = 0; i < 8; i++) {
+                long b = remaining > 0 ? buf[len - remaining--] & 0xff : readByte();
+                if (i < 4) {
+                    expectedCrc |= b << (i * 8);
+                } else {
+                    expectedSize |= b << ((i - 4) * 8);
+                }
+            }
+            if (expectedCrc != crc.getValue() || expectedSize != (inf.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            return b;
+        }
+
+        private static void skip(InputStream in, int n) throws IOException {
+            while (n-- > 0) {
+                if (in.read() < 0) throw new EOFException();
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.xunkutech.base.model.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Fast pure Java LZ77 codec using the LZ4 block encoding: greedy matching over a 4 byte hash, no
+ * entropy coding. Compresses json several times faster than deflate at a somewhat lower ratio,
+ * which suits hot columns that are read and rewritten often.
+ * <p>
+ * After the id byte the value is a sequence of blocks of at most 64K input each:
+ * <pre>
+ * varint rawLength (0 ends the value), varint storedLength, storedLength bytes
+ * </pre>
+ * A block whose <code>storedLength</code> equals <code>rawLength</code> did not compress and is stored as is.
+ */
+public class LzCodec implements CompressionCodec {
+
+    public static final byte ID = 0x02;
+
+    static final int MAX_BLOCK = 1 << 16;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "lz";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        out.write(ID);
+        return new LzOutputStream(out);
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) {
+        return new LzInputStream(in);
+    }
+
+    // ------------------------------------------
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses <code>src[srcOff, srcOff + srcLen)</code> into <code>dst</code>, which must have
+     * room for {@link #maxCompressedLength(int)} bytes, and returns the compressed length.
+     */
+    static int compressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int end = srcOff + srcLen;
+        int anchor = srcOff;
+        int op = dstOff;
+
+        if (srcLen >= MF_LIMIT + 1) {
+            int[] table = HASH_TABLE.get();
+            Arrays.fill(table, -1);
+            int mfLimit = end - MF_LIMIT;
+            int matchLimit = end - LAST_LITERALS;
+            int ip = srcOff;
+            int searches = 1 << SKIP_TRIGGER;
+
+            while (ip < mfLimit) {
+                int seq = readInt(src, ip);
+                int h = hash(seq);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    // Step faster through data that does not match.
+                    ip += searches++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                searches = 1 << SKIP_TRIGGER;
+
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+                if (ip < mfLimit) {
+                    table[hash(readInt(src, ip - 2))] = ip - 2;
+                }
+            }
+        }
+        return writeSequence(src, anchor, end - anchor, dst, op, 0, 0);
+    }
+
+    /**
+     * Decompresses a whole block into <code>dst</code> and returns the number of bytes produced.
+     */
+    static int decompressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen)
+            throws ZipException {
+        int ip = srcOff;
+        int end = srcOff + srcLen;
+        int op = dstOff;
+        int dstEnd = dstOff + dstLen;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                if (literals > end - ip || literals > dstEnd - op) throw new ZipException("Malformed LZ block");
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == end) {
+                    return op - dstOff;
+                }
+
+                int offset = src[ip++] & 0xff | (src[ip++] & 0xff) << 8;
+                int matchLength = token & 0x0f;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || matchLength > dstEnd - op) {
+                    throw new ZipException("Malformed LZ block");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ZipException("Truncated LZ block");
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOff, int literals, byte[] dst, int op,
+                                     int offset, int matchLength) {
+        int tokenPos = op++;
+        int token = Math.min(literals, 15) << 4;
+        if (literals >= 15) {
+            op = writeLength(dst, op, literals - 15);
+        }
+        System.arraycopy(src, literalOff, dst, op, literals);
+        op += literals;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int m = matchLength - MIN_MATCH;
+            token |= Math.min(m, 15);
+            if (m >= 15) {
+                op = writeLength(dst, op, m - 15);
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return b[i] & 0xff | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | b[i + 3] << 24;
+    }
+
+    private static int hash(int seq) {
+        return seq * -1640531535 >>> (32 - HASH_LOG);
+    }
+
+    // ------------------------------------------
+
+    private static class LzOutputStream extends OutputStream {
+        private final OutputStream out;
+        private byte[] block = new byte[1024];
+        private int count;
+        private boolean closed;
+
+        LzOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == block.length) makeRoom();
+            block[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == block.length) makeRoom();
+                int n = Math.min(len, block.length - count);
+                System.arraycopy(b, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Grows the block up to {@link #MAX_BLOCK}, so small values never allocate the full size.
+         */
+        private void makeRoom() throws IOException {
+            if (block.length < MAX_BLOCK) {
+                block = Arrays.copyOf(block, Math.min(block.length * 2, MAX_BLOCK));
+            } else {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (count == 0) return;
+            byte[] compressed = new byte[maxCompressedLength(count)];
+            int length = compressBlock(block, 0, count, compressed, 0);
+            writeVarint(out, count);
+            if (length < count) {
+                writeVarint(out, length);
+                out.write(compressed, 0, length);
+            } else {
+                writeVarint(out, count);
+                out.write(block, 0, count);
+            }
+            count = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            writeBlock();
+            writeVarint(out, 0);
+            out.close();
+        }
+    }
+
+    private static class LzInputStream extends InputStream {
+        private final InputStream in;
+        private byte[] stored = new byte[0];
+        private byte[] raw = new byte[0];
+        private int pos;
+        private int limit;
+        private boolean eos;
+
+        LzInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == limit && !nextBlock()) return -1;
+            return raw[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (pos == limit && !nextBlock()) return -1;
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(raw, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - pos;
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (eos) return false;
+            int rawLength = readVarint(in);
+            if (rawLength == 0) {
+                eos = true;
+                return false;
+            }
+            int storedLength = readVarint(in);
+            if (rawLength > MAX_BLOCK || storedLength > rawLength) throw new ZipException("Malformed LZ stream");
+            if (raw.length < rawLength) raw = new byte[rawLength];
+            if (storedLength == rawLength) {
+                readFully(in, raw, rawLength);
+            } else {
+                if (stored.length < storedLength) stored = new byte[storedLength];
+                readFully(in, stored, storedLength);
+                if (decompressBlock(stored, 0, storedLength, raw, 0, rawLength) != rawLength) {
+                    throw new ZipException("Malformed LZ block");
+                }
+            }
+            pos = 0;
+            limit = rawLength;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeVarint(OutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.write(v & 0x7f | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new ZipException("Malformed LZ length");
+    }
+
+    private static void readFully(InputStream in, byte[] b, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            int n = in.read(b, off, len - off);
+            if (n < 0) throw new EOFException();
+            off += n;
+        }
+    }
+}
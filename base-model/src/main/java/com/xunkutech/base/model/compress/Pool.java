@@ -0,0 +1,39 @@
+package com.xunkutech.base.model.compress;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of idle instances; acquiring never blocks, it creates a new instance when the pool
+ * is empty, and instances released into a full pool are disposed.
+ */
+final class Pool<T> {
+
+    static final int DEFAULT_CAPACITY = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final BlockingQueue<T> idle;
+    private final Supplier<T> factory;
+    private final Consumer<T> disposer;
+
+    Pool(int capacity, Supplier<T> factory, Consumer<T> disposer) {
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+        this.disposer = disposer;
+    }
+
+    T acquire() {
+        T instance = idle.poll();
+        return null == instance ? factory.get() : instance;
+    }
+
+    /**
+     * The caller must have reset the instance and must not use it afterwards.
+     */
+    void release(T instance) {
+        if (!idle.offer(instance)) {
+            disposer.accept(instance);
+        }
+    }
+}
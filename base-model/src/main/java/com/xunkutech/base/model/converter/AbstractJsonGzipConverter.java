@@ -1,5 +1,7 @@
 package com.xunkutech.base.model.converter;
 
+import com.xunkutech.base.model.compress.CompressionCodec;
+import com.xunkutech.base.model.compress.CompressionCodecs;
 import com.xunkutech.base.model.util.JsonUtils;
 
 import javax.persistence.AttributeConverter;
@@ -7,14 +9,28 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
 /**
+ * Stores the attribute as compressed json; gzip unless {@link #codec()} is overridden.
+ * <p>
+ * Each value starts with its codec id and is decoded accordingly, so a column can be switched
+ * to another codec without migrating existing rows first.
+ * <p>
  * Created by Jason on 5/17/2017.
  */
 public abstract class AbstractJsonGzipConverter<T>
         implements AttributeConverter<T, byte[]> {
 
+    /**
+     * Codec for newly written values, override to choose one per attribute, e.g.
+     * {@link CompressionCodecs#LZ} for a hot column or <code>CompressionCodecs.deflate(9)</code>
+     * for archive data.
+     */
+    protected CompressionCodec codec() {
+        return CompressionCodecs.GZIP;
+    }
+
     @Override
     public byte[] convertToDatabaseColumn(T attribute) {
-        return (null == attribute) ? null : JsonUtils.toGzip(attribute);
+        return (null == attribute) ? null : JsonUtils.toCompressed(attribute, codec());
     }
 
     @Override
@@ -25,7 +41,7 @@ public abstract class AbstractJsonGzipConverter<T>
                 throw new RuntimeException("Missing type parameter.");
             }
             ParameterizedType parameterizedType = (ParameterizedType) superclass;
-            return JsonUtils.fromGzip(dbData, parameterizedType.getActualTypeArguments()[0]);
+            return JsonUtils.fromCompressed(dbData, parameterizedType.getActualTypeArguments()[0]);
         }
         return null;
     }
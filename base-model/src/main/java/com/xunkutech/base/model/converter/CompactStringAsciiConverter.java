@@ -0,0 +1,50 @@
+package com.xunkutech.base.model.converter;
+
+import com.xunkutech.base.model.util.CodecUtils;
+
+/**
+ * Stores strings in the compact ascii form of {@link CodecUtils#toCompactAscii(String)}: one byte
+ * per plain ASCII char instead of the four of {@link NativeStringAsciiConverter}, in the same
+ * <code>ascii_bin</code> order.
+ * <p>
+ * Both forms are always read, but the compact one is only written with
+ * <code>ascii.compact-write=true</code>. For a rolling upgrade, deploy with the default first, so
+ * nodes still on the old converter never meet a compact value, then turn it on everywhere and run
+ * <code>AsciiColumnMigration</code>.
+ */
+public class CompactStringAsciiConverter implements AsciiAttributeConverter<String> {
+
+    private boolean compactWrite;
+
+    public CompactStringAsciiConverter() {
+    }
+
+    public CompactStringAsciiConverter(boolean compactWrite) {
+        this.compactWrite = compactWrite;
+    }
+
+    /**
+     * <code>ascii.compact-write</code>: whether values are written in the compact form.
+     */
+    public boolean isCompactWrite() {
+        return compactWrite;
+    }
+
+    /**
+     * JPA creates the converters, one per mapped attribute, so base-dao sets the Spring property on
+     * the instances of a persistence unit while it is bootstrapped, before they are used.
+     */
+    public void setCompactWrite(boolean compactWrite) {
+        this.compactWrite = compactWrite;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return compactWrite ? CodecUtils.toCompactAscii(attribute) : CodecUtils.toAscii(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return CodecUtils.isCompactAscii(dbData) ? CodecUtils.fromCompactAscii(dbData) : CodecUtils.fromAscii(dbData);
+    }
+}
@@ -0,0 +1,169 @@
+package com.xunkutech.base.model.converter;
+
+import com.xunkutech.base.model.util.CodecUtils;
+
+import java.util.*;
+
+/**
+ * Joins and splits the comma separated columns of the list, array and map converters in one pass,
+ * into outputs sized from the input up front.
+ * <p>
+ * The column format is unchanged: <code>null</code> items are written as <code>null</code>, which
+ * decodes back to <code>null</code> from the ascii form, and trailing empty items are dropped when
+ * splitting, as {@link String#split(String)} did.
+ */
+final class DelimitedColumns {
+
+    static final char ITEM = ',';
+    static final char ENTRY = ':';
+
+    private static final String NULL = "null";
+
+    private DelimitedColumns() {
+    }
+
+    static String join(String[] items) {
+        int length = items.length - 1;
+        for (String item : items) {
+            length += null == item ? NULL.length() : item.length();
+        }
+        char[] out = new char[length];
+        int offset = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) out[offset++] = ITEM;
+            String item = null == items[i] ? NULL : items[i];
+            item.getChars(0, item.length(), out, offset);
+            offset += item.length();
+        }
+        return new String(out);
+    }
+
+    static String joinAscii(Collection<String> items) {
+        int length = items.size() - 1;
+        for (String item : items) {
+            length += asciiLength(item);
+        }
+        char[] out = new char[length];
+        int offset = 0;
+        boolean first = true;
+        for (String item : items) {
+            if (!first) out[offset++] = ITEM;
+            first = false;
+            offset = putAscii(item, out, offset);
+        }
+        return new String(out);
+    }
+
+    static String joinAscii(Map<String, String> entries) {
+        int length = entries.size() * 2 - 1;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            length += asciiLength(entry.getKey()) + asciiLength(entry.getValue());
+        }
+        char[] out = new char[length];
+        int offset = 0;
+        boolean first = true;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!first) out[offset++] = ITEM;
+            first = false;
+            offset = putAscii(entry.getKey(), out, offset);
+            out[offset++] = ENTRY;
+            offset = putAscii(entry.getValue(), out, offset);
+        }
+        return new String(out);
+    }
+
+    static String[] split(String column) {
+        int end = trimEnd(column);
+        String[] items = new String[count(column, end)];
+        for (int i = 0, from = 0; i < items.length; i++) {
+            int to = next(column, from, end);
+            items[i] = column.substring(from, to);
+            from = to + 1;
+        }
+        return items;
+    }
+
+    static String[] splitAscii(String column) {
+        int end = trimEnd(column);
+        String[] items = new String[count(column, end)];
+        char[] buf = new char[end / 4];
+        for (int i = 0, from = 0; i < items.length; i++) {
+            int to = next(column, from, end);
+            items[i] = fromAscii(column, from, to, buf);
+            from = to + 1;
+        }
+        return items;
+    }
+
+    static List<String> splitAsciiList(String column) {
+        int end = trimEnd(column);
+        int count = count(column, end);
+        List<String> items = new ArrayList<>(count);
+        char[] buf = new char[end / 4];
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = next(column, from, end);
+            items.add(fromAscii(column, from, to, buf));
+            from = to + 1;
+        }
+        return items;
+    }
+
+    static Map<String, String> splitAsciiEntries(String column) {
+        int end = trimEnd(column);
+        int count = count(column, end);
+        Map<String, String> entries = new LinkedHashMap<>(Math.max((int) (count / .75f) + 1, 16));
+        char[] buf = new char[end / 4];
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = next(column, from, end);
+            int colon = column.indexOf(ENTRY, from);
+            if (colon < 0 || colon > to) colon = to;
+            int valueEnd = colon < to ? column.indexOf(ENTRY, colon + 1) : to;
+            if (valueEnd < 0 || valueEnd > to) valueEnd = to;
+            entries.put(fromAscii(column, from, colon, buf), fromAscii(column, Math.min(colon + 1, to), valueEnd, buf));
+            from = to + 1;
+        }
+        return entries;
+    }
+
+    // ------------------------------------------
+
+    private static int asciiLength(String item) {
+        return null == item ? NULL.length() : item.length() * 4;
+    }
+
+    private static int putAscii(String item, char[] out, int offset) {
+        if (null == item) {
+            NULL.getChars(0, NULL.length(), out, offset);
+            return offset + NULL.length();
+        }
+        return CodecUtils.toAscii(item, out, offset);
+    }
+
+    private static String fromAscii(String column, int from, int to, char[] buf) {
+        int length = CodecUtils.fromAscii(column, from, to, buf, 0);
+        return length < 0 ? null : new String(buf, 0, length);
+    }
+
+    /**
+     * @return the length of <code>column</code> without trailing delimiters
+     */
+    private static int trimEnd(String column) {
+        int end = column.length();
+        while (end > 0 && column.charAt(end - 1) == ITEM) end--;
+        return end;
+    }
+
+    private static int count(String column, int end) {
+        if (end == 0) return 0;
+        int count = 1;
+        for (int i = column.indexOf(ITEM); i >= 0 && i < end; i = column.indexOf(ITEM, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int next(String column, int from, int end) {
+        int to = column.indexOf(ITEM, from);
+        return to < 0 || to > end ? end : to;
+    }
+}
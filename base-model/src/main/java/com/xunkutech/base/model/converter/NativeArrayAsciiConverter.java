@@ -1,13 +1,9 @@
 package com.xunkutech.base.model.converter;
 
-import com.xunkutech.base.model.util.CodecUtils;
-
 import java.util.Arrays;
-import java.util.StringJoiner;
-import java.util.stream.Collector;
 
 /**
- * Using stream & lambda express to optimize the code
+ * Items in the ascii form, comma separated, see {@link DelimitedColumns}.
  * <p>
  * Created by Jason on 5/17/2017.
  */
@@ -20,14 +16,7 @@ public class NativeArrayAsciiConverter implements AsciiAttributeConverter<String
 
         if (attribute.length < 1) return "";
 
-        return Arrays.stream(attribute)
-                .collect(Collector.of(
-                        () -> new StringJoiner(","),
-                        (j, p) -> j.add(CodecUtils.toAscii(p)),
-                        (j1, j2) -> j1.merge(j2),
-                        StringJoiner::toString
-                ));
-
+        return DelimitedColumns.joinAscii(Arrays.asList(attribute));
     }
 
     @Override
@@ -37,9 +26,7 @@ public class NativeArrayAsciiConverter implements AsciiAttributeConverter<String
 
         if (dbData.isEmpty()) return new String[]{};
 
-        return Arrays.stream(dbData.split(","))
-                .map(CodecUtils::fromAscii)
-                .toArray(String[]::new);
+        return DelimitedColumns.splitAscii(dbData);
     }
 
     public static void main(String[] args) {
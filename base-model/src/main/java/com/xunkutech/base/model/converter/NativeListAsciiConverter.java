@@ -1,16 +1,11 @@
 package com.xunkutech.base.model.converter;
 
-import com.xunkutech.base.model.util.CodecUtils;
-
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.StringJoiner;
-
-import static java.util.stream.Collector.of;
-import static java.util.stream.Collectors.toList;
 
 /**
+ * Items in the ascii form, comma separated, see {@link DelimitedColumns}.
+ * <p>
  * Created by jason on 7/9/17.
  */
 public class NativeListAsciiConverter implements AsciiAttributeConverter<List<String>> {
@@ -23,13 +18,7 @@ public class NativeListAsciiConverter implements AsciiAttributeConverter<List<St
 
         if (attribute.size() < 1) return "";
 
-        return attribute.stream()
-                .collect(of(
-                        () -> new StringJoiner(","),
-                        (j, p) -> j.add(CodecUtils.toAscii(p)),
-                        (j1, j2) -> j1.merge(j2),
-                        StringJoiner::toString
-                ));
+        return DelimitedColumns.joinAscii(attribute);
     }
 
     @Override
@@ -38,10 +27,7 @@ public class NativeListAsciiConverter implements AsciiAttributeConverter<List<St
 
         if (dbData.isEmpty()) return new ArrayList<>();
 
-        return Arrays.stream(dbData.split(","))
-                .map(CodecUtils::fromAscii)
-                .collect(toList());
-
+        return DelimitedColumns.splitAsciiList(dbData);
     }
 
     public static void main(String[] args) {
@@ -1,12 +1,13 @@
 package com.xunkutech.base.model.converter;
 
-import com.xunkutech.base.model.util.CodecUtils;
-
-import java.util.*;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
+ * Entries as <code>key:value</code> in the ascii form, comma separated, read back in the written
+ * order, see {@link DelimitedColumns}.
+ * <p>
  * Created by jason on 7/9/17.
  */
 public class NativeMapAsciiConverter implements AsciiAttributeConverter<Map<String, String>> {
@@ -16,17 +17,7 @@ public class NativeMapAsciiConverter implements AsciiAttributeConverter<Map<Stri
 
         if (attribute.size() < 1) return "";
 
-        return attribute.entrySet()
-                .stream()
-                .map(e -> new StringJoiner(":")
-                        .add(CodecUtils.toAscii(e.getKey()))
-                        .add(CodecUtils.toAscii(e.getValue())))
-                .collect(Collector.of(
-                        () -> new StringJoiner(","),
-                        (j, p) -> j.add(p.toString()),
-                        (j1, j2) -> j1.merge(j2),
-                        StringJoiner::toString
-                ));
+        return DelimitedColumns.joinAscii(attribute);
     }
 
     @Override
@@ -35,12 +26,7 @@ public class NativeMapAsciiConverter implements AsciiAttributeConverter<Map<Stri
 
         if (dbData.isEmpty()) return new LinkedHashMap<>();
 
-        return Arrays.stream(dbData.split(","))
-                .map(e -> e.split(":"))
-                .collect(Collectors.toMap(
-                        a -> CodecUtils.fromAscii(a[0]),
-                        a -> CodecUtils.fromAscii(a[1])
-                ));
+        return DelimitedColumns.splitAsciiEntries(dbData);
     }
 
     public static void main(String[] args) {
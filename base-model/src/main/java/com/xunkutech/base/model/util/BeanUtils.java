@@ -16,23 +16,39 @@
 package com.xunkutech.base.model.util;
 
 import com.google.gson.internal.$Gson$Types;
-import com.google.gson.internal.ConstructorConstructor;
-import com.google.gson.reflect.TypeToken;
-import com.xunkutech.base.model.annotation.Immutable;
 
 import java.lang.reflect.*;
 import java.net.URI;
 import java.net.URL;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
 public abstract class BeanUtils {
 
+    /**
+     * Parsed deepCopy filters, keyed by the filters joined into one string. They are usually string
+     * constants at the call sites; filters built at runtime are parsed on each call once
+     * <code>MAX_FILTERS</code> are cached.
+     */
+    private static final Map<String, Map<String, List<String>>> FILTERS = new ConcurrentHashMap<>();
+
+    private static final int MAX_FILTERS = 256;
+
+    /**
+     * Sources per task of {@link #deepCopyAll}: copying one bean takes microseconds, so shorter
+     * lists are not worth handing to other threads.
+     */
+    private static final int BULK_COPY_CHUNK = 512;
+
     /**
      * Find a method with the given method name and the given parameter types,
      * declared on the given class or one of its superclasses. Prefers public methods,
@@ -255,9 +271,9 @@ public abstract class BeanUtils {
 
     /**
      * This copier supports Bean to Bean, Map to Bean deep coping. It does not required the source Object be compatible
-     * with the target Object. It will automatically convert (customer convert adaptor will be added  in the future
-     * release) compatible types(e.g. String to primitive, String to Date/Instant, long/Long to Date/Instant, primitive
-     * to wrapped primitive and vice-versa).
+     * with the target Object. It will automatically convert compatible types(e.g. String to primitive, String to
+     * Date/Instant, long/Long to Date/Instant, primitive to wrapped primitive and vice-versa); more conversions can be
+     * registered with {@link ConverterUtils}.
      * <p>
      * This copier also supports imperative filters, for example:
      * <p>
@@ -271,7 +287,8 @@ public abstract class BeanUtils {
      * @param target
      * @param filterMap
      */
-    private static void deepCopy(Object source, Object target, final Type context, String path, Map<String, List<String>> filterMap) {
+    static void deepCopy(Object source, Object target, final Type context, String path, Map<String, List<String>> filterMap,
+                         ChangeSet changes) {
         Objects.requireNonNull(source, "source is null");
         Objects.requireNonNull(target, "target is null");
 
@@ -279,258 +296,22 @@ public abstract class BeanUtils {
             throw new IllegalArgumentException("Bad path prefix: " + path);
         }
 
-        final List<String> includeFields, excludeFields;
-
-        if (null != filterMap) {
-            includeFields = (null != filterMap.get(path)) ? filterMap.get(path) : filterMap.get("+" + path);
-            excludeFields = (null == includeFields) ? filterMap.get("-" + path) : null;
-        } else {
-            includeFields = excludeFields = null;
-        }
-
-        //Deal with Map
-        if (source instanceof Map) {
-            ((Map<?, ?>) source).entrySet().stream()
-                    .filter(entry -> checkSource(source, entry.getKey().toString(), includeFields, excludeFields))
-                    .filter(entry -> checkTarget(target, entry.getKey().toString()))
-                    .forEach(entry -> copyValue(target, context, entry.getKey().toString(), entry.getValue(), path, filterMap));
-            return;
-        }
-
-        ClassUtils.getAllDeclaredFields(source.getClass()).parallelStream()
-                .filter(sourceField -> !Modifier.isTransient(sourceField.getModifiers())
-                        && !Modifier.isStatic(sourceField.getModifiers()))
-                .filter(sourceField -> checkSource(source, sourceField.getName(), includeFields, excludeFields))
-                .filter(sourceField -> checkTarget(target, sourceField.getName()))
-                .forEach(sourceField -> {
-                    try {
-                        copyValue(target, context, sourceField.getName(), ReflectionUtils.getValue(source, sourceField.getName()), path, filterMap);
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                });
+        List<String> includeFields = includeFields(filterMap, path);
+        List<String> excludeFields = excludeFields(filterMap, path, includeFields);
+        CopyPlan.of(source, target, context, includeFields, excludeFields).copy(source, target, path, filterMap, changes);
     }
 
-    /**
-     * @param context   The generic information about target object.
-     * @param target    Target object instance.
-     * @param fieldName The field name of target object.
-     * @param value     The value need to be copied.
-     */
-    private static void copyValue(Object target, Type context, String fieldName, Object value, String path, Map<String, List<String>> filterMap) {
-        Objects.requireNonNull(value, "value is null");
-        Objects.requireNonNull(target, "target is null");
-
-        // target is a map instance
-        if (target instanceof Map) {
-            // we only support entry key is String.
-            Map<Object, Object> mapTarget = (Map) target;
-            Type[] mapTypes = $Gson$Types.getMapKeyAndValueTypes(context, target.getClass());
-
-            // check the target map class is assignable for the given value;
-            if (ClassUtils.isAssignable($Gson$Types.getRawType(mapTypes[0]), String.class)
-                    && ClassUtils.isAssignableValue($Gson$Types.getRawType(mapTypes[1]), value)) {
-                mapTarget.put(fieldName, value);
-            }
-            return;
-        }
-
-        try {
-            Field targetField = ReflectionUtils.getAccessibleField(target.getClass(), fieldName);
-            Class<?> targetFieldClass = targetField.getType();
-            Type targetFieldType = $Gson$Types.resolve(context, target.getClass(), targetField.getGenericType());
-
-            // target field is primitive type
-            if (ClassUtils.isPrimitiveOrWrapper(targetFieldClass)) {
-                try {
-                    if (ClassUtils.isAssignableValue(targetFieldClass, value)) {
-                        ReflectionUtils.setValue(target, fieldName, value);
-                    } else {
-                        Constructor<?> constructor = ClassUtils.resolvePrimitiveIfNecessary(targetFieldClass).getDeclaredConstructor(value.getClass());
-                        ReflectionUtils.setValue(target, fieldName, constructor.newInstance(value));
-                    }
-                } catch (NoSuchMethodException | InstantiationException | InvocationTargetException ignore) {
-                }
-
-                return;
-            }
-
-            // target field is String
-            if (String.class.isAssignableFrom(targetFieldClass)) {
-                ReflectionUtils.setValue(target, fieldName, value.toString());
-                return;
-            }
-
-            // target field is Instant
-            if (Instant.class.isAssignableFrom(targetFieldClass)) {
-                evaluateInstantType(value).ifPresent(FunctionUtils.wrapConsumer(v -> ReflectionUtils.setValue(target, fieldName, v)));
-                return;
-            }
-
-            // target field is Date
-            if (Date.class.isAssignableFrom(targetFieldClass)) {
-                evaluateDateType(value).ifPresent(FunctionUtils.wrapConsumer(v -> ReflectionUtils.setValue(target, fieldName, v)));
-                return;
-            }
-
-            // target field is enum
-            if (targetFieldClass.isEnum()) {
-                for (Enum<?> constant : (Enum[]) targetFieldClass.getEnumConstants()) {
-                    String name = constant.name();
-                    if (name.toLowerCase().equals(value.toString().toLowerCase())) {
-                        ReflectionUtils.setValue(target, fieldName, constant);
-                    }
-                }
-                return;
-            }
-
-            // target field is a Map
-            if (Map.class.isAssignableFrom(targetFieldClass)) {
-                // construct new map instance
-                ConstructorConstructor cc = new ConstructorConstructor(Collections.emptyMap());
-                Map<Object, Object> mapInstance = (Map) cc.get(TypeToken.get(targetFieldType)).construct();
-                deepCopy(value, mapInstance, targetFieldType, path + "." + fieldName, filterMap);
-                ReflectionUtils.setValue(target, fieldName, mapInstance);
-                return;
-            }
-
-            // target field is a collection
-            if (Collection.class.isAssignableFrom(targetFieldClass)) {
-                ConstructorConstructor cc = new ConstructorConstructor(Collections.emptyMap());
-                Collection<Object> collectionInstance = (Collection) cc.get(TypeToken.get(targetFieldType)).construct();
-                collectionInstance.addAll(wrapToList(value, $Gson$Types.getRawType($Gson$Types.getCollectionElementType(targetFieldType, targetFieldClass))));
-                ReflectionUtils.setValue(target, fieldName, collectionInstance);
-                return;
-            }
-
-            // target field is an array
-            if (targetFieldClass.isArray()) {
-                Class<?> componentType = $Gson$Types.getRawType($Gson$Types.getArrayComponentType(targetFieldType));
-                List<?> list = wrapToList(value, componentType);
-                int size = list.size();
-                Object array = Array.newInstance(componentType, size);
-                for (int i = 0; i < size; i++) {
-                    Array.set(array, i, list.get(i));
-                }
-                ReflectionUtils.setValue(target, fieldName, array);
-                return;
-            }
-
-            // target field is an object
-            Object targetFieldValueInstance = ReflectionUtils.getValue(target, fieldName);
-            if (null == targetFieldValueInstance) {
-                ConstructorConstructor cc = new ConstructorConstructor(Collections.emptyMap());
-                targetFieldValueInstance = cc.get(TypeToken.get(targetFieldType)).construct();
-            }
-
-            deepCopy(value, targetFieldValueInstance, targetFieldType, path + "." + fieldName, filterMap);
-
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
-
-        ClassUtils.isPrimitiveOrWrapper(value.getClass());
+    private static List<String> includeFields(Map<String, List<String>> filterMap, String path) {
+        if (null == filterMap) return null;
+        return (null != filterMap.get(path)) ? filterMap.get(path) : filterMap.get("+" + path);
     }
 
-    /**
-     * Try to evaluate the Instant instance
-     *
-     * @param value
-     * @return the according Instant instance object. if failed, return empty.
-     */
-    private static Optional<Instant> evaluateInstantType(Object value) {
-        if (value instanceof Instant) {
-            return Optional.of((Instant) value);
-        }
-
-        if (value instanceof Date) {
-            return Optional.of(((Date) value).toInstant());
-        }
-
-        if (value instanceof String) {
-            try {
-                Long epochMilli = Long.valueOf((String) value);
-                if (epochMilli > 0) {
-                    return Optional.of(Instant.ofEpochMilli(epochMilli));
-                }
-            } catch (Throwable ignored) {
-            }
-
-            try {
-                return Optional.of(Instant.parse((String) value));
-            } catch (Throwable ignored) {
-            }
-
-            try {
-                DateFormat format = new SimpleDateFormat("MMM dd, yyyy hh:mm:ss a");
-                Date date = format.parse((String) value);
-                return Optional.of(date.toInstant());
-            } catch (Throwable ignored) {
-            }
-
-            return Optional.empty();
-        }
-
-        if (value.getClass().equals(long.class) || value.getClass().equals(Long.class)) {
-            return Optional.of(Instant.ofEpochMilli((Long) value));
-        }
-
-        if (value.getClass().equals(int.class) || value.getClass().equals(Integer.class)) {
-            return Optional.of(Instant.ofEpochMilli(Integer.toUnsignedLong((Integer) value)));
-        }
-
-        return Optional.empty();
-    }
-
-    private static Optional<Date> evaluateDateType(Object value) {
-        if (value instanceof Instant) {
-            return Optional.of(Date.from((Instant) value));
-        }
-
-        if (value instanceof Date) {
-            return Optional.of((Date) value);
-        }
-
-        if (value instanceof String) {
-            // try long value
-            try {
-                Long epochMilli = Long.valueOf((String) value);
-                if (epochMilli > 0) {
-                    return Optional.of(new Date(epochMilli));
-                }
-            } catch (Throwable ignored) {
-            }
-
-            try {
-                DateFormat format = new SimpleDateFormat("MMM dd, yyyy hh:mm:ss a");
-                Date date = format.parse((String) value);
-                return Optional.of(date);
-            } catch (Throwable ignored) {
-            }
-
-            try {
-                return Optional.of(Date.from(Instant.parse((String) value)));
-            } catch (Throwable ignored) {
-            }
-
-            return Optional.empty();
-        }
-
-        // long value
-        if (value.getClass().equals(long.class) || value.getClass().equals(Long.class)) {
-            return Optional.of(new Date((Long) value));
-        }
-
-        // int value
-        if (value.getClass().equals(int.class) || value.getClass().equals(Integer.class)) {
-            return Optional.of(new Date(Integer.toUnsignedLong((Integer) value)));
-        }
-
-        return Optional.empty();
+    private static List<String> excludeFields(Map<String, List<String>> filterMap, String path, List<String> includeFields) {
+        return (null == filterMap || null != includeFields) ? null : filterMap.get("-" + path);
     }
 
     @SuppressWarnings("unchecked")
-    private static List<Object> wrapToList(Object obj, Class<?> componentType) {
+    static List<Object> wrapToList(Object obj, Class<?> componentType) {
         if (obj.getClass().isArray()) {
 
             Class<?> rawType;
@@ -562,93 +343,140 @@ public abstract class BeanUtils {
         return new ArrayList<>();
     }
 
-    private static boolean checkTarget(Object target, String fieldName) {
+    public static void deepCopy(Object source, Object target) {
+        deepCopy(source, target, null);
+    }
 
-        if (target instanceof Map) {
-            return true;
-        }
+    public static void deepCopy(Object source, Object target, String... filters) {
+        deepCopy(source, target, target.getClass(), filters);
+    }
 
-        try {
-            Field targetField = ReflectionUtils.getAccessibleField(target.getClass(), fieldName);
-            //Ignore if target Element is immutable;
-            if (targetField.isAnnotationPresent(Immutable.class)) {
-                return false;
-            }
 
-            if (Modifier.isStatic(targetField.getModifiers())) {
-                return false;
-            }
-        } catch (NoSuchFieldException e) {
-            return false;
-        }
-
-        return true;
+    public static void deepCopy(Object source, Object target, Type type, String... filters) {
+        deepCopy(source, target, type, "$", filterMap(filters), null);
     }
 
-    // source field is not null, not in the excludeFields or in the includeFields
-    private static boolean checkSource(Object source, String fieldName, List<String> includeFields, List<String> excludeFields) {
-
-        boolean isValid = false;
+    /**
+     * Like {@link #deepCopy(Object, Object, Type, String...)}, but only writes target values that
+     * differ from what the target holds, and reports those.
+     *
+     * @return the changed paths with their old and new values; empty if the target is unchanged
+     */
+    public static ChangeSet deepCopyChanges(Object source, Object target, Type type, String... filters) {
+        ChangeSet changes = new ChangeSet();
+        deepCopy(source, target, type, "$", filterMap(filters), changes);
+        return changes;
+    }
 
-        if (null != includeFields) {
-            isValid = includeFields.contains(fieldName);
-        }
+    /**
+     * Copies every source into a new target from <code>targetSupplier</code>, like
+     * {@link #deepCopy(Object, Object, Type, String...)} with the target class as type.
+     *
+     * @see #deepCopyAll(List, Supplier, Type, Executor, String...)
+     */
+    public static <S, T> BulkCopyResult<T> deepCopyAll(List<? extends S> sources, Supplier<? extends T> targetSupplier,
+                                                      String... filters) {
+        return deepCopyAll(sources, targetSupplier, null, ForkJoinPool.commonPool(), filters);
+    }
 
-        if (!isValid && null != excludeFields) {
-            isValid = !excludeFields.contains(fieldName);
+    /**
+     * Bulk {@link #deepCopy(Object, Object, Type, String...)}, e.g. for imports and listings.
+     * <p>
+     * Lists of up to {@value #BULK_COPY_CHUNK} sources are copied on the calling thread; longer ones
+     * are split into chunks run on <code>executor</code>. Within a chunk, consecutive sources of the
+     * same class share one copy plan, and each object is copied sequentially. A failing source,
+     * including a <code>null</code> one, is reported in the result and does not stop the others.
+     * Lists without fast random access, such as {@link LinkedList}, are copied to an array list first.
+     *
+     * @param type the target type, or <code>null</code> for the class of each target
+     */
+    public static <S, T> BulkCopyResult<T> deepCopyAll(List<? extends S> sources, Supplier<? extends T> targetSupplier,
+                                                      Type type, Executor executor, String... filters) {
+        Objects.requireNonNull(sources, "sources is null");
+        Objects.requireNonNull(targetSupplier, "targetSupplier is null");
+        Objects.requireNonNull(executor, "executor is null");
+        Map<String, List<String>> filterMap = filterMap(filters);
+        // the chunks index into the list
+        List<? extends S> list = sources instanceof RandomAccess ? sources : new ArrayList<>(sources);
+
+        int size = list.size();
+        Object[] targets = new Object[size];
+        SortedMap<Integer, RuntimeException> failures = new ConcurrentSkipListMap<>();
+        if (size <= BULK_COPY_CHUNK) {
+            copyChunk(list, 0, size, targetSupplier, type, filterMap, targets, failures);
+        } else {
+            int parallelism = executor instanceof ForkJoinPool
+                    ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+            int chunks = Math.min((size + BULK_COPY_CHUNK - 1) / BULK_COPY_CHUNK, Math.max(parallelism, 1) * 4);
+            int chunkSize = (size + chunks - 1) / chunks;
+            List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+            for (int from = 0; from < size; from += chunkSize) {
+                int start = from, end = Math.min(from + chunkSize, size);
+                futures.add(CompletableFuture.runAsync(
+                        () -> copyChunk(list, start, end, targetSupplier, type, filterMap, targets, failures), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
         }
 
-        if (null == includeFields && null == excludeFields) {
-            isValid = true;
-        }
+        @SuppressWarnings("unchecked")
+        List<T> result = (List<T>) Arrays.asList(targets);
+        return new BulkCopyResult<>(result, failures);
+    }
 
-        if (isValid && !(source instanceof Map)) {
+    private static void copyChunk(List<?> sources, int from, int to, Supplier<?> targetSupplier, Type type,
+                                  Map<String, List<String>> filterMap, Object[] targets,
+                                  Map<Integer, RuntimeException> failures) {
+        List<String> includeFields = includeFields(filterMap, "$");
+        List<String> excludeFields = excludeFields(filterMap, "$", includeFields);
+        CopyPlan plan = null;
+        Class<?> planSource = null, planTarget = null;
+        for (int i = from; i < to; i++) {
             try {
-                Object value = ReflectionUtils.getValue(source, fieldName);
-                if (null == value) {
-                    return false;
+                Object source = Objects.requireNonNull(sources.get(i), "source is null");
+                Object target = Objects.requireNonNull(targetSupplier.get(), "target is null");
+                Class<?> sourceClass = source instanceof Map ? Map.class : source.getClass();
+                if (sourceClass != planSource || target.getClass() != planTarget) {
+                    plan = CopyPlan.of(source, target, null == type ? target.getClass() : type, includeFields, excludeFields);
+                    planSource = sourceClass;
+                    planTarget = target.getClass();
                 }
-            } catch (IllegalAccessException e) {
-                return false;
+                plan.copy(source, target, "$", filterMap, null);
+                targets[i] = target;
+            } catch (RuntimeException e) {
+                failures.put(i, e);
             }
         }
-
-
-        return isValid;
     }
 
-
-    public static void deepCopy(Object source, Object target) {
-        deepCopy(source, target, null);
-    }
-
-    public static void deepCopy(Object source, Object target, String... filters) {
-        deepCopy(source, target, target.getClass(), filters);
+    private static Map<String, List<String>> filterMap(String... filters) {
+        if (null == filters || filters.length == 0) return null;
+        String key = String.join("\n", filters);
+        Map<String, List<String>> filterMap = FILTERS.get(key);
+        if (null == filterMap) {
+            filterMap = parseFilters(filters);
+            if (FILTERS.size() < MAX_FILTERS) {
+                FILTERS.putIfAbsent(key, filterMap);
+            }
+        }
+        return filterMap;
     }
 
+    private static Map<String, List<String>> parseFilters(String... filters) {
+        return Arrays.stream(filters)
+                .map(i -> {
+                    String[] item = i.split(":");
+                    if (item.length != 2) {
+                        throw new IllegalArgumentException("Bad filter format: " + i);
+                    }
 
-    public static void deepCopy(Object source, Object target, Type type, String... filters) {
-        Map<String, List<String>> filterMap = null;
-
-        if (null != filters && filters.length > 0) {
-            filterMap = Arrays.stream(filters)
-                    .map(i -> {
-                        String[] item = i.split(":");
-                        if (item.length != 2) {
-                            throw new IllegalArgumentException("Bad filter format: " + i);
-                        }
-
-                        List<String> fields = Arrays.stream(item[1].split(","))
-                                .map(f -> f.trim())
-                                .collect(toList());
-
-                        Map.Entry<String, List<String>> entry = new AbstractMap.SimpleEntry<>(item[0].trim(), fields);
-                        return entry;
-                    })
-                    .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
-        }
+                    List<String> fields = Arrays.stream(item[1].split(","))
+                            .map(f -> f.trim())
+                            .collect(toList());
 
-        deepCopy(source, target, type, "$", filterMap);
+                    Map.Entry<String, List<String>> entry = new AbstractMap.SimpleEntry<>(item[0].trim(), fields);
+                    return entry;
+                })
+                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
 }
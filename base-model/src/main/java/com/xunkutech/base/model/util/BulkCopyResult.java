@@ -0,0 +1,32 @@
+package com.xunkutech.base.model.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * The outcome of {@link BeanUtils#deepCopyAll}: one target per source, in source order, with
+ * <code>null</code> where the copy failed, and the failures by source index.
+ */
+public final class BulkCopyResult<T> {
+
+    private final List<T> targets;
+    private final SortedMap<Integer, RuntimeException> failures;
+
+    BulkCopyResult(List<T> targets, SortedMap<Integer, RuntimeException> failures) {
+        this.targets = Collections.unmodifiableList(targets);
+        this.failures = Collections.unmodifiableSortedMap(failures);
+    }
+
+    public List<T> getTargets() {
+        return targets;
+    }
+
+    public SortedMap<Integer, RuntimeException> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
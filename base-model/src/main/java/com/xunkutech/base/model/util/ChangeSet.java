@@ -0,0 +1,92 @@
+package com.xunkutech.base.model.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The target values a {@link BeanUtils#deepCopyChanges} actually changed, keyed by path in copy
+ * order, e.g. <code>$.name</code> or <code>$.address.city</code>. An empty change set means the
+ * target was left as it was, so there is nothing to write back.
+ */
+public final class ChangeSet {
+
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+
+    ChangeSet() {
+    }
+
+    void add(String path, Object oldValue, Object newValue) {
+        changes.put(path, new Change(path, oldValue, newValue));
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(changes.keySet());
+    }
+
+    public Map<String, Change> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * @return the change at <code>path</code>, or <code>null</code> if it was not changed
+     */
+    public Change get(String path) {
+        return changes.get(path);
+    }
+
+    /**
+     * @return whether <code>path</code> or anything below it was changed
+     */
+    public boolean touches(String path) {
+        if (changes.containsKey(path)) return true;
+        String prefix = path + ".";
+        for (String changed : changes.keySet()) {
+            if (changed.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return changes.values().toString();
+    }
+
+    public static final class Change {
+        private final String path;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Change(String path, Object oldValue, Object newValue) {
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Object getOldValue() {
+            return oldValue;
+        }
+
+        public Object getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + oldValue + " -> " + newValue;
+        }
+    }
+}
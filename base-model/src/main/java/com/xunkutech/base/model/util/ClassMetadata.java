@@ -0,0 +1,207 @@
+package com.xunkutech.base.model.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflection metadata of one class, computed once and shared by {@link ReflectionUtils},
+ * {@link ClassUtils} and {@link BeanUtils}: the superclass chain, the declared fields of the class
+ * and its parents, the most derived field for every name, field accessors and resolved generic
+ * type arguments.
+ * <p>
+ * Instances hang off their class through a {@link ClassValue}, so a lookup is a hash hit on the
+ * class itself, and the metadata is collected together with the class when its class loader goes
+ * away, e.g. on a devtools restart or redeploy.
+ */
+final class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * The class followed by its superclasses, ending with {@link Object}; interfaces and primitives
+     * only hold themselves.
+     */
+    private final Class<?>[] superclasses;
+    private final Field[] declaredFields;
+    /**
+     * Fields of the class and then of each superclass, in {@link Class#getDeclaredFields()} order.
+     */
+    private final List<Field> fields;
+    /**
+     * The most derived field of each name; a missing name is a plain miss, not an exception.
+     */
+    private final Map<String, Field> fieldsByName;
+    private final ConcurrentMap<String, MethodHandle> getters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MethodHandle> setters = new ConcurrentHashMap<>();
+    /**
+     * Actual type arguments by generic superclass or -interface, see
+     * {@link ClassUtils#getActualTypeArguments(Class, Class)}.
+     */
+    private final ConcurrentMap<Class<?>, List<Type>> typeArguments = new ConcurrentHashMap<>();
+
+    private ClassMetadata(Class<?> type) {
+        Class<?> superclass = type.getSuperclass();
+        ClassMetadata parent = null == superclass ? null : of(superclass);
+
+        this.declaredFields = type.getDeclaredFields();
+        for (Field field : declaredFields) {
+            try {
+                field.setAccessible(true);
+            } catch (RuntimeException ignore) {
+                // Left to fail where the field is actually used, as without the cache.
+            }
+        }
+
+        if (null == parent) {
+            this.superclasses = new Class<?>[]{type};
+            this.fields = Collections.unmodifiableList(Arrays.asList(declaredFields));
+            Map<String, Field> fieldsByName = new HashMap<>();
+            for (Field field : declaredFields) {
+                fieldsByName.put(field.getName(), field);
+            }
+            this.fieldsByName = fieldsByName;
+            return;
+        }
+
+        Class<?>[] superclasses = new Class<?>[parent.superclasses.length + 1];
+        superclasses[0] = type;
+        System.arraycopy(parent.superclasses, 0, superclasses, 1, parent.superclasses.length);
+        this.superclasses = superclasses;
+
+        List<Field> fields = new ArrayList<>(declaredFields.length + parent.fields.size());
+        fields.addAll(Arrays.asList(declaredFields));
+        fields.addAll(parent.fields);
+        this.fields = Collections.unmodifiableList(fields);
+
+        Map<String, Field> fieldsByName = new HashMap<>(parent.fieldsByName);
+        for (Field field : declaredFields) {
+            fieldsByName.put(field.getName(), field);
+        }
+        this.fieldsByName = fieldsByName;
+    }
+
+    static ClassMetadata of(Class<?> type) {
+        return METADATA.get(type);
+    }
+
+    /**
+     * @return the chain from this class up to and including <code>superclass</code>, or
+     * <code>null</code> if <code>superclass</code> is not a superclass of it
+     */
+    List<Class<?>> superclassChain(Class<?> superclass) {
+        for (int i = 0; i < superclasses.length; i++) {
+            if (superclasses[i] == superclass) {
+                return Arrays.asList(superclasses).subList(0, i + 1);
+            }
+        }
+        return null;
+    }
+
+    List<Field> declaredFields() {
+        return Collections.unmodifiableList(Arrays.asList(declaredFields));
+    }
+
+    List<Field> fields() {
+        return fields;
+    }
+
+    /**
+     * @return the most derived field named <code>name</code>, or <code>null</code>
+     */
+    Field field(String name) {
+        return fieldsByName.get(name);
+    }
+
+    Collection<Field> mostDerivedFields() {
+        return Collections.unmodifiableCollection(fieldsByName.values());
+    }
+
+    /**
+     * @return the cached type arguments this class assigns to <code>typedSuperclass</code>, or
+     * <code>null</code> if they have not been resolved yet
+     */
+    List<Type> typeArguments(Class<?> typedSuperclass) {
+        return typeArguments.get(typedSuperclass);
+    }
+
+    /**
+     * Caches resolved type arguments; if another thread got there first, its list is returned.
+     */
+    List<Type> typeArguments(Class<?> typedSuperclass, List<Type> resolved) {
+        List<Type> existing = typeArguments.putIfAbsent(typedSuperclass, resolved);
+        return null == existing ? resolved : existing;
+    }
+
+    /**
+     * @return a <code>(Object)Object</code> handle reading the most derived field named
+     * <code>name</code>, or <code>null</code> if there is none; static fields ignore the argument
+     */
+    MethodHandle getter(String name) {
+        MethodHandle getter = getters.get(name);
+        if (null != getter) return getter;
+        Field field = fieldsByName.get(name);
+        if (null == field) return null;
+        return getters.computeIfAbsent(name, n -> unreflectGetter(field));
+    }
+
+    /**
+     * @return a <code>(Object, Object)void</code> handle writing the most derived field named
+     * <code>name</code>, or <code>null</code> if there is none
+     */
+    MethodHandle setter(String name) {
+        MethodHandle setter = setters.get(name);
+        if (null != setter) return setter;
+        Field field = fieldsByName.get(name);
+        if (null == field) return null;
+        return setters.computeIfAbsent(name, n -> unreflectSetter(field));
+    }
+
+    private static MethodHandle unreflectGetter(Field field) {
+        field.setAccessible(true);
+        try {
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                return MethodHandles.dropArguments(getter.asType(GETTER.dropParameterTypes(0, 1)), 0, Object.class);
+            }
+            return getter.asType(GETTER);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Static fields ignore the target argument. Final fields cannot get a setter handle, but
+     * {@link Field#set} on an accessible field still works for them.
+     */
+    private static MethodHandle unreflectSetter(Field field) {
+        field.setAccessible(true);
+        try {
+            if (Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                return MethodHandles.dropArguments(LOOKUP.unreflectSetter(field)
+                        .asType(SETTER.dropParameterTypes(0, 1)), 0, Object.class);
+            }
+            if (!Modifier.isFinal(field.getModifiers())) {
+                return LOOKUP.unreflectSetter(field).asType(SETTER);
+            }
+            return LOOKUP.findVirtual(Field.class, "set", SETTER).bindTo(field);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
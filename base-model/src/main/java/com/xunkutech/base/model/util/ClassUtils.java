@@ -36,6 +36,12 @@ public abstract class ClassUtils {
      */
     public static <S> List<Class<? extends S>> getSuperclassChain(Class<? extends S> clazz,
                                                                   Class<S> superclass) {
+        if (null != clazz && null != superclass && !clazz.isInterface() && !superclass.isInterface()) {
+            // between classes there is at most one chain, a prefix of the cached superclass chain
+            @SuppressWarnings("unchecked")
+            List<Class<? extends S>> chain = (List) ClassMetadata.of(clazz).superclassChain(superclass);
+            return null == chain ? null : new ArrayList<>(chain);
+        }
         Set<List<Class<? extends S>>> superclassChains = getSuperclassChainsInternal(clazz, superclass, true);
         return (superclassChains.isEmpty() ? null : superclassChains.iterator().next());
     }
@@ -218,7 +224,7 @@ public abstract class ClassUtils {
      * @see #getAllDeclaredFields(Class, Class)
      */
     public static List<Field> getAllDeclaredFields(Class<?> clazz) {
-        return getAllDeclaredFields(clazz, Object.class);
+        return new ArrayList<>(ClassMetadata.of(clazz).fields());
     }
 
     /**
@@ -239,7 +245,7 @@ public abstract class ClassUtils {
         final List<Field> fields = new ArrayList<Field>();
 
         for (Class<?> immediateSuperclass : getSuperclassChain(clazz, superclass)) {
-            fields.addAll(Arrays.asList(immediateSuperclass.getDeclaredFields()));
+            fields.addAll(ClassMetadata.of(immediateSuperclass).declaredFields());
         }
 
         return fields;
@@ -343,7 +349,8 @@ public abstract class ClassUtils {
      *                        subclass
      * @return the type arguments for the given class when regarded as a subclass of the
      * given typed superclass, in the order defined in the superclass. If
-     * {@code class} is not a subclass of {@code superclass}, returns {@code null}.
+     * {@code class} is not a subclass of {@code superclass}, returns {@code null}. The list is
+     * resolved once per pair of classes and shared, so it cannot be modified.
      * @throws IllegalArgumentException if <code>typedSuperclass</code> or <code>typedClass</code>
      *                                  is <code>null</code>
      */
@@ -359,6 +366,17 @@ public abstract class ClassUtils {
             return null;
         }
 
+        ClassMetadata metadata = ClassMetadata.of(typedClass);
+        List<Type> typeArguments = metadata.typeArguments(typedSuperclass);
+        if (null == typeArguments) {
+            typeArguments = metadata.typeArguments(typedSuperclass,
+                    Collections.unmodifiableList(resolveActualTypeArguments(typedClass, typedSuperclass)));
+        }
+        return typeArguments;
+    }
+
+    private static <S> List<Type> resolveActualTypeArguments(Class<? extends S> typedClass,
+                                                             Class<S> typedSuperclass) {
         TypeVariable<?>[] typedClassTypeParams = typedSuperclass.getTypeParameters();
 
         // if the class has no parameters, return
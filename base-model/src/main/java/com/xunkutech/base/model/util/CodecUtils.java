@@ -1,11 +1,12 @@
 package com.xunkutech.base.model.util;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.ZoneId;
-import java.util.Formatter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipException;
@@ -14,6 +15,43 @@ public abstract class CodecUtils {
 
     private static final int BUFFER_SIZE = 2048;
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64_DIGITS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final int INVALID = -1;
+    private static final int NOT_ASCII = -2;
+    /**
+     * The value of <code>=</code> in {@link #BASE64_VALUES}, as in DatatypeConverter.
+     */
+    private static final int PADDING = 127;
+
+    private static final char COMPACT_MARKER = '.';
+    private static final char COMPACT_LOW = '!';
+    private static final char COMPACT_HIGH = '~';
+    private static final char COMPACT_PLAIN_FIRST = '"';
+    private static final char COMPACT_PLAIN_LAST = '}';
+    private static final char COMPACT_DIGIT_FIRST = '0';
+
+    /**
+     * Values of the ASCII chars, {@link #INVALID} for the others.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) INVALID);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+        Arrays.fill(BASE64_VALUES, (byte) INVALID);
+        for (int i = 0; i < 64; i++) {
+            BASE64_VALUES[BASE64_DIGITS[i]] = (byte) i;
+        }
+        BASE64_VALUES['='] = (byte) PADDING;
+    }
+
     public static ZoneId ZONE_ID = ZoneId.of("Asia/Shanghai");
 
     /**
@@ -42,29 +80,227 @@ public abstract class CodecUtils {
     }
 
     public static String toHex(byte[] value) {
-        return DatatypeConverter.printHexBinary(value).toLowerCase();
+        char[] out = new char[value.length * 2];
+        toHex(value, 0, value.length, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Writes <code>src[from, to)</code> as lowercase hex into <code>dst</code> at <code>offset</code>.
+     *
+     * @return the offset after the last char written
+     */
+    public static int toHex(byte[] src, int from, int to, char[] dst, int offset) {
+        for (int i = from; i < to; i++) {
+            int b = src[i] & 0xff;
+            dst[offset++] = HEX_DIGITS[b >>> 4];
+            dst[offset++] = HEX_DIGITS[b & 0xf];
+        }
+        return offset;
+    }
+
+    /**
+     * Encodes as many bytes of <code>src</code> as <code>dst</code> has room for.
+     */
+    public static void toHex(ByteBuffer src, CharBuffer dst) {
+        while (src.hasRemaining() && dst.remaining() >= 2) {
+            int b = src.get() & 0xff;
+            dst.put(HEX_DIGITS[b >>> 4]);
+            dst.put(HEX_DIGITS[b & 0xf]);
+        }
     }
 
     public static byte[] fromHex(String value) throws CodecException {
-        try {
-            return DatatypeConverter.parseHexBinary(value);
-        } catch (IllegalArgumentException e) {
-            throw new CodecException(e);
+        if (value.length() % 2 != 0) {
+            throw new CodecException(new IllegalArgumentException("hexBinary needs to be even-length: " + value));
+        }
+        byte[] out = new byte[value.length() / 2];
+        fromHex(value, out, 0);
+        return out;
+    }
+
+    /**
+     * Decodes the even-length hex <code>src</code>, either case, into <code>dst</code> at
+     * <code>offset</code>.
+     *
+     * @return the offset after the last byte written
+     */
+    public static int fromHex(CharSequence src, byte[] dst, int offset) throws CodecException {
+        int length = src.length() & ~1;
+        for (int i = 0; i < length; i += 2) {
+            int hi = digit(src.charAt(i), HEX_VALUES), lo = digit(src.charAt(i + 1), HEX_VALUES);
+            if ((hi | lo) < 0) {
+                throw new CodecException(new IllegalArgumentException("contains illegal character for hexBinary: " + src));
+            }
+            dst[offset++] = (byte) (hi << 4 | lo);
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes complete digit pairs of <code>src</code> as far as <code>dst</code> has room; an odd
+     * trailing digit is left for the next call.
+     */
+    public static void fromHex(CharBuffer src, ByteBuffer dst) throws CodecException {
+        while (src.remaining() >= 2 && dst.hasRemaining()) {
+            int hi = digit(src.get(src.position()), HEX_VALUES), lo = digit(src.get(src.position() + 1), HEX_VALUES);
+            if ((hi | lo) < 0) {
+                throw new CodecException(new IllegalArgumentException(
+                        "contains illegal character for hexBinary at " + src.position()));
+            }
+            src.position(src.position() + 2);
+            dst.put((byte) (hi << 4 | lo));
         }
     }
 
     public static String toBase64(byte[] value) {
-        return DatatypeConverter.printBase64Binary(value);
+        char[] out = new char[(value.length + 2) / 3 * 4];
+        toBase64(value, 0, value.length, out, 0);
+        return new String(out);
     }
 
+    /**
+     * Writes <code>src[from, to)</code> as padded standard Base64 into <code>dst</code> at
+     * <code>offset</code>.
+     *
+     * @return the offset after the last char written
+     */
+    public static int toBase64(byte[] src, int from, int to, char[] dst, int offset) {
+        int i = from;
+        for (; i + 2 < to; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[offset++] = BASE64_DIGITS[bits >>> 18];
+            dst[offset++] = BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[offset++] = BASE64_DIGITS[bits >>> 6 & 0x3f];
+            dst[offset++] = BASE64_DIGITS[bits & 0x3f];
+        }
+        int tail = to - i;
+        if (tail > 0) {
+            int bits = (src[i] & 0xff) << 16 | (tail == 2 ? (src[i + 1] & 0xff) << 8 : 0);
+            dst[offset++] = BASE64_DIGITS[bits >>> 18];
+            dst[offset++] = BASE64_DIGITS[bits >>> 12 & 0x3f];
+            dst[offset++] = tail == 2 ? BASE64_DIGITS[bits >>> 6 & 0x3f] : '=';
+            dst[offset++] = '=';
+        }
+        return offset;
+    }
+
+    /**
+     * Encodes whole 3-byte groups of <code>src</code> as far as <code>dst</code> has room; the last
+     * partial group is only encoded, padded, at <code>endOfInput</code>.
+     */
+    public static void toBase64(ByteBuffer src, CharBuffer dst, boolean endOfInput) {
+        byte[] group = new byte[3];
+        char[] quad = new char[4];
+        while (dst.remaining() >= 4 && (src.remaining() >= 3 || (endOfInput && src.hasRemaining()))) {
+            int n = Math.min(src.remaining(), 3);
+            src.get(group, 0, n);
+            toBase64(group, 0, n, quad, 0);
+            dst.put(quad);
+        }
+    }
+
+    /**
+     * Lenient like {@link javax.xml.bind.DatatypeConverter#parseBase64Binary(String)}: characters
+     * outside the alphabet are skipped, and padding ends a group early.
+     */
     public static byte[] fromBase64(String value) throws CodecException {
-        try {
-            return DatatypeConverter.parseBase64Binary(value);
-        } catch (IllegalArgumentException e) {
-            throw new CodecException(e);
+        // sized exactly for the usual padded input, so that only lenient input is copied again
+        int padding = 0;
+        if (value.length() % 4 == 0) {
+            while (padding < 2 && padding < value.length() && value.charAt(value.length() - 1 - padding) == '=') padding++;
+        }
+        byte[] out = new byte[value.length() / 4 * 3 - padding];
+        int length = fromBase64(value, out, 0);
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Decodes <code>src</code> into <code>dst</code> at <code>offset</code>, which needs room for
+     * <code>src.length() / 4 * 3</code> bytes.
+     *
+     * @return the offset after the last byte written
+     */
+    public static int fromBase64(CharSequence src, byte[] dst, int offset) throws CodecException {
+        int q0 = 0, q1 = 0, q2 = 0, q = 0;
+        for (int i = 0, length = src.length(); i < length; ) {
+            if (q == 0 && i + 4 <= length) {
+                int v0 = digit(src.charAt(i), BASE64_VALUES), v1 = digit(src.charAt(i + 1), BASE64_VALUES),
+                        v2 = digit(src.charAt(i + 2), BASE64_VALUES), v3 = digit(src.charAt(i + 3), BASE64_VALUES);
+                // four alphabet chars, the common case; padding and the rest go one by one
+                if (((v0 | v1 | v2 | v3) & ~0x3f) == 0) {
+                    int bits = v0 << 18 | v1 << 12 | v2 << 6 | v3;
+                    dst[offset++] = (byte) (bits >>> 16);
+                    dst[offset++] = (byte) (bits >>> 8);
+                    dst[offset++] = (byte) bits;
+                    i += 4;
+                    continue;
+                }
+            }
+            int v = digit(src.charAt(i++), BASE64_VALUES);
+            if (v == INVALID) continue;
+            if (v == NOT_ASCII) {
+                throw new CodecException(new IllegalArgumentException("contains illegal character for base64Binary: " + src));
+            }
+            switch (q++) {
+                case 0:
+                    q0 = v;
+                    break;
+                case 1:
+                    q1 = v;
+                    break;
+                case 2:
+                    q2 = v;
+                    break;
+                default:
+                    offset = writeQuadruplet(q0, q1, q2, v, dst, offset);
+                    q = 0;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes complete groups of 4 alphabet chars of <code>src</code> as far as <code>dst</code> has
+     * room for 3 more bytes; the chars of an incomplete group are left for the next call.
+     */
+    public static void fromBase64(CharBuffer src, ByteBuffer dst) throws CodecException {
+        byte[] group = new byte[3];
+        int q0 = 0, q1 = 0, q2 = 0, q = 0;
+        for (int i = src.position(), limit = src.limit(); i < limit && dst.remaining() >= 3; i++) {
+            int v = digit(src.get(i), BASE64_VALUES);
+            if (v == INVALID) continue;
+            if (v == NOT_ASCII) {
+                throw new CodecException(new IllegalArgumentException("contains illegal character for base64Binary at " + i));
+            }
+            switch (q++) {
+                case 0:
+                    q0 = v;
+                    break;
+                case 1:
+                    q1 = v;
+                    break;
+                case 2:
+                    q2 = v;
+                    break;
+                default:
+                    dst.put(group, 0, writeQuadruplet(q0, q1, q2, v, group, 0));
+                    src.position(i + 1);
+                    q = 0;
+            }
         }
     }
 
+    /**
+     * One group of 4 as DatatypeConverter decodes it, <code>=</code> being {@link #PADDING}.
+     */
+    private static int writeQuadruplet(int q0, int q1, int q2, int q3, byte[] dst, int offset) {
+        dst[offset++] = (byte) (q0 << 2 | q1 >> 4);
+        if (q2 != PADDING) dst[offset++] = (byte) (q1 << 4 | q2 >> 2);
+        if (q3 != PADDING) dst[offset++] = (byte) (q2 << 6 | q3);
+        return offset;
+    }
+
     public static byte[] toGzip(byte[] value) {
         if (null == value) return new byte[0];
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -98,61 +334,232 @@ public abstract class CodecUtils {
         }
     }
 
+    /**
+     * Every char as 4 lowercase hex digits, e.g. <code>"你"</code> as <code>4f60</code>.
+     */
     public static String toAscii(String value) {
         if (null == value) return null;
         if (value.isEmpty()) return "";
-        char[] chars = value.toCharArray();
-        Formatter formatter = new Formatter();
-        for (int i = 0; i < chars.length; i++) {
-            formatter.format("%04x", (int) chars[i]);
-        }
-        return formatter.toString();
-    }
-
-    private static int parseInt(char[] value, int offset) {
-        final int limit = -Integer.MAX_VALUE;
-        final int radix = 16;
-        final int multmin = limit / radix;
-        int result = 0;
-        boolean negative = false;
-        if (value.length - offset >= 4) {
-            int digit;
-            for (int i = 0; i < 4; i++) {
-                // Accumulating negatively avoids surprises near MAX_VALUE
-                digit = Character.digit(value[offset++], radix);
-                if (digit < 0) {
-                    throw new NumberFormatException("For input string: \"" + value + "\"");
-                }
-                if (result < multmin) {
-                    throw new NumberFormatException("For input string: \"" + value + "\"");
-                }
-                result *= radix;
-                if (result < limit + digit) {
-                    throw new NumberFormatException("For input string: \"" + value + "\"");
-                }
-                result -= digit;
-            }
-        } else {
-            throw new NumberFormatException("For input string: \"" + value + "\"");
+        char[] out = new char[value.length() * 4];
+        toAscii(value, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Writes the ascii form of <code>src</code> into <code>dst</code> at <code>offset</code>, which
+     * needs room for 4 chars per char.
+     *
+     * @return the offset after the last char written
+     */
+    public static int toAscii(CharSequence src, char[] dst, int offset) {
+        for (int i = 0, length = src.length(); i < length; i++) {
+            char c = src.charAt(i);
+            dst[offset++] = HEX_DIGITS[c >>> 12];
+            dst[offset++] = HEX_DIGITS[c >>> 8 & 0xf];
+            dst[offset++] = HEX_DIGITS[c >>> 4 & 0xf];
+            dst[offset++] = HEX_DIGITS[c & 0xf];
         }
-        return negative ? result : -result;
+        return offset;
     }
 
+    /**
+     * Encodes as many chars of <code>src</code> as <code>dst</code> has room for.
+     */
+    public static void toAscii(CharBuffer src, CharBuffer dst) {
+        while (src.hasRemaining() && dst.remaining() >= 4) {
+            char c = src.get();
+            dst.put(HEX_DIGITS[c >>> 12]);
+            dst.put(HEX_DIGITS[c >>> 8 & 0xf]);
+            dst.put(HEX_DIGITS[c >>> 4 & 0xf]);
+            dst.put(HEX_DIGITS[c & 0xf]);
+        }
+    }
+
+    /**
+     * Reverses {@link #toAscii(String)}; digits may be of either case, an incomplete trailing group
+     * is ignored.
+     *
+     * @return <code>null</code> if <code>value</code> is not in the ascii form
+     */
     public static String fromAscii(String value) {
         if (null == value) return null;
         if (value.isEmpty()) return "";
-        char[] in = value.toCharArray();
-        char[] out = new char[in.length / 4];
-        int offset = 0;
-        try {
-            for (int i = 0; i < out.length; i++) {
-                out[i] = (char) (parseInt(in, offset));
-                offset += 4;
+        char[] out = new char[value.length() / 4];
+        return fromAscii(value, out, 0) < 0 ? null : String.valueOf(out);
+    }
+
+    /**
+     * Decodes the complete groups of 4 of <code>src</code> into <code>dst</code> at
+     * <code>offset</code>.
+     *
+     * @return the offset after the last char written, or -1 if <code>src</code> is malformed
+     */
+    public static int fromAscii(CharSequence src, char[] dst, int offset) {
+        return fromAscii(src, 0, src.length(), dst, offset);
+    }
+
+    /**
+     * Like {@link #fromAscii(CharSequence, char[], int)}, decoding <code>src[from, to)</code>.
+     */
+    public static int fromAscii(CharSequence src, int from, int to, char[] dst, int offset) {
+        int length = from + ((to - from) & ~3);
+        for (int i = from; i < length; i += 4) {
+            int c = group(src.charAt(i), src.charAt(i + 1), src.charAt(i + 2), src.charAt(i + 3));
+            if (c < 0) return -1;
+            dst[offset++] = (char) c;
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes complete groups of 4 of <code>src</code> as far as <code>dst</code> has room; the
+     * chars of an incomplete group are left for the next call.
+     *
+     * @return <code>false</code> if a malformed group was found, <code>src</code> is then positioned
+     * on it
+     */
+    public static boolean fromAscii(CharBuffer src, CharBuffer dst) {
+        while (src.remaining() >= 4 && dst.hasRemaining()) {
+            int p = src.position();
+            int c = group(src.get(p), src.get(p + 1), src.get(p + 2), src.get(p + 3));
+            if (c < 0) return false;
+            src.position(p + 4);
+            dst.put((char) c);
+        }
+        return true;
+    }
+
+    private static int group(char c0, char c1, char c2, char c3) {
+        int d0 = digit(c0, HEX_VALUES), d1 = digit(c1, HEX_VALUES), d2 = digit(c2, HEX_VALUES), d3 = digit(c3, HEX_VALUES);
+        if ((d0 | d1 | d2 | d3) < 0) {
+            // Character.digit also takes non-ASCII digits, as the former parser did
+            d0 = Character.digit(c0, 16);
+            d1 = Character.digit(c1, 16);
+            d2 = Character.digit(c2, 16);
+            d3 = Character.digit(c3, 16);
+            if ((d0 | d1 | d2 | d3) < 0) return -1;
+        }
+        return d0 << 12 | d1 << 8 | d2 << 4 | d3;
+    }
+
+    /**
+     * A denser alternative to {@link #toAscii(String)} for mostly ASCII text, in the same
+     * <code>ascii_bin</code> columns and in the same order: comparing the bytes of two encoded
+     * values gives the {@link String#compareTo} order of the texts.
+     * <p>
+     * The value starts with {@link #COMPACT_MARKER}, which no {@link #toAscii(String)} value does.
+     * Chars <code>"</code> to <code>}</code> stand for themselves; lower chars, space included as
+     * MySQL ignores trailing spaces, are <code>!</code> and one digit; higher chars are
+     * <code>~</code> and three digits, both below and above the plain chars in byte order. Digits
+     * are <code>0</code> to <code>o</code>, base 64. E.g. <code>"a b"</code> is
+     * <code>.a!Pb</code>, <code>"你"</code> is <code>.~4mP</code>.
+     */
+    public static String toCompactAscii(String value) {
+        if (null == value) return null;
+        if (value.isEmpty()) return "";
+        char[] out = new char[compactLength(value)];
+        toCompactAscii(value, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * @return the length of the compact ascii form of <code>src</code>
+     */
+    public static int compactLength(CharSequence src) {
+        int length = 1;
+        for (int i = 0, n = src.length(); i < n; i++) {
+            char c = src.charAt(i);
+            length += c < COMPACT_PLAIN_FIRST ? 2 : c > COMPACT_PLAIN_LAST ? 4 : 1;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the compact ascii form of <code>src</code> into <code>dst</code> at <code>offset</code>,
+     * which needs room for {@link #compactLength(CharSequence)} chars.
+     *
+     * @return the offset after the last char written
+     */
+    public static int toCompactAscii(CharSequence src, char[] dst, int offset) {
+        dst[offset++] = COMPACT_MARKER;
+        for (int i = 0, length = src.length(); i < length; i++) {
+            char c = src.charAt(i);
+            if (c < COMPACT_PLAIN_FIRST) {
+                dst[offset++] = COMPACT_LOW;
+                dst[offset++] = (char) (COMPACT_DIGIT_FIRST + c);
+            } else if (c > COMPACT_PLAIN_LAST) {
+                dst[offset++] = COMPACT_HIGH;
+                dst[offset++] = (char) (COMPACT_DIGIT_FIRST + (c >>> 12));
+                dst[offset++] = (char) (COMPACT_DIGIT_FIRST + (c >>> 6 & 0x3f));
+                dst[offset++] = (char) (COMPACT_DIGIT_FIRST + (c & 0x3f));
+            } else {
+                dst[offset++] = c;
             }
-        } catch (NumberFormatException e) {
-            return null;
         }
-        return String.valueOf(out);
+        return offset;
+    }
+
+    /**
+     * Reverses {@link #toCompactAscii(String)}.
+     *
+     * @return <code>null</code> if <code>value</code> is not in the compact ascii form
+     */
+    public static String fromCompactAscii(String value) {
+        if (null == value) return null;
+        if (value.isEmpty()) return "";
+        char[] out = new char[value.length() - 1];
+        int length = fromCompactAscii(value, out, 0);
+        return length < 0 ? null : new String(out, 0, length);
+    }
+
+    /**
+     * Decodes the compact ascii <code>src</code> into <code>dst</code> at <code>offset</code>, which
+     * needs room for <code>src.length() - 1</code> chars.
+     *
+     * @return the offset after the last char written, or -1 if <code>src</code> is malformed
+     */
+    public static int fromCompactAscii(CharSequence src, char[] dst, int offset) {
+        int length = src.length();
+        if (length == 0 || src.charAt(0) != COMPACT_MARKER) return -1;
+        for (int i = 1; i < length; ) {
+            char c = src.charAt(i++);
+            if (c == COMPACT_LOW) {
+                if (i == length) return -1;
+                int d = compactDigit(src.charAt(i++));
+                if (d < 0 || d >= COMPACT_PLAIN_FIRST) return -1;
+                dst[offset++] = (char) d;
+            } else if (c == COMPACT_HIGH) {
+                if (i + 3 > length) return -1;
+                int d0 = compactDigit(src.charAt(i++)), d1 = compactDigit(src.charAt(i++)), d2 = compactDigit(src.charAt(i++));
+                int d = d0 << 12 | d1 << 6 | d2;
+                if ((d0 | d1 | d2) < 0 || d0 > 0xf || d <= COMPACT_PLAIN_LAST) return -1;
+                dst[offset++] = (char) d;
+            } else if (c >= COMPACT_PLAIN_FIRST && c <= COMPACT_PLAIN_LAST) {
+                dst[offset++] = c;
+            } else {
+                return -1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return whether <code>value</code> is in the compact ascii form rather than the
+     * {@link #toAscii(String)} one; the empty string is both
+     */
+    public static boolean isCompactAscii(CharSequence value) {
+        return null != value && value.length() > 0 && value.charAt(0) == COMPACT_MARKER;
+    }
+
+    private static int compactDigit(char c) {
+        return c >= COMPACT_DIGIT_FIRST && c < COMPACT_DIGIT_FIRST + 64 ? c - COMPACT_DIGIT_FIRST : -1;
+    }
+
+    /**
+     * @return the value of <code>c</code> in <code>table</code>, {@link #INVALID} or {@link #NOT_ASCII}
+     */
+    private static int digit(char c, byte[] table) {
+        return c < 128 ? table[c] : NOT_ASCII;
     }
 
     public static String toGzipBase64(byte[] value) {
@@ -167,7 +574,7 @@ public abstract class CodecUtils {
         System.out.println(toAscii("123"));
         System.out.println(toAscii("你好，中国"));
         System.out.println(fromAscii("4f60597dff0c4e2d56fd"));
-        System.out.println(DatatypeConverter.printHexBinary("你好，中国".getBytes()));
+        System.out.println(toHex("你好，中国".getBytes()));
 //        return ZonedDateTime.of(value, ZONE_ID)
 //                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
 
@@ -0,0 +1,312 @@
+package com.xunkutech.base.model.util;
+
+import java.text.ParsePosition;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Value converters for {@link BeanUtils#deepCopy}, keyed by (source class, target class).
+ * <p>
+ * A converter returns <code>null</code> when it cannot convert a value, so the target is left
+ * alone; none of the built-in ones throw on bad input. The converter for a pair is resolved once,
+ * walking the superclasses and interfaces of the source class, and cached on the source class until
+ * the next {@link #register}; pairs whose target the source class cannot see are resolved every
+ * time, so the cache never keeps a class loader alive. Primitive targets are looked up by their
+ * wrapper class.
+ * <p>
+ * Built in: strings to numbers and booleans, as the wrapper constructors parse them; strings, epoch
+ * millis, {@link Date} and {@link Instant} to {@link Instant} and {@link Date}. Applications can
+ * add or replace converters, e.g.
+ * <pre>
+ *     ConverterUtils.register(String.class, BigDecimal.class, ...);
+ * </pre>
+ */
+public abstract class ConverterUtils {
+
+    private static final Function<Object, Object> NONE = v -> null;
+
+    /**
+     * Legacy text form of dates, e.g. <code>Jan 5, 2018 10:11:12 AM</code>, as a lenient
+     * <code>SimpleDateFormat</code> read it.
+     */
+    private static final DateTimeFormatter LEGACY_DATE = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .parseLenient()
+            .appendPattern("MMM dd, yyyy hh:mm:ss a")
+            .toFormatter();
+
+    private static final ConcurrentMap<Class<?>, Map<Class<?>, Function<Object, Object>>> REGISTERED =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Resolved converters by source class, then by target class; replaced on every registration.
+     */
+    private static volatile ClassValue<ConcurrentMap<Class<?>, Function<Object, Object>>> resolved = newCache();
+
+    static {
+        register(String.class, Integer.class, ConverterUtils::parseInteger);
+        register(String.class, Long.class, s -> parseLong(s, Long.MIN_VALUE, Long.MAX_VALUE));
+        register(String.class, Short.class, s -> {
+            Long v = parseLong(s, Short.MIN_VALUE, Short.MAX_VALUE);
+            return null == v ? null : v.shortValue();
+        });
+        register(String.class, Byte.class, s -> {
+            Long v = parseLong(s, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            return null == v ? null : v.byteValue();
+        });
+        register(String.class, Double.class, s -> {
+            String t = floatingPoint(s);
+            return null == t ? null : Double.parseDouble(t);
+        });
+        register(String.class, Float.class, s -> {
+            String t = floatingPoint(s);
+            return null == t ? null : Float.parseFloat(t);
+        });
+        register(String.class, Boolean.class, s -> "true".equalsIgnoreCase(s));
+
+        register(Date.class, Instant.class, Date::toInstant);
+        register(Long.class, Instant.class, Instant::ofEpochMilli);
+        register(Integer.class, Instant.class, i -> Instant.ofEpochMilli(Integer.toUnsignedLong(i)));
+        register(String.class, Instant.class, ConverterUtils::parseInstant);
+
+        register(Instant.class, Date.class, Date::from);
+        register(Long.class, Date.class, Date::new);
+        register(Integer.class, Date.class, i -> new Date(Integer.toUnsignedLong(i)));
+        register(String.class, Date.class, ConverterUtils::parseDate);
+    }
+
+    /**
+     * Registers, or replaces, the converter from <code>source</code> values, including their
+     * subclasses, to <code>target</code>; it returns <code>null</code> for values it cannot convert.
+     */
+    @SuppressWarnings("unchecked")
+    public static <S, T> void register(Class<S> source, Class<T> target, Function<? super S, ? extends T> converter) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(target, "target");
+        Objects.requireNonNull(converter, "converter");
+        synchronized (REGISTERED) {
+            Map<Class<?>, Function<Object, Object>> bySource = new HashMap<>(
+                    REGISTERED.getOrDefault(ClassUtils.resolvePrimitiveIfNecessary(target), Collections.emptyMap()));
+            bySource.put(ClassUtils.resolvePrimitiveIfNecessary(source), (Function<Object, Object>) converter);
+            REGISTERED.put(ClassUtils.resolvePrimitiveIfNecessary(target), bySource);
+            resolved = newCache();
+        }
+    }
+
+    /**
+     * @return the registered converter for values of <code>source</code> to <code>target</code>, or
+     * <code>null</code> if there is none; values that are already assignable are not converted
+     */
+    public static Function<Object, Object> find(Class<?> source, Class<?> target) {
+        Class<?> targetClass = ClassUtils.resolvePrimitiveIfNecessary(target);
+        Function<Object, Object> converter;
+        if (isVisible(targetClass, source)) {
+            ConcurrentMap<Class<?>, Function<Object, Object>> byTarget = resolved.get(source);
+            converter = byTarget.get(targetClass);
+            if (null == converter) {
+                converter = byTarget.computeIfAbsent(targetClass, t -> resolve(source, t));
+            }
+        } else {
+            converter = resolve(source, targetClass);
+        }
+        return NONE == converter ? null : converter;
+    }
+
+    /**
+     * @return <code>value</code> converted to <code>target</code>, <code>value</code> itself if it is
+     * assignable and no converter is registered, or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convert(Object value, Class<T> target) {
+        if (null == value) return null;
+        Function<Object, Object> converter = find(value.getClass(), target);
+        if (null != converter) return (T) converter.apply(value);
+        return ClassUtils.isAssignableValue(target, value) ? (T) value : null;
+    }
+
+    // ------------------------------------------
+
+    private static ClassValue<ConcurrentMap<Class<?>, Function<Object, Object>>> newCache() {
+        return new ClassValue<ConcurrentMap<Class<?>, Function<Object, Object>>>() {
+            @Override
+            protected ConcurrentMap<Class<?>, Function<Object, Object>> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+
+    /**
+     * Whether <code>target</code> is loaded by the loader of <code>source</code> or one of its
+     * parents, so caching it on <code>source</code> cannot outlive its loader.
+     */
+    private static boolean isVisible(Class<?> target, Class<?> source) {
+        ClassLoader targetLoader = target.getClassLoader();
+        if (null == targetLoader) return true;
+        for (ClassLoader loader = source.getClassLoader(); null != loader; loader = loader.getParent()) {
+            if (loader == targetLoader) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The most specific registered source type wins: superclasses first, then interfaces.
+     */
+    private static Function<Object, Object> resolve(Class<?> source, Class<?> target) {
+        Map<Class<?>, Function<Object, Object>> bySource = REGISTERED.get(target);
+        if (null == bySource) return NONE;
+        for (Class<?> c = ClassUtils.resolvePrimitiveIfNecessary(source); null != c; c = c.getSuperclass()) {
+            Function<Object, Object> converter = bySource.get(c);
+            if (null != converter) return converter;
+        }
+        for (Class<?> c : ClassUtils.getAllInterfacesForClassAsSet(source)) {
+            Function<Object, Object> converter = bySource.get(c);
+            if (null != converter) return converter;
+        }
+        return NONE;
+    }
+
+    private static Integer parseInteger(String s) {
+        Long v = parseLong(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return null == v ? null : v.intValue();
+    }
+
+    /**
+     * {@link Long#parseLong(String)} within <code>[min, max]</code>, with <code>null</code> instead
+     * of {@link NumberFormatException}.
+     */
+    static Long parseLong(String s, long min, long max) {
+        int length = s.length();
+        if (length == 0) return null;
+        int i = 0;
+        boolean negative = false;
+        char first = s.charAt(0);
+        if (first == '-' || first == '+') {
+            if (length == 1) return null;
+            negative = first == '-';
+            i++;
+        }
+        // accumulate negatively, so Long.MIN_VALUE fits
+        long result = 0;
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        for (; i < length; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0 || result < multmin) return null;
+            result *= 10;
+            if (result < limit + digit) return null;
+            result -= digit;
+        }
+        long value = negative ? result : -result;
+        return value < min || value > max ? null : value;
+    }
+
+    /**
+     * @return <code>s</code> trimmed, if it has the syntax {@link Double#parseDouble(String)} accepts,
+     * else <code>null</code>: decimal and hexadecimal floating point literals with an optional type
+     * suffix, <code>NaN</code> and <code>Infinity</code>, all optionally signed
+     */
+    static String floatingPoint(String s) {
+        String t = s.trim();
+        int length = t.length();
+        int i = 0;
+        if (i < length && (t.charAt(i) == '+' || t.charAt(i) == '-')) i++;
+        if (t.startsWith("NaN", i)) return i + 3 == length ? t : null;
+        if (t.startsWith("Infinity", i)) return i + 8 == length ? t : null;
+
+        boolean hex = t.startsWith("0x", i) || t.startsWith("0X", i);
+        if (hex) i += 2;
+        int start = i;
+        while (i < length && isDigit(t.charAt(i), hex)) i++;
+        boolean digits = i > start;
+        if (i < length && t.charAt(i) == '.') {
+            start = ++i;
+            while (i < length && isDigit(t.charAt(i), hex)) i++;
+            digits |= i > start;
+        }
+        if (!digits) return null;
+
+        // the binary exponent of hexadecimal literals is mandatory
+        if (i < length && (hex ? "pP" : "eE").indexOf(t.charAt(i)) >= 0) {
+            i++;
+            if (i < length && (t.charAt(i) == '+' || t.charAt(i) == '-')) i++;
+            start = i;
+            while (i < length && isDigit(t.charAt(i), false)) i++;
+            if (i == start) return null;
+        } else if (hex) {
+            return null;
+        }
+        if (i < length && "fFdD".indexOf(t.charAt(i)) >= 0) i++;
+        return i == length ? t : null;
+    }
+
+    private static boolean isDigit(char c, boolean hex) {
+        return c >= '0' && c <= '9' || hex && (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F');
+    }
+
+    /**
+     * Positive epoch millis, ISO-8601 instants or the legacy text form, in this order.
+     */
+    private static Instant parseInstant(String s) {
+        Long epochMilli = parseLong(s, 1, Long.MAX_VALUE);
+        if (null != epochMilli) return Instant.ofEpochMilli(epochMilli);
+        Instant instant = parseIsoInstant(s);
+        return null != instant ? instant : parseLegacyDate(s);
+    }
+
+    /**
+     * Positive epoch millis, the legacy text form or ISO-8601 instants, in this order.
+     */
+    private static Date parseDate(String s) {
+        Long epochMilli = parseLong(s, 1, Long.MAX_VALUE);
+        if (null != epochMilli) return new Date(epochMilli);
+        Instant instant = parseLegacyDate(s);
+        if (null == instant) instant = parseIsoInstant(s);
+        return null == instant ? null : Date.from(instant);
+    }
+
+    /**
+     * {@link Instant#parse(CharSequence)} without the exception.
+     */
+    private static Instant parseIsoInstant(String s) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = DateTimeFormatter.ISO_INSTANT.parseUnresolved(s, position);
+        if (null == parsed || position.getErrorIndex() >= 0 || position.getIndex() != s.length()) return null;
+        if (!parsed.isSupported(ChronoField.INSTANT_SECONDS)) return null;
+        long nanos = parsed.isSupported(ChronoField.NANO_OF_SECOND) ? parsed.getLong(ChronoField.NANO_OF_SECOND) : 0;
+        try {
+            return Instant.ofEpochSecond(parsed.getLong(ChronoField.INSTANT_SECONDS), nanos);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a prefix of <code>s</code> in the legacy text form, in the default time zone. Field
+     * values out of range roll over into the next field, as with a lenient calendar.
+     */
+    private static Instant parseLegacyDate(String s) {
+        TemporalAccessor parsed = LEGACY_DATE.parseUnresolved(s, new ParsePosition(0));
+        if (null == parsed) return null;
+        try {
+            long year = parsed.getLong(ChronoField.YEAR_OF_ERA);
+            long hour = parsed.getLong(ChronoField.CLOCK_HOUR_OF_AMPM);
+            if (year < Year.MIN_VALUE || year > Year.MAX_VALUE) return null;
+            LocalDateTime time = LocalDate.of((int) year, 1, 1).atStartOfDay()
+                    .plusMonths(parsed.getLong(ChronoField.MONTH_OF_YEAR) - 1)
+                    .plusDays(parsed.getLong(ChronoField.DAY_OF_MONTH) - 1)
+                    .plusHours((hour == 12 ? 0 : hour) + 12 * parsed.getLong(ChronoField.AMPM_OF_DAY))
+                    .plusMinutes(parsed.getLong(ChronoField.MINUTE_OF_HOUR))
+                    .plusSeconds(parsed.getLong(ChronoField.SECOND_OF_MINUTE));
+            return time.atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeException | ArithmeticException e) {
+            return null;
+        }
+    }
+}
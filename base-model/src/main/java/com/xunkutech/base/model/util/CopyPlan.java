@@ -0,0 +1,395 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.ObjectConstructor;
+import com.google.gson.reflect.TypeToken;
+import com.xunkutech.base.model.annotation.Immutable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * One level of {@link BeanUtils#deepCopy}, compiled for a (source class, target class, target type,
+ * filter) combination: the fields to read, the target field they go to, how the value is converted
+ * and the accessors to use are all decided once, so a copy is a loop over prepared steps.
+ * <p>
+ * Plans are cached on the source bean class, or on the target class for map sources, through a
+ * {@link ClassValue}, so they go away with the classes they were built for. Nested beans and maps
+ * get their own plans, looked up by the runtime class of the nested value.
+ */
+final class CopyPlan {
+
+    private static final ConstructorConstructor CONSTRUCTORS = new ConstructorConstructor(Collections.emptyMap());
+
+    private static final ClassValue<Cache> CACHES = new ClassValue<Cache>() {
+        @Override
+        protected Cache computeValue(Class<?> type) {
+            return new Cache();
+        }
+    };
+
+    private final Set<String> includeFields;
+    private final Set<String> excludeFields;
+    private final TargetModel target;
+    /**
+     * Bean sources only: readable fields paired with where they go, in declaration order.
+     */
+    private final Step[] steps;
+
+    private CopyPlan(Class<?> sourceClass, TargetModel target, List<String> includeFields, List<String> excludeFields) {
+        this.includeFields = null == includeFields ? null : new HashSet<>(includeFields);
+        this.excludeFields = null == excludeFields ? null : new HashSet<>(excludeFields);
+        this.target = target;
+
+        if (Map.class == sourceClass) {
+            this.steps = null;
+            return;
+        }
+        List<Step> steps = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        ClassMetadata metadata = ClassMetadata.of(sourceClass);
+        for (Field sourceField : metadata.fields()) {
+            String name = sourceField.getName();
+            if (Modifier.isTransient(sourceField.getModifiers()) || Modifier.isStatic(sourceField.getModifiers())
+                    || !accepts(name) || !seen.add(name)) {
+                continue;
+            }
+            FieldWriter writer = null;
+            if (null != target.writers) {
+                writer = target.writers.get(name);
+                if (null == writer) continue;
+            }
+            // Read by name like ReflectionUtils.getValue: the most derived field of that name.
+            steps.add(new Step(name, metadata.getter(name), writer));
+        }
+        this.steps = steps.toArray(new Step[0]);
+    }
+
+    static CopyPlan of(Object source, Object target, Type context, List<String> includeFields, List<String> excludeFields) {
+        Class<?> sourceClass = source instanceof Map ? Map.class : source.getClass();
+        Class<?> targetClass = target.getClass();
+        Cache cache = CACHES.get(Map.class == sourceClass ? targetClass : sourceClass);
+        return cache.plans.computeIfAbsent(new Key(sourceClass, targetClass, context, includeFields, excludeFields),
+                k -> new CopyPlan(sourceClass,
+                        cache.targets.computeIfAbsent(new Key(targetClass, null, context, null, null),
+                                t -> new TargetModel(targetClass, context)),
+                        includeFields, excludeFields));
+    }
+
+    /**
+     * @param changes collects what the copy changes in the target, and values that would not change
+     *                are then not written; <code>null</code> to write everything untracked
+     */
+    void copy(Object source, Object target, String path, Map<String, List<String>> filterMap, ChangeSet changes) {
+        if (null == steps) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) source).entrySet()) {
+                String name = entry.getKey().toString();
+                if (!accepts(name)) continue;
+                if (null == this.target.writers) {
+                    this.target.put(target, name, entry.getValue(), path, changes);
+                } else {
+                    FieldWriter writer = this.target.writers.get(name);
+                    if (null != writer) {
+                        writer.write(target, entry.getValue(), path, filterMap, changes);
+                    }
+                }
+            }
+            return;
+        }
+
+        for (Step step : steps) {
+            Object value = step.get(source);
+            if (null == value) continue;
+            if (null == step.writer) {
+                this.target.put(target, step.name, value, path, changes);
+            } else {
+                step.writer.write(target, value, path, filterMap, changes);
+            }
+        }
+    }
+
+    /**
+     * Include filters win; without them everything not excluded is copied.
+     */
+    private boolean accepts(String name) {
+        if (null != includeFields) return includeFields.contains(name);
+        if (null != excludeFields) return !excludeFields.contains(name);
+        return true;
+    }
+
+    // ------------------------------------------
+
+    private static final class Step {
+        final String name;
+        final MethodHandle getter;
+        final FieldWriter writer;
+
+        Step(String name, MethodHandle getter, FieldWriter writer) {
+            this.name = name;
+            this.getter = getter;
+            this.writer = writer;
+        }
+
+        Object get(Object source) {
+            try {
+                return (Object) getter.invokeExact(source);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    /**
+     * What a value can be copied into: either a map, with its key and value types resolved, or the
+     * writable fields of a bean by name.
+     */
+    private static final class TargetModel {
+        final boolean stringKeys;
+        final Class<?> valueClass;
+        /**
+         * null for map targets.
+         */
+        final Map<String, FieldWriter> writers;
+
+        TargetModel(Class<?> targetClass, Type context) {
+            if (Map.class.isAssignableFrom(targetClass)) {
+                Type[] mapTypes = $Gson$Types.getMapKeyAndValueTypes(context, targetClass);
+                this.stringKeys = ClassUtils.isAssignable($Gson$Types.getRawType(mapTypes[0]), String.class);
+                this.valueClass = $Gson$Types.getRawType(mapTypes[1]);
+                this.writers = null;
+                return;
+            }
+            this.stringKeys = false;
+            this.valueClass = null;
+            Map<String, FieldWriter> writers = new HashMap<>();
+            // The most derived declaration of each name, like ReflectionUtils.getAccessibleField.
+            ClassMetadata metadata = ClassMetadata.of(targetClass);
+            for (Field field : metadata.mostDerivedFields()) {
+                if (!field.isAnnotationPresent(Immutable.class) && !Modifier.isStatic(field.getModifiers())) {
+                    writers.put(field.getName(), new FieldWriter(field, metadata,
+                            $Gson$Types.resolve(context, targetClass, field.getGenericType())));
+                }
+            }
+            this.writers = writers;
+        }
+
+        @SuppressWarnings("unchecked")
+        void put(Object target, String name, Object value, String path, ChangeSet changes) {
+            Objects.requireNonNull(value, "value is null");
+            if (stringKeys && ClassUtils.isAssignableValue(valueClass, value)) {
+                Map<Object, Object> map = (Map<Object, Object>) target;
+                if (null != changes) {
+                    Object old = map.get(name);
+                    if (Objects.deepEquals(old, value)) return;
+                    changes.add(path + "." + name, old, value);
+                }
+                map.put(name, value);
+            }
+        }
+    }
+
+    private enum Kind {
+        PRIMITIVE, STRING, INSTANT, DATE, ENUM, MAP, COLLECTION, ARRAY, OBJECT
+    }
+
+    /**
+     * Converts a value for one target field and stores it; a converter registered for the value and
+     * field class takes precedence, see {@link ConverterUtils}.
+     */
+    private static final class FieldWriter {
+        final Field field;
+        final Type fieldType;
+        final Kind kind;
+        final MethodHandle getter;
+        final MethodHandle setter;
+        final ObjectConstructor<?> constructor;
+        final Class<?> elementClass;
+        final Map<String, Object> enumConstants;
+
+        FieldWriter(Field field, ClassMetadata metadata, Type fieldType) {
+            this.field = field;
+            this.fieldType = fieldType;
+            Class<?> fieldClass = field.getType();
+            this.getter = metadata.getter(field.getName());
+            this.setter = metadata.setter(field.getName());
+
+            ObjectConstructor<?> constructor = null;
+            Class<?> elementClass = null;
+            Map<String, Object> enumConstants = null;
+            if (ClassUtils.isPrimitiveOrWrapper(fieldClass)) {
+                kind = Kind.PRIMITIVE;
+            } else if (String.class.isAssignableFrom(fieldClass)) {
+                kind = Kind.STRING;
+            } else if (Instant.class.isAssignableFrom(fieldClass)) {
+                kind = Kind.INSTANT;
+            } else if (Date.class.isAssignableFrom(fieldClass)) {
+                kind = Kind.DATE;
+            } else if (fieldClass.isEnum()) {
+                kind = Kind.ENUM;
+                enumConstants = new HashMap<>();
+                for (Enum<?> constant : (Enum[]) fieldClass.getEnumConstants()) {
+                    enumConstants.put(constant.name().toLowerCase(), constant);
+                }
+            } else if (Map.class.isAssignableFrom(fieldClass)) {
+                kind = Kind.MAP;
+                constructor = CONSTRUCTORS.get(TypeToken.get(fieldType));
+            } else if (Collection.class.isAssignableFrom(fieldClass)) {
+                kind = Kind.COLLECTION;
+                constructor = CONSTRUCTORS.get(TypeToken.get(fieldType));
+                elementClass = $Gson$Types.getRawType($Gson$Types.getCollectionElementType(fieldType, fieldClass));
+            } else if (fieldClass.isArray()) {
+                kind = Kind.ARRAY;
+                elementClass = $Gson$Types.getRawType($Gson$Types.getArrayComponentType(fieldType));
+            } else {
+                kind = Kind.OBJECT;
+            }
+            this.constructor = constructor;
+            this.elementClass = elementClass;
+            this.enumConstants = enumConstants;
+        }
+
+        void write(Object target, Object value, String path, Map<String, List<String>> filterMap, ChangeSet changes) {
+            Objects.requireNonNull(value, "value is null");
+            try {
+                Function<Object, Object> converter = ConverterUtils.find(value.getClass(), field.getType());
+                if (null != converter) {
+                    Object converted = converter.apply(value);
+                    if (null != converted) {
+                        assign(target, converted, path, changes);
+                    }
+                    return;
+                }
+                switch (kind) {
+                    case PRIMITIVE:
+                    case INSTANT:
+                    case DATE:
+                        if (ClassUtils.isAssignableValue(field.getType(), value)) {
+                            assign(target, value, path, changes);
+                        }
+                        return;
+                    case STRING:
+                        assign(target, value.toString(), path, changes);
+                        return;
+                    case ENUM:
+                        Object constant = enumConstants.get(value.toString().toLowerCase());
+                        if (null != constant) {
+                            assign(target, constant, path, changes);
+                        }
+                        return;
+                    case MAP:
+                        Object map = constructor.construct();
+                        BeanUtils.deepCopy(value, map, fieldType, path + "." + field.getName(), filterMap, null);
+                        assign(target, map, path, changes);
+                        return;
+                    case COLLECTION:
+                        @SuppressWarnings("unchecked")
+                        Collection<Object> collection = (Collection<Object>) constructor.construct();
+                        collection.addAll(BeanUtils.wrapToList(value, elementClass));
+                        assign(target, collection, path, changes);
+                        return;
+                    case ARRAY:
+                        List<?> list = BeanUtils.wrapToList(value, elementClass);
+                        int size = list.size();
+                        Object array = Array.newInstance(elementClass, size);
+                        for (int i = 0; i < size; i++) {
+                            Array.set(array, i, list.get(i));
+                        }
+                        assign(target, array, path, changes);
+                        return;
+                    default:
+                        // Copies into the instance the target already holds; a null one stays null.
+                        Object current = get(target);
+                        if (null != current) {
+                            BeanUtils.deepCopy(value, current, fieldType, path + "." + field.getName(), filterMap, changes);
+                        }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Object get(Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * Sets the field, unless changes are tracked and it already holds an equal value.
+         */
+        private void assign(Object target, Object value, String path, ChangeSet changes) throws IllegalAccessException {
+            if (null != changes) {
+                Object old = get(target);
+                if (Objects.deepEquals(old, value)) return;
+                changes.add(path + "." + field.getName(), old, value);
+            }
+            set(target, value);
+        }
+
+        private void set(Object target, Object value) throws IllegalAccessException {
+            try {
+                setter.invokeExact(target, value);
+            } catch (IllegalAccessException e) {
+                throw e;
+            } catch (ClassCastException | IllegalArgumentException e) {
+                throw new IllegalAccessException(String.format("Unable to set field '%s' on object '%s' due to %s: %s",
+                        field.getName(), target, e.getClass().getSimpleName(), e.getMessage()));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    // ------------------------------------------
+
+    private static final class Cache {
+        final ConcurrentMap<Key, CopyPlan> plans = new ConcurrentHashMap<>();
+        final ConcurrentMap<Key, TargetModel> targets = new ConcurrentHashMap<>();
+    }
+
+    private static final class Key {
+        final Class<?> source;
+        final Class<?> target;
+        final Type context;
+        final List<String> includeFields;
+        final List<String> excludeFields;
+        final int hash;
+
+        Key(Class<?> source, Class<?> target, Type context, List<String> includeFields, List<String> excludeFields) {
+            this.source = source;
+            this.target = target;
+            this.context = context;
+            this.includeFields = includeFields;
+            this.excludeFields = excludeFields;
+            this.hash = Objects.hash(source, target, context, includeFields, excludeFields);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return source == k.source && target == k.target && Objects.equals(context, k.context)
+                    && Objects.equals(includeFields, k.includeFields) && Objects.equals(excludeFields, k.excludeFields);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.xunkutech.base.model.annotation.GsonAdapter;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Runtime side of the adapters generated for {@link GsonAdapter} beans.
+ */
+public abstract class GeneratedAdapters {
+
+    public static final String ADAPTER_SUFFIX = "_GsonAdapter";
+
+    /**
+     * Binary name of the adapter generated for <code>beanClass</code>.
+     */
+    public static String adapterClassName(Class<?> beanClass) {
+        String packagePrefix = null == beanClass.getPackage() ? "" : beanClass.getPackage().getName() + ".";
+        String simpleName = beanClass.getName().substring(packagePrefix.length()).replace('$', '_');
+        return packagePrefix + simpleName + ADAPTER_SUFFIX;
+    }
+
+    /**
+     * Writes a field value the way Gson's reflective adapter does: a more specific runtime type wins
+     * unless it would only be handled reflectively while the declared type has a dedicated adapter.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void write(Gson gson, JsonWriter out, TypeAdapter<T> declared, Class<?> declaredType, T value)
+            throws IOException {
+        TypeAdapter<T> chosen = declared;
+        if (null != value && value.getClass() != declaredType) {
+            TypeAdapter<T> runtime = (TypeAdapter<T>) gson.getAdapter(value.getClass());
+            if (!(runtime instanceof ReflectiveTypeAdapterFactory.Adapter)
+                    || declared instanceof ReflectiveTypeAdapterFactory.Adapter) {
+                chosen = runtime;
+            }
+        }
+        chosen.write(out, value);
+    }
+
+    /**
+     * Hands out the generated adapter of {@link GsonAdapter} beans. A bean compiled without the
+     * processor falls back to Gson's reflective adapter.
+     */
+    public static class Factory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> rawType = type.getRawType();
+            if (type.getType() != rawType || !rawType.isAnnotationPresent(GsonAdapter.class)) {
+                return null;
+            }
+            try {
+                Class<?> adapterClass = Class.forName(adapterClassName(rawType), true, rawType.getClassLoader());
+                return (TypeAdapter<T>) adapterClass.getConstructor(Gson.class).newInstance(gson);
+            } catch (ClassNotFoundException e) {
+                return null;
+            } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.JsonElement;
+
+import java.io.*;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A {@link Clob} holding json as UTF-8 bytes, written straight from the object graph by Gson.
+ * <p>
+ * Mostly ASCII json takes one byte per character here instead of two, and there is no intermediate
+ * {@link StringWriter} growing by copies. Hibernate's stock <code>clob</code> type reads any clob
+ * but its own into a {@link String} before binding it; the <code>JsonClobType</code> that base-dao
+ * registers instead hands the driver a {@link Reader} over the bytes. Whether the driver then
+ * streams it is up to the driver: MySQL Connector/J buffers it for client side prepared statements.
+ * Read only apart from {@link #free()}.
+ */
+public final class JsonClob implements Clob, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private byte[] utf8;
+    private int size;
+    private long length;
+
+    private JsonClob(byte[] utf8, int size, long length) {
+        this.utf8 = utf8;
+        this.size = size;
+        this.length = length;
+    }
+
+    /**
+     * Serializes <code>src</code> as json.
+     */
+    public static JsonClob of(Object src) {
+        return write(writer -> JsonUtils.toJson(src, writer));
+    }
+
+    /**
+     * Holds already serialized json text.
+     */
+    public static JsonClob ofText(String json) {
+        return write(writer -> writer.write(json));
+    }
+
+    /**
+     * Streams <code>target</code>, which may be <code>null</code>, through an RFC 7386 merge patch,
+     * see {@link JsonUtils#mergePatch(Reader, JsonElement, Writer)}.
+     */
+    public static JsonClob mergePatch(Clob target, JsonElement patch) {
+        return write(writer -> {
+            if (null == target) {
+                JsonUtils.mergePatch((Reader) null, patch, writer);
+                return;
+            }
+            try (Reader reader = target.getCharacterStream()) {
+                JsonUtils.mergePatch(reader, patch, writer);
+            }
+        });
+    }
+
+    /**
+     * Reads a whole {@link Clob}, e.g. one loaded by the driver, as a string.
+     */
+    public static String toText(Clob clob) {
+        if (null == clob) return null;
+        try (Reader reader = clob.getCharacterStream()) {
+            StringBuilder sb = new StringBuilder((int) Math.min(clob.length(), Integer.MAX_VALUE));
+            char[] buf = new char[JsonUtils.BUFFER_SIZE];
+            int n;
+            while ((n = reader.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public long length() throws SQLException {
+        checkNotFreed();
+        return length;
+    }
+
+    @Override
+    public Reader getCharacterStream() throws SQLException {
+        checkNotFreed();
+        return new Utf8Reader(new ByteArrayInputStream(utf8, 0, size), JsonUtils.BUFFER_SIZE);
+    }
+
+    @Override
+    public Reader getCharacterStream(long pos, long length) throws SQLException {
+        if (pos < 1 || length < 0 || pos - 1 + length > this.length) {
+            throw new SQLException("Invalid position " + pos + " or length " + length);
+        }
+        Reader reader = getCharacterStream();
+        try {
+            skipFully(reader, pos - 1);
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+        return new BoundedReader(reader, length);
+    }
+
+    @Override
+    public String getSubString(long pos, int length) throws SQLException {
+        try (Reader reader = getCharacterStream(pos, Math.min(length, this.length - pos + 1))) {
+            StringBuilder sb = new StringBuilder(length);
+            char[] buf = new char[Math.min(Math.max(length, 1), JsonUtils.BUFFER_SIZE)];
+            int n;
+            while ((n = reader.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    public InputStream getAsciiStream() throws SQLException {
+        throw new SQLFeatureNotSupportedException("Use getCharacterStream");
+    }
+
+    @Override
+    public long position(String searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public long position(Clob searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public int setString(long pos, String str) throws SQLException {
+        throw new SQLFeatureNotSupportedException("JsonClob is read only");
+    }
+
+    @Override
+    public int setString(long pos, String str, int offset, int len) throws SQLException {
+        throw new SQLFeatureNotSupportedException("JsonClob is read only");
+    }
+
+    @Override
+    public OutputStream setAsciiStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException("JsonClob is read only");
+    }
+
+    @Override
+    public Writer setCharacterStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException("JsonClob is read only");
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw new SQLFeatureNotSupportedException("JsonClob is read only");
+    }
+
+    @Override
+    public void free() {
+        utf8 = null;
+    }
+
+    private static JsonClob write(Content content) {
+        Buffer buffer = new Buffer();
+        CountingWriter writer = new CountingWriter(new Utf8Writer(buffer, JsonUtils.BUFFER_SIZE));
+        try {
+            content.writeTo(writer);
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return new JsonClob(buffer.array(), buffer.size(), writer.count);
+    }
+
+    private void checkNotFreed() throws SQLException {
+        if (null == utf8) throw new SQLException("JsonClob has been freed");
+    }
+
+    private static void skipFully(Reader reader, long n) throws IOException {
+        while (n > 0) {
+            long skipped = reader.skip(n);
+            if (skipped <= 0) throw new EOFException();
+            n -= skipped;
+        }
+    }
+
+    // ------------------------------------------
+
+    @FunctionalInterface
+    private interface Content {
+        void writeTo(Writer writer) throws IOException, SQLException;
+    }
+
+    /**
+     * Exposes its array, so the clob shares it instead of copying.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(JsonUtils.BUFFER_SIZE);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static final class CountingWriter extends FilterWriter {
+        long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+    }
+
+    private static final class BoundedReader extends FilterReader {
+        private long remaining;
+
+        BoundedReader(Reader in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int c = in.read();
+            if (c >= 0) remaining--;
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(cbuf, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+    }
+}
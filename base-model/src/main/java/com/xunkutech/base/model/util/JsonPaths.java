@@ -0,0 +1,228 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * A compiled set of json paths, projecting only their values out of a json document in one pass
+ * of a {@link JsonReader}: subtrees no path leads into are skipped without being built, and reading
+ * stops as soon as every path has been found.
+ * <p>
+ * A path is a chain of member names and array indices, e.g. <code>status</code>,
+ * <code>order.amount</code>, <code>items[0].price</code> or <code>$.items[0]</code>; member names
+ * containing <code>.</code> or <code>[</code> cannot be addressed. Spellings of the same path, e.g.
+ * <code>a</code> and <code>$.a</code>, are each found. Compile once and share, the instance is
+ * immutable:
+ * <pre>
+ *     private static final JsonPaths STATUS = JsonPaths.of("status", "order.amount");
+ *     ...
+ *     Map&lt;String, JsonElement&gt; values = STATUS.project(jsonText);
+ * </pre>
+ */
+public final class JsonPaths {
+
+    private static final TypeAdapter<JsonElement> ELEMENT = JsonUtils.GSON.getAdapter(JsonElement.class);
+
+    private final List<String> paths;
+    private final Node root = new Node();
+
+    private JsonPaths(List<String> paths) {
+        this.paths = paths;
+        for (String path : paths) {
+            compile(path);
+        }
+    }
+
+    public static JsonPaths of(String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    public static JsonPaths of(Collection<String> paths) {
+        Objects.requireNonNull(paths, "paths");
+        if (paths.isEmpty()) throw new IllegalArgumentException("No json path given");
+        return new JsonPaths(Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(paths))));
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return the value of every path found in <code>json</code>, keyed by the path as given, in
+     * document order; paths that are not there are left out, <code>null</code> values are
+     * {@link com.google.gson.JsonNull}
+     * @throws JsonSyntaxException if the json is malformed up to the point where all paths are found
+     */
+    public Map<String, JsonElement> project(String json) {
+        if (null == json || json.isEmpty()) return new LinkedHashMap<>();
+        return project(new StringReader(json));
+    }
+
+    /**
+     * Like {@link #project(String)}, reading from <code>reader</code>, which is left open and
+     * possibly not read to the end.
+     */
+    public Map<String, JsonElement> project(Reader reader) {
+        Map<String, JsonElement> found = new LinkedHashMap<>();
+        if (null == reader) return found;
+        JsonReader in = new JsonReader(reader);
+        in.setLenient(true);
+        try {
+            walk(in, root, found);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+        return found;
+    }
+
+    /**
+     * Reads a projected value as <code>type</code>.
+     */
+    public static <T> T valueOf(Map<String, JsonElement> projection, String path, Type type) {
+        JsonElement element = projection.get(path);
+        return null == element ? null : JsonUtils.GSON.fromJson(element, type);
+    }
+
+    // ------------------------------------------
+
+    /**
+     * @return <code>true</code> once every path has been found
+     */
+    private boolean walk(JsonReader in, Node node, Map<String, JsonElement> found) throws IOException {
+        if (null != node.paths) {
+            JsonElement element = ELEMENT.read(in);
+            for (String path : node.paths) {
+                found.put(path, element);
+            }
+            collect(element, node, found);
+            return found.size() == paths.size();
+        }
+
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                if (null == node.members) break;
+                in.beginObject();
+                while (in.hasNext()) {
+                    Node child = node.members.get(in.nextName());
+                    if (null == child) {
+                        in.skipValue();
+                    } else if (walk(in, child, found)) {
+                        return true;
+                    }
+                }
+                in.endObject();
+                return false;
+            case BEGIN_ARRAY:
+                if (null == node.elements) break;
+                in.beginArray();
+                for (int i = 0; in.hasNext(); i++) {
+                    Node child = node.elements.get(i);
+                    if (null == child) {
+                        in.skipValue();
+                    } else if (walk(in, child, found)) {
+                        return true;
+                    }
+                }
+                in.endArray();
+                return false;
+            default:
+        }
+        in.skipValue();
+        return false;
+    }
+
+    /**
+     * Picks paths running through an already read value, e.g. <code>a.b</code> when <code>a</code>
+     * is requested as well.
+     */
+    private static void collect(JsonElement element, Node node, Map<String, JsonElement> found) {
+        if (null != node.members && element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            for (Map.Entry<String, Node> entry : node.members.entrySet()) {
+                JsonElement child = object.get(entry.getKey());
+                if (null != child) pick(child, entry.getValue(), found);
+            }
+        }
+        if (null != node.elements && element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (Map.Entry<Integer, Node> entry : node.elements.entrySet()) {
+                if (entry.getKey() < array.size()) pick(array.get(entry.getKey()), entry.getValue(), found);
+            }
+        }
+    }
+
+    private static void pick(JsonElement element, Node node, Map<String, JsonElement> found) {
+        if (null != node.paths) {
+            for (String path : node.paths) {
+                found.put(path, element);
+            }
+        }
+        collect(element, node, found);
+    }
+
+    private void compile(String path) {
+        Objects.requireNonNull(path, "path");
+        String s = path.startsWith("$") ? path.substring(1) : path;
+        if (s.startsWith(".")) s = s.substring(1);
+        if (s.isEmpty()) throw new IllegalArgumentException("Invalid json path: " + path);
+
+        Node node = root;
+        int i = 0;
+        while (i < s.length()) {
+            int end = i;
+            while (end < s.length() && s.charAt(end) != '.' && s.charAt(end) != '[') end++;
+            if (end > i) {
+                node = node.member(s.substring(i, end));
+            } else if (end == s.length() || s.charAt(end) != '[' || (i > 0 && s.charAt(i - 1) == '.')) {
+                throw new IllegalArgumentException("Invalid json path: " + path);
+            }
+            i = end;
+            while (i < s.length() && s.charAt(i) == '[') {
+                int close = s.indexOf(']', i);
+                if (close < 0) throw new IllegalArgumentException("Invalid json path: " + path);
+                try {
+                    node = node.element(Integer.parseInt(s.substring(i + 1, close)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid json path: " + path, e);
+                }
+                i = close + 1;
+            }
+            if (i < s.length()) {
+                if (s.charAt(i) != '.' || i + 1 == s.length()) {
+                    throw new IllegalArgumentException("Invalid json path: " + path);
+                }
+                i++;
+            }
+        }
+        // the same node may be reached by several spellings, each is reported as given
+        if (null == node.paths) node.paths = new ArrayList<>(1);
+        node.paths.add(path);
+    }
+
+    private static final class Node {
+        List<String> paths;
+        Map<String, Node> members;
+        Map<Integer, Node> elements;
+
+        Node member(String name) {
+            if (null == members) members = new HashMap<>();
+            return members.computeIfAbsent(name, n -> new Node());
+        }
+
+        Node element(int index) {
+            if (index < 0) throw new IllegalArgumentException("Invalid json array index: " + index);
+            if (null == elements) elements = new HashMap<>();
+            return elements.computeIfAbsent(index, n -> new Node());
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package com.xunkutech.base.model.util;
 
 import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.internal.Streams;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 import com.xunkutech.base.model.AbstractBaseEntity;
+import com.xunkutech.base.model.compress.CompressionCodec;
+import com.xunkutech.base.model.compress.CompressionCodecs;
 
 import javax.persistence.OneToMany;
 import javax.persistence.Transient;
-import java.io.IOException;
+import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.zip.ZipException;
 
 import static java.lang.reflect.Modifier.STATIC;
 import static java.lang.reflect.Modifier.TRANSIENT;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
 /**
  * Created by jason on 7/17/17.
@@ -28,6 +36,14 @@ public abstract class JsonUtils {
     public static Gson GSON;
     public static GsonBuilder GSON_BUILDER;
 
+    static final int BUFFER_SIZE = 2048;
+
+    /**
+     * Json objects read into untyped maps with at most this many entries are kept in a {@link CompactMap},
+     * 0 (the default) disables it. Set with <code>-Djson.compact-map-size=8</code>.
+     */
+    private static final int COMPACT_MAP_SIZE = Integer.getInteger("json.compact-map-size", 0);
+
     private static class ByteArraySerializer
             implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
 
@@ -193,6 +209,93 @@ public abstract class JsonUtils {
         }
     }
 
+    /**
+     * Reads any <code>Map</code> typed value (whatever its type arguments) as plain java values
+     * straight from the token stream: objects become {@link LinkedTreeMap}s, or {@link CompactMap}s
+     * when they have at most <code>compactMapSize</code> entries, arrays become {@link ArrayList}s
+     * and integral numbers become Long, other numbers Double. Writing is left to Gson's map adapter.
+     */
+    static class NaturalMapTypeAdapterFactory implements TypeAdapterFactory {
+
+        private final int compactMapSize;
+
+        NaturalMapTypeAdapterFactory(int compactMapSize) {
+            this.compactMapSize = compactMapSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Map.class) {
+                return null;
+            }
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+
+            return new TypeAdapter<T>() {
+                public void write(JsonWriter out, T value) throws IOException {
+                    delegate.write(out, value);
+                }
+
+                public T read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        return null;
+                    }
+                    return (T) (Map<String, Object>) readValue(in);
+                }
+            };
+        }
+
+        private Object readValue(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    return readObject(in);
+                case BEGIN_ARRAY:
+                    List<Object> list = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        list.add(readValue(in));
+                    }
+                    in.endArray();
+                    return list;
+                case STRING:
+                    return in.nextString();
+                case NUMBER:
+                    Number num = new LazilyParsedNumber(in.nextString());
+                    // this solution will transform 3.0 float to long values
+                    if (Math.ceil(num.doubleValue()) == num.longValue())
+                        return num.longValue();
+                    else {
+                        return num.doubleValue();
+                    }
+                case BOOLEAN:
+                    return in.nextBoolean();
+                case NULL:
+                    in.nextNull();
+                    return null;
+                default:
+                    throw new JsonSyntaxException("Unexpected " + in.peek() + " at " + in.getPath());
+            }
+        }
+
+        private Map<String, Object> readObject(JsonReader in) throws IOException {
+            Map<String, Object> map = compactMapSize > 0 ? new CompactMap<>(compactMapSize) : new LinkedTreeMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                Object value = readValue(in);
+                if (map.size() == compactMapSize && map instanceof CompactMap && !map.containsKey(name)) {
+                    Map<String, Object> large = new LinkedTreeMap<>();
+                    large.putAll(map);
+                    map = large;
+                }
+                map.put(name, value);
+            }
+            in.endObject();
+            return map;
+        }
+    }
+
     private static class CustomerExclusionStrategy implements ExclusionStrategy {
         public boolean shouldSkipClass(Class<?> clazz) {
             return false;
@@ -223,55 +326,13 @@ public abstract class JsonUtils {
                 .registerTypeAdapter(byte[].class, new ByteArraySerializer())
                 .registerTypeAdapter(Locale.class, new LocaleSerializer())
                 .registerTypeAdapterFactory(new LowercaseEnumTypeAdapterFactory())
+                .registerTypeAdapterFactory(new GeneratedAdapters.Factory())
 //                .registerTypeAdapter(Double.class, (JsonSerializer<Double>) (src, typeOfSrc, context) -> {
 //                    if (src == src.longValue())
 //                        return new JsonPrimitive(src.longValue());
 //                    return new JsonPrimitive(src);
 //                })
-                .registerTypeAdapter(Map.class, new JsonDeserializer<Map<String, Object>>() {
-                    @Override
-                    @SuppressWarnings("unchecked")
-                    public Map<String, Object> deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-                        return (Map<String, Object>) read(json);
-                    }
-
-                    public Object read(JsonElement in) {
-                        if (in.isJsonArray()) {
-                            List<Object> list = new ArrayList<>();
-                            JsonArray arr = in.getAsJsonArray();
-                            for (JsonElement anArr : arr) {
-                                list.add(read(anArr));
-                            }
-                            return list;
-                        } else if (in.isJsonObject()) {
-                            Map<String, Object> map = new LinkedTreeMap<>();
-                            JsonObject obj = in.getAsJsonObject();
-                            Set<Map.Entry<String, JsonElement>> entitySet = obj.entrySet();
-                            for (Map.Entry<String, JsonElement> entry : entitySet) {
-                                map.put(entry.getKey(), read(entry.getValue()));
-                            }
-                            return map;
-                        } else if (in.isJsonPrimitive()) {
-                            JsonPrimitive prim = in.getAsJsonPrimitive();
-                            if (prim.isBoolean()) {
-                                return prim.getAsBoolean();
-                            } else if (prim.isString()) {
-                                return prim.getAsString();
-                            } else if (prim.isNumber()) {
-                                Number num = prim.getAsNumber();
-                                // here you can handle double int/long values
-                                // and return any type you want
-                                // this solution will transform 3.0 float to long values
-                                if (Math.ceil(num.doubleValue()) == num.longValue())
-                                    return num.longValue();
-                                else {
-                                    return num.doubleValue();
-                                }
-                            }
-                        }
-                        return null;
-                    }
-                })
+                .registerTypeAdapterFactory(new NaturalMapTypeAdapterFactory(COMPACT_MAP_SIZE))
         ;
 
         GSON = GSON_BUILDER.create();
@@ -313,39 +374,122 @@ public abstract class JsonUtils {
         return fromJson(CodecUtils.fromAscii(src), type);
     }
 
+    /**
+     * Writes <code>src</code> as UTF-8 json to <code>out</code>, which is flushed but left open.
+     */
+    public static void toJson(Object src, OutputStream out) {
+        try {
+            Writer writer = new Utf8Writer(out, BUFFER_SIZE);
+            GSON.toJson(src, writer);
+            writer.close();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Writes <code>src</code> as json to <code>writer</code>, which is flushed but left open.
+     */
+    public static void toJson(Object src, Writer writer) {
+        try {
+            GSON.toJson(src, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Reads json from <code>reader</code>, e.g. the character stream of a {@link java.sql.Clob};
+     * the reader is left open.
+     */
+    public static <T> T fromJson(Reader reader, Type type) {
+        if (null == reader || null == type) return null;
+        try {
+            return GSON.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads UTF-8 json from <code>in</code>; the stream is left open.
+     */
+    public static <T> T fromJson(InputStream in, Class<T> classOfT) {
+        if (null == in || null == classOfT) return null;
+        return GSON.fromJson(new Utf8Reader(in, BUFFER_SIZE), classOfT);
+    }
+
+    public static <T> T fromJson(InputStream in, Type type) {
+        if (null == in || null == type) return null;
+        try {
+            return GSON.fromJson(new Utf8Reader(in, BUFFER_SIZE), type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
     public static <T> byte[] toBin(T src) {
         if (null == src) return null;
-        return toJson(src).getBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        toJson(src, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes <code>src</code> as UTF-8 json into <code>dst</code> starting at its position.
+     *
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the json does not fit
+     */
+    public static <T> int toBin(T src, ByteBuffer dst) {
+        int start = dst.position();
+        toJson(src, new ByteBufferOutputStream(dst));
+        return dst.position() - start;
     }
 
     public static <T> T fromBin(byte[] src, Class<T> classOfT) {
         if (null == src || src.length == 0) return null;
-        return fromJson(new String(src), classOfT);
+        return fromJson(new ByteArrayInputStream(src), classOfT);
     }
 
     public static <T> T fromBin(byte[] src, Type type) {
         if (null == src || src.length == 0) return null;
-        return fromJson(new String(src), type);
+        return fromJson(new ByteArrayInputStream(src), type);
+    }
+
+    /**
+     * Reads the remaining bytes of <code>src</code>; its position is not changed.
+     */
+    public static <T> T fromBin(ByteBuffer src, Class<T> classOfT) {
+        if (null == src || !src.hasRemaining()) return null;
+        return fromJson(new ByteBufferInputStream(src.duplicate()), classOfT);
+    }
+
+    public static <T> T fromBin(ByteBuffer src, Type type) {
+        if (null == src || !src.hasRemaining()) return null;
+        return fromJson(new ByteBufferInputStream(src.duplicate()), type);
     }
 
     public static <T> String toBase64(T src) {
-        return CodecUtils.toBase64(toBin(src));
+        if (null == src) return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (OutputStream base64 = Base64.getEncoder().wrap(out)) {
+            toJson(src, base64);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return ascii(out);
     }
 
     public static <T> T fromBase64(String src, Class<T> classOfT) {
-        try {
-            return fromBin(CodecUtils.fromBase64(src), classOfT);
-        } catch (CodecException e) {
-            return null;
-        }
+        if (null == src || src.isEmpty()) return null;
+        return fromJson(base64Input(src), classOfT);
     }
 
     public static <T> T fromBase64(String src, Type type) {
-        try {
-            return fromBin(CodecUtils.fromBase64(src), type);
-        } catch (CodecException e) {
-            return null;
-        }
+        if (null == src || src.isEmpty()) return null;
+        return fromJson(base64Input(src), type);
     }
 
 
@@ -359,7 +503,32 @@ public abstract class JsonUtils {
      */
     public static <T> byte[] toGzip(T src) {
         if (null == src) return new byte[0];
-        return CodecUtils.toGzip(toBin(src));
+        return toCompressed(src, CompressionCodecs.GZIP);
+    }
+
+    /**
+     * 将对象转换成json，用gzip压缩后直接写入<code>out</code>，不关闭<code>out</code>
+     */
+    public static <T> void toGzip(T src, OutputStream out) {
+        toCompressed(src, CompressionCodecs.GZIP, out);
+    }
+
+    /**
+     * 将对象转换成json，用<code>codec</code>压缩，结果以codec的id字节开头
+     */
+    public static <T> byte[] toCompressed(T src, CompressionCodec codec) {
+        if (null == src) return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        toCompressed(src, codec, out);
+        return out.toByteArray();
+    }
+
+    public static <T> void toCompressed(T src, CompressionCodec codec, OutputStream out) {
+        try (OutputStream compressed = codec.compress(unclosable(out))) {
+            toJson(src, compressed);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
     }
 
     /**
@@ -372,17 +541,49 @@ public abstract class JsonUtils {
      * @throws IOException
      */
     public static <T> T fromGzip(byte[] data, Class<T> classOfT) {
-        try {
-            return fromBin(CodecUtils.fromGzip(data), classOfT);
-        } catch (CodecException e) {
-            return null;
-        }
+        if (null == data || data.length == 0) return null;
+        return fromGzip(new ByteArrayInputStream(data), classOfT);
     }
 
     public static <T> T fromGzip(byte[] data, Type type) {
+        return fromCompressed(data, type);
+    }
+
+    /**
+     * 从Gzip压缩流中返回对象，不关闭<code>in</code>；数据不是gzip格式时返回null
+     */
+    public static <T> T fromGzip(InputStream in, Class<T> classOfT) {
+        if (null == in || null == classOfT) return null;
+        return readCompressed(in, classOfT);
+    }
+
+    public static <T> T fromGzip(InputStream in, Type type) {
+        return fromCompressed(in, type);
+    }
+
+    public static <T> T fromGzip(ByteBuffer data, Class<T> classOfT) {
+        if (null == data || !data.hasRemaining()) return null;
+        return fromGzip(new ByteBufferInputStream(data.duplicate()), classOfT);
+    }
+
+    public static <T> T fromGzip(ByteBuffer data, Type type) {
+        if (null == data || !data.hasRemaining()) return null;
+        return fromCompressed(new ByteBufferInputStream(data.duplicate()), type);
+    }
+
+    /**
+     * 从压缩字节数组中返回对象，按首字节选择codec，旧的gzip数据同样可读
+     */
+    public static <T> T fromCompressed(byte[] data, Type type) {
+        if (null == data || data.length == 0) return null;
+        return fromCompressed(new ByteArrayInputStream(data), type);
+    }
+
+    public static <T> T fromCompressed(InputStream in, Type type) {
+        if (null == in || null == type) return null;
         try {
-            return fromBin(CodecUtils.fromGzip(data), type);
-        } catch (CodecException e) {
+            return readCompressed(in, type);
+        } catch (JsonParseException e) {
             return null;
         }
     }
@@ -395,7 +596,19 @@ public abstract class JsonUtils {
      * @return
      */
     public static <T> String toGzipBase64(T src) {
-        return CodecUtils.toBase64(toGzip(src));
+        if (null == src) return "";
+        return toCompressedBase64(src, CompressionCodecs.GZIP);
+    }
+
+    public static <T> String toCompressedBase64(T src, CompressionCodec codec) {
+        if (null == src) return null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        try (OutputStream base64 = Base64.getEncoder().wrap(out)) {
+            toCompressed(src, codec, base64);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return ascii(out);
     }
 
     /**
@@ -407,18 +620,256 @@ public abstract class JsonUtils {
      * @return
      */
     public static <T> T fromGzipBase64(String data, Class<T> classOfT) {
+        if (null == data || data.isEmpty()) return null;
+        return fromGzip(base64Input(data), classOfT);
+    }
+
+    public static <T> T fromGzipBase64(String data, Type type) {
+        return fromCompressedBase64(data, type);
+    }
+
+    public static <T> T fromCompressedBase64(String data, Type type) {
+        if (null == data || data.isEmpty()) return null;
+        return fromCompressed(base64Input(data), type);
+    }
+
+    /**
+     * Applies an RFC 7386 json merge patch to <code>target</code>: members of a patch object replace
+     * those of the target, recursively for objects, and <code>null</code> members remove them.
+     *
+     * @param target json text; <code>null</code> or empty counts as absent
+     * @return the patched json text
+     */
+    public static String mergePatch(String target, JsonElement patch) {
+        StringWriter out = new StringWriter(null == target ? 64 : target.length() + 64);
+        mergePatch(null == target ? null : new StringReader(target), patch, out);
+        return out.toString();
+    }
+
+    /**
+     * Like {@link #mergePatch(String, JsonElement)}, streaming the target from <code>target</code> to
+     * <code>out</code> in one pass: only the patch is held as a tree, members it does not touch are
+     * copied token by token. Both are left open, <code>out</code> is flushed.
+     *
+     * @throws JsonSyntaxException if the target is malformed
+     */
+    public static void mergePatch(Reader target, JsonElement patch, Writer out) {
+        Objects.requireNonNull(patch, "patch");
         try {
-            return fromGzip(CodecUtils.fromBase64(data), classOfT);
-        } catch (CodecException e) {
-            return null;
+            JsonWriter writer = new JsonWriter(out);
+            writer.setLenient(true);
+            JsonReader reader = null == target ? null : new JsonReader(target);
+            if (null != reader) reader.setLenient(true);
+            if (null == reader || isEmpty(reader)) {
+                Streams.write(patch.isJsonObject() ? withoutNulls(patch) : patch, writer);
+            } else {
+                mergePatch(reader, patch, writer);
+            }
+            writer.flush();
+        } catch (MalformedJsonException | EOFException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
         }
     }
 
-    public static <T> T fromGzipBase64(String data, Type type) {
+    // ------------------------------------------
+
+    private static void mergePatch(JsonReader in, JsonElement patch, JsonWriter out) throws IOException {
+        if (!patch.isJsonObject()) {
+            in.skipValue();
+            Streams.write(patch, out);
+            return;
+        }
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            Streams.write(withoutNulls(patch), out);
+            return;
+        }
+
+        JsonObject members = patch.getAsJsonObject();
+        Set<String> patched = new HashSet<>();
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            JsonElement member = members.get(name);
+            if (null == member) {
+                out.name(name);
+                copy(in, out);
+                continue;
+            }
+            patched.add(name);
+            if (member.isJsonNull()) {
+                in.skipValue();
+            } else {
+                out.name(name);
+                mergePatch(in, member, out);
+            }
+        }
+        in.endObject();
+        for (Map.Entry<String, JsonElement> entry : members.entrySet()) {
+            if (patched.contains(entry.getKey()) || entry.getValue().isJsonNull()) continue;
+            out.name(entry.getKey());
+            Streams.write(withoutNulls(entry.getValue()), out);
+        }
+        out.endObject();
+    }
+
+    /**
+     * A patch merged into nothing: <code>null</code> members of objects are dropped, recursively.
+     */
+    private static JsonElement withoutNulls(JsonElement patch) {
+        if (!patch.isJsonObject()) return patch;
+        JsonObject result = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : patch.getAsJsonObject().entrySet()) {
+            if (!entry.getValue().isJsonNull()) result.add(entry.getKey(), withoutNulls(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static void copy(JsonReader in, JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_ARRAY:
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) copy(in, out);
+                in.endArray();
+                out.endArray();
+                break;
+            case BEGIN_OBJECT:
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext()) {
+                    out.name(in.nextName());
+                    copy(in, out);
+                }
+                in.endObject();
+                out.endObject();
+                break;
+            case STRING:
+                out.value(in.nextString());
+                break;
+            case NUMBER:
+                out.value(new LazilyParsedNumber(in.nextString()));
+                break;
+            case BOOLEAN:
+                out.value(in.nextBoolean());
+                break;
+            case NULL:
+                in.nextNull();
+                out.nullValue();
+                break;
+            default:
+                throw new JsonSyntaxException("Unexpected " + in.peek() + " at " + in.getPath());
+        }
+    }
+
+    private static boolean isEmpty(JsonReader in) throws IOException {
         try {
-            return fromGzip(CodecUtils.fromBase64(data), type);
-        } catch (CodecException e) {
+            return in.peek() == JsonToken.END_DOCUMENT;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Json is streamed through the decompressor, so a corrupt body surfaces from inside Gson.
+     * Either way it is reported as null, like {@link CodecUtils#fromGzip(byte[])} failures were.
+     */
+    private static <T> T readCompressed(InputStream in, Type type) {
+        try (InputStream decompressed = CompressionCodecs.decompress(unclosable(in))) {
+            return GSON.fromJson(new Utf8Reader(decompressed, BUFFER_SIZE), type);
+        } catch (ZipException e) {
             return null;
+        } catch (JsonParseException e) {
+            if (e.getCause() instanceof ZipException) return null;
+            throw e;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Lenient like {@link javax.xml.bind.DatatypeConverter#parseBase64Binary(String)}: characters
+     * outside the alphabet are skipped.
+     */
+    private static InputStream base64Input(String src) {
+        return Base64.getMimeDecoder().wrap(new ByteArrayInputStream(src.getBytes(ISO_8859_1)));
+    }
+
+    private static String ascii(ByteArrayOutputStream out) {
+        try {
+            return out.toString(ISO_8859_1.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static InputStream unclosable(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static OutputStream unclosable(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private static class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
         }
     }
 }
@@ -93,21 +93,8 @@ public abstract class ReflectionUtils {
 
     public static Field getAccessibleField(Class<? extends Object> targetClass,
                                            String fieldName) throws SecurityException, NoSuchFieldException {
-        Class<?> currentClass = targetClass;
-        Field field = null;
-
-        // the loop will be exited if the current class is Object.class and nothing is found
-        do {
-
-            try {
-                field = currentClass.getDeclaredField(fieldName);
-            } catch (NoSuchFieldException exception) {
-
-                // try the superclass
-                currentClass = currentClass.getSuperclass();
-            }
-
-        } while ((field == null) && (currentClass != null));
+        // the most derived field of that name, from the class metadata cache
+        Field field = ClassMetadata.of(targetClass).field(fieldName);
 
         if (field == null) {
             throw new NoSuchFieldException(fieldName);
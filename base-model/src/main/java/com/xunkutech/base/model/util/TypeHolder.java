@@ -10,6 +10,8 @@ import java.lang.reflect.*;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.gson.internal.$Gson$Preconditions.checkNotNull;
 
@@ -149,6 +151,106 @@ public class TypeHolder implements JsonSerializable {
         return new TypeHolder(typeName, typeType, arg1, arg2, arg3);
     }
 
+    /**
+     * Resolves a stored type holder json, as written by {@link #jsonFromType(Type)}, to its interned
+     * type. The first call for a string parses it and loads its classes; later calls are one lookup.
+     * Type variables come back as {@link Object}, so this is not always the inverse of
+     * {@link #jsonFromType(Type)}, and each direction is cached on its own.
+     *
+     * @return null if <code>json</code> is null or empty
+     */
+    public static Type typeFromJson(String json) {
+        if (null == json || json.isEmpty()) return null;
+        Type type = TypeCache.types.get(json);
+        if (null != type) return type;
+
+        TypeHolder typeHolder = JsonUtils.fromJson(json, TypeHolder.class);
+        if (null == typeHolder) return null;
+        type = typeHolder.getType();
+        if (!TypeCache.isCacheSafe(type)) return type;
+        type = TypeCache.intern(type);
+        Type existing = TypeCache.types.putIfAbsent(json, type);
+        return null == existing ? type : existing;
+    }
+
+    /**
+     * The canonical type holder json of <code>type</code>, computed once per distinct type.
+     *
+     * @return null if <code>type</code> is null
+     */
+    public static String jsonFromType(Type type) {
+        if (null == type) return null;
+        String json = TypeCache.jsons.get(type);
+        if (null != json) return json;
+
+        json = fromType(type).toJson();
+        if (!TypeCache.isCacheSafe(type)) return json;
+        String existing = TypeCache.jsons.putIfAbsent(TypeCache.intern(type), json);
+        return null == existing ? json : existing;
+    }
+
+    /**
+     * @return the one shared instance equal to <code>type</code>; reflected and resolved types with
+     * the same structure are equal, whichever implementation they come from. Types of classes that
+     * are not cached, see <code>TypeCache</code>, are returned as they are.
+     */
+    public static Type intern(Type type) {
+        return null == type || !TypeCache.isCacheSafe(type) ? type : TypeCache.intern(type);
+    }
+
+    /**
+     * Interned types and both directions of the json mapping. The cache lives as long as the class
+     * loader that defined <code>TypeHolder</code>, so it only takes types whose classes come from that
+     * loader or its parents: a type of a child loader, e.g. the devtools restart loader or a
+     * redeployed web application, would pin it. Those are resolved on every call.
+     */
+    private static final class TypeCache {
+        private static final ClassLoader LOADER = TypeHolder.class.getClassLoader();
+
+        static final ConcurrentMap<String, Type> types = new ConcurrentHashMap<>();
+        static final ConcurrentMap<Type, String> jsons = new ConcurrentHashMap<>();
+        static final ConcurrentMap<Type, Type> interned = new ConcurrentHashMap<>();
+
+        private TypeCache() {
+        }
+
+        static Type intern(Type type) {
+            Type existing = interned.putIfAbsent(type, type);
+            return null == existing ? type : existing;
+        }
+
+        static boolean isCacheSafe(Type type) {
+            if (type instanceof Class) {
+                Class<?> c = (Class<?>) type;
+                while (c.isArray()) c = c.getComponentType();
+                return ClassUtils.isCacheSafe(c, LOADER);
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType p = (ParameterizedType) type;
+                if (!isCacheSafe(p.getRawType())) return false;
+                if (null != p.getOwnerType() && !isCacheSafe(p.getOwnerType())) return false;
+                return allCacheSafe(p.getActualTypeArguments());
+            } else if (type instanceof GenericArrayType) {
+                return isCacheSafe(((GenericArrayType) type).getGenericComponentType());
+            } else if (type instanceof WildcardType) {
+                WildcardType w = (WildcardType) type;
+                return allCacheSafe(w.getUpperBounds()) && allCacheSafe(w.getLowerBounds());
+            } else if (type instanceof TypeVariable) {
+                GenericDeclaration declaration = ((TypeVariable<?>) type).getGenericDeclaration();
+                Class<?> declaring = declaration instanceof Class ? (Class<?>) declaration
+                        : ((Member) declaration).getDeclaringClass();
+                return ClassUtils.isCacheSafe(declaring, LOADER);
+            }
+            return false;
+        }
+
+        private static boolean allCacheSafe(Type[] types) {
+            for (Type type : types) {
+                if (!isCacheSafe(type)) return false;
+            }
+            return true;
+        }
+    }
+
     static boolean equal(Object a, Object b) {
         return a == b || (a != null && a.equals(b));
     }
@@ -0,0 +1,114 @@
+package com.xunkutech.base.model.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * UTF-8 {@link Reader} over an {@link InputStream}, the reading side of {@link Utf8Writer}.
+ * <p>
+ * Decodes straight from a small byte buffer without a {@link java.nio.charset.CharsetDecoder}.
+ * Malformed input is replaced by <code>U+FFFD</code>, one per offending byte. Closing the reader
+ * does not close the stream.
+ */
+final class Utf8Reader extends Reader {
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private char lowSurrogate;
+
+    Utf8Reader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        int n = 0;
+        if (lowSurrogate != 0) {
+            cbuf[off + n++] = lowSurrogate;
+            lowSurrogate = 0;
+        }
+        while (n < len) {
+            byte b;
+            while (n < len && pos < limit && (b = buf[pos]) >= 0) {
+                cbuf[off + n++] = (char) b;
+                pos++;
+            }
+            if (n == len) break;
+            if (limit - pos < 4 && !eof) {
+                fill();
+                continue;
+            }
+            if (pos == limit) break;
+
+            int lead = buf[pos] & 0xff;
+            int available = limit - pos;
+            if (lead >= 0xc2 && lead <= 0xdf && available >= 2 && isContinuation(buf[pos + 1])) {
+                cbuf[off + n++] = (char) ((lead & 0x1f) << 6 | buf[pos + 1] & 0x3f);
+                pos += 2;
+            } else if (lead >= 0xe0 && lead <= 0xef && available >= 3
+                    && isContinuation(buf[pos + 1]) && isContinuation(buf[pos + 2])) {
+                char c = (char) ((lead & 0x0f) << 12 | (buf[pos + 1] & 0x3f) << 6 | buf[pos + 2] & 0x3f);
+                if (c < 0x800 || Character.isSurrogate(c)) {
+                    cbuf[off + n++] = REPLACEMENT;
+                    pos++;
+                } else {
+                    cbuf[off + n++] = c;
+                    pos += 3;
+                }
+            } else if (lead >= 0xf0 && lead <= 0xf4 && available >= 4 && isContinuation(buf[pos + 1])
+                    && isContinuation(buf[pos + 2]) && isContinuation(buf[pos + 3])) {
+                int cp = (lead & 0x07) << 18 | (buf[pos + 1] & 0x3f) << 12 | (buf[pos + 2] & 0x3f) << 6
+                        | buf[pos + 3] & 0x3f;
+                if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+                    cbuf[off + n++] = REPLACEMENT;
+                    pos++;
+                } else {
+                    cbuf[off + n++] = Character.highSurrogate(cp);
+                    if (n < len) {
+                        cbuf[off + n++] = Character.lowSurrogate(cp);
+                    } else {
+                        lowSurrogate = Character.lowSurrogate(cp);
+                    }
+                    pos += 4;
+                }
+            } else {
+                cbuf[off + n++] = REPLACEMENT;
+                pos++;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+    /**
+     * Moves the unread bytes to the front and reads more after them.
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,116 @@
+package com.xunkutech.base.model.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * UTF-8 {@link Writer} over an {@link OutputStream} for the json paths in {@link JsonUtils}.
+ * <p>
+ * Unlike {@link java.io.OutputStreamWriter} it sets up no {@link java.nio.charset.CharsetEncoder}
+ * and no 8K buffer per instance, which dominates the cost for payload sized documents. Unpaired
+ * surrogates are written as <code>'?'</code>, the same as {@link String#getBytes(java.nio.charset.Charset)}.
+ * Closing the writer only completes and flushes its output; the stream stays open.
+ */
+final class Utf8Writer extends Writer {
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int count;
+    private char highSurrogate;
+
+    Utf8Writer(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buf = new byte[Math.max(bufferSize, 16)];
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int end = off + len; off < end; off++) {
+            char c = cbuf[off];
+            if (c < 0x80 && count < buf.length && highSurrogate == 0) {
+                buf[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int end = off + len; off < end; off++) {
+            char c = str.charAt(off);
+            if (c < 0x80 && count < buf.length && highSurrogate == 0) {
+                buf[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    private void encode(char c) throws IOException {
+        if (buf.length - count < 4) {
+            flushBuffer();
+        }
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                buf[count++] = (byte) (0xf0 | cp >> 18);
+                buf[count++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                buf[count++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                buf[count++] = (byte) (0x80 | cp & 0x3f);
+                return;
+            }
+            buf[count++] = '?';
+            encode(c);
+            return;
+        }
+        if (c < 0x80) {
+            buf[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xc0 | c >> 6);
+            buf[count++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xe0 | c >> 12);
+            buf[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buf[count++] = (byte) (0x80 | c & 0x3f);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes out a dangling high surrogate and flushes; the stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            if (count == buf.length) flushBuffer();
+            buf[count++] = '?';
+        }
+        flush();
+    }
+}
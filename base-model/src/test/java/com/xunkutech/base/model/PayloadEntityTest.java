@@ -0,0 +1,121 @@
+package com.xunkutech.base.model;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PayloadEntityTest {
+
+    private static final Type MAP = new TypeToken<Map<String, Integer>>() {
+    }.getType();
+
+    private static Map<String, Integer> payload(int v) {
+        Map<String, Integer> payload = new LinkedHashMap<>();
+        payload.put("v", v);
+        return payload;
+    }
+
+    private static int v(Map<String, ? extends Number> payload) {
+        return payload.get("v").intValue();
+    }
+
+    @Test
+    public void changesAfterSetAreNotStored() {
+        for (IPayloadEntity entity : new IPayloadEntity[]{new AbstractPayloadEntity(), new AbstractLobPayloadEntity()}) {
+            Map<String, Integer> payload = payload(1);
+            entity.setPayload(payload);
+            payload.put("v", 2);
+            assertEquals("{\"v\":1}", entity.getJsonText());
+            assertEquals(1, v(entity.getPayload(MAP)));
+        }
+    }
+
+    @Test
+    public void changesInPlaceAreStoredWhenMarked() {
+        for (IPayloadEntity entity : new IPayloadEntity[]{new AbstractPayloadEntity(), new AbstractLobPayloadEntity()}) {
+            entity.setJsonText("{\"v\":1}");
+            Map<String, Integer> payload = entity.getPayload(MAP);
+            payload.put("v", 2);
+            assertEquals("{\"v\":1}", entity.getJsonText());
+            entity.markDirty();
+            assertEquals("{\"v\":2}", entity.getJsonText());
+            payload.put("v", 3);
+            assertEquals("{\"v\":2}", entity.getJsonText());
+            entity.markDirty();
+            assertEquals("{\"v\":3}", entity.getJsonText());
+            assertSame(payload, entity.getPayload(MAP));
+        }
+    }
+
+    @Test
+    public void markedPayloadIsSerializedOnce() {
+        AbstractPayloadEntity entity = new AbstractPayloadEntity();
+        entity.setJsonText("{\"v\":1}");
+        entity.<Map<String, Integer>>getPayload(MAP).put("v", 2);
+        entity.markDirty();
+        String text = entity.getJsonText();
+        assertSame(text, entity.getJsonText());
+
+        AbstractLobPayloadEntity lob = new AbstractLobPayloadEntity();
+        lob.setJsonText("{\"v\":1}");
+        lob.<Map<String, Integer>>getPayload(MAP).put("v", 2);
+        lob.markDirty();
+        assertSame(lob.getJsonClob(), lob.getJsonClob());
+    }
+
+    @Test
+    public void markWithoutPayloadIsIgnored() {
+        for (IPayloadEntity entity : new IPayloadEntity[]{new AbstractPayloadEntity(), new AbstractLobPayloadEntity()}) {
+            entity.setJsonText("{\"v\":1}");
+            entity.markDirty();
+            assertEquals("{\"v\":1}", entity.getJsonText());
+            entity.<Map<String, Integer>>getPayload(MAP).put("v", 2);
+            entity.markDirty();
+            entity.setJsonText("{\"v\":5}");
+            assertEquals("{\"v\":5}", entity.getJsonText());
+            assertEquals(5, v(entity.getPayload(MAP)));
+        }
+    }
+
+    @Test
+    public void payloadIsMemoized() {
+        AbstractPayloadEntity entity = new AbstractPayloadEntity();
+        entity.setJsonText("{\"v\":1}");
+        Map<String, Integer> payload = entity.getPayload(MAP);
+        String text = entity.getJsonText();
+        assertSame(payload, entity.getPayload(MAP));
+        // unchanged, so the text is not replaced
+        assertSame(text, entity.getJsonText());
+
+        entity.setJsonText("{\"v\":2}");
+        assertNotSame(payload, entity.getPayload(MAP));
+        assertEquals(2, v(entity.getPayload(MAP)));
+    }
+
+    @Test
+    public void detachedPayloadIsTheCallers() {
+        for (IPayloadEntity entity : new IPayloadEntity[]{new AbstractPayloadEntity(), new AbstractLobPayloadEntity()}) {
+            entity.setJsonText("{\"v\":1}");
+            entity.<Map<String, Integer>>getPayload(MAP).put("v", 2);
+            entity.markDirty();
+            Map<String, Integer> detached = entity.detachPayload(MAP);
+            assertEquals(2, v(detached));
+            detached.put("v", 3);
+            assertEquals("{\"v\":2}", entity.getJsonText());
+            assertNotSame(detached, entity.getPayload(MAP));
+        }
+    }
+
+    @Test
+    public void nullPayload() {
+        AbstractLobPayloadEntity entity = new AbstractLobPayloadEntity();
+        entity.setPayload(null);
+        assertNull(entity.getJsonClob());
+        assertNull(entity.getPayload(MAP));
+    }
+}
@@ -0,0 +1,294 @@
+package com.xunkutech.base.model.compress;
+
+import com.google.gson.reflect.TypeToken;
+import com.xunkutech.base.model.util.CodecUtils;
+import com.xunkutech.base.model.util.JsonUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class CompressionCodecsTest {
+
+    private static final List<CompressionCodec> CODECS = Arrays.asList(
+            CompressionCodecs.GZIP,
+            CompressionCodecs.DEFLATE,
+            CompressionCodecs.DEFLATE_FAST,
+            CompressionCodecs.LZ,
+            CompressionCodecs.gzip(Deflater.NO_COMPRESSION),
+            CompressionCodecs.gzip(Deflater.BEST_COMPRESSION),
+            CompressionCodecs.deflate(Deflater.NO_COMPRESSION),
+            CompressionCodecs.deflate(Deflater.BEST_COMPRESSION));
+
+    private static final Type MAP = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    private static byte[] random(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Json-like text with enough repetition to compress, longer than one {@link LzCodec} block.
+     */
+    private static byte[] text(Random random, int size) {
+        String[] words = {"{\"id\":", "\"name\":", "\"value\":", "null", "true", "[1,2,3]", "},", "\"中文\","};
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] jdkGzip(byte[] value, int level) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(baos) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            out.write(value);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] jdkDeflate(byte[] value, int level) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(level, true);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(baos, deflater, DeflateCodec.BUFFER_SIZE)) {
+            out.write(value);
+        } finally {
+            deflater.end();
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] withId(byte id, byte[] body) {
+        byte[] value = new byte[body.length + 1];
+        value[0] = id;
+        System.arraycopy(body, 0, value, 1, body.length);
+        return value;
+    }
+
+    /**
+     * Writes in uneven chunks, so codecs see writes that straddle their buffers and blocks.
+     */
+    private static byte[] compressChunked(byte[] value, CompressionCodec codec, Random random) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream out = codec.compress(baos)) {
+            int offset = 0;
+            while (offset < value.length) {
+                int len = Math.min(value.length - offset, 1 + random.nextInt(10000));
+                if (len == 1) {
+                    out.write(value[offset]);
+                } else {
+                    out.write(value, offset, len);
+                }
+                offset += len;
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Random random = new Random(1);
+        byte[][] values = {
+                new byte[0],
+                {42},
+                text(random, LzCodec.MAX_BLOCK * 3 + 17),
+                random(random, LzCodec.MAX_BLOCK * 2 + 5),
+                new byte[LzCodec.MAX_BLOCK + 1]
+        };
+        for (CompressionCodec codec : CODECS) {
+            for (byte[] value : values) {
+                String message = codec.name() + " " + value.length;
+                byte[] compressed = CompressionCodecs.compress(value, codec);
+                assertEquals(message, codec.id(), compressed[0]);
+                assertArrayEquals(message, value, CompressionCodecs.decompress(compressed));
+                assertArrayEquals(message, value, CompressionCodecs.decompress(compressChunked(value, codec, random)));
+            }
+        }
+    }
+
+    @Test
+    public void incompressibleInputStaysBounded() throws ZipException {
+        byte[] value = random(new Random(2), LzCodec.MAX_BLOCK * 2 + 5);
+        byte[] lz = CompressionCodecs.compress(value, CompressionCodecs.LZ);
+        assertTrue(lz.length <= LzCodec.maxCompressedLength(value.length));
+        assertArrayEquals(value, CompressionCodecs.decompress(lz));
+    }
+
+    @Test
+    public void gzipMatchesJdk() throws IOException {
+        Random random = new Random(3);
+        for (byte[] value : new byte[][]{new byte[0], {1}, text(random, 100000), random(random, 70000)}) {
+            assertArrayEquals(jdkGzip(value, Deflater.DEFAULT_COMPRESSION), CompressionCodecs.compress(value, CompressionCodecs.GZIP));
+            assertArrayEquals(CodecUtils.toGzip(value), CompressionCodecs.compress(value, CompressionCodecs.GZIP));
+        }
+    }
+
+    @Test
+    public void baselineGzipStillDecodes() throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("name", "中文 name");
+        row.put("count", 3L);
+        row.put("tags", Arrays.asList("a", "b"));
+        byte[] json = JsonUtils.toJson(row).getBytes(UTF_8);
+        byte[] baseline = CodecUtils.toGzip(json);
+
+        assertArrayEquals(json, CompressionCodecs.decompress(baseline));
+        assertEquals(row, JsonUtils.fromCompressed(baseline, MAP));
+        assertEquals(row, JsonUtils.fromCompressed(CodecUtils.toGzip(json), MAP));
+        assertArrayEquals(json, CodecUtils.fromGzip(JsonUtils.toGzip(row)));
+    }
+
+    @Test
+    public void gzipHeaderFieldsAreSkipped() throws ZipException {
+        byte[] plain = CompressionCodecs.compress(new byte[]{'x', 'y'}, CompressionCodecs.GZIP);
+        byte[] body = Arrays.copyOfRange(plain, 10, plain.length);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // FEXTRA | FNAME | FCOMMENT | FHCRC
+        baos.write(new byte[]{0x1f, (byte) 0x8b, 8, 4 | 8 | 16 | 2, 0, 0, 0, 0, 0, 3}, 0, 10);
+        baos.write(new byte[]{2, 0, 'e', 'x'}, 0, 4);
+        baos.write(new byte[]{'f', '.', 'j', 's', 0}, 0, 5);
+        baos.write(new byte[]{'c', 0}, 0, 2);
+        baos.write(new byte[]{0, 0}, 0, 2);
+        baos.write(body, 0, body.length);
+        assertArrayEquals(new byte[]{'x', 'y'}, CompressionCodecs.decompress(baos.toByteArray()));
+    }
+
+    @Test
+    public void deflateMatchesRawDeflater() throws IOException {
+        byte[] value = text(new Random(4), 50000);
+        for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+            assertArrayEquals(withId(DeflateCodec.ID, jdkDeflate(value, level)),
+                    CompressionCodecs.compress(value, CompressionCodecs.deflate(level)));
+        }
+    }
+
+    /**
+     * Pooled deflaters are reset between values; interleaving levels and sizes must give the same
+     * bytes as a fresh deflater every time.
+     */
+    @Test
+    public void pooledDeflatersAreReusedAcrossLevels() throws IOException {
+        Random random = new Random(5);
+        byte[][] values = {text(random, 100), text(random, 80000), new byte[0], random(random, 3000)};
+        for (int round = 0; round < 4 * Pool.DEFAULT_CAPACITY; round++) {
+            int level = Deflater.DEFAULT_COMPRESSION + random.nextInt(11);
+            byte[] value = values[random.nextInt(values.length)];
+            assertArrayEquals(jdkGzip(value, level), CompressionCodecs.compress(value, CompressionCodecs.gzip(level)));
+            assertArrayEquals(withId(DeflateCodec.ID, jdkDeflate(value, level)),
+                    CompressionCodecs.compress(value, CompressionCodecs.deflate(level)));
+            assertArrayEquals(value, CompressionCodecs.decompress(CompressionCodecs.compress(value, CompressionCodecs.gzip(level))));
+        }
+    }
+
+    @Test
+    public void abandonedStreamsDoNotPoisonThePool() throws IOException {
+        byte[] value = text(new Random(6), 20000);
+        byte[] expected = CompressionCodecs.compress(value, CompressionCodecs.GZIP);
+        for (int i = 0; i < 2 * Pool.DEFAULT_CAPACITY; i++) {
+            OutputStream out = CompressionCodecs.GZIP.compress(new ByteArrayOutputStream());
+            out.write(value, 0, value.length / 2);
+            out.close();
+            out.close();
+            InputStream in = CompressionCodecs.decompress(new ByteArrayInputStream(expected));
+            assertTrue(in.read() >= 0);
+            in.close();
+            in.close();
+        }
+        assertArrayEquals(expected, CompressionCodecs.compress(value, CompressionCodecs.GZIP));
+        assertArrayEquals(value, CompressionCodecs.decompress(expected));
+    }
+
+    @Test
+    public void unknownCodecIds() {
+        assertNull(CompressionCodecs.forId((byte) 0x7f));
+        assertSame(CompressionCodecs.GZIP, CompressionCodecs.forId(GzipCodec.ID));
+        assertSame(CompressionCodecs.LZ, CompressionCodecs.forId(LzCodec.ID));
+        assertEquals(DeflateCodec.class, CompressionCodecs.forId(DeflateCodec.ID).getClass());
+
+        for (byte[] value : new byte[][]{{}, {0x7f, 1, 2, 3}, {0}, {(byte) 0xff}}) {
+            try {
+                CompressionCodecs.decompress(value);
+                fail(Arrays.toString(value));
+            } catch (ZipException expected) {
+            }
+            assertNull(JsonUtils.fromCompressed(value, MAP));
+        }
+    }
+
+    @Test
+    public void registerRejectsConflictingIds() {
+        CompressionCodecs.register(CompressionCodecs.deflate(Deflater.BEST_COMPRESSION));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, ((DeflateCodec) CompressionCodecs.forId(DeflateCodec.ID)).getLevel());
+        try {
+            CompressionCodecs.register(new LzCodec() {
+                @Override
+                public byte id() {
+                    return DeflateCodec.ID;
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void invalidLevels() {
+        for (int level : new int[]{-2, 10}) {
+            try {
+                CompressionCodecs.gzip(level);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                CompressionCodecs.deflate(level);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void truncatedOrCorruptInputIsNull() {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            row.put("key" + i, "value " + i);
+        }
+        for (CompressionCodec codec : CODECS) {
+            byte[] compressed = JsonUtils.toCompressed(row, codec);
+            assertEquals(codec.name(), row, JsonUtils.fromCompressed(compressed, MAP));
+
+            for (int length : new int[]{1, 2, 5, compressed.length / 2, compressed.length - 1}) {
+                assertNull(codec.name() + " " + length,
+                        JsonUtils.fromCompressed(Arrays.copyOf(compressed, length), MAP));
+            }
+
+            byte[] corrupt = compressed.clone();
+            for (int i = compressed.length / 3; i < compressed.length; i += 7) {
+                corrupt[i] ^= 0x5a;
+            }
+            assertNull(codec.name(), JsonUtils.fromCompressed(corrupt, MAP));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.xunkutech.base.model.converter;
+
+import com.xunkutech.base.model.util.CodecUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompactStringAsciiConverterTest {
+
+    /**
+     * Mostly chars next to the boundaries of the three ranges of the compact form, so that prefixes
+     * and the ranges are compared with each other.
+     */
+    private static final char[] CHARS = {
+            '\0', '\t', ' ', '!', '"', '#', '0', 'A', 'a', '|', '}', '~', '\u007f', '\u0080', 'é',
+            '一', '你', '\ud800', '￿'
+    };
+
+    private static String text(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(6); i > 0; i--) {
+            sb.append(random.nextInt(4) == 0 ? (char) random.nextInt(Character.MAX_VALUE + 1) : CHARS[random.nextInt(CHARS.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            String text = text(random);
+            String compact = CodecUtils.toCompactAscii(text);
+            assertEquals(text.isEmpty() ? 0 : CodecUtils.compactLength(text), compact.length());
+            assertEquals(!text.isEmpty(), CodecUtils.isCompactAscii(compact));
+            assertEquals(text, CodecUtils.fromCompactAscii(compact));
+        }
+        assertEquals(".a!Pb", CodecUtils.toCompactAscii("a b"));
+        assertEquals(".~4mP", CodecUtils.toCompactAscii("你"));
+    }
+
+    @Test
+    public void keepsTheOrderOfTheTexts() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            String a = text(random), b = text(random);
+            String compactA = CodecUtils.toCompactAscii(a), compactB = CodecUtils.toCompactAscii(b);
+            // the compact form is ASCII only, so char order is the ascii_bin byte order
+            assertEquals(a + " / " + b, Integer.signum(a.compareTo(b)), Integer.signum(compactA.compareTo(compactB)));
+            // MySQL ignores trailing spaces when comparing
+            assertEquals(-1, compactA.indexOf(' '));
+        }
+    }
+
+    @Test
+    public void malformed() {
+        assertNull(CodecUtils.fromCompactAscii("0061"));
+        assertNull(CodecUtils.fromCompactAscii(".a!"));
+        assertNull(CodecUtils.fromCompactAscii(".~4m"));
+        // a plain char written the long way
+        assertNull(CodecUtils.fromCompactAscii(".~01Q"));
+        assertNull(CodecUtils.fromCompactAscii(".a你"));
+        assertFalse(CodecUtils.isCompactAscii(CodecUtils.toAscii(".a")));
+    }
+
+    @Test
+    public void writesTheLegacyFormByDefault() {
+        CompactStringAsciiConverter converter = new CompactStringAsciiConverter();
+        assertFalse(converter.isCompactWrite());
+        assertEquals("00610020", converter.convertToDatabaseColumn("a "));
+
+        converter = new CompactStringAsciiConverter(true);
+        assertEquals(".a!P", converter.convertToDatabaseColumn("a "));
+        assertNull(converter.convertToDatabaseColumn(null));
+    }
+
+    @Test
+    public void readsBothForms() {
+        CompactStringAsciiConverter converter = new CompactStringAsciiConverter();
+        assertEquals("a 你", converter.convertToEntityAttribute(CodecUtils.toAscii("a 你")));
+        assertEquals("a 你", converter.convertToEntityAttribute(CodecUtils.toCompactAscii("a 你")));
+        assertEquals("", converter.convertToEntityAttribute(""));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
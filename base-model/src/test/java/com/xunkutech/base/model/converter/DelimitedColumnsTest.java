@@ -0,0 +1,112 @@
+package com.xunkutech.base.model.converter;
+
+import com.xunkutech.base.model.util.CodecUtils;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DelimitedColumnsTest {
+
+    private static String text(Random random, String alphabet, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void splitsAsStringSplit() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            String column = text(random, "ab,", 8);
+            if (column.isEmpty()) continue;
+            assertArrayEquals(column, column.split(","), DelimitedColumns.split(column));
+        }
+        assertArrayEquals(new String[]{"a", "", "b"}, DelimitedColumns.split("a,,b,,"));
+        assertArrayEquals(new String[0], DelimitedColumns.split(",,"));
+    }
+
+    @Test
+    public void joinsAsStringJoin() {
+        assertEquals("a,,b", DelimitedColumns.join(new String[]{"a", "", "b"}));
+        assertEquals("a,null", DelimitedColumns.join(new String[]{"a", null}));
+        assertEquals("a", DelimitedColumns.join(new String[]{"a"}));
+    }
+
+    @Test
+    public void asciiRoundTrip() {
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            List<String> items = new ArrayList<>();
+            for (int n = random.nextInt(5) + 1; n > 0; n--) {
+                items.add(text(random, "a,:你 ", 4));
+            }
+            // a trailing empty item is dropped, as String.split did
+            while (items.size() > 1 && items.get(items.size() - 1).isEmpty()) items.remove(items.size() - 1);
+            if (items.size() == 1 && items.get(0).isEmpty()) continue;
+
+            String column = DelimitedColumns.joinAscii(items);
+            assertEquals(String.join(",", items.stream().map(CodecUtils::toAscii).toArray(String[]::new)), column);
+            assertEquals(items, DelimitedColumns.splitAsciiList(column));
+            assertArrayEquals(items.toArray(), DelimitedColumns.splitAscii(column));
+        }
+    }
+
+    @Test
+    public void asciiNullItems() {
+        String column = DelimitedColumns.joinAscii(Arrays.asList("a", null, "b"));
+        assertEquals("0061,null,0062", column);
+        assertEquals(Arrays.asList("a", null, "b"), DelimitedColumns.splitAsciiList(column));
+        assertEquals(Arrays.asList("a", "b"), DelimitedColumns.splitAsciiList("0061,0062,,"));
+        // not in the ascii form
+        assertEquals(Collections.singletonList(null), DelimitedColumns.splitAsciiList("zz61"));
+    }
+
+    @Test
+    public void asciiEntries() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("b", "你");
+        entries.put("a,:", "");
+        entries.put("c", null);
+        String column = DelimitedColumns.joinAscii(entries);
+        assertEquals("0062:4f60,0061002c003a:,0063:null", column);
+        Map<String, String> split = DelimitedColumns.splitAsciiEntries(column);
+        assertEquals(entries, split);
+        assertEquals(new ArrayList<>(entries.keySet()), new ArrayList<>(split.keySet()));
+
+        // a key without a value, which String.split used to fail on
+        assertEquals(Collections.singletonMap("a", ""), DelimitedColumns.splitAsciiEntries("0061"));
+    }
+
+    @Test
+    public void converters() {
+        NativeArrayAsciiConverter array = new NativeArrayAsciiConverter();
+        assertEquals("0061,0062", array.convertToDatabaseColumn(new String[]{"a", "b"}));
+        assertArrayEquals(new String[]{"a", "b"}, array.convertToEntityAttribute("0061,0062"));
+        assertEquals("", array.convertToDatabaseColumn(new String[0]));
+        assertArrayEquals(new String[0], array.convertToEntityAttribute(""));
+        assertNull(array.convertToDatabaseColumn(null));
+        assertNull(array.convertToEntityAttribute(null));
+
+        NativeListAsciiConverter list = new NativeListAsciiConverter();
+        assertEquals("0061,0062", list.convertToDatabaseColumn(Arrays.asList("a", "b")));
+        assertEquals(Arrays.asList("a", "b"), list.convertToEntityAttribute("0061,0062"));
+        assertEquals(Collections.emptyList(), list.convertToEntityAttribute(""));
+        assertNull(list.convertToEntityAttribute(null));
+
+        NativeMapAsciiConverter map = new NativeMapAsciiConverter();
+        assertEquals("0061:0062", map.convertToDatabaseColumn(Collections.singletonMap("a", "b")));
+        assertEquals(Collections.singletonMap("a", "b"), map.convertToEntityAttribute("0061:0062"));
+        assertEquals(Collections.emptyMap(), map.convertToEntityAttribute(""));
+        assertNull(map.convertToEntityAttribute(null));
+
+        PrimaryCodeChainConverter chain = new PrimaryCodeChainConverter();
+        assertEquals("c1,c2", chain.convertToDatabaseColumn(new String[]{"c1", "c2"}));
+        assertArrayEquals(new String[]{"c1", "c2"}, chain.convertToEntityAttribute("c1,c2"));
+        assertArrayEquals(new String[0], chain.convertToEntityAttribute(""));
+        assertNull(chain.convertToEntityAttribute(null));
+    }
+}
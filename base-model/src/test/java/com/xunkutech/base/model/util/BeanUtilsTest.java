@@ -1,8 +1,6 @@
 package com.xunkutech.base.model.util;
 
 import com.google.gson.reflect.TypeToken;
-import com.xunkutech.base.model.JsonSerializable;
-import lombok.Setter;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -123,47 +121,3 @@ public class BeanUtilsTest {
             "  }\n" +
             "}";
 }
-
-@Setter
-class Demo1<T, P> implements JsonSerializable {
-    String a;
-    Integer b;
-    Double c;
-    Long d;
-    int e;
-    double f;
-    long g;
-    Date h;
-    Instant i;
-    T[] j;
-    int[] k;
-    List<P> l;
-    List<Integer> m;
-    Map<T, P> n;
-    Map<String, Integer> o;
-    E p;
-}
-
-@Setter
-class Demo2<T, P> implements JsonSerializable {
-    String a;
-    Integer b;
-    Double c;
-    Long d;
-    int e;
-    double f;
-    long g;
-    Date h;
-    Instant i;
-    String[] j;
-    int[] k;
-    List<P> l;
-    List<Integer> m;
-    Map<T, P> n;
-    Map<String, Integer> o;
-    E p;
-}
-
-enum E {
-    X, Y, Z
-}
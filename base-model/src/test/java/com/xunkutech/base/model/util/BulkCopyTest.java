@@ -0,0 +1,117 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BulkCopyTest {
+
+    private static final Type DEMO1 = new TypeToken<Demo1<String, Integer>>() {
+    }.getType();
+
+    private static List<Demo1<String, Integer>> sources(int count) {
+        List<Demo1<String, Integer>> sources = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Demo1<String, Integer> source = new Demo1<>();
+            source.setA("a" + i);
+            source.setB(i);
+            source.setL(Arrays.asList(i, i + 1));
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    private static void assertCopied(List<Demo1<String, Integer>> sources, BulkCopyResult<Demo1<String, Integer>> result) {
+        assertFalse(result.getFailures().toString(), result.hasFailures());
+        assertEquals(sources.size(), result.getTargets().size());
+        for (int i = 0; i < sources.size(); i++) {
+            assertEquals(sources.get(i).printJson(), result.getTargets().get(i).printJson());
+        }
+    }
+
+    @Test
+    public void copiesSmallListsOnTheCallingThread() {
+        List<Demo1<String, Integer>> sources = sources(10);
+        Thread caller = Thread.currentThread();
+        BulkCopyResult<Demo1<String, Integer>> result = BeanUtils.deepCopyAll(sources, () -> {
+            assertSame(caller, Thread.currentThread());
+            return new Demo1<>();
+        }, DEMO1, Runnable::run);
+        assertCopied(sources, result);
+    }
+
+    @Test
+    public void splitsLargeLists() {
+        List<Demo1<String, Integer>> sources = sources(5000);
+        assertCopied(sources, BeanUtils.deepCopyAll(sources, Demo1<String, Integer>::new));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicInteger chunks = new AtomicInteger();
+        try {
+            assertCopied(sources, BeanUtils.deepCopyAll(sources, Demo1<String, Integer>::new, DEMO1, task -> {
+                chunks.incrementAndGet();
+                executor.execute(task);
+            }));
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(chunks.get() > 1);
+    }
+
+    @Test
+    public void copiesLinkedListsWithoutIndexing() {
+        AtomicInteger gets = new AtomicInteger();
+        List<Demo1<String, Integer>> sources = new LinkedList<Demo1<String, Integer>>(sources(3000)) {
+            @Override
+            public Demo1<String, Integer> get(int index) {
+                gets.incrementAndGet();
+                return super.get(index);
+            }
+        };
+        BulkCopyResult<Demo1<String, Integer>> result = BeanUtils.deepCopyAll(sources, Demo1<String, Integer>::new);
+        assertEquals(0, gets.get());
+        assertCopied(new ArrayList<>(sources), result);
+    }
+
+    @Test
+    public void reportsFailuresWithoutAbortingTheBatch() {
+        for (int count : new int[]{5, 2000}) {
+            List<Demo1<String, Integer>> sources = sources(count);
+            sources.set(1, null);
+            AtomicInteger made = new AtomicInteger();
+            BulkCopyResult<Demo1<String, Integer>> result = BeanUtils.deepCopyAll(sources, () -> {
+                if (made.incrementAndGet() == 3) throw new IllegalStateException("no target");
+                return new Demo1<>();
+            });
+            assertEquals(2, result.getFailures().size());
+            assertTrue(result.getFailures().get(1) instanceof NullPointerException);
+            assertNull(result.getTargets().get(1));
+            assertEquals(count - 2, result.getTargets().stream().filter(t -> null != t).count());
+        }
+    }
+
+    @Test
+    public void appliesFilters() {
+        BulkCopyResult<Demo1<String, Integer>> result = BeanUtils.deepCopyAll(sources(3), Demo1<String, Integer>::new,
+                "-$: a");
+        for (Demo1<String, Integer> target : result.getTargets()) {
+            assertNull(target.a);
+            assertNotNull(target.b);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void resultIsReadOnly() {
+        BeanUtils.deepCopyAll(sources(1), Demo1<String, Integer>::new).getTargets().clear();
+    }
+}
@@ -0,0 +1,112 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import lombok.Setter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ChangeSetTest {
+
+    private static final Type DEMO1 = new TypeToken<Demo1<String, Integer>>() {
+    }.getType();
+
+    private Demo1<String, Integer> source = new Demo1<>();
+    private Demo1<String, Integer> target = new Demo1<>();
+
+    @Before
+    public void setUp() {
+        for (Demo1<String, Integer> demo : Arrays.asList(source, target)) {
+            demo.setA("aaa");
+            demo.setB(123);
+            demo.setE(321);
+            demo.setK(new int[]{7, 8, 9});
+            demo.setL(Arrays.asList(1, 2, 3));
+            demo.setP(E.Y);
+        }
+    }
+
+    @Test
+    public void unchanged() {
+        ChangeSet changes = BeanUtils.deepCopyChanges(source, target, DEMO1);
+        assertTrue(changes.toString(), changes.isEmpty());
+        assertEquals(0, changes.size());
+    }
+
+    @Test
+    public void reportsChangedFields() {
+        source.setB(124);
+        source.setK(new int[]{7, 8});
+        source.setP(E.Z);
+        ChangeSet changes = BeanUtils.deepCopyChanges(source, target, DEMO1);
+        assertEquals(Arrays.asList("$.b", "$.k", "$.p"), Arrays.asList(changes.getPaths().toArray()));
+        assertEquals(123, changes.get("$.b").getOldValue());
+        assertEquals(124, changes.get("$.b").getNewValue());
+        assertEquals(E.Z, changes.get("$.p").getNewValue());
+        assertNull(changes.get("$.a"));
+        assertEquals(Integer.valueOf(124), target.b);
+        assertArrayEquals(new int[]{7, 8}, target.k);
+    }
+
+    @Test
+    public void collectionsAreComparedAsAWhole() {
+        source.setL(Arrays.asList(1, 2, 3));
+        assertTrue(BeanUtils.deepCopyChanges(source, target, DEMO1).isEmpty());
+        source.setL(Collections.singletonList(1));
+        ChangeSet changes = BeanUtils.deepCopyChanges(source, target, DEMO1);
+        assertEquals(Collections.singleton("$.l"), changes.getPaths());
+        assertEquals(Collections.singletonList(1), target.l);
+    }
+
+    @Test
+    public void nestedBeansReportTheirOwnPaths() {
+        Person from = new Person();
+        from.setName("a");
+        from.setAddress(new Address());
+        from.address.setCity("x");
+        Person to = new Person();
+        to.setName("a");
+        to.setAddress(new Address());
+        to.address.setCity("y");
+        Address address = to.address;
+
+        ChangeSet changes = BeanUtils.deepCopyChanges(from, to, Person.class);
+        assertEquals(Collections.singleton("$.address.city"), changes.getPaths());
+        assertTrue(changes.touches("$.address"));
+        assertFalse(changes.touches("$.name"));
+        assertFalse(changes.touches("$.addr"));
+        assertSame(address, to.address);
+        assertEquals("x", to.address.city);
+    }
+
+    @Test
+    public void filtersApply() {
+        source.setA("bbb");
+        source.setB(124);
+        ChangeSet changes = BeanUtils.deepCopyChanges(source, target, DEMO1, "-$: a");
+        assertEquals(Collections.singleton("$.b"), changes.getPaths());
+        assertEquals("aaa", target.a);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void isReadOnly() {
+        source.setB(124);
+        BeanUtils.deepCopyChanges(source, target, DEMO1).getChanges().clear();
+    }
+
+    @Setter
+    static class Person {
+        String name;
+        Address address;
+    }
+
+    @Setter
+    static class Address {
+        String city;
+    }
+}
@@ -0,0 +1,65 @@
+package com.xunkutech.base.model.util;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ClassMetadataTest {
+
+    static class Base {
+        String name = "base";
+        int count;
+    }
+
+    static class Derived extends Base {
+        String name = "derived";
+        long extra;
+    }
+
+    @Test
+    public void fieldsInDeclarationOrderSubclassFirst() {
+        List<String> names = ClassUtils.getAllDeclaredFields(Derived.class).stream()
+                .filter(f -> !f.isSynthetic())
+                .map(f -> f.getDeclaringClass().getSimpleName() + "." + f.getName())
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("Derived.name", "Derived.extra", "Base.name", "Base.count"), names);
+    }
+
+    @Test
+    public void mostDerivedFieldWins() throws Exception {
+        Field name = ReflectionUtils.getAccessibleField(Derived.class, "name");
+        assertEquals(Derived.class, name.getDeclaringClass());
+        assertEquals(Base.class, ReflectionUtils.getAccessibleField(Derived.class, "count").getDeclaringClass());
+        assertEquals("derived", ReflectionUtils.getValue(new Derived(), "name"));
+    }
+
+    @Test(expected = NoSuchFieldException.class)
+    public void missingField() throws Exception {
+        ReflectionUtils.getAccessibleField(Derived.class, "missing");
+    }
+
+    @Test
+    public void superclassChain() {
+        assertEquals(Arrays.asList(Derived.class, Base.class), ClassUtils.getSuperclassChain(Derived.class, Base.class));
+        assertEquals(Arrays.asList(Base.class, Object.class), ClassUtils.getSuperclassChain(Base.class, Object.class));
+    }
+
+    @Test
+    public void handlesAreCached() throws Throwable {
+        ClassMetadata metadata = ClassMetadata.of(Derived.class);
+        assertSame(metadata, ClassMetadata.of(Derived.class));
+        MethodHandle getter = metadata.getter("count");
+        assertSame(getter, metadata.getter("count"));
+        assertNull(metadata.getter("missing"));
+
+        Derived derived = new Derived();
+        metadata.setter("count").invoke((Object) derived, (Object) 7);
+        assertEquals(7, (int) (Integer) getter.invoke((Object) derived));
+    }
+}
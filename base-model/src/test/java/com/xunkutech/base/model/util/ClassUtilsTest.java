@@ -0,0 +1,50 @@
+package com.xunkutech.base.model.util;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassUtilsTest {
+
+    static class Pair<A, B> {
+    }
+
+    static class Half<B> extends Pair<String, B> {
+    }
+
+    static class Full extends Half<Integer> {
+    }
+
+    @Test
+    public void resolvesThroughTheHierarchy() {
+        assertEquals(Arrays.<Type>asList(String.class, Integer.class), ClassUtils.getActualTypeArguments(Full.class, Pair.class));
+    }
+
+    @Test
+    public void unresolvedArgumentsAreNull() {
+        assertEquals(Arrays.<Type>asList(String.class, null), ClassUtils.getActualTypeArguments(Half.class, Pair.class));
+    }
+
+    @Test
+    public void repeatedLookupsAgree() {
+        assertEquals(ClassUtils.getActualTypeArguments(Full.class, Pair.class),
+                ClassUtils.getActualTypeArguments(Full.class, Pair.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void cachedArgumentsCannotBeChanged() {
+        ClassUtils.getActualTypeArguments(Full.class, Pair.class).set(0, Object.class);
+    }
+
+    @Test
+    public void interfaces() {
+        assertEquals(Collections.<Type>singletonList(String.class),
+                ClassUtils.getActualTypeArguments(StringList.class, List.class));
+    }
+
+    static abstract class StringList extends AbstractList<String> {
+    }
+}
@@ -0,0 +1,189 @@
+package com.xunkutech.base.model.util;
+
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CodecUtilsTest {
+
+    private static byte[] bytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String text(Random random, int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) random.nextInt(Character.MAX_VALUE + 1));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void hexRoundTrip() throws CodecException {
+        Random random = new Random(1);
+        for (int size = 0; size < 64; size++) {
+            byte[] bytes = bytes(random, size);
+            String hex = CodecUtils.toHex(bytes);
+            assertEquals(DatatypeConverter.printHexBinary(bytes).toLowerCase(), hex);
+            assertArrayEquals(bytes, CodecUtils.fromHex(hex));
+            assertArrayEquals(bytes, CodecUtils.fromHex(hex.toUpperCase()));
+        }
+    }
+
+    @Test
+    public void hexIntoArraysAndBuffers() throws CodecException {
+        byte[] bytes = {0x01, (byte) 0xab, (byte) 0xff};
+        char[] chars = new char[8];
+        assertEquals(7, CodecUtils.toHex(bytes, 0, 3, chars, 1));
+        assertEquals("01abff", new String(chars, 1, 6));
+
+        byte[] decoded = new byte[4];
+        assertEquals(4, CodecUtils.fromHex("01abff", decoded, 1));
+        assertArrayEquals(new byte[]{0, 0x01, (byte) 0xab, (byte) 0xff}, decoded);
+
+        CharBuffer hex = CharBuffer.allocate(5);
+        CodecUtils.toHex(ByteBuffer.wrap(bytes), hex);
+        hex.flip();
+        assertEquals("01ab", hex.toString());
+
+        // the odd trailing digit waits for the next call
+        CharBuffer src = CharBuffer.wrap("01a");
+        ByteBuffer dst = ByteBuffer.allocate(3);
+        CodecUtils.fromHex(src, dst);
+        assertEquals(2, src.position());
+        assertEquals(1, dst.position());
+    }
+
+    @Test(expected = CodecException.class)
+    public void hexOfOddLength() throws CodecException {
+        CodecUtils.fromHex("abc");
+    }
+
+    @Test(expected = CodecException.class)
+    public void hexWithIllegalCharacter() throws CodecException {
+        CodecUtils.fromHex("0g");
+    }
+
+    @Test(expected = CodecException.class)
+    public void hexWithNonAsciiCharacter() throws CodecException {
+        CodecUtils.fromHex("0你");
+    }
+
+    @Test
+    public void base64RoundTrip() throws CodecException {
+        Random random = new Random(2);
+        for (int size = 0; size < 64; size++) {
+            byte[] bytes = bytes(random, size);
+            String base64 = CodecUtils.toBase64(bytes);
+            assertEquals(Base64.getEncoder().encodeToString(bytes), base64);
+            assertArrayEquals(bytes, CodecUtils.fromBase64(base64));
+        }
+    }
+
+    @Test
+    public void base64IsLenient() throws CodecException {
+        assertArrayEquals("hello".getBytes(), CodecUtils.fromBase64("aGVs\nbG8=\n"));
+        assertArrayEquals("hello".getBytes(), CodecUtils.fromBase64("aG Vs bG 8="));
+        // inputs the former parser failed on with ArrayIndexOutOfBounds and NegativeArraySize
+        assertArrayEquals(new byte[0], CodecUtils.fromBase64("="));
+        assertArrayEquals(new byte[0], CodecUtils.fromBase64("a"));
+
+        // the result array is sized from the padding, whatever the input
+        Random random = new Random(6);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[random.nextInt(13)];
+            for (int j = 0; j < chars.length; j++) chars[j] = "Aa0+/= \n".charAt(random.nextInt(8));
+            String value = new String(chars);
+            byte[] decoded = new byte[value.length()];
+            int length = CodecUtils.fromBase64(value, decoded, 0);
+            assertArrayEquals(value, Arrays.copyOf(decoded, length), CodecUtils.fromBase64(value));
+        }
+    }
+
+    @Test
+    public void base64Buffers() throws CodecException {
+        ByteBuffer src = ByteBuffer.wrap("hello".getBytes());
+        CharBuffer dst = CharBuffer.allocate(8);
+        CodecUtils.toBase64(src, dst, false);
+        assertEquals(3, src.position());
+        CodecUtils.toBase64(src, dst, true);
+        dst.flip();
+        assertEquals("aGVsbG8=", dst.toString());
+
+        CharBuffer in = CharBuffer.wrap("aGVsbG8");
+        ByteBuffer out = ByteBuffer.allocate(8);
+        CodecUtils.fromBase64(in, out);
+        // the incomplete group is left for the next call
+        assertEquals(4, in.position());
+        assertEquals(3, out.position());
+    }
+
+    @Test(expected = CodecException.class)
+    public void base64WithNonAsciiCharacter() throws CodecException {
+        CodecUtils.fromBase64("aGVs你bG8=");
+    }
+
+    @Test
+    public void asciiRoundTrip() {
+        Random random = new Random(3);
+        for (int size = 0; size < 64; size++) {
+            String text = text(random, size);
+            String ascii = CodecUtils.toAscii(text);
+            assertEquals(size * 4, ascii.length());
+            assertEquals(text, CodecUtils.fromAscii(ascii));
+            assertEquals(text, CodecUtils.fromAscii(ascii.toUpperCase()));
+        }
+        assertEquals("4f60597d", CodecUtils.toAscii("你好"));
+        assertNull(CodecUtils.toAscii(null));
+        assertNull(CodecUtils.fromAscii(null));
+    }
+
+    @Test
+    public void asciiIntoArraysAndBuffers() {
+        char[] chars = new char[9];
+        assertEquals(9, CodecUtils.toAscii("你好", chars, 1));
+        assertEquals("4f60597d", new String(chars, 1, 8));
+
+        char[] decoded = new char[3];
+        assertEquals(3, CodecUtils.fromAscii("x4f60597dx", 1, 9, decoded, 1));
+        assertEquals("你好", new String(decoded, 1, 2));
+
+        CharBuffer src = CharBuffer.wrap("4f60597");
+        CharBuffer dst = CharBuffer.allocate(2);
+        assertTrue(CodecUtils.fromAscii(src, dst));
+        assertEquals(4, src.position());
+        assertEquals(1, dst.position());
+    }
+
+    @Test
+    public void malformedAscii() {
+        assertNull(CodecUtils.fromAscii("4f6g"));
+        assertEquals(-1, CodecUtils.fromAscii("00414f6g", new char[2], 0));
+        // an incomplete trailing group is ignored
+        assertEquals("A", CodecUtils.fromAscii("00414f6"));
+
+        CharBuffer src = CharBuffer.wrap("00414f6g");
+        assertFalse(CodecUtils.fromAscii(src, CharBuffer.allocate(2)));
+        assertEquals(4, src.position());
+    }
+
+    @Test
+    public void gzipBase64RoundTrip() throws CodecException {
+        byte[] bytes = bytes(new Random(5), 1000);
+        assertArrayEquals(bytes, CodecUtils.fromGzipBase64(CodecUtils.toGzipBase64(bytes)));
+    }
+
+    @Test(expected = CodecException.class)
+    public void notGzip() throws CodecException {
+        CodecUtils.fromGzip("hello".getBytes());
+    }
+}
@@ -0,0 +1,233 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CompactMapTest {
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    private static void assertSameMap(Map<String, Integer> expected, CompactMap<String, Integer> map) {
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.toString(), map.toString());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    public void putGetRemove() {
+        CompactMap<String, Integer> map = new CompactMap<>(2);
+        assertTrue(map.isEmpty());
+        assertNull(map.put("a", 1));
+        assertNull(map.put("b", 2));
+        // grows past the expected size
+        assertNull(map.put("c", 3));
+        assertEquals(Integer.valueOf(1), map.put("a", 10));
+        assertNull(map.put(null, null));
+        assertNull(map.put("d", null));
+
+        assertEquals(Integer.valueOf(10), map.get("a"));
+        assertTrue(map.containsKey(null));
+        assertTrue(map.containsKey("d"));
+        assertFalse(map.containsKey("e"));
+        assertTrue(map.containsValue(null));
+        assertEquals(Arrays.asList("a", "b", "c", null, "d"), new ArrayList<>(map.keySet()));
+
+        assertEquals(Integer.valueOf(2), map.remove("b"));
+        assertNull(map.remove("b"));
+        assertNull(map.remove(null));
+        assertEquals(Arrays.asList("a", "c", "d"), new ArrayList<>(map.keySet()));
+        assertNull(map.get("b"));
+        assertNull(map.put("b", 20));
+        assertEquals(Arrays.asList("a", "c", "d", "b"), new ArrayList<>(map.keySet()));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+        assertNull(map.put("a", 1));
+        assertEquals(Collections.singletonMap("a", 1), map);
+    }
+
+    @Test
+    public void behavesLikeLinkedHashMap() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Map<String, Integer> expected = new LinkedHashMap<>();
+            CompactMap<String, Integer> map = new CompactMap<>(random.nextInt(4));
+            for (int op = 0; op < 100; op++) {
+                String key = "k" + random.nextInt(12);
+                Integer value = random.nextInt(5) == 0 ? null : random.nextInt(100);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        assertEquals(expected.remove(key), map.remove(key));
+                        break;
+                    case 1:
+                        assertEquals(expected.get(key), map.get(key));
+                        assertEquals(expected.containsKey(key), map.containsKey(key));
+                        break;
+                    default:
+                        assertEquals(expected.put(key, value), map.put(key, value));
+                }
+                assertSameMap(expected, map);
+            }
+        }
+    }
+
+    @Test
+    public void iteratorRemove() {
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        CompactMap<String, Integer> map = new CompactMap<>();
+        for (int i = 0; i < 10; i++) {
+            expected.put("k" + i, i);
+            map.put("k" + i, i);
+        }
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        try {
+            it.remove();
+            fail();
+        } catch (IllegalStateException expectedException) {
+        }
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> entry = it.next();
+            if (entry.getValue() % 3 != 1) {
+                expected.remove(entry.getKey());
+                it.remove();
+                try {
+                    it.remove();
+                    fail();
+                } catch (IllegalStateException expectedException) {
+                }
+            }
+        }
+        assertSameMap(expected, map);
+        assertEquals(Arrays.asList("k1", "k4", "k7"), new ArrayList<>(map.keySet()));
+
+        map.values().removeIf(v -> v == 4);
+        map.keySet().remove("k7");
+        assertEquals(Collections.singletonMap("k1", 1), map);
+
+        it = map.entrySet().iterator();
+        it.next();
+        it.remove();
+        assertFalse(it.hasNext());
+        assertTrue(map.isEmpty());
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException expectedException) {
+        }
+    }
+
+    @Test
+    public void entrySetValueWritesThrough() {
+        CompactMap<String, Integer> map = new CompactMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+        }
+        assertEquals(Integer.valueOf(10), map.get("a"));
+        assertEquals(Integer.valueOf(20), map.get("b"));
+
+        Map.Entry<String, Integer> entry = map.entrySet().iterator().next();
+        assertEquals(new AbstractMap.SimpleEntry<>("a", 10), entry);
+        assertEquals(new AbstractMap.SimpleEntry<>("a", 10).hashCode(), entry.hashCode());
+        assertEquals("a=10", entry.toString());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void concurrentModification() {
+        CompactMap<String, Integer> map = new CompactMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        for (String key : map.keySet()) {
+            map.put(key + key, 0);
+        }
+    }
+
+    @Test
+    public void replacingAValueIsNotAModification() {
+        CompactMap<String, Integer> map = new CompactMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        for (String key : map.keySet()) {
+            map.put(key, 0);
+        }
+        assertEquals(Arrays.asList(0, 0), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        CompactMap<String, Integer> map = new CompactMap<>();
+        map.put("a", 1);
+        map.put("b", null);
+        Map<String, Integer> hash = new HashMap<>();
+        hash.put("b", null);
+        hash.put("a", 1);
+        assertEquals(hash, map);
+        assertEquals(map, hash);
+        assertEquals(hash.hashCode(), map.hashCode());
+
+        CompactMap<String, Integer> reordered = new CompactMap<>();
+        reordered.put("b", null);
+        reordered.put("a", 1);
+        assertEquals(map, reordered);
+        assertEquals(map.hashCode(), reordered.hashCode());
+
+        reordered.put("a", 2);
+        assertNotEquals(map, reordered);
+        reordered.put("a", 1);
+        reordered.remove("b");
+        assertNotEquals(map, reordered);
+        assertNotEquals(new CompactMap<>(), null);
+        assertEquals(new CompactMap<>(), Collections.emptyMap());
+    }
+
+    @Test
+    public void javaSerialization() throws Exception {
+        CompactMap<String, Object> map = new CompactMap<>(1);
+        map.put("a", 1L);
+        map.put("b", Arrays.asList("x", null));
+        map.put("c", null);
+        map.remove("a");
+
+        CompactMap<String, Object> copy = roundTrip(map);
+        assertEquals(map, copy);
+        assertEquals(Arrays.asList("b", "c"), new ArrayList<>(copy.keySet()));
+        // the transient modCount starts over without breaking iteration
+        Iterator<String> it = copy.keySet().iterator();
+        it.next();
+        it.remove();
+        copy.put("d", 4);
+        assertEquals(Arrays.asList("c", "d"), new ArrayList<>(copy.keySet()));
+    }
+
+    @Test
+    public void jsonSerialization() {
+        CompactMap<String, Object> map = new CompactMap<>();
+        map.put("b", 1L);
+        map.put("a", Arrays.asList("x", 2.5));
+        map.put("c", null);
+        assertEquals("{\"b\":1,\"a\":[\"x\",2.5]}", JsonUtils.toJson(map));
+        Map<String, Object> read = JsonUtils.fromJson(JsonUtils.toJson(map), new TypeToken<Map<String, Object>>() {}.getType());
+        map.remove("c");
+        assertEquals(map, read);
+    }
+}
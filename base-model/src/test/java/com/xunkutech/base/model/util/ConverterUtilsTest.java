@@ -0,0 +1,167 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConverterUtilsTest {
+
+    @Test
+    public void integers() {
+        assertEquals(Integer.valueOf(123), ConverterUtils.convert("123", Integer.class));
+        assertEquals(Integer.valueOf(5), ConverterUtils.convert("+5", int.class));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), ConverterUtils.convert("-2147483648", Integer.class));
+        assertNull(ConverterUtils.convert("2147483648", Integer.class));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), ConverterUtils.convert("-9223372036854775808", Long.class));
+        assertNull(ConverterUtils.convert("9223372036854775808", Long.class));
+        assertEquals(Short.valueOf((short) -32768), ConverterUtils.convert("-32768", Short.class));
+        assertNull(ConverterUtils.convert("32768", Short.class));
+        assertNull(ConverterUtils.convert("128", Byte.class));
+        for (String bad : new String[]{"", "-", "+", "1.0", " 1", "abc", "1_000"}) {
+            assertNull(bad, ConverterUtils.convert(bad, Integer.class));
+        }
+    }
+
+    @Test
+    public void floatingPoints() {
+        assertEquals(Double.valueOf(1.5), ConverterUtils.convert(" 1.5 ", Double.class));
+        assertEquals(Double.valueOf(1000), ConverterUtils.convert("1e3", double.class));
+        assertEquals(Double.valueOf(Double.NaN), ConverterUtils.convert("NaN", Double.class));
+        assertEquals(Float.valueOf(-0.25f), ConverterUtils.convert("-.25", Float.class));
+        assertNull(ConverterUtils.convert("1.2.3", Double.class));
+        assertNull(ConverterUtils.convert("x", Double.class));
+        assertEquals(Boolean.TRUE, ConverterUtils.convert("TRUE", Boolean.class));
+        assertEquals(Boolean.FALSE, ConverterUtils.convert("yes", Boolean.class));
+    }
+
+    /**
+     * The scanner accepts exactly what {@link Double#parseDouble(String)} accepts.
+     */
+    @Test
+    public void floatingPointSyntax() {
+        String[] texts = {"", " ", "0", "-0", "+1", "1.", ".5", ".", "-.", "1e", "1e+", "1e-5", "1E5", "1e5.5",
+                "1.5f", "1.5D", "1.5x", "1fd", "NaN", "-NaN", "NaNd", "nan", "Infinity", "+Infinity", "Infinityf",
+                "Inf", "0x1p3", "0X1.8P-1", "0x.8p0", "0x1", "0x1p", "0xp1", "0x1.fp1f", "0x", "1e5f", "١",
+                "--1", "1-", "\t2.5\n", "1 000", "99999999999999999999999e999999999999"};
+        for (String text : texts) {
+            boolean parses;
+            try {
+                Double.parseDouble(text);
+                parses = true;
+            } catch (NumberFormatException e) {
+                parses = false;
+            }
+            assertEquals(text, parses, null != ConverterUtils.floatingPoint(text));
+        }
+        assertEquals(Double.valueOf(-0.75), ConverterUtils.convert("-0x1.8p-1", Double.class));
+    }
+
+    @Test
+    public void instantsAndDates() {
+        Instant instant = Instant.ofEpochMilli(1508909568000L);
+        assertEquals(instant, ConverterUtils.convert("1508909568000", Instant.class));
+        assertEquals(instant, ConverterUtils.convert("2017-10-25T05:32:48Z", Instant.class));
+        assertEquals(instant, ConverterUtils.convert(1508909568000L, Instant.class));
+        assertEquals(instant, ConverterUtils.convert(Date.from(instant), Instant.class));
+        assertEquals(Date.from(instant), ConverterUtils.convert("1508909568000", Date.class));
+        assertEquals(Date.from(instant), ConverterUtils.convert(instant, Date.class));
+        assertEquals(Instant.parse("2017-10-25T05:32:48.123Z"), ConverterUtils.convert("2017-10-25T05:32:48.123Z", Instant.class));
+
+        Instant local = LocalDateTime.of(2017, 10, 25, 13, 32, 48).atZone(ZoneId.systemDefault()).toInstant();
+        assertEquals(local, ConverterUtils.convert("Oct 25, 2017 01:32:48 PM", Instant.class));
+        assertEquals(Date.from(local), ConverterUtils.convert("oct 25, 2017 01:32:48 pm", Date.class));
+        // rolls over like a lenient calendar
+        assertEquals(LocalDateTime.of(2017, 10, 25, 0, 32, 48).atZone(ZoneId.systemDefault()).toInstant(),
+                ConverterUtils.convert("Oct 24, 2017 11:92:48 PM", Instant.class));
+
+        for (String bad : new String[]{"", "0", "-1", "2017-13-45T00:00:00Z", "yesterday"}) {
+            assertNull(bad, ConverterUtils.convert(bad, Instant.class));
+            assertNull(bad, ConverterUtils.convert(bad, Date.class));
+        }
+    }
+
+    @Test
+    public void assignableValuesAreKept() {
+        StringBuilder value = new StringBuilder("x");
+        assertSame(value, ConverterUtils.convert(value, CharSequence.class));
+        assertNull(ConverterUtils.find(String.class, Object.class));
+        assertNull(ConverterUtils.convert(new Object(), Integer.class));
+        assertNull(ConverterUtils.convert(null, Integer.class));
+    }
+
+    @Test
+    public void registeredConverters() {
+        ConverterUtils.register(CharSequence.class, Token.class, s -> new Token("seq:" + s));
+        assertEquals("seq:a", ConverterUtils.convert("a", Token.class).value);
+        assertEquals("seq:b", ConverterUtils.convert(new StringBuilder("b"), Token.class).value);
+
+        // the most specific source wins, and registering drops resolved converters
+        ConverterUtils.register(String.class, Token.class, s -> new Token("str:" + s));
+        assertEquals("str:a", ConverterUtils.convert("a", Token.class).value);
+        assertEquals("seq:b", ConverterUtils.convert(new StringBuilder("b"), Token.class).value);
+
+        Map<String, Object> source = new HashMap<>();
+        source.put("token", "t");
+        Holder holder = new Holder();
+        BeanUtils.deepCopy(source, holder, Holder.class);
+        assertEquals("str:t", holder.token.value);
+    }
+
+    /**
+     * Targets the source class cannot see are not cached on it, so they still resolve, and
+     * registering again replaces them.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void targetsOfOtherClassLoaders() throws Exception {
+        URL classes = Token.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null)) {
+            Class<Object> other = (Class<Object>) loader.loadClass(Token.class.getName());
+            assertNotSame(Token.class, other);
+            ConverterUtils.register(String.class, other, s -> "first");
+            assertEquals("first", ConverterUtils.convert("a", other));
+            assertEquals("first", ConverterUtils.convert("b", other));
+            ConverterUtils.register(String.class, other, s -> "second");
+            assertEquals("second", ConverterUtils.convert("a", other));
+            assertNull(ConverterUtils.find(StringBuilder.class, other));
+        }
+    }
+
+    @Test
+    public void copiesConvertedMapValues() {
+        Map<String, Object> source = new HashMap<>();
+        source.put("b", "124");
+        source.put("e", "7");
+        source.put("h", "1508909568000");
+        source.put("i", "2017-10-25T05:32:48Z");
+        Demo1<String, Integer> target = new Demo1<>();
+        BeanUtils.deepCopy(source, target, new TypeToken<Demo1<String, Integer>>() {
+        }.getType());
+        assertEquals(Integer.valueOf(124), target.b);
+        assertEquals(7, target.e);
+        assertEquals(new Date(1508909568000L), target.h);
+        assertEquals(Instant.ofEpochMilli(1508909568000L), target.i);
+    }
+
+    static final class Token {
+        final String value;
+
+        Token(String value) {
+            this.value = value;
+        }
+    }
+
+    static class Holder {
+        Token token;
+    }
+}
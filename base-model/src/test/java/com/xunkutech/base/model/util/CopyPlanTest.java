@@ -0,0 +1,117 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CopyPlanTest {
+
+    private static final Type DEMO1 = new TypeToken<Demo1<String, Integer>>() {
+    }.getType();
+    private static final Type DEMO2 = new TypeToken<Demo2<String, Integer>>() {
+    }.getType();
+
+    Demo1<String, Integer> demo = new Demo1<>();
+
+    @Before
+    public void setUp() {
+        demo.setA("aaa");
+        demo.setB(123);
+        demo.setC(1.2);
+        demo.setD(1111L);
+        demo.setE(321);
+        demo.setF(2.1);
+        demo.setG(2222L);
+        demo.setH(new Date(1508909568000L));
+        demo.setI(Instant.ofEpochSecond(1508909568L));
+        demo.setJ(new String[]{"a", "b", "c"});
+        demo.setK(new int[]{7, 8, 9});
+        demo.setL(Arrays.asList(1, 2, 3));
+        demo.setM(Arrays.asList(4, 5, 6));
+        Map<String, Integer> n = new LinkedHashMap<>();
+        n.put("a", 1);
+        n.put("b", 2);
+        demo.setN(n);
+        demo.setO(n);
+        demo.setP(E.Y);
+    }
+
+    @Test
+    public void copiesBeanToBean() {
+        Demo1<String, Integer> copy = new Demo1<>();
+        BeanUtils.deepCopy(demo, copy, DEMO1);
+        assertEquals(demo.printJson(), copy.printJson());
+
+        Demo2<String, Integer> other = new Demo2<>();
+        BeanUtils.deepCopy(demo, other, DEMO2);
+        assertEquals(demo.printJson(), other.printJson());
+    }
+
+    @Test
+    public void copiesMapToBean() {
+        Map<String, Object> source = new HashMap<>();
+        source.put("a", "aaa");
+        source.put("b", 123);
+        source.put("e", 321);
+        source.put("k", new int[]{7, 8, 9});
+        source.put("l", Arrays.asList(1, 2, 3));
+        source.put("p", "Y");
+        Demo1<String, Integer> copy = new Demo1<>();
+        BeanUtils.deepCopy(source, copy, DEMO1);
+        assertEquals("aaa", copy.a);
+        assertEquals(Integer.valueOf(123), copy.b);
+        assertEquals(321, copy.e);
+        assertArrayEquals(new int[]{7, 8, 9}, copy.k);
+        assertEquals(Arrays.asList(1, 2, 3), copy.l);
+        assertEquals(E.Y, copy.p);
+    }
+
+    @Test
+    public void excludeFilter() {
+        Demo1<String, Integer> copy = new Demo1<>();
+        BeanUtils.deepCopy(demo, copy, DEMO1, "-$: a, b");
+        assertNull(copy.a);
+        assertNull(copy.b);
+        assertEquals(Double.valueOf(1.2), copy.c);
+    }
+
+    @Test
+    public void includeFilter() {
+        Demo1<String, Integer> copy = new Demo1<>();
+        BeanUtils.deepCopy(demo, copy, DEMO1, "+$: a", "-$: a");
+        assertEquals("aaa", copy.a);
+        assertNull(copy.b);
+        assertNull(copy.p);
+    }
+
+    @Test
+    public void filtersAreCachedByValue() {
+        String[] filters = {"-$: a"};
+        BeanUtils.deepCopy(demo, new Demo1<String, Integer>(), DEMO1, filters);
+        filters[0] = "-$: b";
+        Demo1<String, Integer> copy = new Demo1<>();
+        BeanUtils.deepCopy(demo, copy, DEMO1, filters);
+        assertEquals("aaa", copy.a);
+        assertNull(copy.b);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badFilter() {
+        BeanUtils.deepCopy(demo, new Demo1<String, Integer>(), DEMO1, "a, b");
+    }
+
+    @Test
+    public void plansAreShared() {
+        List<String> none = Collections.emptyList();
+        assertSame(CopyPlan.of(demo, new Demo1<String, Integer>(), DEMO1, null, null),
+                CopyPlan.of(demo, new Demo1<String, Integer>(), DEMO1, null, null));
+        assertNotSame(CopyPlan.of(demo, new Demo1<String, Integer>(), DEMO1, null, null),
+                CopyPlan.of(demo, new Demo1<String, Integer>(), DEMO1, null, none));
+    }
+}
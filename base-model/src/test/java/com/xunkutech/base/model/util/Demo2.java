@@ -0,0 +1,29 @@
+package com.xunkutech.base.model.util;
+
+import com.xunkutech.base.model.JsonSerializable;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Setter
+class Demo2<T, P> implements JsonSerializable {
+    String a;
+    Integer b;
+    Double c;
+    Long d;
+    int e;
+    double f;
+    long g;
+    Date h;
+    Instant i;
+    String[] j;
+    int[] k;
+    List<P> l;
+    List<Integer> m;
+    Map<T, P> n;
+    Map<String, Integer> o;
+    E p;
+}
@@ -0,0 +1,5 @@
+package com.xunkutech.base.model.util;
+
+enum E {
+    X, Y, Z
+}
@@ -0,0 +1,229 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.*;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.xunkutech.base.model.annotation.GsonAdapter;
+import com.xunkutech.base.model.component.fs.FileMeta;
+import org.junit.Test;
+
+import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * The adapters generated by the base-processor module for the fixtures below, compared with Gson's
+ * reflective adapter configured as {@link JsonUtils#GSON}.
+ */
+public class GsonAdapterTest {
+
+    /**
+     * {@link JsonUtils#GSON} without the generated adapters.
+     */
+    private static final Gson REFLECTIVE = new GsonBuilder()
+            .disableHtmlEscaping()
+            .excludeFieldsWithModifiers(Modifier.TRANSIENT, Modifier.STATIC)
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                    return null != f.getAnnotation(Transient.class) || null != f.getAnnotation(OneToMany.class);
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return false;
+                }
+            })
+            .create();
+
+    static class UpperCase extends TypeAdapter<String> {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value.toUpperCase());
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return in.nextString().toLowerCase();
+        }
+    }
+
+    static class Child {
+        String value;
+    }
+
+    static class SubChild extends Child {
+        int depth;
+    }
+
+    @GsonAdapter
+    static class Bean {
+        static String STATIC = "static";
+
+        String name;
+        int count = 7;
+        boolean flag;
+        Integer boxed;
+        @SerializedName(value = "renamed", alternate = {"old_name", "older"})
+        String renamed;
+        @JsonAdapter(UpperCase.class)
+        String upper;
+        transient String skipped = "skipped";
+        @Transient
+        String jpaSkipped = "jpa";
+        @OneToMany
+        List<Child> children;
+        List<String> items;
+        Map<String, Integer> counts;
+        Child child;
+        int[] numbers;
+        private String secret;
+
+        public String getSecret() {
+            return secret;
+        }
+
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+    }
+
+    @GsonAdapter
+    static class SubBean extends Bean {
+        String extra;
+    }
+
+    private static <B extends Bean> B bean(B bean) {
+        bean.name = "a \"name\" <b>";
+        bean.count = 3;
+        bean.flag = true;
+        bean.renamed = "renamed";
+        bean.upper = "upper";
+        bean.skipped = "set";
+        bean.jpaSkipped = "set";
+        bean.children = Collections.singletonList(new Child());
+        bean.items = Arrays.asList("x", null, "y");
+        bean.counts = new LinkedHashMap<>();
+        bean.counts.put("one", 1);
+        bean.counts.put("none", null);
+        bean.child = new Child();
+        bean.child.value = "child";
+        bean.numbers = new int[]{1, 2};
+        bean.setSecret("secret");
+        return bean;
+    }
+
+    private static <T> String write(Gson gson, Class<T> type, T value, boolean serializeNulls) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setSerializeNulls(serializeNulls);
+        gson.getAdapter(type).write(writer, value);
+        return out.toString();
+    }
+
+    private static <T> void assertSameJson(Class<T> type, T value) throws IOException {
+        assertEquals(REFLECTIVE.toJson(value), JsonUtils.GSON.toJson(value));
+        assertEquals(write(REFLECTIVE, type, value, true), write(JsonUtils.GSON, type, value, true));
+    }
+
+    @Test
+    public void generatedAdaptersAreUsed() {
+        for (Class<?> type : Arrays.asList(Bean.class, SubBean.class, FileMeta.class)) {
+            assertEquals(GeneratedAdapters.adapterClassName(type), JsonUtils.GSON.getAdapter(type).getClass().getName());
+        }
+    }
+
+    @Test
+    public void writesAsReflective() throws IOException {
+        assertSameJson(Bean.class, bean(new Bean()));
+        assertSameJson(SubBean.class, bean(new SubBean()));
+        assertFalse(JsonUtils.GSON.toJson(bean(new Bean())).contains("skipped"));
+        assertFalse(JsonUtils.GSON.toJson(bean(new Bean())).contains("children"));
+        assertTrue(JsonUtils.GSON.toJson(bean(new Bean())).contains("\"upper\":\"UPPER\""));
+    }
+
+    @Test
+    public void writesNullsAsReflective() throws IOException {
+        assertSameJson(Bean.class, new Bean());
+        assertSameJson(SubBean.class, new SubBean());
+        assertSameJson(Bean.class, null);
+        assertEquals("{\"count\":7,\"flag\":false}", JsonUtils.GSON.toJson(new Bean()));
+    }
+
+    @Test
+    public void writesRuntimeTypesAsReflective() throws IOException {
+        Bean bean = bean(new Bean());
+        SubChild child = new SubChild();
+        child.value = "sub";
+        child.depth = 2;
+        bean.child = child;
+        assertSameJson(Bean.class, bean);
+        assertTrue(JsonUtils.GSON.toJson(bean).contains("\"depth\":2"));
+    }
+
+    @Test
+    public void readsAsReflective() {
+        String json = REFLECTIVE.toJson(bean(new SubBean()))
+                .replace("\"upper\":\"upper\"", "\"upper\":\"UPPER\"");
+        SubBean expected = REFLECTIVE.fromJson(json, SubBean.class);
+        SubBean read = JsonUtils.GSON.fromJson(json, SubBean.class);
+        assertEquals("upper", read.upper);
+        assertEquals(REFLECTIVE.toJson(expected), REFLECTIVE.toJson(read));
+        // not read either
+        assertEquals("skipped", read.skipped);
+        assertEquals("jpa", read.jpaSkipped);
+        assertNull(read.children);
+    }
+
+    @Test
+    public void readsAlternateNames() {
+        for (String name : Arrays.asList("renamed", "old_name", "older")) {
+            String json = "{\"" + name + "\":\"value\"}";
+            assertEquals("value", REFLECTIVE.fromJson(json, Bean.class).renamed);
+            assertEquals("value", JsonUtils.GSON.fromJson(json, Bean.class).renamed);
+        }
+    }
+
+    @Test
+    public void readsNullsAndUnknownMembersAsReflective() {
+        String json = "{\"name\":null,\"count\":null,\"boxed\":null,\"unknown\":{\"a\":[1,{\"b\":null}]},"
+                + "\"items\":null,\"child\":{\"value\":\"v\",\"other\":true},\"skipped\":\"x\",\"jpaSkipped\":\"x\","
+                + "\"extra\":\"e\",\"secret\":\"s\"}";
+        SubBean expected = REFLECTIVE.fromJson(json, SubBean.class);
+        SubBean read = JsonUtils.GSON.fromJson(json, SubBean.class);
+        assertEquals(REFLECTIVE.toJson(expected), REFLECTIVE.toJson(read));
+        // a null primitive keeps its default
+        assertEquals(7, read.count);
+        assertEquals("v", read.child.value);
+        assertEquals("s", read.getSecret());
+        assertNull(JsonUtils.GSON.fromJson("null", Bean.class));
+    }
+
+    @Test
+    public void fileMetaAsReflective() throws IOException {
+        FileMeta meta = new FileMeta();
+        meta.setEtag("etag");
+        meta.setHash(FileMeta.calHash("ns", "/a/b"));
+        meta.setNamespace("ns");
+        meta.setCanonicalPath("/a/文件");
+        meta.setContentType("text/plain");
+        assertSameJson(FileMeta.class, meta);
+        String json = JsonUtils.GSON.toJson(meta);
+        assertEquals(json, REFLECTIVE.toJson(JsonUtils.GSON.fromJson(json, FileMeta.class)));
+    }
+
+    @Test
+    public void collectionsOfBeans() {
+        List<Bean> beans = Arrays.asList(bean(new Bean()), new SubBean());
+        java.lang.reflect.Type type = new TypeToken<List<Bean>>() {}.getType();
+        assertEquals(REFLECTIVE.toJson(beans, type), JsonUtils.GSON.toJson(beans, type));
+    }
+}
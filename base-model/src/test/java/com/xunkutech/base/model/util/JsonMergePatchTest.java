@@ -0,0 +1,75 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonMergePatchTest {
+
+    /**
+     * Target, patch and result, from RFC 7386 appendix A.
+     */
+    private static final String[][] RFC_7386 = {
+            {"{\"a\":\"b\"}", "{\"a\":\"c\"}", "{\"a\":\"c\"}"},
+            {"{\"a\":\"b\"}", "{\"b\":\"c\"}", "{\"a\":\"b\",\"b\":\"c\"}"},
+            {"{\"a\":\"b\"}", "{\"a\":null}", "{}"},
+            {"{\"a\":\"b\",\"b\":\"c\"}", "{\"a\":null}", "{\"b\":\"c\"}"},
+            {"{\"a\":[\"b\"]}", "{\"a\":\"c\"}", "{\"a\":\"c\"}"},
+            {"{\"a\":\"c\"}", "{\"a\":[\"b\"]}", "{\"a\":[\"b\"]}"},
+            {"{\"a\":{\"b\":\"c\"}}", "{\"a\":{\"b\":\"d\",\"c\":null}}", "{\"a\":{\"b\":\"d\"}}"},
+            {"{\"a\":[{\"b\":\"c\"}]}", "{\"a\":[1]}", "{\"a\":[1]}"},
+            {"[\"a\",\"b\"]", "[\"c\",\"d\"]", "[\"c\",\"d\"]"},
+            {"{\"a\":\"b\"}", "[\"c\"]", "[\"c\"]"},
+            {"{\"a\":\"foo\"}", "null", "null"},
+            {"{\"a\":\"foo\"}", "\"bar\"", "\"bar\""},
+            {"{\"e\":null}", "{\"a\":1}", "{\"e\":null,\"a\":1}"},
+            {"[1,2]", "{\"a\":\"b\",\"c\":null}", "{\"a\":\"b\"}"},
+            {"{}", "{\"a\":{\"bb\":{\"ccc\":null}}}", "{\"a\":{\"bb\":{}}}"},
+    };
+
+    private static JsonElement parse(String json) {
+        return new JsonParser().parse(json);
+    }
+
+    @Test
+    public void rfc7386() {
+        for (String[] vector : RFC_7386) {
+            String patched = JsonUtils.mergePatch(vector[0], parse(vector[1]));
+            assertEquals(vector[0] + " + " + vector[1], parse(vector[2]), parse(patched));
+        }
+    }
+
+    @Test
+    public void rfc7386Streamed() {
+        for (String[] vector : RFC_7386) {
+            StringWriter out = new StringWriter();
+            JsonUtils.mergePatch(new StringReader(vector[0]), parse(vector[1]), out);
+            assertEquals(vector[0] + " + " + vector[1], parse(vector[2]), parse(out.toString()));
+        }
+    }
+
+    @Test
+    public void keepsUntouchedMembersAsWritten() {
+        // numbers are not reformatted, nulls are kept
+        assertEquals("{\"n\":1.50,\"o\":{\"x\":[true,null]},\"p\":2}",
+                JsonUtils.mergePatch("{\"n\":1.50,\"o\":{\"x\":[true,null]}}", parse("{\"p\":2}")));
+    }
+
+    @Test
+    public void absentTarget() {
+        for (String target : new String[]{null, "", "  "}) {
+            assertEquals(parse("{\"a\":{}}"), parse(JsonUtils.mergePatch(target, parse("{\"a\":{\"b\":null},\"c\":null}"))));
+        }
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void malformedTarget() {
+        JsonUtils.mergePatch("{\"a\":", parse("{\"b\":1}"));
+    }
+}
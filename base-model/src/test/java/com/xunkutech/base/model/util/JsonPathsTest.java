@@ -0,0 +1,104 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonPathsTest {
+
+    private static final String JSON = "{\"status\":\"DONE\",\"order\":{\"amount\":12,\"note\":null},"
+            + "\"items\":[{\"price\":1},{\"price\":2}],\"big\":[1,2,3]}";
+
+    @Test
+    public void projectsMembersAndElements() {
+        Map<String, JsonElement> found = JsonPaths.of("status", "order.amount", "items[1].price", "order.note")
+                .project(JSON);
+        assertEquals(Arrays.asList("status", "order.amount", "order.note", "items[1].price"),
+                Arrays.asList(found.keySet().toArray()));
+        assertEquals(new JsonPrimitive("DONE"), found.get("status"));
+        assertEquals(Integer.valueOf(12), JsonPaths.valueOf(found, "order.amount", Integer.class));
+        assertEquals(JsonNull.INSTANCE, found.get("order.note"));
+        assertEquals(new JsonPrimitive(2), found.get("items[1].price"));
+    }
+
+    @Test
+    public void leavesMissingPathsOut() {
+        Map<String, JsonElement> found = JsonPaths.of("missing", "items[5]", "status.x").project(JSON);
+        assertTrue(found.isEmpty());
+        assertTrue(JsonPaths.of("status").project((String) null).isEmpty());
+    }
+
+    @Test
+    public void reportsEverySpelling() {
+        Map<String, JsonElement> found = JsonPaths.of("$.status", "status", "$status", "items[0]", "$.items[0].price")
+                .project(JSON);
+        assertEquals(5, found.size());
+        assertEquals(new JsonPrimitive("DONE"), found.get("$.status"));
+        assertEquals(new JsonPrimitive("DONE"), found.get("status"));
+        assertEquals(new JsonPrimitive("DONE"), found.get("$status"));
+        assertEquals(new JsonPrimitive(1), found.get("$.items[0].price"));
+    }
+
+    @Test
+    public void nestedPathsOfAReadValue() {
+        Map<String, JsonElement> found = JsonPaths.of("order", "order.amount").project(JSON);
+        assertEquals(new JsonPrimitive(12), found.get("order.amount"));
+        assertTrue(found.get("order").isJsonObject());
+    }
+
+    @Test
+    public void stopsOnceEverythingIsFound() {
+        // malformed after the paths, never read
+        assertEquals(2, JsonPaths.of("status", "$.status").project("{\"status\":1, !!!").size());
+        CountingReader reader = new CountingReader(JSON);
+        JsonPaths.of("status").project(reader);
+        assertTrue(reader.read < JSON.length());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void malformed() {
+        JsonPaths.of("missing").project("{\"status\":1, !!!");
+    }
+
+    @Test
+    public void invalidPaths() {
+        for (String path : new String[]{"", "$", "a.", "a..b", "a[", "a[x]", "a[-1]", "a.[0]"}) {
+            try {
+                JsonPaths.of(path);
+                fail(path);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static final class CountingReader extends Reader {
+        private final Reader in;
+        int read;
+
+        CountingReader(String s) {
+            this.in = new StringReader(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = in.read(cbuf, off, Math.min(len, 8));
+            if (n > 0) read += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.*;
+import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JsonUtilsTest {
+
+    private static final Type STRING_LIST = new TypeToken<List<String>>() {}.getType();
+
+    private static final Type OBJECT_MAP = new TypeToken<Map<String, Object>>() {}.getType();
+
+    /**
+     * The Map deserializer JsonUtils used before NaturalMapTypeAdapterFactory, going through a
+     * JsonElement tree.
+     */
+    private static final Gson LEGACY_GSON = new GsonBuilder()
+            .registerTypeAdapter(Map.class, new JsonDeserializer<Map<String, Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Map<String, Object> deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+                    return (Map<String, Object>) read(json);
+                }
+
+                private Object read(JsonElement in) {
+                    if (in.isJsonArray()) {
+                        List<Object> list = new ArrayList<>();
+                        for (JsonElement element : in.getAsJsonArray()) {
+                            list.add(read(element));
+                        }
+                        return list;
+                    } else if (in.isJsonObject()) {
+                        Map<String, Object> map = new LinkedTreeMap<>();
+                        for (Map.Entry<String, JsonElement> entry : in.getAsJsonObject().entrySet()) {
+                            map.put(entry.getKey(), read(entry.getValue()));
+                        }
+                        return map;
+                    } else if (in.isJsonPrimitive()) {
+                        JsonPrimitive prim = in.getAsJsonPrimitive();
+                        if (prim.isBoolean()) {
+                            return prim.getAsBoolean();
+                        } else if (prim.isString()) {
+                            return prim.getAsString();
+                        } else if (prim.isNumber()) {
+                            Number num = prim.getAsNumber();
+                            if (Math.ceil(num.doubleValue()) == num.longValue())
+                                return num.longValue();
+                            else {
+                                return num.doubleValue();
+                            }
+                        }
+                    }
+                    return null;
+                }
+            })
+            .create();
+
+    private static final String[] NUMBERS = {
+            "0", "-0", "-0.0", "3", "3.0", "3.5", "-3.5", "0.1", "1e3", "1E-3", "2.5e1", "1e20", "-1e20",
+            "9007199254740993", "9223372036854775807", "-9223372036854775808", "12345678901234567890",
+            "1.7976931348623157E308", "4.9E-324"
+    };
+
+    private static void randomValue(Random random, StringBuilder sb, int depth) {
+        switch (random.nextInt(depth > 3 ? 4 : 6)) {
+            case 0:
+                sb.append(NUMBERS[random.nextInt(NUMBERS.length)]);
+                break;
+            case 1:
+                sb.append(random.nextBoolean() ? "null" : random.nextBoolean() ? "true" : "false");
+                break;
+            case 2:
+                sb.append('"').append(Utf8WriterTest.text(random, random.nextInt(5)).replaceAll("[\\\\\"\\p{Cntrl}]", "")).append('"');
+                break;
+            case 3:
+                sb.append(random.nextInt()).append(random.nextBoolean() ? "" : "." + random.nextInt(1000));
+                break;
+            case 4:
+                sb.append('[');
+                for (int n = random.nextInt(4); n > 0; n--) {
+                    randomValue(random, sb, depth + 1);
+                    if (n > 1) sb.append(',');
+                }
+                sb.append(']');
+                break;
+            default:
+                randomObject(random, sb, depth + 1);
+        }
+    }
+
+    private static void randomObject(Random random, StringBuilder sb, int depth) {
+        sb.append('{');
+        for (int n = random.nextInt(12); n > 0; n--) {
+            // a small key space, so some objects repeat keys
+            sb.append("\"k").append(random.nextInt(10)).append("\":");
+            randomValue(random, sb, depth);
+            if (n > 1) sb.append(',');
+        }
+        sb.append('}');
+    }
+
+    private static class ClosingOut extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class ClosingIn extends ByteArrayInputStream {
+        boolean closed;
+
+        ClosingIn(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void binEqualsStringGetBytes() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            List<String> items = new ArrayList<>();
+            for (int n = random.nextInt(5); n > 0; n--) {
+                items.add(Utf8WriterTest.text(random, random.nextInt(3000)));
+            }
+            String json = JsonUtils.toJson(items);
+            assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), JsonUtils.toBin(items));
+            // unpaired surrogates come back as '?', as through String.getBytes
+            List<String> expected = JsonUtils.fromJson(new String(json.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), STRING_LIST);
+            assertEquals((Object) expected, JsonUtils.fromBin(JsonUtils.toBin(items), STRING_LIST));
+        }
+    }
+
+    @Test
+    public void streamsAreLeftOpen() {
+        List<String> items = Arrays.asList("a", "中", "😀");
+        ClosingOut out = new ClosingOut();
+        JsonUtils.toJson(items, out);
+        assertFalse(out.closed);
+        JsonUtils.toGzip(items, out);
+        assertFalse(out.closed);
+
+        byte[] json = JsonUtils.toBin(items);
+        ClosingIn in = new ClosingIn(json);
+        assertEquals((Object) items, JsonUtils.fromJson(in, STRING_LIST));
+        assertFalse(in.closed);
+        in = new ClosingIn(json);
+        assertEquals((Object) items, JsonUtils.fromJson(in, List.class));
+        assertFalse(in.closed);
+
+        in = new ClosingIn(JsonUtils.toGzip(items));
+        assertEquals((Object) items, JsonUtils.fromGzip(in, STRING_LIST));
+        assertFalse(in.closed);
+    }
+
+    @Test
+    public void toBinWritesFromThePosition() {
+        List<String> items = Arrays.asList("a", "中", "😀");
+        byte[] expected = JsonUtils.toBin(items);
+
+        ByteBuffer dst = ByteBuffer.allocate(expected.length + 10);
+        dst.position(3);
+        assertEquals(expected.length, JsonUtils.toBin(items, dst));
+        assertEquals(3 + expected.length, dst.position());
+        assertArrayEquals(expected, Arrays.copyOfRange(dst.array(), 3, 3 + expected.length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+        assertEquals(expected.length, JsonUtils.toBin(items, direct));
+        assertFalse(direct.hasRemaining());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void toBinOverflow() {
+        ByteBuffer dst = ByteBuffer.allocate(20);
+        dst.limit(5);
+        JsonUtils.toBin(Arrays.asList("abcdef"), dst);
+    }
+
+    @Test
+    public void fromBinReadsPositionToLimit() {
+        List<String> items = Arrays.asList("a", "中", "😀");
+        byte[] json = JsonUtils.toBin(items);
+        byte[] padded = new byte[json.length + 8];
+        Arrays.fill(padded, (byte) '!');
+        System.arraycopy(json, 0, padded, 4, json.length);
+
+        ByteBuffer src = ByteBuffer.wrap(padded);
+        src.position(4).limit(4 + json.length);
+        assertEquals((Object) items, JsonUtils.fromBin(src, STRING_LIST));
+        assertEquals((Object) items, JsonUtils.fromBin(src, List.class));
+        // not moved
+        assertEquals(4, src.position());
+        assertEquals(4 + json.length, src.limit());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length);
+        direct.put(json).flip();
+        assertEquals((Object) items, JsonUtils.fromBin(direct, STRING_LIST));
+        assertEquals(0, direct.position());
+
+        src.position(src.limit());
+        assertNull(JsonUtils.fromBin(src, STRING_LIST));
+    }
+
+    @Test
+    public void fromGzipByteBuffer() {
+        List<String> items = Arrays.asList("a", "中");
+        byte[] gzip = JsonUtils.toGzip(items);
+        ByteBuffer src = ByteBuffer.allocate(gzip.length + 2);
+        src.position(2);
+        src.put(gzip).position(2);
+        assertEquals((Object) items, JsonUtils.fromGzip(src, STRING_LIST));
+        assertEquals(2, src.position());
+    }
+
+    @Test
+    public void invalidInput() {
+        assertNull(JsonUtils.fromBin("[\"a\",".getBytes(StandardCharsets.UTF_8), STRING_LIST));
+        assertNull(JsonUtils.fromBin(new byte[]{'[', '"', (byte) 0xe4, '"', ']', ','}, STRING_LIST));
+        // malformed bytes are replaced, as new String(bytes, UTF_8) would
+        assertEquals(Collections.singletonList("�"), JsonUtils.fromBin(new byte[]{'[', '"', (byte) 0xff, '"', ']'}, STRING_LIST));
+        assertNull(JsonUtils.fromBin(new byte[0], STRING_LIST));
+    }
+
+    @Test
+    public void numbersNarrowLikeTheLegacyDeserializer() {
+        for (String number : NUMBERS) {
+            String json = "{\"n\":" + number + ",\"a\":[" + number + "]}";
+            Map<?, ?> legacy = LEGACY_GSON.fromJson(json, Map.class);
+            Map<?, ?> natural = JsonUtils.fromJson(json, Map.class);
+            assertEquals(number, legacy, natural);
+            assertEquals(number, legacy.get("n").getClass(), natural.get("n").getClass());
+        }
+        Map<?, ?> map = JsonUtils.fromJson("{\"l\":3.0,\"d\":3.5,\"big\":1e20,\"max\":9223372036854775807}", Map.class);
+        assertEquals(3L, map.get("l"));
+        assertEquals(3.5, map.get("d"));
+        assertEquals(1e20, map.get("big"));
+        assertEquals(Long.MAX_VALUE, map.get("max"));
+    }
+
+    @Test
+    public void nestedListsMapsAndNulls() {
+        String json = "{\"a\":null,\"b\":[null,1,[2,{\"c\":null}],{}],\"d\":{\"e\":{\"f\":[]}},\"g\":\"x\",\"h\":false}";
+        Map<?, ?> natural = JsonUtils.fromJson(json, Map.class);
+        assertEquals(LEGACY_GSON.fromJson(json, Map.class), natural);
+        assertTrue(natural.containsKey("a"));
+        assertNull(natural.get("a"));
+        assertEquals(Arrays.asList("a", "b", "d", "g", "h"), new ArrayList<>(natural.keySet()));
+        List<?> b = (List<?>) natural.get("b");
+        assertEquals(ArrayList.class, b.getClass());
+        assertNull(b.get(0));
+        assertEquals(Collections.singletonMap("c", null), ((List<?>) b.get(2)).get(1));
+        assertEquals(json, new GsonBuilder().serializeNulls().create().toJson(natural));
+
+        assertNull(JsonUtils.GSON.fromJson("null", Map.class));
+        assertNull(LEGACY_GSON.fromJson("null", Map.class));
+    }
+
+    @Test
+    public void naturalMapsMatchTheLegacyDeserializer() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            randomObject(random, sb, 0);
+            String json = sb.toString();
+            Map<?, ?> legacy = LEGACY_GSON.fromJson(json, Map.class);
+            assertEquals(json, legacy, JsonUtils.fromJson(json, Map.class));
+            assertEquals(json, legacy, JsonUtils.fromJson(json, OBJECT_MAP));
+            assertEquals(json, legacy.toString(), JsonUtils.fromJson(json, Map.class).toString());
+        }
+    }
+
+    @Test
+    public void compactMapsMatchLinkedTreeMaps() {
+        Gson compact = new GsonBuilder()
+                .registerTypeAdapterFactory(new JsonUtils.NaturalMapTypeAdapterFactory(4))
+                .create();
+        Random random = new Random(12);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            randomObject(random, sb, 0);
+            String json = sb.toString();
+            Map<?, ?> legacy = LEGACY_GSON.fromJson(json, Map.class);
+            Map<?, ?> map = compact.fromJson(json, Map.class);
+            assertEquals(json, legacy, map);
+            assertEquals(json, legacy.hashCode(), map.hashCode());
+            assertEquals(json, new ArrayList<>(legacy.keySet()), new ArrayList<>(map.keySet()));
+            assertEquals(json, JsonUtils.toJson(legacy), JsonUtils.toJson(map));
+            assertEquals(json, map.size() <= 4 ? CompactMap.class : LinkedTreeMap.class, map.getClass());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.xunkutech.base.model.util;
+
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TypeHolderTest {
+
+    static class Foo {
+    }
+
+    @Test
+    public void roundTrip() {
+        Type type = new TypeToken<Map<String, List<Integer>>>() {
+        }.getType();
+        String json = TypeHolder.jsonFromType(type);
+        assertEquals(type, TypeHolder.typeFromJson(json));
+        assertSame(json, TypeHolder.jsonFromType(new TypeToken<Map<String, List<Integer>>>() {
+        }.getType()));
+        assertSame(TypeHolder.typeFromJson(json), TypeHolder.typeFromJson(new String(json)));
+        assertNull(TypeHolder.typeFromJson(""));
+        assertNull(TypeHolder.jsonFromType(null));
+    }
+
+    @Test
+    public void internsEqualTypes() {
+        Type a = new TypeToken<List<Foo>>() {
+        }.getType();
+        Type b = new TypeToken<List<Foo>>() {
+        }.getType();
+        assertNotSame(a, b);
+        assertSame(TypeHolder.intern(a), TypeHolder.intern(b));
+    }
+
+    @Test
+    public void typesOfChildLoadersAreNotCached() throws Exception {
+        Class<?> foo = new ChildFirstLoader(getClass().getClassLoader()).loadClass(Foo.class.getName());
+        assertNotSame(Foo.class, foo);
+        Type a = TypeToken.getParameterized(List.class, foo).getType();
+        Type b = TypeToken.getParameterized(List.class, foo).getType();
+        assertSame(b, TypeHolder.intern(b));
+        assertSame(a, TypeHolder.intern(a));
+        assertEquals(TypeHolder.jsonFromType(a), TypeHolder.jsonFromType(TypeToken.getParameterized(List.class, Foo.class).getType()));
+    }
+
+    /**
+     * Defines its own copy of {@link Foo}, like a restart or web application loader would.
+     */
+    private static class ChildFirstLoader extends ClassLoader {
+        ChildFirstLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Foo.class.getName())) return super.loadClass(name, resolve);
+            try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+                byte[] bytes = out.toByteArray();
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.xunkutech.base.model.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Utf8ReaderTest {
+
+    /**
+     * Hands out at most <code>step</code> bytes per read, so sequences straddle refills.
+     */
+    private static class Trickle extends ByteArrayInputStream {
+        private final int step;
+        boolean closed;
+
+        Trickle(byte[] bytes, int step) {
+            super(bytes);
+            this.step = step;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, step));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static String read(InputStream in, int bufferSize, int chunk) throws IOException {
+        Utf8Reader reader = new Utf8Reader(in, bufferSize);
+        StringBuilder sb = new StringBuilder();
+        char[] cbuf = new char[chunk];
+        int n;
+        while ((n = reader.read(cbuf, 0, chunk)) != -1) {
+            sb.append(cbuf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    private static String read(byte[] bytes) throws IOException {
+        return read(new ByteArrayInputStream(bytes), 16, 64);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    @Test
+    public void decodesAsString() throws IOException {
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++) {
+            String text = Utf8WriterTest.text(random, random.nextInt(200));
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            String expected = new String(bytes, StandardCharsets.UTF_8);
+            // a one char buffer holds back the low surrogate of a pair for the next call
+            for (int chunk : new int[]{1, 2, 5, 1000}) {
+                assertEquals(expected, read(new Trickle(bytes, 1), 16, chunk));
+                assertEquals(expected, read(new Trickle(bytes, 3), 16, chunk));
+                assertEquals(expected, read(new ByteArrayInputStream(bytes), 8192, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossRefills() throws IOException {
+        String text = "abcdefghijklmn😀z";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int step = 1; step <= bytes.length; step++) {
+            assertEquals(text, read(new Trickle(bytes, step), 16, 15));
+        }
+    }
+
+    @Test
+    public void malformedInputIsReplacedPerByte() throws IOException {
+        // lone continuation and invalid lead bytes
+        assertEquals("a�b", read(bytes('a', 0x80, 'b')));
+        assertEquals("��", read(bytes(0xf5, 0xff)));
+        // overlong forms
+        assertEquals("��", read(bytes(0xc0, 0x80)));
+        assertEquals("���", read(bytes(0xe0, 0x80, 0x80)));
+        // an encoded surrogate
+        assertEquals("���", read(bytes(0xed, 0xa0, 0x80)));
+        // beyond U+10FFFF
+        assertEquals("����", read(bytes(0xf4, 0x90, 0x80, 0x80)));
+        // a lead byte without enough continuation bytes
+        assertEquals("�a", read(bytes(0xe4, 'a')));
+        assertEquals("��a", read(bytes(0xe4, 0xb8, 'a')));
+    }
+
+    @Test
+    public void truncatedInput() throws IOException {
+        byte[] bytes = "中😀".getBytes(StandardCharsets.UTF_8);
+        assertEquals("中���", read(Arrays.copyOf(bytes, 6)));
+        assertEquals("��", read(Arrays.copyOf(bytes, 2)));
+        assertEquals("", read(new byte[0]));
+    }
+
+    @Test
+    public void streamIsNotClosed() throws IOException {
+        Trickle in = new Trickle("x".getBytes(StandardCharsets.UTF_8), 1);
+        Utf8Reader reader = new Utf8Reader(in, 16);
+        assertEquals('x', reader.read());
+        assertEquals(-1, reader.read());
+        reader.close();
+        assertFalse(in.closed);
+        assertEquals(0, reader.read(new char[1], 0, 0));
+    }
+}
@@ -0,0 +1,116 @@
+package com.xunkutech.base.model.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Utf8WriterTest {
+
+    /**
+     * Mostly ASCII with two and three byte characters, surrogate pairs and some unpaired surrogates.
+     */
+    static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    sb.append((char) (0x80 + random.nextInt(0x780)));
+                    break;
+                case 1:
+                    sb.append((char) (0x4e00 + random.nextInt(0x5000)));
+                    break;
+                case 2:
+                    sb.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                    break;
+                case 3:
+                    if (random.nextInt(8) == 0) {
+                        sb.append((char) (0xd800 + random.nextInt(0x800)));
+                        break;
+                    }
+                default:
+                    sb.append((char) random.nextInt(0x80));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] write(String text, int bufferSize, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(out, bufferSize);
+        for (int i = 0; i < text.length(); i += chunk) {
+            int end = Math.min(text.length(), i + chunk);
+            if (i % 2 == 0) {
+                writer.write(text, i, end - i);
+            } else {
+                writer.write(text.toCharArray(), i, end - i);
+            }
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void bytesEqualStringGetBytes() throws IOException {
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            String text = text(random, random.nextInt(200));
+            byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+            // small buffers and chunks split pairs and sequences across calls and flushes
+            for (int chunk : new int[]{1, 2, 3, 7, 1000}) {
+                assertArrayEquals(text, expected, write(text, 16, chunk));
+            }
+            assertArrayEquals(text, expected, write(text, 8192, 1000));
+        }
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossCalls() throws IOException {
+        String emoji = "😀";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8Writer writer = new Utf8Writer(out, 16);
+        // fill the buffer up to one byte short so the pair spans a flush
+        writer.write("abcdefghijklmno");
+        writer.write(emoji.charAt(0));
+        writer.write(emoji.charAt(1));
+        writer.close();
+        assertArrayEquals(("abcdefghijklmno" + emoji).getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void loneSurrogates() throws IOException {
+        for (String text : new String[]{"\ud83d", "a\ud83d", "\ud83db", "\ude00", "a\ude00b", "\ude00\ud83d",
+                "\ud83d😀", "\ud83d中", "abcdefghijklmno\ud83d"}) {
+            byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(text, expected, write(text, 16, 1));
+            assertArrayEquals(text, expected, write(text, 16, 100));
+        }
+    }
+
+    @Test
+    public void streamIsFlushedNotClosed() throws IOException {
+        boolean[] state = new boolean[2];
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                state[0] = true;
+            }
+
+            @Override
+            public void close() {
+                state[1] = true;
+            }
+        };
+        Utf8Writer writer = new Utf8Writer(out, 16);
+        writer.write("x");
+        writer.close();
+        assertTrue(state[0]);
+        assertFalse(state[1]);
+        assertEquals("x", out.toString());
+    }
+}
@@ -0,0 +1,428 @@
+package com.xunkutech.base.model.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a streaming Gson TypeAdapter for every <code>@GsonAdapter</code> bean.
+ * <p>
+ * Fields are visited like Gson's reflective adapter does: declared fields in order, subclass before
+ * superclass, with the exclusions JsonUtils.GSON_BUILDER configures. Fields that are not accessible
+ * from the bean's package are read and written through their getter and setter.
+ * <p>
+ * Kept in its own module, without a dependency on base-model, so base-model can be compiled with it;
+ * the annotation and the runtime support are referred to by name.
+ */
+@SupportedAnnotationTypes(GsonAdapterProcessor.GSON_ADAPTER)
+public class GsonAdapterProcessor extends AbstractProcessor {
+
+    static final String GSON_ADAPTER = "com.xunkutech.base.model.annotation.GsonAdapter";
+    /**
+     * <code>com.xunkutech.base.model.util.GeneratedAdapters</code>, which looks the adapters up by
+     * its <code>ADAPTER_SUFFIX</code>.
+     */
+    private static final String GENERATED_ADAPTERS = "com.xunkutech.base.model.util.GeneratedAdapters";
+    private static final String ADAPTER_SUFFIX = "_GsonAdapter";
+
+    private static final String JPA_TRANSIENT = "javax.persistence.Transient";
+    private static final String JPA_ONE_TO_MANY = "javax.persistence.OneToMany";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    private static final String JSON_ADAPTER = "com.google.gson.annotations.JsonAdapter";
+    private static final String TYPE_ADAPTER = "com.google.gson.TypeAdapter";
+    private static final String TYPE_ADAPTER_FACTORY = "com.google.gson.TypeAdapterFactory";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+
+        TypeElement gsonAdapter = elements.getTypeElement(GSON_ADAPTER);
+        if (null == gsonAdapter) return false;
+        for (Element element : roundEnv.getElementsAnnotatedWith(gsonAdapter)) {
+            try {
+                if (element.getKind() != ElementKind.CLASS) {
+                    throw new UnsupportedBeanException(element, "@GsonAdapter only applies to classes");
+                }
+                generate((TypeElement) element);
+            } catch (UnsupportedBeanException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Cannot write Gson adapter: " + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------
+
+    private static class UnsupportedBeanException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Element element;
+
+        UnsupportedBeanException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+
+    /**
+     * One JSON property of the bean.
+     */
+    private static class Property {
+        String jsonName;
+        List<String> alternateNames = new ArrayList<>();
+        /**
+         * Field type as a member of the bean, boxed for primitives.
+         */
+        String typeName;
+        boolean primitive;
+        /**
+         * Expression creating the field's TypeAdapter from <code>gson</code>.
+         */
+        String adapterExpression;
+        /**
+         * Declared class for runtime type dispatch on write, null when the adapter is used as is.
+         */
+        String runtimeDispatchClass;
+        String getExpression;
+        String setStatement;
+    }
+
+    private void generate(TypeElement bean) throws UnsupportedBeanException, IOException {
+        checkBean(bean);
+
+        DeclaredType beanType = (DeclaredType) bean.asType();
+        String packageName = elements.getPackageOf(bean).getQualifiedName().toString();
+        String beanName = bean.getQualifiedName().toString();
+        String adapterName = adapterSimpleName(bean);
+
+        List<Property> properties = new ArrayList<>();
+        Set<String> jsonNames = new HashSet<>();
+
+        for (TypeElement type = bean; null != type; type = superclass(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (isExcluded(field)) continue;
+                Property property = property(bean, beanType, field);
+                for (String name : names(property)) {
+                    if (!jsonNames.add(name)) {
+                        throw new UnsupportedBeanException(bean, beanName + " declares multiple JSON fields named " + name);
+                    }
+                }
+                properties.add(property);
+            }
+        }
+
+        String qualifiedAdapterName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedAdapterName, bean).openWriter()) {
+            writer.write(source(packageName, beanName, adapterName, properties));
+        }
+    }
+
+    private void checkBean(TypeElement bean) throws UnsupportedBeanException {
+        Set<Modifier> modifiers = bean.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT)) {
+            throw new UnsupportedBeanException(bean, "@GsonAdapter bean must not be abstract");
+        }
+        if (!bean.getTypeParameters().isEmpty()) {
+            throw new UnsupportedBeanException(bean, "@GsonAdapter bean must not be generic");
+        }
+        for (Element e = bean; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new UnsupportedBeanException(bean, "@GsonAdapter bean must not be private");
+            }
+            if (e.getEnclosingElement().getKind() != ElementKind.PACKAGE && !e.getModifiers().contains(Modifier.STATIC)) {
+                throw new UnsupportedBeanException(bean, "@GsonAdapter bean must be a top level or static nested class");
+            }
+        }
+        if (null != annotation(bean, JSON_ADAPTER)) {
+            throw new UnsupportedBeanException(bean, "@GsonAdapter bean already has a class level @JsonAdapter");
+        }
+        boolean noArgConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(bean.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                noArgConstructor = true;
+            }
+        }
+        if (!noArgConstructor) {
+            throw new UnsupportedBeanException(bean, "@GsonAdapter bean needs a non-private no-arg constructor");
+        }
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+        TypeElement element = (TypeElement) types.asElement(superclass);
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private boolean isExcluded(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        return modifiers.contains(Modifier.STATIC)
+                || modifiers.contains(Modifier.TRANSIENT)
+                || null != annotation(field, JPA_TRANSIENT)
+                || null != annotation(field, JPA_ONE_TO_MANY);
+    }
+
+    private static List<String> names(Property property) {
+        List<String> names = new ArrayList<>();
+        names.add(property.jsonName);
+        names.addAll(property.alternateNames);
+        return names;
+    }
+
+    private Property property(TypeElement bean, DeclaredType beanType, VariableElement field)
+            throws UnsupportedBeanException {
+        Property property = new Property();
+        String fieldName = field.getSimpleName().toString();
+        TypeMirror type = types.asMemberOf(beanType, field);
+        if (hasTypeVariable(type)) {
+            throw new UnsupportedBeanException(field, "Type of " + fieldName + " is not resolved by " + bean.getSimpleName());
+        }
+
+        property.jsonName = fieldName;
+        AnnotationMirror serializedName = annotation(field, SERIALIZED_NAME);
+        if (null != serializedName) {
+            property.jsonName = (String) annotationValue(serializedName, "value");
+            Object alternate = annotationValue(serializedName, "alternate");
+            if (alternate instanceof List) {
+                for (Object value : (List<?>) alternate) {
+                    property.alternateNames.add((String) ((AnnotationValue) value).getValue());
+                }
+            }
+        }
+
+        property.primitive = type.getKind().isPrimitive();
+        property.typeName = property.primitive
+                ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+
+        String token = typeToken(type);
+        AnnotationMirror jsonAdapter = annotation(field, JSON_ADAPTER);
+        if (null != jsonAdapter) {
+            TypeMirror adapterType = (TypeMirror) annotationValue(jsonAdapter, "value");
+            Object nullSafe = annotationValue(jsonAdapter, "nullSafe");
+            String create;
+            if (isSubtype(adapterType, TYPE_ADAPTER_FACTORY)) {
+                create = "new " + types.erasure(adapterType) + "().create(gson, " + typeTokenInstance(token) + ")";
+            } else if (isSubtype(adapterType, TYPE_ADAPTER)) {
+                create = "(com.google.gson.TypeAdapter<" + property.typeName + ">) (com.google.gson.TypeAdapter<?>) new "
+                        + types.erasure(adapterType) + "()";
+            } else {
+                throw new UnsupportedBeanException(field, "@JsonAdapter of " + fieldName + " must be a TypeAdapter or TypeAdapterFactory");
+            }
+            property.adapterExpression = Boolean.FALSE.equals(nullSafe) ? create : create + ".nullSafe()";
+        } else {
+            property.adapterExpression = "gson.getAdapter(" + token + ")";
+            if (type.getKind() == TypeKind.DECLARED
+                    && ((DeclaredType) type).getTypeArguments().isEmpty()
+                    && !types.asElement(type).getModifiers().contains(Modifier.FINAL)) {
+                property.runtimeDispatchClass = types.erasure(type) + ".class";
+            }
+        }
+
+        String beanPackage = elements.getPackageOf(bean).getQualifiedName().toString();
+        if (isAccessible(field, beanPackage) && !field.getModifiers().contains(Modifier.FINAL)) {
+            property.getExpression = "value." + fieldName;
+            property.setStatement = "value." + fieldName + " = %s;";
+        } else {
+            String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+            ExecutableElement getter = accessor(bean, beanPackage, type.getKind() == TypeKind.BOOLEAN ? "is" + capitalized : "get" + capitalized, 0);
+            if (null == getter) getter = accessor(bean, beanPackage, "get" + capitalized, 0);
+            ExecutableElement setter = accessor(bean, beanPackage, "set" + capitalized, 1);
+            if (null == getter || null == setter) {
+                throw new UnsupportedBeanException(field, fieldName + " is not accessible from "
+                        + beanPackage + "; make it package-private or declare its getter and setter");
+            }
+            property.getExpression = "value." + getter.getSimpleName() + "()";
+            property.setStatement = "value." + setter.getSimpleName() + "(%s);";
+        }
+        return property;
+    }
+
+    private ExecutableElement accessor(TypeElement bean, String beanPackage, String name, int parameters) {
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(bean))) {
+            if (method.getSimpleName().contentEquals(name)
+                    && method.getParameters().size() == parameters
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && isAccessible(method, beanPackage)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(Element member, String beanPackage) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) return true;
+        if (modifiers.contains(Modifier.PRIVATE)) return false;
+        return elements.getPackageOf(member).getQualifiedName().contentEquals(beanPackage);
+    }
+
+    private boolean isSubtype(TypeMirror type, String superTypeName) {
+        TypeElement superType = elements.getTypeElement(superTypeName);
+        return null != superType && types.isSubtype(types.erasure(type), types.erasure(superType.asType()));
+    }
+
+    private boolean hasTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return (null != wildcard.getExtendsBound() && hasTypeVariable(wildcard.getExtendsBound()))
+                        || (null != wildcard.getSuperBound() && hasTypeVariable(wildcard.getSuperBound()));
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariable(argument)) return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A class literal when the type carries no type arguments, a TypeToken subclass otherwise.
+     */
+    private String typeToken(TypeMirror type) {
+        if (type.getKind().isPrimitive() || types.isSameType(type, types.erasure(type))) {
+            return types.erasure(type) + ".class";
+        }
+        return "new com.google.gson.reflect.TypeToken<" + type + ">() {}";
+    }
+
+    private static String typeTokenInstance(String token) {
+        return token.endsWith(".class") ? "com.google.gson.reflect.TypeToken.get(" + token + ")" : token;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static Object annotationValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String adapterSimpleName(TypeElement bean) {
+        StringBuilder name = new StringBuilder(bean.getSimpleName());
+        for (Element e = bean.getEnclosingElement(); e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        return name.append(ADAPTER_SUFFIX).toString();
+    }
+
+    // ------------------------------------------
+
+    private static String source(String packageName, String beanName, String adapterName, List<Property> properties) {
+        StringBuilder s = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            s.append("package ").append(packageName).append(";\n\n");
+        }
+        s.append("/**\n * Generated by ").append(GsonAdapterProcessor.class.getName()).append(" for {@link ")
+                .append(beanName).append("}, do not edit.\n */\n");
+        s.append("public final class ").append(adapterName)
+                .append(" extends com.google.gson.TypeAdapter<").append(beanName).append("> {\n\n");
+        s.append("    private final com.google.gson.Gson gson;\n");
+        for (int i = 0; i < properties.size(); i++) {
+            s.append("    private final com.google.gson.TypeAdapter<").append(properties.get(i).typeName)
+                    .append("> adapter").append(i).append(";\n");
+        }
+
+        s.append("\n    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        s.append("    public ").append(adapterName).append("(com.google.gson.Gson gson) {\n");
+        s.append("        this.gson = gson;\n");
+        for (int i = 0; i < properties.size(); i++) {
+            s.append("        this.adapter").append(i).append(" = ").append(properties.get(i).adapterExpression).append(";\n");
+        }
+        s.append("    }\n");
+
+        s.append("\n    @Override\n");
+        s.append("    public void write(com.google.gson.stream.JsonWriter out, ").append(beanName)
+                .append(" value) throws java.io.IOException {\n");
+        s.append("        if (value == null) {\n            out.nullValue();\n            return;\n        }\n");
+        s.append("        out.beginObject();\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property p = properties.get(i);
+            s.append("        out.name(\"").append(escape(p.jsonName)).append("\");\n");
+            if (null == p.runtimeDispatchClass) {
+                s.append("        adapter").append(i).append(".write(out, ").append(p.getExpression).append(");\n");
+            } else {
+                s.append("        ").append(GENERATED_ADAPTERS).append(".write(gson, out, adapter").append(i)
+                        .append(", ").append(p.runtimeDispatchClass).append(", ").append(p.getExpression).append(");\n");
+            }
+        }
+        s.append("        out.endObject();\n");
+        s.append("    }\n");
+
+        s.append("\n    @Override\n");
+        s.append("    public ").append(beanName).append(" read(com.google.gson.stream.JsonReader in) throws java.io.IOException {\n");
+        s.append("        if (in.peek() == com.google.gson.stream.JsonToken.NULL) {\n            in.nextNull();\n            return null;\n        }\n");
+        s.append("        ").append(beanName).append(" value = new ").append(beanName).append("();\n");
+        s.append("        in.beginObject();\n");
+        s.append("        while (in.hasNext()) {\n");
+        s.append("            switch (in.nextName()) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property p = properties.get(i);
+            for (String name : names(p)) {
+                s.append("                case \"").append(escape(name)).append("\":\n");
+            }
+            if (p.primitive) {
+                s.append("                {\n");
+                s.append("                    ").append(p.typeName).append(" v = adapter").append(i).append(".read(in);\n");
+                s.append("                    if (v != null) ").append(String.format(p.setStatement, "v")).append("\n");
+                s.append("                    break;\n");
+                s.append("                }\n");
+            } else {
+                s.append("                    ").append(String.format(p.setStatement, "adapter" + i + ".read(in)")).append("\n");
+                s.append("                    break;\n");
+            }
+        }
+        s.append("                default:\n");
+        s.append("                    in.skipValue();\n");
+        s.append("            }\n");
+        s.append("        }\n");
+        s.append("        in.endObject();\n");
+        s.append("        return value;\n");
+        s.append("    }\n");
+        s.append("}\n");
+        return s.toString();
+    }
+
+    private static String escape(String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}